@@ -65,6 +65,7 @@ import org.apache.tez.common.security.JobTokenSecretManager;
 import org.apache.tez.dag.api.DAG;
 import org.apache.tez.dag.api.DAGSubmissionTimedOut;
 import org.apache.tez.dag.api.DagTypeConverters;
+import org.apache.tez.dag.api.DescriptorProtoCache;
 import org.apache.tez.dag.api.HistoryLogLevel;
 import org.apache.tez.dag.api.PreWarmVertex;
 import org.apache.tez.dag.api.SessionNotReady;
@@ -139,6 +140,8 @@ public class TezClient {
   @VisibleForTesting
   final ServicePluginsDescriptor servicePluginsDescriptor;
   private JavaOptsChecker javaOptsChecker = null;
+  // Protos of the descriptors of the DAGs submitted to the session, null if disabled
+  private final DescriptorProtoCache descriptorProtoCache;
 
   private int preWarmDAGCounter = 0;
 
@@ -201,6 +204,7 @@ public class TezClient {
         tezConf.getInt(TezConfiguration.TEZ_IPC_PAYLOAD_RESERVED_BYTES,
         TezConfiguration.TEZ_IPC_PAYLOAD_RESERVED_BYTES_DEFAULT);
     Limits.setConfiguration(tezConf);
+    this.descriptorProtoCache = isSession ? DescriptorProtoCache.create(tezConf) : null;
 
     LOG.info("Tez Client Version: " + apiVersionInfo.toString());
   }
@@ -552,7 +556,8 @@ public class TezClient {
 
     Map<String, LocalResource> tezJarResources = getTezJarResources(sessionCredentials);
     DAGPlan dagPlan = TezClientUtils.prepareAndCreateDAGPlan(dag, amConfig, tezJarResources,
-        usingTezArchiveDeploy, sessionCredentials, servicePluginsDescriptor, javaOptsChecker);
+        usingTezArchiveDeploy, sessionCredentials, servicePluginsDescriptor, javaOptsChecker,
+        descriptorProtoCache);
 
     SubmitDAGRequestProto.Builder requestBuilder = SubmitDAGRequestProto.newBuilder();
     requestBuilder.setDAGPlan(dagPlan);
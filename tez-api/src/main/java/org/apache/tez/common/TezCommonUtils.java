@@ -52,6 +52,8 @@ import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezConstants;
 import org.apache.tez.dag.api.TezUncheckedException;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.protobuf.ByteString;
 
 @Private
@@ -265,6 +267,23 @@ public class TezCommonUtils {
     return new Path(attemptRecoverPath, dagID + TezConstants.DAG_RECOVERY_RECOVER_FILE_SUFFIX);
   }
 
+  /**
+   * <p>
+   * Returns a path to store the recovery checkpoint of a DAG
+   * </p>
+   *
+   * @param attemptRecoverPath
+   *          :TEZ system level staging directory used for Tez internals
+   * @param dagID
+   *          DagID as string
+   * @return DAG specific recovery checkpoint path
+   */
+  @Private
+  public static Path getDAGRecoveryCheckpointPath(Path attemptRecoverPath, String dagID) {
+    return new Path(attemptRecoverPath,
+        dagID + TezConstants.DAG_RECOVERY_CHECKPOINT_FILE_SUFFIX);
+  }
+
   /**
    * <p>
    * Returns a path to store summary info for recovery
@@ -365,7 +384,13 @@ public class TezCommonUtils {
 
   @Private
   public static ByteString compressByteArrayToByteString(byte[] inBytes) throws IOException {
-    return compressByteArrayToByteString(inBytes, newBestCompressionDeflater());
+    Deflater deflater = newBestCompressionDeflater();
+    try {
+      return compressByteArrayToByteString(inBytes, deflater);
+    } finally {
+      // release the native memory now rather than on finalization
+      deflater.end();
+    }
   }
 
   @Private
@@ -559,4 +584,39 @@ public class TezCommonUtils {
     return 1000l * timeoutSecs;
   }
 
+  /**
+   * Helper function to get the number of tasks run in parallel within the AM process.
+   * This only sizes the concurrency of inline execution, data is still moved between the tasks
+   * by the regular shuffle.
+   * See {@link TezConfiguration#TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS} for more details.
+   * @param conf Configuration object
+   * @return the number of tasks, which is the number of available processors for -1, capped by
+   *         the number of tasks that fit in the heap of the process
+   */
+  public static int getInlineTaskExecutionMaxTasks(Configuration conf) {
+    return getInlineTaskExecutionMaxTasks(conf, Runtime.getRuntime().availableProcessors(),
+        Runtime.getRuntime().maxMemory());
+  }
+
+  @VisibleForTesting
+  static int getInlineTaskExecutionMaxTasks(Configuration conf, int availableProcessors,
+      long maxMemory) {
+    int maxTasks = conf.getInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS,
+        TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS_DEFAULT);
+    if (maxTasks == -1) {
+      int minTaskMemoryMb = conf.getInt(
+          TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MIN_TASK_MEMORY_MB,
+          TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MIN_TASK_MEMORY_MB_DEFAULT);
+      Preconditions.checkArgument(minTaskMemoryMb > 0,
+          TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MIN_TASK_MEMORY_MB
+              + " should be positive, was " + minTaskMemoryMb);
+      long fittingTasks = maxMemory / (minTaskMemoryMb * 1024L * 1024L);
+      return (int) Math.max(1, Math.min(availableProcessors, fittingTasks));
+    }
+    Preconditions.checkArgument(maxTasks > 0,
+        TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS + " should be positive or -1, was "
+            + maxTasks);
+    return maxTasks;
+  }
+
 }
@@ -20,7 +20,9 @@ package org.apache.tez.common;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -28,6 +30,7 @@ import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.protobuf.ByteString;
 
@@ -51,6 +54,11 @@ public class TezUtils {
 
   private static final Logger LOG = LoggerFactory.getLogger(TezUtils.class);
 
+  // Configurations parsed from user payloads, keyed by the payload. Only enabled in task
+  // containers, where consecutive tasks of a vertex parse the same payloads.
+  private static Map<ByteBuffer, Configuration> confCache = null;
+  private static long confCacheHits = 0;
+
   /**
    * Allows changing the log level for task / AM logging. </p>
    *
@@ -129,7 +137,82 @@ public class TezUtils {
    * @throws java.io.IOException
    */
   public static Configuration createConfFromUserPayload(UserPayload payload) throws IOException {
-    return createConfFromByteString(ByteString.copyFrom(payload.getPayload()));
+    ByteBuffer payloadBuffer = payload.getPayload();
+    if (payloadBuffer != null) {
+      Configuration cachedConf = getCachedConf(payloadBuffer);
+      if (cachedConf != null) {
+        return copyConf(cachedConf);
+      }
+    }
+    Configuration conf = createConfFromByteString(ByteString.copyFrom(payload.getPayload()));
+    if (payloadBuffer != null) {
+      cacheConf(payloadBuffer, conf);
+    }
+    return conf;
+  }
+
+  /**
+   * Enables caching of the configurations created by
+   * {@link #createConfFromUserPayload(UserPayload)}. Callers get a copy of the cached
+   * configuration, which is cheaper than parsing the payload again.
+   *
+   * @param maxEntries the maximum number of configurations cached. The least recently used
+   *                   configurations are removed beyond this.
+   */
+  @InterfaceAudience.Private
+  public static synchronized void enableConfCache(final int maxEntries) {
+    Preconditions.checkArgument(maxEntries > 0, "maxEntries should be positive");
+    confCache = new LinkedHashMap<ByteBuffer, Configuration>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Configuration> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  @InterfaceAudience.Private
+  public static synchronized void clearConfCache() {
+    if (confCache != null) {
+      confCache.clear();
+    }
+  }
+
+  /**
+   * Disables caching of configurations, and drops the cached configurations.
+   */
+  @InterfaceAudience.Private
+  public static synchronized void disableConfCache() {
+    confCache = null;
+    confCacheHits = 0;
+  }
+
+  @VisibleForTesting
+  static synchronized long getConfCacheHits() {
+    return confCacheHits;
+  }
+
+  private static synchronized Configuration getCachedConf(ByteBuffer payload) {
+    Configuration conf = confCache == null ? null : confCache.get(payload);
+    if (conf != null) {
+      confCacheHits++;
+    }
+    return conf;
+  }
+
+  private static synchronized void cacheConf(ByteBuffer payload, Configuration conf) {
+    if (confCache != null) {
+      // The caller may modify the configuration it was given
+      confCache.put(payload, copyConf(conf));
+    }
+  }
+
+  private static Configuration copyConf(Configuration conf) {
+    Configuration copy = new Configuration(conf);
+    // Same class loader as a configuration created from the payload
+    copy.setClassLoader(Thread.currentThread().getContextClassLoader());
+    return copy;
   }
 
 
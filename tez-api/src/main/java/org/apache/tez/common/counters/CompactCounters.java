@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tez.common.counters;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+
+/**
+ * Counters stored as the ids assigned by a {@link CounterIndex} and their values, in two arrays
+ * sorted by id. This takes a fraction of the memory of {@link TezCounters}, which keeps maps of
+ * groups and an object per counter, and counters sharing an index are added up by walking the
+ * arrays, without any lookups by name.
+ *
+ * The AM uses compact counters to keep the counters of finished attempts and to aggregate the
+ * counters of vertices and DAGs. {@link #toTezCounters()} gives the usual view of the counters.
+ *
+ * Compact counters are not safe for concurrent modification. Counters which are shared are not
+ * modified after they are built.
+ */
+@Private
+public class CompactCounters {
+
+  private static final int[] EMPTY_IDS = new int[0];
+  private static final long[] EMPTY_VALUES = new long[0];
+
+  private final CounterIndex index;
+  private int[] ids = EMPTY_IDS;
+  private long[] values = EMPTY_VALUES;
+  private int size = 0;
+
+  public CompactCounters(CounterIndex index) {
+    this.index = index;
+  }
+
+  /**
+   * Increments the counters by the values of the given counters, adding the counters which are
+   * not present yet.
+   */
+  public void incrAllCounters(AbstractCounters<?, ?> other) {
+    for (CounterGroupBase<?> group : other) {
+      CounterIndex.Group indexGroup = index.getGroup(group.getName(), group.getDisplayName());
+      for (TezCounter counter : group) {
+        increment(index.getId(indexGroup, counter.getName(), counter.getDisplayName()),
+            counter.getValue());
+      }
+    }
+  }
+
+  /**
+   * Increments the counters by the values of the given counters, which must use the same index.
+   */
+  public void incrAllCounters(CompactCounters other) {
+    if (other.index != index) {
+      throw new IllegalArgumentException("Cannot add up counters with different indexes");
+    }
+    int i = 0;
+    for (int j = 0; j < other.size; ++j) {
+      int id = other.ids[j];
+      while (i < size && ids[i] < id) {
+        ++i;
+      }
+      if (i == size || ids[i] != id) {
+        insert(i, id);
+      }
+      values[i] += other.values[j];
+    }
+  }
+
+  /**
+   * Returns the value of a counter, or 0 if the counter is not present.
+   */
+  public long getValue(String groupName, String counterName) {
+    int id = index.findId(groupName, counterName);
+    int i = id < 0 ? -1 : Arrays.binarySearch(ids, 0, size, id);
+    return i < 0 ? 0 : values[i];
+  }
+
+  /**
+   * Returns the number of counters present.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Releases the unused capacity of the arrays, for counters which will not change any more.
+   */
+  public void trimToSize() {
+    if (size < ids.length) {
+      ids = Arrays.copyOf(ids, size);
+      values = Arrays.copyOf(values, size);
+    }
+  }
+
+  /**
+   * Returns a new {@link TezCounters} with the same groups and counters.
+   */
+  public TezCounters toTezCounters() {
+    TezCounters counters = new TezCounters();
+    Map<CounterIndex.Group, CounterGroup> groups = new HashMap<CounterIndex.Group, CounterGroup>();
+    for (int i = 0; i < size; ++i) {
+      CounterIndex.Counter counter = index.getCounter(ids[i]);
+      CounterGroup group = groups.get(counter.group);
+      if (group == null) {
+        group = counters.addGroup(counter.group.name, counter.group.displayName);
+        groups.put(counter.group, group);
+      }
+      group.addCounter(counter.name, counter.displayName, values[i]);
+    }
+    return counters;
+  }
+
+  private void increment(int id, long value) {
+    int i = Arrays.binarySearch(ids, 0, size, id);
+    if (i < 0) {
+      i = -i - 1;
+      insert(i, id);
+    }
+    values[i] += value;
+  }
+
+  // Counters are added once per id, so shifting the arrays is rare compared to increments.
+  private void insert(int i, int id) {
+    if (size == ids.length) {
+      int capacity = Math.max(16, size + (size >> 1));
+      ids = Arrays.copyOf(ids, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    System.arraycopy(ids, i, ids, i + 1, size - i);
+    System.arraycopy(values, i, values, i + 1, size - i);
+    ids[i] = id;
+    values[i] = 0;
+    ++size;
+  }
+}
@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tez.common.counters;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.util.StringInterner;
+
+/**
+ * Assigns integer ids to the counters seen in a DAG, so that {@link CompactCounters} only have to
+ * store ids and values. Ids are assigned in the order counters are first seen and are never
+ * reused. The names of a counter are kept once in the index, however many tasks report it.
+ *
+ * The index is safe for use by multiple threads. Looking up the id of a known counter does not
+ * take any locks.
+ */
+@Private
+public class CounterIndex {
+
+  static final class Group {
+    final String name;
+    final String displayName;
+    final ConcurrentMap<String, Integer> counterIds = new ConcurrentHashMap<String, Integer>();
+
+    Group(String name, String displayName) {
+      this.name = name;
+      this.displayName = displayName;
+    }
+  }
+
+  static final class Counter {
+    final Group group;
+    final String name;
+    final String displayName;
+
+    Counter(Group group, String name, String displayName) {
+      this.group = group;
+      this.name = name;
+      this.displayName = displayName;
+    }
+  }
+
+  private final ConcurrentMap<String, Group> groups = new ConcurrentHashMap<String, Group>();
+  // Guarded by this for writes. An id is published through the counterIds of its group after
+  // the counter is stored, so readers of a known id always see the counter.
+  private volatile Counter[] counters = new Counter[64];
+  private volatile int size = 0;
+
+  Group getGroup(String name, String displayName) {
+    Group group = groups.get(name);
+    if (group == null) {
+      group = new Group(StringInterner.weakIntern(name), StringInterner.weakIntern(displayName));
+      Group existing = groups.putIfAbsent(name, group);
+      if (existing != null) {
+        group = existing;
+      }
+    }
+    return group;
+  }
+
+  int getId(Group group, String counterName, String counterDisplayName) {
+    Integer id = group.counterIds.get(counterName);
+    if (id == null) {
+      synchronized (this) {
+        id = group.counterIds.get(counterName);
+        if (id == null) {
+          id = size;
+          Counter[] newCounters = counters;
+          if (id == newCounters.length) {
+            newCounters = Arrays.copyOf(newCounters, newCounters.length * 2);
+          }
+          newCounters[id] = new Counter(group, StringInterner.weakIntern(counterName),
+              StringInterner.weakIntern(counterDisplayName));
+          counters = newCounters;
+          size = id + 1;
+          group.counterIds.put(counterName, id);
+        }
+      }
+    }
+    return id;
+  }
+
+  /**
+   * Returns the id of a counter, or -1 if the counter has not been seen yet.
+   */
+  int findId(String groupName, String counterName) {
+    Group group = groups.get(groupName);
+    if (group == null) {
+      return -1;
+    }
+    Integer id = group.counterIds.get(counterName);
+    return id == null ? -1 : id;
+  }
+
+  Counter getCounter(int id) {
+    return counters[id];
+  }
+
+  /**
+   * Returns the number of counters which have been assigned an id.
+   */
+  public int size() {
+    return size;
+  }
+}
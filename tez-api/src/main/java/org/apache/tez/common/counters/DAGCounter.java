@@ -38,5 +38,6 @@ public enum DAGCounter {
   NUM_UBER_SUBTASKS,
   NUM_FAILED_UBERTASKS,
   AM_CPU_MILLISECONDS,
-  AM_GC_TIME_MILLIS
+  AM_GC_TIME_MILLIS,
+  OUTPUT_COMMIT_TIME_MILLIS
 }
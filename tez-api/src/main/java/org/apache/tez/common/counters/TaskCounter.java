@@ -218,5 +218,13 @@ public enum TaskCounter {
    *
    * Represented in milliseconds
    */
-  LAST_EVENT_RECEIVED
+  LAST_EVENT_RECEIVED,
+
+  /**
+   * Time spent waiting for the record readers of the splits in a grouped split to be opened.
+   * Only includes the time which was not overlapped with reading, if the splits are prefetched.
+   *
+   * Represented in milliseconds
+   */
+  INPUT_SPLIT_OPEN_WAIT_TIME
 }
\ No newline at end of file
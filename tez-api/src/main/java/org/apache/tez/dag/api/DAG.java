@@ -34,6 +34,8 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Stack;
 
+import javax.annotation.Nullable;
+
 import org.apache.commons.collections4.BidiMap;
 import org.apache.commons.collections4.bidimap.DualLinkedHashBidiMap;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -846,6 +848,16 @@ public class DAG {
       Map<String, LocalResource> tezJarResources, LocalResource binaryConfig,
       boolean tezLrsAsArchive, ServicePluginsDescriptor servicePluginsDescriptor,
       JavaOptsChecker javaOptsChecker) {
+    return createDag(tezConf, extraCredentials, tezJarResources, binaryConfig, tezLrsAsArchive,
+        servicePluginsDescriptor, javaOptsChecker, null);
+  }
+
+  // create protobuf message describing DAG
+  @Private
+  public synchronized DAGPlan createDag(Configuration tezConf, Credentials extraCredentials,
+      Map<String, LocalResource> tezJarResources, LocalResource binaryConfig,
+      boolean tezLrsAsArchive, ServicePluginsDescriptor servicePluginsDescriptor,
+      JavaOptsChecker javaOptsChecker, @Nullable DescriptorProtoCache descriptorProtoCache) {
     Deque<String> topologicalVertexStack = verify(true);
     verifyLocalResources(tezConf);
 
@@ -881,7 +893,8 @@ public class DAG {
              groupInfo.edgeMergedInputs.entrySet()) {
           groupBuilder.addEdgeMergedInputs(
               PlanGroupInputEdgeInfo.newBuilder().setDestVertexName(entry.getKey()).
-              setMergedInput(DagTypeConverters.convertToDAGPlan(entry.getValue())));
+              setMergedInput(DagTypeConverters.convertToDAGPlan(entry.getValue(),
+                  descriptorProtoCache)));
         }
         dagBuilder.addVertexGroups(groupBuilder); 
       }
@@ -960,7 +973,7 @@ public class DAG {
       vertexBuilder.setName(vertex.getName());
       vertexBuilder.setType(PlanVertexType.NORMAL); // vertex type is implicitly NORMAL until  TEZ-46.
       vertexBuilder.setProcessorDescriptor(DagTypeConverters
-          .convertToDAGPlan(vertex.getProcessorDescriptor()));
+          .convertToDAGPlan(vertex.getProcessorDescriptor(), descriptorProtoCache));
 
       // Vertex ExecutionContext setup
       VertexExecutionContext execContext = vertex.getVertexExecutionContext();
@@ -974,12 +987,12 @@ public class DAG {
 
       if (vertex.getInputs().size() > 0) {
         for (RootInputLeafOutput<InputDescriptor, InputInitializerDescriptor> input : vertex.getInputs()) {
-          vertexBuilder.addInputs(DagTypeConverters.convertToDAGPlan(input));
+          vertexBuilder.addInputs(DagTypeConverters.convertToDAGPlan(input, descriptorProtoCache));
         }
       }
       if (vertex.getOutputs().size() > 0) {
         for (RootInputLeafOutput<OutputDescriptor, OutputCommitterDescriptor> output : vertex.getOutputs()) {
-          vertexBuilder.addOutputs(DagTypeConverters.convertToDAGPlan(output));
+          vertexBuilder.addOutputs(DagTypeConverters.convertToDAGPlan(output, descriptorProtoCache));
         }
       }
 
@@ -1052,7 +1065,7 @@ public class DAG {
       
       if (vertex.getVertexManagerPlugin() != null) {
         vertexBuilder.setVertexManagerPlugin(DagTypeConverters
-            .convertToDAGPlan(vertex.getVertexManagerPlugin()));
+            .convertToDAGPlan(vertex.getVertexManagerPlugin(), descriptorProtoCache));
       }
 
       for (Edge inEdge : vertex.getInputEdges()) {
@@ -1075,11 +1088,14 @@ public class DAG {
       edgeBuilder.setDataMovementType(DagTypeConverters.convertToDAGPlan(edge.getEdgeProperty().getDataMovementType()));
       edgeBuilder.setDataSourceType(DagTypeConverters.convertToDAGPlan(edge.getEdgeProperty().getDataSourceType()));
       edgeBuilder.setSchedulingType(DagTypeConverters.convertToDAGPlan(edge.getEdgeProperty().getSchedulingType()));
-      edgeBuilder.setEdgeSource(DagTypeConverters.convertToDAGPlan(edge.getEdgeProperty().getEdgeSource()));
-      edgeBuilder.setEdgeDestination(DagTypeConverters.convertToDAGPlan(edge.getEdgeProperty().getEdgeDestination()));
+      edgeBuilder.setEdgeSource(DagTypeConverters.convertToDAGPlan(
+          edge.getEdgeProperty().getEdgeSource(), descriptorProtoCache));
+      edgeBuilder.setEdgeDestination(DagTypeConverters.convertToDAGPlan(
+          edge.getEdgeProperty().getEdgeDestination(), descriptorProtoCache));
       if (edge.getEdgeProperty().getDataMovementType() == DataMovementType.CUSTOM) {
         if (edge.getEdgeProperty().getEdgeManagerDescriptor() != null) {
-          edgeBuilder.setEdgeManager(DagTypeConverters.convertToDAGPlan(edge.getEdgeProperty().getEdgeManagerDescriptor()));
+          edgeBuilder.setEdgeManager(DagTypeConverters.convertToDAGPlan(
+              edge.getEdgeProperty().getEdgeManagerDescriptor(), descriptorProtoCache));
         } // else the AM will deal with this.
       }
       dagBuilder.addEdge(edgeBuilder);
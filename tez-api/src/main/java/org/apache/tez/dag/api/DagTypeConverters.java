@@ -346,6 +346,23 @@ public class DagTypeConverters {
 
   public static TezEntityDescriptorProto convertToDAGPlan(
       EntityDescriptor<?> descriptor) {
+    return convertToDAGPlan(descriptor, null);
+  }
+
+  /**
+   * @param descriptorProtoCache reuses the protos of descriptors with the same contents, may be
+   *                             null
+   */
+  public static TezEntityDescriptorProto convertToDAGPlan(EntityDescriptor<?> descriptor,
+      @Nullable DescriptorProtoCache descriptorProtoCache) {
+    if (descriptorProtoCache == null) {
+      return createEntityDescriptorProto(descriptor);
+    }
+    return descriptorProtoCache.get(descriptor);
+  }
+
+  static TezEntityDescriptorProto createEntityDescriptorProto(
+      EntityDescriptor<?> descriptor) {
     TezEntityDescriptorProto.Builder builder = TezEntityDescriptorProto
         .newBuilder();
     builder.setClassName(descriptor.getClassName());
@@ -386,11 +403,18 @@ public class DagTypeConverters {
 
   public static RootInputLeafOutputProto convertToDAGPlan(
       RootInputLeafOutput<? extends EntityDescriptor<?>, ? extends EntityDescriptor<?>> rootIO) {
+    return convertToDAGPlan(rootIO, null);
+  }
+
+  public static RootInputLeafOutputProto convertToDAGPlan(
+      RootInputLeafOutput<? extends EntityDescriptor<?>, ? extends EntityDescriptor<?>> rootIO,
+      @Nullable DescriptorProtoCache descriptorProtoCache) {
     RootInputLeafOutputProto.Builder builder = RootInputLeafOutputProto.newBuilder();
     builder.setName(rootIO.getName());
-    builder.setIODescriptor(convertToDAGPlan(rootIO.getIODescriptor()));
+    builder.setIODescriptor(convertToDAGPlan(rootIO.getIODescriptor(), descriptorProtoCache));
     if (rootIO.getControllerDescriptor() != null) {
-      builder.setControllerDescriptor(convertToDAGPlan(rootIO.getControllerDescriptor()));
+      builder.setControllerDescriptor(
+          convertToDAGPlan(rootIO.getControllerDescriptor(), descriptorProtoCache));
     }
     return builder.build();
   }
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.api;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nullable;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.dag.api.records.DAGProtos.TezEntityDescriptorProto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * A content addressed cache of the protos of entity descriptors, owned by a client.
+ *
+ * The descriptors of the DAGs submitted by a client often have the same payloads and history
+ * texts, e.g. the configuration shared by the vertices of a DAG and by the DAGs of a session.
+ * Converting such a descriptor again copies its payload and compresses its history text with the
+ * best compression, which is most of the time spent creating a DAG plan. Descriptors with the
+ * same class name, payload and history text share a proto instead. The cache is bounded by the
+ * approximate number of bytes held by the protos and the keys, see
+ * {@link TezConfiguration#TEZ_CLIENT_DESCRIPTOR_PROTO_CACHE_SIZE_MB}.
+ */
+@Private
+public final class DescriptorProtoCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DescriptorProtoCache.class);
+
+  private final Cache<Key, TezEntityDescriptorProto> cache;
+
+  DescriptorProtoCache(long maxBytes) {
+    // DAG plans are created by a single thread at a time, a single segment keeps the whole weight
+    // available to every entry
+    this.cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumWeight(maxBytes)
+        .weigher(new Weigher<Key, TezEntityDescriptorProto>() {
+          @Override
+          public int weigh(Key key, TezEntityDescriptorProto value) {
+            return (int) Math.min(Integer.MAX_VALUE,
+                (long) key.getSize() + value.getSerializedSize());
+          }
+        })
+        .build();
+  }
+
+  /**
+   * @return a cache sized as configured, or null if the cache is disabled
+   */
+  @Nullable
+  public static DescriptorProtoCache create(Configuration conf) {
+    int sizeMb = conf.getInt(TezConfiguration.TEZ_CLIENT_DESCRIPTOR_PROTO_CACHE_SIZE_MB,
+        TezConfiguration.TEZ_CLIENT_DESCRIPTOR_PROTO_CACHE_SIZE_MB_DEFAULT);
+    if (sizeMb <= 0) {
+      LOG.info("Descriptor proto cache is disabled");
+      return null;
+    }
+    return new DescriptorProtoCache(sizeMb * 1024L * 1024L);
+  }
+
+  TezEntityDescriptorProto get(EntityDescriptor<?> descriptor) {
+    Key key = new Key(descriptor);
+    TezEntityDescriptorProto proto = cache.getIfPresent(key);
+    if (proto == null) {
+      proto = DagTypeConverters.createEntityDescriptorProto(descriptor);
+      // the cached key refers to the payload copied into the proto, so that the buffer of the
+      // descriptor is not retained
+      cache.put(new Key(key, proto), proto);
+    }
+    return proto;
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  private static final class Key {
+    private final String className;
+    // null when the descriptor has no UserPayload
+    private final ByteBuffer payload;
+    private final boolean hasUserPayload;
+    private final int version;
+    private final String historyText;
+    private final int hash;
+
+    // Used for lookups, refers to the payload of the descriptor
+    Key(EntityDescriptor<?> descriptor) {
+      this.className = descriptor.getClassName();
+      UserPayload userPayload = descriptor.getUserPayload();
+      this.hasUserPayload = userPayload != null;
+      this.payload = userPayload == null ? null : userPayload.getPayload();
+      this.version = userPayload == null ? 0 : userPayload.getVersion();
+      this.historyText = descriptor.getHistoryText();
+      this.hash = Objects.hashCode(className, payload, hasUserPayload, version, historyText);
+    }
+
+    // Same contents as the given key, with the payload of the proto
+    Key(Key key, TezEntityDescriptorProto proto) {
+      this.className = key.className;
+      this.hasUserPayload = key.hasUserPayload;
+      this.payload = proto.hasTezUserPayload() && proto.getTezUserPayload().hasUserPayload()
+          ? proto.getTezUserPayload().getUserPayload().asReadOnlyByteBuffer() : null;
+      this.version = key.version;
+      this.historyText = key.historyText;
+      this.hash = key.hash;
+    }
+
+    // The payload is shared with the proto, and is accounted for by its serialized size
+    int getSize() {
+      return 2 * ((className == null ? 0 : className.length())
+          + (historyText == null ? 0 : historyText.length()));
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash
+          && hasUserPayload == other.hasUserPayload
+          && version == other.version
+          && Objects.equal(className, other.className)
+          && Objects.equal(payload, other.payload)
+          && Objects.equal(historyText, other.historyText);
+    }
+  }
+}
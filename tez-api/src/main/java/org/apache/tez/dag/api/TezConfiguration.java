@@ -300,6 +300,41 @@ public class TezConfiguration extends Configuration {
       TEZ_AM_PREFIX + "commit-all-outputs-on-dag-success";
   public static final boolean TEZ_AM_COMMIT_ALL_OUTPUTS_ON_DAG_SUCCESS_DEFAULT = true;
 
+  /**
+   * Int value. The number of threads used by the AM to commit the outputs of the vertices and of
+   * the DAGs. Outputs which are committed at the same time, e.g. all the outputs of a DAG when they
+   * are committed on DAG success, are committed concurrently up to this number, the others wait
+   * for a thread to be free. A value of 0 or less commits all of them concurrently.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_AM_COMMIT_THREADS = TEZ_AM_PREFIX + "commit.threads";
+  public static final int TEZ_AM_COMMIT_THREADS_DEFAULT = 16;
+
+  /**
+   * Long value. The time, in milliseconds, within which the commit of an output must complete.
+   * A commit which takes longer is interrupted, and fails the vertex or the DAG committing the
+   * output once it has returned, or once the grace period set by
+   * {@link #TEZ_AM_COMMIT_TIMEOUT_GRACE_MS} has passed. The outputs are only aborted once the
+   * commit has stopped running. A value of 0 or less disables the timeout.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="long")
+  public static final String TEZ_AM_COMMIT_TIMEOUT_MS = TEZ_AM_PREFIX + "commit.timeout-ms";
+  public static final long TEZ_AM_COMMIT_TIMEOUT_MS_DEFAULT = -1;
+
+  /**
+   * Long value. The time, in milliseconds, a commit which has timed out is given to stop after it
+   * has been interrupted. A commit which is still running after that, e.g. because it is stuck in
+   * a call which cannot be interrupted, fails right away, and its thread is left running. Only used
+   * if {@link #TEZ_AM_COMMIT_TIMEOUT_MS} is set.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="long")
+  public static final String TEZ_AM_COMMIT_TIMEOUT_GRACE_MS =
+      TEZ_AM_PREFIX + "commit.timeout.grace-ms";
+  public static final long TEZ_AM_COMMIT_TIMEOUT_GRACE_MS_DEFAULT = 30000;
+
   /**
    * Boolean value. Determine whether to log history events per dag
    */
@@ -751,6 +786,18 @@ public class TezConfiguration extends Configuration {
       + "get-task.sleep.interval-ms.max";
   public static final int TEZ_TASK_GET_TASK_SLEEP_INTERVAL_MS_MAX_DEFAULT = 200;
 
+  /**
+   * Boolean value. Whether a reused container keeps state which is common to the tasks of a
+   * vertex across tasks, so that consecutive tasks of a vertex start faster. This covers the
+   * constructors of the processor, inputs and outputs, and the configurations parsed from their
+   * user payloads. The state is dropped when the container moves on to a different vertex.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="boolean")
+  public static final String TEZ_TASK_VERTEX_WARM_CACHE_ENABLED = TEZ_TASK_PREFIX
+      + "vertex.warm-cache.enabled";
+  public static final boolean TEZ_TASK_VERTEX_WARM_CACHE_ENABLED_DEFAULT = false;
+
   /**
    * Int value. The maximum heartbeat interval, in milliseconds, between the app master and tasks. 
    * Increasing this can help improve app master scalability for a large number of concurrent tasks.
@@ -817,6 +864,35 @@ public class TezConfiguration extends Configuration {
       "initialize-processor-io-serially";
   public static final boolean TEZ_TASK_INITIALIZE_PROCESSOR_IO_SERIALLY_DEFAULT = false;
 
+  /**
+   * Boolean value. Initialize tasks in a pipelined manner. Inputs and outputs are set up on
+   * threads shared by all tasks running in the container instead of a thread pool created per
+   * task, events received from the AM are routed to the inputs as soon as they are initialized
+   * rather than once they have been started, and inputs which are not part of a group are started
+   * while group inputs are being set up. Shuffle based inputs hold on to events until they are
+   * started, so they can begin fetching all known data as soon as they start.
+   * Has no effect if {@link #TEZ_TASK_INITIALIZE_PROCESSOR_IO_SERIALLY} is set.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="boolean")
+  public static final String TEZ_TASK_INITIALIZE_PIPELINED = TEZ_TASK_PREFIX +
+      "initialize-pipelined";
+  public static final boolean TEZ_TASK_INITIALIZE_PIPELINED_DEFAULT = false;
+
+  /**
+   * Boolean value. Whether the time spent by the processor of a task is recorded in histograms,
+   * split into the CPU time of the thread running the processor and the time it spent waiting.
+   * The histograms are reported as counters of the task. The time taken by sorts, spills, fetches
+   * and merges is enabled separately for the runtime library, using
+   * tez.runtime.latency-histograms.enabled.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="boolean")
+  public static final String TEZ_TASK_LATENCY_HISTOGRAMS_ENABLED = TEZ_TASK_PREFIX +
+      "latency-histograms.enabled";
+  public static final boolean TEZ_TASK_LATENCY_HISTOGRAMS_ENABLED_DEFAULT = false;
+
   /**
    * Long value. Interval, in milliseconds, within which any of the tasks Input/Processor/Output 
    * components need to make successive progress notifications. If the progress is not notified 
@@ -967,6 +1043,62 @@ public class TezConfiguration extends Configuration {
       TEZ_TASK_PREFIX + "scale.memory.non-concurrent-inputs.enabled";
   public static final boolean TEZ_TASK_SCALE_MEMORY_NON_CONCURRENT_INPUTS_ENABLED_DEFAULT = false;
 
+  /**
+   * Whether memory can be redistributed between the components of a task while it is running.
+   * When enabled, memory released by a component (e.g. an input which has finished loading its
+   * data) is handed to components which have asked for additional memory, and the memory usage
+   * of inputs, outputs and processors is reported via task counters. Only components which
+   * explicitly release or request memory are affected. UnorderedKVInput releases its memory once all of its data has
+   * been read, and the PipelinedSorter asks for additional memory after spilling repeatedly.
+   */
+  @Private
+  @Unstable
+  @ConfigurationScope(Scope.VERTEX)
+  @ConfigurationProperty(type="boolean")
+  public static final String TEZ_TASK_SCALE_MEMORY_DYNAMIC_ENABLED =
+      TEZ_TASK_PREFIX + "scale.memory.dynamic.enabled";
+  public static final boolean TEZ_TASK_SCALE_MEMORY_DYNAMIC_ENABLED_DEFAULT = false;
+
+  /**
+   * Long value. Upper bound, in MB, on the size of the session and DAG scoped objects held in the
+   * ObjectRegistry of a container. Once exceeded, these objects are evicted, least recently used
+   * first. Vertex scoped objects are not bounded and never evicted. A negative value disables the
+   * bound.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="long")
+  public static final String TEZ_TASK_OBJECT_REGISTRY_MAX_SIZE_MB =
+      TEZ_TASK_PREFIX + "object-registry.max-size-mb";
+  public static final long TEZ_TASK_OBJECT_REGISTRY_MAX_SIZE_MB_DEFAULT = -1;
+
+  /**
+   * Long value. The size, in bytes, accounted for objects held in the ObjectRegistry other than
+   * byte arrays, byte buffers and objects implementing
+   * {@link org.apache.tez.runtime.api.ObjectRegistry.Weighable}, whose size is known. Large
+   * objects like hash tables should implement Weighable, otherwise they are accounted for with
+   * this size. Only used when {@link #TEZ_TASK_OBJECT_REGISTRY_MAX_SIZE_MB} is set.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="long")
+  public static final String TEZ_TASK_OBJECT_REGISTRY_OBJECT_SIZE_BYTES =
+      TEZ_TASK_PREFIX + "object-registry.object-size-bytes";
+  public static final long TEZ_TASK_OBJECT_REGISTRY_OBJECT_SIZE_BYTES_DEFAULT = 1024 * 1024;
+
+  /**
+   * Boolean value. Whether byte arrays cached in the ObjectRegistry are stored outside of the
+   * heap. A lookup of such an object still returns a byte array, which is a copy of the stored
+   * bytes. This keeps large cached arrays out of the heap between lookups, at the cost of a copy
+   * for every lookup.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="boolean")
+  public static final String TEZ_TASK_OBJECT_REGISTRY_OFFHEAP_ENABLED =
+      TEZ_TASK_PREFIX + "object-registry.offheap.enabled";
+  public static final boolean TEZ_TASK_OBJECT_REGISTRY_OFFHEAP_ENABLED_DEFAULT = false;
+
   @Private
   @Unstable
   /**
@@ -1011,6 +1143,19 @@ public class TezConfiguration extends Configuration {
   public static final boolean
       TEZ_AM_CONTAINER_REUSE_NON_LOCAL_FALLBACK_ENABLED_DEFAULT = false;
 
+  /**
+   * Boolean value. Whether a re-used container prefers the tasks of the vertex whose task it ran
+   * last, among the tasks of the same priority which it can run. The classes, JIT compiled code
+   * and cached objects of that vertex are already warm in the container. Active only if reuse is
+   * enabled.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="boolean")
+  public static final String TEZ_AM_CONTAINER_REUSE_VERTEX_AFFINITY_ENABLED =
+      TEZ_AM_PREFIX + "container.reuse.vertex-affinity.enabled";
+  public static final boolean
+      TEZ_AM_CONTAINER_REUSE_VERTEX_AFFINITY_ENABLED_DEFAULT = true;
+
   /**
    * Int value. The amount of time to wait before assigning a container to the next level
    * of locality. NODE -> RACK -> NON_LOCAL. Delay scheduling parameter. Expert level setting.
@@ -1409,6 +1554,32 @@ public class TezConfiguration extends Configuration {
       TEZ_PREFIX + "history.logging.timeline.num-dags-per-group";
   public static final int TEZ_HISTORY_LOGGING_TIMELINE_NUM_DAGS_PER_GROUP_DEFAULT = 1;
 
+  /**
+   * Integer value. Maximum number of history events queued up in the history logging service
+   * waiting to be written. Once the limit is reached, publishing further events blocks until the
+   * writer catches up. A value of -1 leaves the queue unbounded.
+   * Supported by SimpleHistoryLoggingService and ATSV15HistoryLoggingService.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_HISTORY_LOGGING_QUEUE_MAX_SIZE =
+      TEZ_PREFIX + "history.logging.queue.max.size";
+  public static final int TEZ_HISTORY_LOGGING_QUEUE_MAX_SIZE_DEFAULT = -1;
+
+  /**
+   * Integer value. Number of threads used by the history logging service to convert a batch of
+   * history events into the format written out. With a value of 1 events are converted on the
+   * event handling thread. Events are always written in the order they were generated.
+   * Supported by SimpleHistoryLoggingService and ATSV15HistoryLoggingService.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_HISTORY_LOGGING_CONVERSION_THREADS =
+      TEZ_PREFIX + "history.logging.conversion.threads";
+  public static final int TEZ_HISTORY_LOGGING_CONVERSION_THREADS_DEFAULT = 1;
+
   /**
    * String value. The directory into which history data will be written. This defaults to the 
    * container logging directory. This is relevant only when SimpleHistoryLoggingService is being
@@ -1429,6 +1600,28 @@ public class TezConfiguration extends Configuration {
       TEZ_PREFIX + "simple.history.max.errors";
   public static final int TEZ_SIMPLE_HISTORY_LOGGING_MAX_ERRORS_DEFAULT = 10;
 
+  /**
+   * Int value. Maximum number of history events written out by SimpleHistoryLoggingService in a
+   * single batch. The history file is flushed once per batch.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_SIMPLE_HISTORY_LOGGING_MAX_EVENTS_PER_BATCH =
+      TEZ_PREFIX + "simple.history.max.events.per.batch";
+  public static final int TEZ_SIMPLE_HISTORY_LOGGING_MAX_EVENTS_PER_BATCH_DEFAULT = 100;
+
+  /**
+   * String value that is a class name. The compression codec used by SimpleHistoryLoggingService
+   * to compress the history file. The default extension of the codec is appended to the file name.
+   * Each batch of events is written as a complete compressed stream, so that the batches written
+   * so far can be read if the AM goes down. History data is not compressed when not set.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty
+  public static final String TEZ_SIMPLE_HISTORY_LOGGING_COMPRESSION_CODEC =
+      TEZ_PREFIX + "simple.history.compression.codec";
+
   /**
    * Int value. Time, in milliseconds, to wait while flushing YARN ATS data during shutdown.
    * Expert level setting.
@@ -1524,6 +1717,44 @@ public class TezConfiguration extends Configuration {
       TEZ_PREFIX + "dag.recovery.flush.interval.secs";
   public static final int DAG_RECOVERY_FLUSH_INTERVAL_SECS_DEFAULT = 30;
 
+  /**
+   * Boolean value. Enable group commit of recovery events. When enabled, all recovery events,
+   * including summary events, are written by the recovery event handling thread in batches and
+   * the recovery log is flushed once per batch. Callers of events that need to be durable
+   * (summary events) wait until the batch containing their event has been flushed, instead of
+   * flushing the recovery log themselves.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="boolean")
+  public static final String DAG_RECOVERY_GROUP_COMMIT_ENABLED =
+      TEZ_PREFIX + "dag.recovery.group.commit.enabled";
+  public static final boolean DAG_RECOVERY_GROUP_COMMIT_ENABLED_DEFAULT = false;
+
+  /**
+   * Int value. Maximum number of recovery events written as part of a single group commit batch.
+   * Only used when {@link #DAG_RECOVERY_GROUP_COMMIT_ENABLED} is set.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String DAG_RECOVERY_GROUP_COMMIT_MAX_BATCH_EVENTS =
+      TEZ_PREFIX + "dag.recovery.group.commit.max.batch.events";
+  public static final int DAG_RECOVERY_GROUP_COMMIT_MAX_BATCH_EVENTS_DEFAULT = 1000;
+
+  /**
+   * Int value. Number of recovery events written for a DAG after which a compact checkpoint of
+   * the DAG recovery data is written next to the recovery log. On AM restart, the latest
+   * checkpoint is loaded and only the part of the recovery log written after it is replayed.
+   * Set to a non-positive value to disable checkpoints.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS =
+      TEZ_PREFIX + "dag.recovery.checkpoint.interval.events";
+  public static final int DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS_DEFAULT = -1;
+
   /**
    *  Boolean value. Enable local mode execution in Tez. Enables tasks to run in the same process as
    *  the app master. Primarily used for debugging.
@@ -1553,6 +1784,13 @@ public class TezConfiguration extends Configuration {
   /**
    * Int value.
    * The maximium number of tasks running in parallel within the app master process.
+   * A value of -1 runs as many tasks in parallel as there are processors available to the app
+   * master, e.g. to make use of all the cores of the machine in local mode. The number of tasks
+   * is then capped so that each task gets at least
+   * {@link #TEZ_AM_INLINE_TASK_EXECUTION_MIN_TASK_MEMORY_MB} of the app master heap.
+   * This does not change how data moves over the edges: outputs are still written to local disk
+   * in the IFile format, and inputs read them back from disk when
+   * tez.runtime.optimize.local.fetch is enabled, its default. There is no in-memory edge.
    */
   @ConfigurationScope(Scope.AM)
   @ConfigurationProperty(type="integer")
@@ -1561,6 +1799,19 @@ public class TezConfiguration extends Configuration {
 
   public static final int TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS_DEFAULT = 1;
 
+  /**
+   * Int value.
+   * The minimum share of the app master heap, in MB, given to each task running within the app
+   * master process when {@link #TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS} is -1. At least one task
+   * runs, whatever the size of the heap.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_AM_INLINE_TASK_EXECUTION_MIN_TASK_MEMORY_MB =
+    TEZ_AM_PREFIX + "inline.task.execution.min-task-memory-mb";
+
+  public static final int TEZ_AM_INLINE_TASK_EXECUTION_MIN_TASK_MEMORY_MB_DEFAULT = 512;
+
   // ACLs related configuration
   // Format supports a comma-separated list of users and groups with the users and groups separated
   // by whitespace. e.g. "user1,user2 group1,group2"
@@ -1770,6 +2021,19 @@ public class TezConfiguration extends Configuration {
   public static final String TEZ_CLIENT_ASYNCHRONOUS_STOP = TEZ_PREFIX + "client.asynchronous-stop";
   public static final boolean TEZ_CLIENT_ASYNCHRONOUS_STOP_DEFAULT = true;
 
+  /**
+   * Int value. The size, in MB, of the cache a session client keeps of the protos of the
+   * processor, input, output and edge manager descriptors of the DAGs it submits. A descriptor
+   * with the same class name, payload and history text as one submitted earlier reuses its
+   * proto, instead of copying the payload and compressing the history text again. The cache is
+   * released with the client. A value of 0 or less disables the cache.
+   */
+  @ConfigurationScope(Scope.CLIENT)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_CLIENT_DESCRIPTOR_PROTO_CACHE_SIZE_MB =
+      TEZ_PREFIX + "client.descriptor-proto-cache.size-mb";
+  public static final int TEZ_CLIENT_DESCRIPTOR_PROTO_CACHE_SIZE_MB_DEFAULT = 64;
+
   /**
    * Int value. SubmitDAGPlanRequest cannot be larger than Max IPC message size minus this number; otherwise, it will
    * be serialized to HDFS and we transfer the path to server. Server will deserialize the request from HDFS.
@@ -1860,6 +2124,19 @@ public class TezConfiguration extends Configuration {
       TEZ_PREFIX + "am.client.heartbeat.poll.interval.millis";
   public static final int TEZ_AM_CLIENT_HEARTBEAT_POLL_INTERVAL_MILLIS_DEFAULT = -1;
 
+  /**
+   * Long value. The time in milliseconds for which the AM serves the same snapshot of the status
+   * of the DAG or of a vertex to the clients polling it, instead of building the status and its
+   * counters again for every request. A snapshot is built again earlier when the state of the DAG
+   * or of the vertex changes. Useful when many clients poll the status of a DAG with counters.
+   * Set to 0 to disable.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="long")
+  public static final String TEZ_AM_CLIENT_STATUS_CACHE_MS =
+      TEZ_AM_PREFIX + "client.status.cache-ms";
+  public static final long TEZ_AM_CLIENT_STATUS_CACHE_MS_DEFAULT = 0;
+
   /**
    * Int value. Minimum number of threads to be allocated by TezSharedExecutor.
    */
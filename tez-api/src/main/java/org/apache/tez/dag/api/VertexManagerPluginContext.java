@@ -271,6 +271,20 @@ public interface VertexManagerPluginContext {
    */
   public void addRootInputEvents(String inputName, Collection<InputDataInformationEvent> events);
 
+  /**
+   * Check whether the initializer of a Root Input is still producing events. Initializers which
+   * send events via {@link org.apache.tez.runtime.api.InputInitializerContext#addEvents(List)}
+   * initialize the Input with their first set of events. Further invocations of
+   * {@link VertexManagerPlugin#onRootVertexInitialized(String, InputDescriptor, List)} for the
+   * Input follow while this returns true. The state is updated before the plugin is invoked
+   * with each set of events.
+   *
+   * @param inputName
+   *          The name of the Root Input
+   * @return true if more events will follow for the Input
+   */
+  public boolean isRootInputInitializerRunning(String inputName);
+
   /**
    * Allows a VertexManagerPlugin to send events of custom payload to processor
    * of a specific task of managed vertex
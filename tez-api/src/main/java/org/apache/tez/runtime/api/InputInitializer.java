@@ -56,7 +56,8 @@ public abstract class InputInitializer {
    * a notification mechanism should be setup, with the heavy lifting of
    * processing the event being done via this method. The moment this method
    * returns a list of events, input initialization is considered to be
-   * complete.
+   * complete. Events may also be sent before this method returns, via
+   * {@link InputInitializerContext#addEvents(List)}.
    * 
    * @return a list of events which are eventually routed to a
    *         {@link org.apache.tez.dag.api.VertexManagerPlugin} for routing
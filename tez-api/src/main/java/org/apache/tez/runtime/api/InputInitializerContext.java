@@ -20,6 +20,7 @@ package org.apache.tez.runtime.api;
 
 import javax.annotation.Nullable;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.hadoop.classification.InterfaceAudience.Public;
@@ -124,4 +125,24 @@ public interface InputInitializerContext {
    * @param tezCounters counters to add
    */
   void addCounters(TezCounters tezCounters);
+
+  /**
+   * Send events to the vertex before {@link InputInitializer#initialize()} returns, so that
+   * tasks can be started for the data which has been processed so far. </p>
+   *
+   * The first invocation must include the events which configure the vertex, i.e. any
+   * {@link org.apache.tez.runtime.api.events.InputConfigureVertexTasksEvent} and
+   * {@link org.apache.tez.runtime.api.events.InputUpdatePayloadEvent}, and marks the Input as
+   * initialized. Subsequent invocations may only contain
+   * {@link org.apache.tez.runtime.api.events.InputDataInformationEvent}s. The list returned by
+   * {@link InputInitializer#initialize()} is handled as the last set of events. </p>
+   *
+   * When DAG recovery is enabled, the events are recorded as they are sent. If the AM restarts
+   * before {@link InputInitializer#initialize()} returns, the vertex and the vertices consuming
+   * its output are run again, since the initializer cannot be resumed.
+   *
+   * @param events the events to be routed to the
+   *               {@link org.apache.tez.dag.api.VertexManagerPlugin} of the vertex
+   */
+  void addEvents(List<Event> events);
 }
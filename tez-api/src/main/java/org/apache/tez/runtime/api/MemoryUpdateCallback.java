@@ -34,4 +34,15 @@ public abstract class MemoryUpdateCallback {
 
   public abstract void memoryAssigned(long assignedSize);
 
+  /**
+   * Invoked when the memory assigned to the component changes while the task is running, as a
+   * result of {@link TaskContext#requestAdditionalMemory(long)}. The default implementation
+   * ignores the update.
+   *
+   * @param assignedSize
+   *          the total memory now assigned to the component
+   */
+  public void memoryUpdated(long assignedSize) {
+  }
+
 }
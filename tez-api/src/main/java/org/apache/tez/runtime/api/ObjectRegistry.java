@@ -20,6 +20,7 @@ package org.apache.tez.runtime.api;
 
 import org.apache.hadoop.classification.InterfaceAudience.Public;
 import org.apache.hadoop.classification.InterfaceStability.Evolving;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
 
 /**
  * A simple shared object registry to cache objects in the memory of the
@@ -36,6 +37,21 @@ import org.apache.hadoop.classification.InterfaceStability.Evolving;
 @Evolving
 public interface ObjectRegistry {
 
+  /**
+   * May be implemented by cached objects to report the memory they hold. This is used when the
+   * size of the registry is bounded via tez.task.object-registry.max-size-mb. Objects which are
+   * neither byte arrays, byte buffers nor implement this interface are accounted for with the
+   * nominal size set via tez.task.object-registry.object-size-bytes.
+   */
+  @Unstable
+  public interface Weighable {
+
+    /**
+     * @return the approximate memory held by the object, in bytes
+     */
+    long getWeight();
+  }
+
   /**
    * Insert or update object into the registry with Vertex life-cycle. This will
    * remove an object associated with the same key with a different life-cycle
@@ -214,6 +214,41 @@ public interface TaskContext {
    *          the callback handler to be invoked once memory is assigned
    */
   public void requestInitialMemory(long size, MemoryUpdateCallback callbackHandler);
+
+  /**
+   * Return memory assigned to this component while the task is running, so that it can be
+   * handed to other components of the task which have asked for additional memory. This is
+   * typically used by components which no longer need all of their memory, e.g. an Input which
+   * has finished loading its data.
+   *
+   * This only has an effect when dynamic memory distribution is enabled via
+   * tez.task.scale.memory.dynamic.enabled, and can only be called after the initial
+   * memory has been assigned. Releasing memory cancels any pending request for additional
+   * memory made by the component.
+   *
+   * @param size
+   *          bytes to release. Capped at the memory currently assigned to the component.
+   */
+  @Unstable
+  public void releaseMemory(long size);
+
+  /**
+   * Request memory in addition to the memory currently assigned to this component, while the
+   * task is running. The request is satisfied from memory released by other components of the
+   * task, possibly in several steps. The requester is informed about each change via
+   * {@link MemoryUpdateCallback#memoryUpdated(long)} on the callback handler provided in
+   * {@link #requestInitialMemory(long, MemoryUpdateCallback)}. Requests which cannot be
+   * satisfied remain pending until memory is released.
+   *
+   * This only has an effect when dynamic memory distribution is enabled via
+   * tez.task.scale.memory.dynamic.enabled, and can only be called after the initial
+   * memory has been assigned.
+   *
+   * @param size
+   *          additional bytes requested
+   */
+  @Unstable
+  public void requestAdditionalMemory(long size);
   
   /**
    * Gets the total memory available to all components of the running task. This
@@ -408,5 +408,44 @@ public class TestTezCommonUtils {
 
   }
 
+  @Test(timeout=5000)
+  public void testGetInlineTaskExecutionMaxTasks() {
+    Configuration conf = new Configuration(false);
+    Assert.assertEquals(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS_DEFAULT,
+        TezCommonUtils.getInlineTaskExecutionMaxTasks(conf));
+
+    conf.setInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS, 4);
+    Assert.assertEquals(4, TezCommonUtils.getInlineTaskExecutionMaxTasks(conf));
+
+    conf.setInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS, -1);
+    int maxTasks = TezCommonUtils.getInlineTaskExecutionMaxTasks(conf);
+    Assert.assertTrue(maxTasks >= 1 && maxTasks <= Runtime.getRuntime().availableProcessors());
+
+    // the number of processors is capped by the number of tasks fitting in the heap
+    long mb = 1024L * 1024L;
+    Assert.assertEquals(16,
+        TezCommonUtils.getInlineTaskExecutionMaxTasks(conf, 16, 16 * 1024 * mb));
+    Assert.assertEquals(4,
+        TezCommonUtils.getInlineTaskExecutionMaxTasks(conf, 16, 2 * 1024 * mb));
+    Assert.assertEquals(1,
+        TezCommonUtils.getInlineTaskExecutionMaxTasks(conf, 16, 256 * mb));
+    conf.setInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MIN_TASK_MEMORY_MB, 1024);
+    Assert.assertEquals(2,
+        TezCommonUtils.getInlineTaskExecutionMaxTasks(conf, 16, 2 * 1024 * mb));
+    // a fixed number of tasks is not capped
+    conf.setInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS, 8);
+    Assert.assertEquals(8,
+        TezCommonUtils.getInlineTaskExecutionMaxTasks(conf, 16, 256 * mb));
+
+    conf.setInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS, 0);
+    try {
+      TezCommonUtils.getInlineTaskExecutionMaxTasks(conf);
+      Assert.fail("Expected an invalid number of tasks to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains(
+          TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS));
+    }
+  }
+
 
 }
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tez.common.counters;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestCompactCounters {
+
+  private static TezCounters createCounters(long value) {
+    TezCounters counters = new TezCounters();
+    counters.findCounter(TaskCounter.SPILLED_RECORDS).setValue(value);
+    counters.findCounter("FILE", FileSystemCounter.BYTES_READ).setValue(2 * value);
+    counters.addGroup("app", "Application").addCounter("records", "Records", 3 * value);
+    counters.findCounter("app", "zero");
+    return counters;
+  }
+
+  @Test(timeout = 5000)
+  public void testAggregation() {
+    CounterIndex index = new CounterIndex();
+    CompactCounters aggregate = new CompactCounters(index);
+    aggregate.incrAllCounters(createCounters(1));
+
+    CompactCounters other = new CompactCounters(index);
+    other.incrAllCounters(createCounters(10));
+    other.trimToSize();
+    aggregate.incrAllCounters(other);
+    aggregate.incrAllCounters(other);
+
+    assertEquals(4, index.size());
+    assertEquals(4, aggregate.size());
+    assertEquals(21, aggregate.getValue(TaskCounter.class.getName(),
+        TaskCounter.SPILLED_RECORDS.name()));
+    assertEquals(63, aggregate.getValue("app", "records"));
+    assertEquals(0, aggregate.getValue("app", "missing"));
+
+    TezCounters expected = createCounters(1);
+    expected.incrAllCounters(createCounters(10));
+    expected.incrAllCounters(createCounters(10));
+    assertEquals(expected, aggregate.toTezCounters());
+  }
+
+  @Test(timeout = 5000)
+  public void testView() {
+    CompactCounters compact = new CompactCounters(new CounterIndex());
+    compact.incrAllCounters(createCounters(5));
+    TezCounters counters = compact.toTezCounters();
+
+    assertEquals(createCounters(5), counters);
+    assertEquals(4, counters.countCounters());
+    assertEquals(10, counters.findCounter("FILE", FileSystemCounter.BYTES_READ).getValue());
+    CounterGroup group = counters.getGroup("app");
+    assertEquals("Application", group.getDisplayName());
+    assertEquals("Records", group.findCounter("records").getDisplayName());
+    // Counters which are present with a value of 0 are kept
+    assertEquals(0, group.findCounter("zero", false).getValue());
+  }
+
+  @Test(timeout = 5000, expected = IllegalArgumentException.class)
+  public void testDifferentIndexes() {
+    CompactCounters compact = new CompactCounters(new CounterIndex());
+    compact.incrAllCounters(new CompactCounters(new CounterIndex()));
+  }
+}
@@ -21,6 +21,8 @@ package org.apache.tez.dag.api;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -28,6 +30,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.yarn.api.records.URL;
 import org.apache.hadoop.yarn.util.ConverterUtils;
@@ -76,6 +79,78 @@ public class TestDagTypeConverters {
     Assert.assertEquals(historytext, actualHistoryText);
   }
 
+  @Test(timeout = 5000)
+  public void testTezEntityDescriptorProtoCache() throws IOException {
+    DescriptorProtoCache cache = DescriptorProtoCache.create(new Configuration(false));
+    byte[] payloadBytes = "Foobar".getBytes();
+    byte[] descriptor1Bytes = payloadBytes.clone();
+    InputDescriptor descriptor1 = InputDescriptor.create("inputClazz")
+        .setUserPayload(UserPayload.create(ByteBuffer.wrap(descriptor1Bytes), 1))
+        .setHistoryText("Bar123");
+    // A different descriptor with the same contents shares the proto
+    InputDescriptor descriptor2 = InputDescriptor.create("inputClazz")
+        .setUserPayload(UserPayload.create(ByteBuffer.wrap(payloadBytes.clone()), 1))
+        .setHistoryText(new String("Bar123"));
+    TezEntityDescriptorProto proto1 = DagTypeConverters.convertToDAGPlan(descriptor1, cache);
+    Assert.assertSame(proto1, DagTypeConverters.convertToDAGPlan(descriptor2, cache));
+    // Without a cache every conversion creates a proto
+    assertNotSame(DagTypeConverters.convertToDAGPlan(descriptor2),
+        DagTypeConverters.convertToDAGPlan(descriptor2));
+
+    // The cache does not hold on to the payload buffer of the descriptor
+    System.arraycopy("Foobaz".getBytes(), 0, descriptor1Bytes, 0, descriptor1Bytes.length);
+    Assert.assertSame(proto1, DagTypeConverters.convertToDAGPlan(descriptor2, cache));
+    assertEquals("Foobar", proto1.getTezUserPayload().getUserPayload().toStringUtf8());
+
+    // Any difference in the contents gives a different proto
+    TezEntityDescriptorProto[] protos = new TezEntityDescriptorProto[] {
+        DagTypeConverters.convertToDAGPlan(InputDescriptor.create("inputClazz2")
+            .setUserPayload(UserPayload.create(ByteBuffer.wrap(payloadBytes), 1))
+            .setHistoryText("Bar123"), cache),
+        DagTypeConverters.convertToDAGPlan(InputDescriptor.create("inputClazz")
+            .setUserPayload(UserPayload.create(ByteBuffer.wrap("Foobaz".getBytes()), 1))
+            .setHistoryText("Bar123"), cache),
+        DagTypeConverters.convertToDAGPlan(InputDescriptor.create("inputClazz")
+            .setUserPayload(UserPayload.create(ByteBuffer.wrap(payloadBytes), 2))
+            .setHistoryText("Bar123"), cache),
+        DagTypeConverters.convertToDAGPlan(InputDescriptor.create("inputClazz")
+            .setUserPayload(UserPayload.create(ByteBuffer.wrap(payloadBytes), 1)), cache),
+        DagTypeConverters.convertToDAGPlan(InputDescriptor.create("inputClazz")
+            .setUserPayload(UserPayload.create(null))
+            .setHistoryText("Bar123"), cache),
+        DagTypeConverters.convertToDAGPlan(InputDescriptor.create("inputClazz")
+            .setHistoryText("Bar123"), cache)
+    };
+    for (TezEntityDescriptorProto proto : protos) {
+      assertNotSame(proto1, proto);
+      assertFalse(proto1.equals(proto));
+    }
+    assertEquals("inputClazz2", protos[0].getClassName());
+    assertEquals("Foobaz", protos[1].getTezUserPayload().getUserPayload().toStringUtf8());
+    assertEquals(2, protos[2].getTezUserPayload().getVersion());
+    assertFalse(protos[3].hasHistoryText());
+    assertFalse(protos[4].getTezUserPayload().hasUserPayload());
+    assertFalse(protos[5].hasTezUserPayload());
+    assertEquals(7, cache.size());
+
+    // The cache can be disabled
+    Configuration conf = new Configuration(false);
+    conf.setInt(TezConfiguration.TEZ_CLIENT_DESCRIPTOR_PROTO_CACHE_SIZE_MB, 0);
+    assertNull(DescriptorProtoCache.create(conf));
+  }
+
+  @Test(timeout = 5000)
+  public void testTezEntityDescriptorProtoCacheWeight() {
+    // Entries are weighed by the bytes of their protos
+    DescriptorProtoCache cache = new DescriptorProtoCache(4096);
+    DagTypeConverters.convertToDAGPlan(InputDescriptor.create("inputClazz")
+        .setUserPayload(UserPayload.create(ByteBuffer.wrap(new byte[1024]))), cache);
+    assertEquals(1, cache.size());
+    DagTypeConverters.convertToDAGPlan(InputDescriptor.create("inputClazz")
+        .setUserPayload(UserPayload.create(ByteBuffer.wrap(new byte[8192]))), cache);
+    assertTrue(cache.size() <= 1);
+  }
+
   @Test(timeout = 5000)
   public void testYarnPathTranslation() {
     // Without port
@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.util;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.tez.common.counters.CounterGroup;
+import org.apache.tez.common.counters.TezCounters;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Distribution of the time taken by an operation on a hot path, e.g. a spill or a fetch. Samples
+ * are counted in buckets of exponentially growing width without taking any locks, so the
+ * histogram can be shared by the threads of a task.
+ *
+ * The histogram is reported as counters in the {@link #COUNTER_GROUP} group: the number of
+ * samples, their total time and the number of samples in each bucket. Bucket counts add up when
+ * the counters of the tasks of a vertex are aggregated, which gives the distribution across the
+ * vertex.
+ *
+ * A histogram created for the counters of a component is reported with the framework counters
+ * of the task, see {@link #updateRegisteredCounters(TezCounters)}, so the component does not
+ * have to report it itself. Histograms of the same name registered for the same counters are
+ * reported together.
+ *
+ * A disabled histogram does not record anything, and {@link #start()} does not read the clock, so
+ * instrumented code costs next to nothing when timings are not collected.
+ */
+@Private
+public class LatencyHistogram {
+
+  public static final String COUNTER_GROUP = "LatencyHistograms";
+
+  // Upper bounds of the buckets in microseconds. The last bucket is unbounded.
+  private static final long[] BUCKET_BOUNDS_MICROS =
+      { 100, 1000, 10000, 100000, 1000000, 10000000 };
+  private static final String[] BUCKET_NAMES =
+      { "_LE_100US", "_LE_1MS", "_LE_10MS", "_LE_100MS", "_LE_1S", "_LE_10S", "_GT_10S" };
+
+  private static final LatencyHistogram DISABLED = new LatencyHistogram(null, false);
+
+  // Histograms by the counters they are reported to. The counters are compared by identity and
+  // are not retained once the task they belong to is gone.
+  private static final ConcurrentMap<TezCounters, List<LatencyHistogram>> REGISTERED =
+      new MapMaker().weakKeys().makeMap();
+
+  private final String name;
+  private final boolean enabled;
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_NAMES.length);
+  private final AtomicLong totalMicros = new AtomicLong(0);
+
+  private LatencyHistogram(String name, boolean enabled) {
+    this.name = name;
+    this.enabled = enabled;
+  }
+
+  /**
+   * Creates a histogram reported under the given name, or a histogram which does not record
+   * anything if timings are not enabled.
+   */
+  public static LatencyHistogram create(String name, boolean enabled) {
+    return enabled ? new LatencyHistogram(name, true) : DISABLED;
+  }
+
+  /**
+   * Creates a histogram as {@link #create(String, boolean)} does, which is reported to the given
+   * counters when {@link #updateRegisteredCounters(TezCounters)} is invoked for them.
+   */
+  public static LatencyHistogram create(String name, boolean enabled, TezCounters counters) {
+    LatencyHistogram histogram = create(name, enabled);
+    if (enabled) {
+      List<LatencyHistogram> histograms = REGISTERED.get(counters);
+      if (histograms == null) {
+        histograms = new CopyOnWriteArrayList<LatencyHistogram>();
+        List<LatencyHistogram> existing = REGISTERED.putIfAbsent(counters, histograms);
+        if (existing != null) {
+          histograms = existing;
+        }
+      }
+      histograms.add(histogram);
+    }
+    return histogram;
+  }
+
+  /**
+   * Sets the counters of the histograms registered for the given counters to the samples
+   * recorded so far.
+   */
+  public static void updateRegisteredCounters(TezCounters counters) {
+    List<LatencyHistogram> histograms = REGISTERED.get(counters);
+    if (histograms == null || histograms.isEmpty()) {
+      return;
+    }
+    Map<String, LatencyHistogram> byName = new LinkedHashMap<String, LatencyHistogram>();
+    for (LatencyHistogram histogram : histograms) {
+      LatencyHistogram total = byName.get(histogram.name);
+      if (total == null) {
+        total = new LatencyHistogram(histogram.name, true);
+        byName.put(histogram.name, total);
+      }
+      total.add(histogram);
+    }
+    for (LatencyHistogram total : byName.values()) {
+      total.updateCounters(counters);
+    }
+  }
+
+  private void add(LatencyHistogram other) {
+    for (int i = 0; i < buckets.length(); ++i) {
+      buckets.addAndGet(i, other.buckets.get(i));
+    }
+    totalMicros.addAndGet(other.totalMicros.get());
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the start time of an operation, to be passed to {@link #recordSince(long)}.
+   */
+  public long start() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records an operation which started at the given time, as returned by {@link #start()}.
+   */
+  public void recordSince(long startNanos) {
+    if (enabled) {
+      record(System.nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Records an operation which took the given time.
+   */
+  public void record(long nanos) {
+    if (!enabled) {
+      return;
+    }
+    long micros = Math.max(0, nanos / 1000);
+    int bucket = 0;
+    while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket]) {
+      bucket++;
+    }
+    buckets.incrementAndGet(bucket);
+    totalMicros.addAndGet(micros);
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < buckets.length(); ++i) {
+      count += buckets.get(i);
+    }
+    return count;
+  }
+
+  public long getTotalMicros() {
+    return totalMicros.get();
+  }
+
+  /**
+   * Sets the counters of this histogram to the samples recorded so far. Nothing is reported if no
+   * samples were recorded.
+   */
+  public void updateCounters(TezCounters counters) {
+    long count = getCount();
+    if (count == 0) {
+      return;
+    }
+    CounterGroup group = counters.getGroup(COUNTER_GROUP);
+    group.findCounter(name + "_COUNT").setValue(count);
+    group.findCounter(name + "_TOTAL_MICROS").setValue(totalMicros.get());
+    for (int i = 0; i < BUCKET_NAMES.length; ++i) {
+      group.findCounter(name + BUCKET_NAMES[i]).setValue(buckets.get(i));
+    }
+  }
+}
@@ -61,6 +61,43 @@ public class TestTezUtils {
     checkConf(conf);
   }
 
+  @Test (timeout=2000)
+  public void testPayloadToConfWithCache() throws IOException {
+    UserPayload payload = TezUtils.createUserPayloadFromConf(getConf());
+    TezUtils.enableConfCache(2);
+    try {
+      Configuration conf1 = TezUtils.createConfFromUserPayload(payload);
+      Assert.assertEquals(0, TezUtils.getConfCacheHits());
+      // Changes made by a caller are not visible to later callers
+      conf1.set("test.key", "test.value");
+      Configuration conf2 = TezUtils.createConfFromUserPayload(payload);
+      Assert.assertEquals(1, TezUtils.getConfCacheHits());
+      Assert.assertNotSame(conf1, conf2);
+      Assert.assertNull(conf2.get("test.key"));
+      Assert.assertEquals(6, conf2.size());
+      checkConf(conf2);
+
+      // Equal payloads share the cached configuration
+      Configuration conf3 = TezUtils.createConfFromUserPayload(
+          UserPayload.create(payload.getPayload()));
+      Assert.assertEquals(2, TezUtils.getConfCacheHits());
+      Assert.assertEquals(6, conf3.size());
+      checkConf(conf3);
+
+      // Cleared configurations are created from the payload again
+      TezUtils.clearConfCache();
+      TezUtils.createConfFromUserPayload(payload);
+      Assert.assertEquals(2, TezUtils.getConfCacheHits());
+    } finally {
+      TezUtils.disableConfCache();
+    }
+
+    // Without the cache, every call parses the payload
+    TezUtils.createConfFromUserPayload(payload);
+    TezUtils.createConfFromUserPayload(payload);
+    Assert.assertEquals(0, TezUtils.getConfCacheHits());
+  }
+
   @Test (timeout=2000)
   public void testCleanVertexName() {
     String testString = "special characters & spaces and longer than "
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tez.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tez.common.counters.CounterGroup;
+import org.apache.tez.common.counters.TezCounters;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+  @Test(timeout = 5000)
+  public void testBuckets() {
+    LatencyHistogram histogram = LatencyHistogram.create("SPILL", true);
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(50));
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+    histogram.record(TimeUnit.SECONDS.toNanos(20));
+    Assert.assertEquals(4, histogram.getCount());
+    Assert.assertEquals(20005150, histogram.getTotalMicros());
+
+    TezCounters counters = new TezCounters();
+    histogram.updateCounters(counters);
+    CounterGroup group = counters.getGroup(LatencyHistogram.COUNTER_GROUP);
+    Assert.assertEquals(4, group.findCounter("SPILL_COUNT").getValue());
+    Assert.assertEquals(20005150, group.findCounter("SPILL_TOTAL_MICROS").getValue());
+    Assert.assertEquals(2, group.findCounter("SPILL_LE_100US").getValue());
+    Assert.assertEquals(0, group.findCounter("SPILL_LE_1MS").getValue());
+    Assert.assertEquals(1, group.findCounter("SPILL_LE_10MS").getValue());
+    Assert.assertEquals(1, group.findCounter("SPILL_GT_10S").getValue());
+
+    // Updating the counters again does not count the samples twice
+    histogram.updateCounters(counters);
+    Assert.assertEquals(4, group.findCounter("SPILL_COUNT").getValue());
+  }
+
+  @Test(timeout = 5000)
+  public void testDisabled() {
+    LatencyHistogram histogram = LatencyHistogram.create("SPILL", false);
+    Assert.assertFalse(histogram.isEnabled());
+    Assert.assertEquals(0, histogram.start());
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+    Assert.assertEquals(0, histogram.getCount());
+
+    TezCounters counters = new TezCounters();
+    histogram.updateCounters(counters);
+    Assert.assertEquals(0, counters.countCounters());
+  }
+
+  @Test(timeout = 5000)
+  public void testRegisteredHistograms() {
+    TezCounters counters = new TezCounters();
+    TezCounters otherCounters = new TezCounters();
+    LatencyHistogram spill1 = LatencyHistogram.create("SPILL", true, counters);
+    LatencyHistogram spill2 = LatencyHistogram.create("SPILL", true, counters);
+    LatencyHistogram merge = LatencyHistogram.create("MERGE", true, counters);
+    LatencyHistogram other = LatencyHistogram.create("SPILL", true, otherCounters);
+    LatencyHistogram.create("SORT", false, counters).record(TimeUnit.MILLISECONDS.toNanos(5));
+    spill1.record(TimeUnit.MICROSECONDS.toNanos(50));
+    spill2.record(TimeUnit.MILLISECONDS.toNanos(5));
+    merge.record(TimeUnit.MILLISECONDS.toNanos(5));
+    other.record(TimeUnit.MILLISECONDS.toNanos(5));
+
+    LatencyHistogram.updateRegisteredCounters(counters);
+    CounterGroup group = counters.getGroup(LatencyHistogram.COUNTER_GROUP);
+    // histograms of the same name are reported together
+    Assert.assertEquals(2, group.findCounter("SPILL_COUNT").getValue());
+    Assert.assertEquals(5050, group.findCounter("SPILL_TOTAL_MICROS").getValue());
+    Assert.assertEquals(1, group.findCounter("SPILL_LE_100US").getValue());
+    Assert.assertEquals(1, group.findCounter("SPILL_LE_10MS").getValue());
+    Assert.assertEquals(1, group.findCounter("MERGE_COUNT").getValue());
+    Assert.assertNull(group.findCounter("SORT_COUNT", false));
+
+    // updating again does not count the samples twice
+    spill1.record(TimeUnit.MICROSECONDS.toNanos(50));
+    LatencyHistogram.updateRegisteredCounters(counters);
+    Assert.assertEquals(3, group.findCounter("SPILL_COUNT").getValue());
+    Assert.assertEquals(0, otherCounters.countCounters());
+
+    LatencyHistogram.updateRegisteredCounters(otherCounters);
+    Assert.assertEquals(1, otherCounters.getGroup(LatencyHistogram.COUNTER_GROUP)
+        .findCounter("SPILL_COUNT").getValue());
+  }
+}
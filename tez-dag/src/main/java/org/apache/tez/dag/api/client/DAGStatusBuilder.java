@@ -35,6 +35,10 @@ public class DAGStatusBuilder extends DAGStatus {
     super(DAGStatusProto.newBuilder(), null);
   }
 
+  public DAGStatusBuilder(DAGStatusProto status) {
+    super(status.toBuilder(), null);
+  }
+
   public void setState(DAGState state) {
     getBuilder().setState(getProtoState(state));
   }
@@ -35,6 +35,10 @@ public class VertexStatusBuilder extends VertexStatus {
     super(VertexStatusProto.newBuilder());
   }
 
+  public VertexStatusBuilder(VertexStatusProto status) {
+    super(status.toBuilder());
+  }
+
   public void setState(VertexState state) {
     getBuilder().setState(getProtoState(state));
   }
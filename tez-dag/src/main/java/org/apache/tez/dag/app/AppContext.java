@@ -76,6 +76,8 @@ public interface AppContext {
   
   ListeningExecutorService getExecService();
 
+  OutputCommitScheduler getCommitScheduler();
+
   void setDAG(DAG dag);
 
   void setDAGRecoveryData(DAGRecoveryData dagRecoveryData);
@@ -306,6 +306,7 @@ public class DAGAppMaster extends AbstractService {
   
   private ExecutorService rawExecutor;
   private ListeningExecutorService execService;
+  private OutputCommitScheduler commitScheduler;
 
   // TODO May not need to be a bidi map
   private final BiMap<String, Integer> taskSchedulers = HashBiMap.create();
@@ -626,6 +627,7 @@ public class DAGAppMaster extends AbstractService {
     rawExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
         .setNameFormat("App Shared Pool - " + "#%d").build());
     execService = MoreExecutors.listeningDecorator(rawExecutor);
+    commitScheduler = new OutputCommitScheduler(conf);
 
     initServices(conf);
     super.serviceInit(conf);
@@ -1576,6 +1578,11 @@ public class DAGAppMaster extends AbstractService {
       return execService;
     }
 
+    @Override
+    public OutputCommitScheduler getCommitScheduler() {
+      return commitScheduler;
+    }
+
     @Override
     public Set<String> getAllDAGIDs() {
       return dagIDs;
@@ -2235,6 +2242,10 @@ public class DAGAppMaster extends AbstractService {
         execService.shutdownNow();
       }
 
+      if (commitScheduler != null) {
+        commitScheduler.shutdown();
+      }
+
       super.serviceStop();
     }
   }
@@ -0,0 +1,273 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.dag.api.TezConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs the output commits of the vertices and of the DAGs on a dedicated thread pool. The outputs
+ * which are committed at the same time are independent of each other, and are committed
+ * concurrently, up to the number of threads if one is configured.
+ *
+ * A commit which does not complete within the configured timeout is interrupted, and fails with a
+ * {@link TimeoutException} once it has returned. A commit which does not respond to the interrupt
+ * within the grace period, e.g. because it is stuck in a call which cannot be interrupted, fails
+ * with the TimeoutException right away, and its thread is left behind. The pool gets an extra
+ * thread for as long as such a commit is running, so that other commits are not held up by it.
+ *
+ * Since a failed commit may still be running, outputs must only be aborted through
+ * {@link #deferUntilCommitsStopped(Runnable)}, which delays the abort until no commit runs anymore.
+ */
+public class OutputCommitScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OutputCommitScheduler.class);
+
+  private final ExecutorService executor;
+  private final ScheduledExecutorService timeoutExecutor;
+  private final long timeoutMillis;
+  private final long timeoutGraceMillis;
+
+  // Guarded by itself
+  private final List<Runnable> deferredActions = new ArrayList<Runnable>();
+  private int numRunningCommits = 0;
+
+  public OutputCommitScheduler(Configuration conf) {
+    this(createExecutor(conf),
+        conf.getLong(TezConfiguration.TEZ_AM_COMMIT_TIMEOUT_MS,
+            TezConfiguration.TEZ_AM_COMMIT_TIMEOUT_MS_DEFAULT),
+        conf.getLong(TezConfiguration.TEZ_AM_COMMIT_TIMEOUT_GRACE_MS,
+            TezConfiguration.TEZ_AM_COMMIT_TIMEOUT_GRACE_MS_DEFAULT));
+  }
+
+  @VisibleForTesting
+  public OutputCommitScheduler(ExecutorService executor, long timeoutMillis) {
+    this(executor, timeoutMillis, TezConfiguration.TEZ_AM_COMMIT_TIMEOUT_GRACE_MS_DEFAULT);
+  }
+
+  @VisibleForTesting
+  OutputCommitScheduler(ExecutorService executor, long timeoutMillis, long timeoutGraceMillis) {
+    this.executor = executor;
+    this.timeoutMillis = timeoutMillis;
+    this.timeoutGraceMillis = Math.max(0, timeoutGraceMillis);
+    if (timeoutMillis > 0) {
+      this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setDaemon(true).setNameFormat("OutputCommitTimeout").build());
+    } else {
+      this.timeoutExecutor = null;
+    }
+  }
+
+  private static ExecutorService createExecutor(Configuration conf) {
+    int numThreads = conf.getInt(TezConfiguration.TEZ_AM_COMMIT_THREADS,
+        TezConfiguration.TEZ_AM_COMMIT_THREADS_DEFAULT);
+    ThreadFactory threadFactory = new ThreadFactoryBuilder()
+        .setDaemon(true).setNameFormat("OutputCommitter #%d").build();
+    if (numThreads <= 0) {
+      LOG.info("Output commits use a thread per output");
+      return Executors.newCachedThreadPool(threadFactory);
+    }
+    LOG.info("Output commits use " + numThreads + " threads");
+    return Executors.newFixedThreadPool(numThreads, threadFactory);
+  }
+
+  /**
+   * Schedule a commit. The timeout starts when the commit starts to run.
+   * @param name the output being committed, used in the timeout diagnostics
+   * @return a future which is cancelled by interrupting the commit
+   */
+  public <V> ListenableFuture<V> submit(String name, Callable<V> commit) {
+    CommitTask<V> task = new CommitTask<V>(name, commit);
+    task.future = executor.submit(task);
+    return task;
+  }
+
+  /**
+   * Defers an action, typically the abort of outputs, until no commit is running anymore. This
+   * includes commits which have been cancelled or have timed out, but have not returned yet.
+   * @return true if the action will be run by the thread of the last commit to stop, false if no
+   *         commit is running and the caller should run the action itself
+   */
+  public boolean deferUntilCommitsStopped(Runnable action) {
+    synchronized (deferredActions) {
+      if (numRunningCommits == 0) {
+        return false;
+      }
+      LOG.info("Deferring action until " + numRunningCommits + " running commits have stopped");
+      deferredActions.add(action);
+      return true;
+    }
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+    if (timeoutExecutor != null) {
+      timeoutExecutor.shutdownNow();
+    }
+  }
+
+  private void commitStarted() {
+    synchronized (deferredActions) {
+      numRunningCommits++;
+    }
+  }
+
+  private void commitStopped() {
+    List<Runnable> actions;
+    synchronized (deferredActions) {
+      numRunningCommits--;
+      if (numRunningCommits > 0 || deferredActions.isEmpty()) {
+        return;
+      }
+      actions = new ArrayList<Runnable>(deferredActions);
+      deferredActions.clear();
+    }
+    for (Runnable action : actions) {
+      try {
+        action.run();
+      } catch (Throwable t) {
+        LOG.warn("Action deferred until the commits stopped failed", t);
+      }
+    }
+  }
+
+  // A thread is added while a commit which has been given up on is still running
+  private void resizePool(int delta) {
+    if (executor instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+      synchronized (pool) {
+        if (delta > 0) {
+          pool.setMaximumPoolSize(pool.getMaximumPoolSize() + delta);
+          pool.setCorePoolSize(pool.getCorePoolSize() + delta);
+        } else {
+          pool.setCorePoolSize(pool.getCorePoolSize() + delta);
+          pool.setMaximumPoolSize(pool.getMaximumPoolSize() + delta);
+        }
+      }
+    }
+  }
+
+  private class CommitTask<V> extends AbstractFuture<V> implements Callable<V> {
+    private final String name;
+    private final Callable<V> commit;
+    private volatile Future<V> future;
+    private volatile TimeoutException timeoutException;
+    private final AtomicBoolean abandoned = new AtomicBoolean(false);
+
+    CommitTask(String name, Callable<V> commit) {
+      this.name = name;
+      this.commit = commit;
+    }
+
+    @Override
+    public V call() throws Exception {
+      commitStarted();
+      ScheduledFuture<?> timeout = null;
+      if (timeoutExecutor != null) {
+        timeout = timeoutExecutor.schedule(new Runnable() {
+          @Override
+          public void run() {
+            if (!isDone()) {
+              String message = "Commit of " + name + " did not complete within "
+                  + timeoutMillis + " ms";
+              LOG.warn(message + ", interrupting it");
+              timeoutException = new TimeoutException(message);
+              interruptTask();
+              scheduleGiveUp();
+            }
+          }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+      }
+      try {
+        V result = commit.call();
+        set(result);
+        return result;
+      } catch (Throwable t) {
+        // the commit failed after it timed out, most likely because it was interrupted
+        TimeoutException timedOut = timeoutException;
+        if (timedOut != null) {
+          if (timedOut.getCause() == null) {
+            timedOut.initCause(t);
+          }
+          setException(timedOut);
+        } else {
+          setException(t);
+        }
+        throw t;
+      } finally {
+        if (timeout != null) {
+          timeout.cancel(false);
+        }
+        if (abandoned.get()) {
+          LOG.info("Commit of " + name + " stopped after it was given up on");
+          resizePool(-1);
+        }
+        commitStopped();
+      }
+    }
+
+    private void scheduleGiveUp() {
+      try {
+        timeoutExecutor.schedule(new Runnable() {
+          @Override
+          public void run() {
+            if (!isDone() && abandoned.compareAndSet(false, true)) {
+              LOG.warn("Commit of " + name + " did not stop within " + timeoutGraceMillis
+                  + " ms of being interrupted, failing it while it is still running");
+              resizePool(1);
+              setException(timeoutException);
+            }
+          }
+        }, timeoutGraceMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        LOG.debug("Not giving up on commit of " + name + " since the scheduler is shut down");
+      }
+    }
+
+    @Override
+    protected void interruptTask() {
+      Future<V> runningFuture = future;
+      if (runningFuture != null) {
+        runningFuture.cancel(true);
+      }
+    }
+  }
+}
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -37,9 +38,12 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.tez.common.TezCommonUtils;
+import org.apache.tez.dag.api.DagTypeConverters;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezConstants;
 import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
+import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
+import org.apache.tez.dag.api.records.DAGProtos.EdgePlan;
 import org.apache.tez.dag.app.dag.DAGState;
 import org.apache.tez.dag.app.dag.VertexState;
 import org.apache.tez.dag.app.dag.impl.DAGImpl;
@@ -66,6 +70,7 @@ import org.apache.tez.dag.history.events.VertexGroupCommitStartedEvent;
 import org.apache.tez.dag.history.events.VertexInitializedEvent;
 import org.apache.tez.dag.history.events.VertexConfigurationDoneEvent;
 import org.apache.tez.dag.history.events.VertexStartedEvent;
+import org.apache.tez.dag.history.recovery.DAGRecoveryCheckpoint;
 import org.apache.tez.dag.history.recovery.RecoveryService;
 import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
@@ -185,6 +190,45 @@ public class RecoveryParser {
       }
     }
 
+    // Initializers which were still sending events when the AM stopped cannot be resumed. The
+    // vertices of such initializers, and the vertices consuming their output, are run again.
+    @VisibleForTesting
+    public void resetVerticesWithRunningInitializers(DAGPlan dagPlan) {
+      if (isCompleted) {
+        return;
+      }
+      LinkedList<TezVertexID> pendingVertices = new LinkedList<TezVertexID>();
+      for (Map.Entry<TezVertexID, VertexRecoveryData> entry : vertexRecoveryDataMap.entrySet()) {
+        VertexInitializedEvent vertexInitedEvent = entry.getValue().getVertexInitedEvent();
+        if (vertexInitedEvent != null && vertexInitedEvent.isInitializersRunning()
+            && !entry.getValue().isVertexFinished()) {
+          pendingVertices.add(entry.getKey());
+        }
+      }
+      if (pendingVertices.isEmpty()) {
+        return;
+      }
+      Map<String, Integer> vertexIndices = new HashMap<String, Integer>();
+      for (int i = 0; i < dagPlan.getVertexCount(); ++i) {
+        vertexIndices.put(dagPlan.getVertex(i).getName(), i);
+      }
+      Map<String, EdgePlan> edgePlans =
+          DagTypeConverters.createEdgePlanMapFromDAGPlan(dagPlan.getEdgeList());
+      while (!pendingVertices.isEmpty()) {
+        TezVertexID vertexId = pendingVertices.remove();
+        if (vertexRecoveryDataMap.remove(vertexId) == null) {
+          continue;
+        }
+        LOG.info("Discarding recovery data of vertex, since it depends on an input initializer"
+            + " which did not complete, vertexId=" + vertexId);
+        for (String edgeId : dagPlan.getVertex(vertexId.getId()).getOutEdgeIdList()) {
+          String outputVertexName = edgePlans.get(edgeId).getOutputVertexName();
+          pendingVertices.add(
+              TezVertexID.getInstance(vertexId.getDAGId(), vertexIndices.get(outputVertexName)));
+        }
+      }
+    }
+
     public DAGInitializedEvent getDAGInitializedEvent() {
       return dagInitedEvent;
     }
@@ -251,7 +295,7 @@ public class RecoveryParser {
     }
   }
 
-  private static HistoryEvent getNextEvent(FSDataInputStream inputStream)
+  public static HistoryEvent getNextEvent(FSDataInputStream inputStream)
       throws IOException {
     int eventTypeOrdinal = -1;
     try {
@@ -627,9 +671,10 @@ public class RecoveryParser {
     return summaryFiles;
   }
 
-  private List<Path> getDAGRecoveryFiles(TezDAGID dagId) throws IOException {
+  private List<Path> getDAGRecoveryFiles(TezDAGID dagId, int startAttemptId)
+      throws IOException {
     List<Path> recoveryFiles = new ArrayList<Path>();
-    for (int i = 1; i < currentAttemptId; ++i) {
+    for (int i = startAttemptId; i < currentAttemptId; ++i) {
       Path attemptPath = TezCommonUtils.getAttemptRecoveryPath(recoveryDataDir, i);
       Path recoveryFile = getDAGRecoveryFilePath(attemptPath, dagId);
       if (recoveryFS.exists(recoveryFile)) {
@@ -727,8 +772,31 @@ public class RecoveryParser {
         + ", dagId=" + lastInProgressDAGData.dagId);
 
     final DAGRecoveryData recoveredDAGData = new DAGRecoveryData(lastInProgressDAGData);
-    List<Path> dagRecoveryFiles = getDAGRecoveryFiles(lastInProgressDAG);
     boolean skipAllOtherEvents = false;
+    // Start from the latest checkpoint if there is one and only replay the recovery
+    // events written after it
+    DAGRecoveryCheckpoint checkpoint = DAGRecoveryCheckpoint.getLatestCheckpoint(recoveryFS,
+        recoveryDataDir, lastInProgressDAG, currentAttemptId - 1, recoveryBufferSize);
+    Path checkpointedRecoveryFile = null;
+    int startAttemptId = 1;
+    if (checkpoint != null) {
+      startAttemptId = checkpoint.getAttemptId();
+      checkpointedRecoveryFile = getDAGRecoveryFilePath(
+          TezCommonUtils.getAttemptRecoveryPath(recoveryDataDir, startAttemptId),
+          lastInProgressDAG);
+      LOG.info("Recovering dag from checkpoint"
+          + ", dagId=" + lastInProgressDAG
+          + ", checkpointAttemptId=" + startAttemptId
+          + ", recoveryFileOffset=" + checkpoint.getRecoveryFileOffset()
+          + ", numEvents=" + checkpoint.getEvents().size());
+      for (HistoryEvent event : checkpoint.getEvents()) {
+        if (skipAllOtherEvents) {
+          break;
+        }
+        skipAllOtherEvents = handleDAGRecoveryEvent(recoveredDAGData, lastInProgressDAG, event);
+      }
+    }
+    List<Path> dagRecoveryFiles = getDAGRecoveryFiles(lastInProgressDAG, startAttemptId);
     Path lastRecoveryFile = null;
     // read the non summary events even when it is nonrecoverable. (Just read the DAGSubmittedEvent
     // to create the DAGImpl)
@@ -745,6 +813,9 @@ public class RecoveryParser {
           + ", dagRecoveryFile=" + dagRecoveryFile
           + ", len=" + fileStatus.getLen());
       FSDataInputStream dagRecoveryStream = recoveryFS.open(dagRecoveryFile, recoveryBufferSize);
+      if (dagRecoveryFile.equals(checkpointedRecoveryFile)) {
+        dagRecoveryStream.seek(checkpoint.getRecoveryFileOffset());
+      }
       while (true) {
         HistoryEvent event;
         try {
@@ -765,146 +836,169 @@ public class RecoveryParser {
           break;
         }
 
-        HistoryEventType eventType = event.getEventType();
-        LOG.info("Recovering from event"
-            + ", eventType=" + eventType
-            + ", event=" + event.toString());
-        switch (eventType) {
-          case DAG_SUBMITTED:
-            DAGSubmittedEvent submittedEvent = (DAGSubmittedEvent) event;
-            recoveredDAGData.recoveredDAG = dagAppMaster.createDAG(submittedEvent.getDAGPlan(),
-                lastInProgressDAG);
-            recoveredDAGData.cumulativeAdditionalResources = submittedEvent
-              .getCumulativeAdditionalLocalResources();
-            recoveredDAGData.recoveredDagID = recoveredDAGData.recoveredDAG.getID();
-            dagAppMaster.setCurrentDAG(recoveredDAGData.recoveredDAG);
-            if (recoveredDAGData.nonRecoverable) {
-              skipAllOtherEvents = true;
-            }
-            break;
-          case DAG_INITIALIZED:
-            recoveredDAGData.dagInitedEvent = (DAGInitializedEvent)event;
-            break;
-          case DAG_STARTED:
-            recoveredDAGData.dagStartedEvent= (DAGStartedEvent)event;
-            break;
-          case DAG_FINISHED:
-            recoveredDAGData.dagFinishedEvent = (DAGFinishedEvent)event;
-            skipAllOtherEvents = true;
-            break; 
-          case DAG_COMMIT_STARTED:
-          case VERTEX_GROUP_COMMIT_STARTED:
-          case VERTEX_GROUP_COMMIT_FINISHED: 
-          case CONTAINER_LAUNCHED:
-          {
-            // Nothing to do for now
-            break;
-          }
-          case DAG_KILL_REQUEST:
-          {
-            break;
-          }
-          case VERTEX_INITIALIZED:
-
-          {
-            VertexInitializedEvent vertexInitEvent = (VertexInitializedEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(vertexInitEvent.getVertexID());
-            vertexRecoveryData.vertexInitedEvent = vertexInitEvent;
-            break;
-          }
-          case VERTEX_CONFIGURE_DONE:
-          {
-            VertexConfigurationDoneEvent reconfigureDoneEvent = (VertexConfigurationDoneEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(reconfigureDoneEvent.getVertexID());
-            vertexRecoveryData.vertexConfigurationDoneEvent = reconfigureDoneEvent;
-            break;
-          }
-          case VERTEX_STARTED:
-          {
-            VertexStartedEvent vertexStartedEvent = (VertexStartedEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(vertexStartedEvent.getVertexID());
-            Preconditions.checkArgument(vertexRecoveryData != null, "No VertexInitializedEvent before VertexStartedEvent");
-            vertexRecoveryData.vertexStartedEvent = vertexStartedEvent;
-            break;
-          }
-          case VERTEX_COMMIT_STARTED:
-          {
-            break;
-          }
-          case VERTEX_FINISHED:
-          {
-            VertexFinishedEvent vertexFinishedEvent = (VertexFinishedEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(vertexFinishedEvent.getVertexID());
-            vertexRecoveryData.vertexFinishedEvent = vertexFinishedEvent;
-            break;
-          }
-          case TASK_STARTED:
-          {
-            TaskStartedEvent taskStartedEvent = (TaskStartedEvent) event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(taskStartedEvent.getTaskID().getVertexID());
-            Preconditions.checkArgument(vertexRecoveryData != null,
-                "Invalid TaskStartedEvent, its vertex does not exist:" + taskStartedEvent.getTaskID().getVertexID());
-            TaskRecoveryData taskRecoveryData = vertexRecoveryData.maybeCreateTaskRecoveryData(taskStartedEvent.getTaskID());
-            taskRecoveryData.taskStartedEvent = taskStartedEvent;
-            break;
-          }
-          case TASK_FINISHED:
-          {
-            TaskFinishedEvent taskFinishedEvent = (TaskFinishedEvent) event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(taskFinishedEvent.getTaskID().getVertexID());
-            Preconditions.checkArgument(vertexRecoveryData != null,
-                "Invalid TaskFinishedEvent, its vertex does not exist:" + taskFinishedEvent.getTaskID().getVertexID());
-            TaskRecoveryData taskRecoveryData = vertexRecoveryData.maybeCreateTaskRecoveryData(taskFinishedEvent.getTaskID());
-            taskRecoveryData.taskFinishedEvent = taskFinishedEvent;
-            break;
-          }
-          case TASK_ATTEMPT_STARTED:
-          {
-            TaskAttemptStartedEvent taStartedEvent = (TaskAttemptStartedEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(
-                taStartedEvent.getTaskAttemptID().getTaskID().getVertexID());
-            Preconditions.checkArgument(vertexRecoveryData != null,
-                "Invalid TaskAttemptStartedEvent, its vertexId does not exist, taId=" + taStartedEvent.getTaskAttemptID());
-            TaskRecoveryData taskRecoveryData = vertexRecoveryData.taskRecoveryDataMap
-                .get(taStartedEvent.getTaskAttemptID().getTaskID());
-            Preconditions.checkArgument(taskRecoveryData != null,
-                "Invalid TaskAttemptStartedEvent, its taskId does not exist, taId=" + taStartedEvent.getTaskAttemptID());
-            TaskAttemptRecoveryData taRecoveryData = taskRecoveryData.maybeCreateTaskAttemptRecoveryData(taStartedEvent.getTaskAttemptID());
-            taRecoveryData.taStartedEvent = taStartedEvent;
-            break;
-          }
-          case TASK_ATTEMPT_FINISHED:
-          {
-            TaskAttemptFinishedEvent taFinishedEvent = (TaskAttemptFinishedEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(
-                taFinishedEvent.getTaskAttemptID().getTaskID().getVertexID());
-            Preconditions.checkArgument(vertexRecoveryData != null,
-                "Invalid TaskAttemtFinishedEvent, its vertexId does not exist, taId=" + taFinishedEvent.getTaskAttemptID());
-            TaskRecoveryData taskRecoveryData = vertexRecoveryData.taskRecoveryDataMap
-                .get(taFinishedEvent.getTaskAttemptID().getTaskID());
-            Preconditions.checkArgument(taskRecoveryData != null,
-                "Invalid TaskAttemptFinishedEvent, its taskId does not exist, taId=" + taFinishedEvent.getTaskAttemptID());
-            TaskAttemptRecoveryData taRecoveryData = taskRecoveryData.maybeCreateTaskAttemptRecoveryData(taFinishedEvent.getTaskAttemptID());
-            taRecoveryData.taFinishedEvent = taFinishedEvent;
-            break;
-          }
-          default:
-            throw new RuntimeException("Invalid data found, unknown event type "
-                + eventType);
-        }
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("[DAG RECOVERY]"
-              + " dagId=" + lastInProgressDAG
-              + ", eventType=" + eventType
-              + ", event=" + event.toString());
-        }
+        skipAllOtherEvents = handleDAGRecoveryEvent(recoveredDAGData, lastInProgressDAG, event);
       }
       dagRecoveryStream.close();
     }
+    if (recoveredDAGData.recoveredDAG != null) {
+      recoveredDAGData.resetVerticesWithRunningInitializers(
+          recoveredDAGData.recoveredDAG.getJobPlan());
+    }
     recoveredDAGData.checkRecoverableNonSummary();
     return recoveredDAGData;
   }
 
+  /**
+   * Applies a recovery event of the DAG to the recovered DAG data.
+   * @return true if all events following this one should be skipped
+   */
+  private boolean handleDAGRecoveryEvent(DAGRecoveryData recoveredDAGData,
+      TezDAGID lastInProgressDAG, HistoryEvent event) throws IOException {
+    boolean skipAllOtherEvents = false;
+    HistoryEventType eventType = event.getEventType();
+    LOG.info("Recovering from event"
+        + ", eventType=" + eventType
+        + ", event=" + event.toString());
+    switch (eventType) {
+      case DAG_SUBMITTED:
+        DAGSubmittedEvent submittedEvent = (DAGSubmittedEvent) event;
+        recoveredDAGData.recoveredDAG = dagAppMaster.createDAG(submittedEvent.getDAGPlan(),
+            lastInProgressDAG);
+        recoveredDAGData.cumulativeAdditionalResources = submittedEvent
+          .getCumulativeAdditionalLocalResources();
+        recoveredDAGData.recoveredDagID = recoveredDAGData.recoveredDAG.getID();
+        dagAppMaster.setCurrentDAG(recoveredDAGData.recoveredDAG);
+        if (recoveredDAGData.nonRecoverable) {
+          skipAllOtherEvents = true;
+        }
+        break;
+      case DAG_INITIALIZED:
+        recoveredDAGData.dagInitedEvent = (DAGInitializedEvent)event;
+        break;
+      case DAG_STARTED:
+        recoveredDAGData.dagStartedEvent= (DAGStartedEvent)event;
+        break;
+      case DAG_FINISHED:
+        recoveredDAGData.dagFinishedEvent = (DAGFinishedEvent)event;
+        skipAllOtherEvents = true;
+        break; 
+      case DAG_COMMIT_STARTED:
+      case VERTEX_GROUP_COMMIT_STARTED:
+      case VERTEX_GROUP_COMMIT_FINISHED: 
+      case CONTAINER_LAUNCHED:
+      {
+        // Nothing to do for now
+        break;
+      }
+      case DAG_KILL_REQUEST:
+      {
+        break;
+      }
+      case VERTEX_INITIALIZED:
+
+      {
+        VertexInitializedEvent vertexInitEvent = (VertexInitializedEvent)event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(vertexInitEvent.getVertexID());
+        if (vertexInitEvent.isAddedEvents()) {
+          // events sent by the initializers after the vertex was initialized
+          Preconditions.checkArgument(vertexRecoveryData.vertexInitedEvent != null,
+              "No VertexInitializedEvent before the events added by initializers");
+          vertexRecoveryData.vertexInitedEvent =
+              vertexRecoveryData.vertexInitedEvent.merge(vertexInitEvent);
+        } else {
+          vertexRecoveryData.vertexInitedEvent = vertexInitEvent;
+        }
+        break;
+      }
+      case VERTEX_CONFIGURE_DONE:
+      {
+        VertexConfigurationDoneEvent reconfigureDoneEvent = (VertexConfigurationDoneEvent)event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(reconfigureDoneEvent.getVertexID());
+        vertexRecoveryData.vertexConfigurationDoneEvent = reconfigureDoneEvent;
+        break;
+      }
+      case VERTEX_STARTED:
+      {
+        VertexStartedEvent vertexStartedEvent = (VertexStartedEvent)event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(vertexStartedEvent.getVertexID());
+        Preconditions.checkArgument(vertexRecoveryData != null, "No VertexInitializedEvent before VertexStartedEvent");
+        vertexRecoveryData.vertexStartedEvent = vertexStartedEvent;
+        break;
+      }
+      case VERTEX_COMMIT_STARTED:
+      {
+        break;
+      }
+      case VERTEX_FINISHED:
+      {
+        VertexFinishedEvent vertexFinishedEvent = (VertexFinishedEvent)event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(vertexFinishedEvent.getVertexID());
+        vertexRecoveryData.vertexFinishedEvent = vertexFinishedEvent;
+        break;
+      }
+      case TASK_STARTED:
+      {
+        TaskStartedEvent taskStartedEvent = (TaskStartedEvent) event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(taskStartedEvent.getTaskID().getVertexID());
+        Preconditions.checkArgument(vertexRecoveryData != null,
+            "Invalid TaskStartedEvent, its vertex does not exist:" + taskStartedEvent.getTaskID().getVertexID());
+        TaskRecoveryData taskRecoveryData = vertexRecoveryData.maybeCreateTaskRecoveryData(taskStartedEvent.getTaskID());
+        taskRecoveryData.taskStartedEvent = taskStartedEvent;
+        break;
+      }
+      case TASK_FINISHED:
+      {
+        TaskFinishedEvent taskFinishedEvent = (TaskFinishedEvent) event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(taskFinishedEvent.getTaskID().getVertexID());
+        Preconditions.checkArgument(vertexRecoveryData != null,
+            "Invalid TaskFinishedEvent, its vertex does not exist:" + taskFinishedEvent.getTaskID().getVertexID());
+        TaskRecoveryData taskRecoveryData = vertexRecoveryData.maybeCreateTaskRecoveryData(taskFinishedEvent.getTaskID());
+        taskRecoveryData.taskFinishedEvent = taskFinishedEvent;
+        break;
+      }
+      case TASK_ATTEMPT_STARTED:
+      {
+        TaskAttemptStartedEvent taStartedEvent = (TaskAttemptStartedEvent)event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(
+            taStartedEvent.getTaskAttemptID().getTaskID().getVertexID());
+        Preconditions.checkArgument(vertexRecoveryData != null,
+            "Invalid TaskAttemptStartedEvent, its vertexId does not exist, taId=" + taStartedEvent.getTaskAttemptID());
+        TaskRecoveryData taskRecoveryData = vertexRecoveryData.taskRecoveryDataMap
+            .get(taStartedEvent.getTaskAttemptID().getTaskID());
+        Preconditions.checkArgument(taskRecoveryData != null,
+            "Invalid TaskAttemptStartedEvent, its taskId does not exist, taId=" + taStartedEvent.getTaskAttemptID());
+        TaskAttemptRecoveryData taRecoveryData = taskRecoveryData.maybeCreateTaskAttemptRecoveryData(taStartedEvent.getTaskAttemptID());
+        taRecoveryData.taStartedEvent = taStartedEvent;
+        break;
+      }
+      case TASK_ATTEMPT_FINISHED:
+      {
+        TaskAttemptFinishedEvent taFinishedEvent = (TaskAttemptFinishedEvent)event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(
+            taFinishedEvent.getTaskAttemptID().getTaskID().getVertexID());
+        Preconditions.checkArgument(vertexRecoveryData != null,
+            "Invalid TaskAttemtFinishedEvent, its vertexId does not exist, taId=" + taFinishedEvent.getTaskAttemptID());
+        TaskRecoveryData taskRecoveryData = vertexRecoveryData.taskRecoveryDataMap
+            .get(taFinishedEvent.getTaskAttemptID().getTaskID());
+        Preconditions.checkArgument(taskRecoveryData != null,
+            "Invalid TaskAttemptFinishedEvent, its taskId does not exist, taId=" + taFinishedEvent.getTaskAttemptID());
+        TaskAttemptRecoveryData taRecoveryData = taskRecoveryData.maybeCreateTaskAttemptRecoveryData(taFinishedEvent.getTaskAttemptID());
+        taRecoveryData.taFinishedEvent = taFinishedEvent;
+        break;
+      }
+      default:
+        throw new RuntimeException("Invalid data found, unknown event type "
+            + eventType);
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("[DAG RECOVERY]"
+          + " dagId=" + lastInProgressDAG
+          + ", eventType=" + eventType
+          + ", event=" + event.toString());
+    }
+    return skipAllOtherEvents;
+  }
+
   public static class VertexRecoveryData {
 
     private VertexInitializedEvent vertexInitedEvent;
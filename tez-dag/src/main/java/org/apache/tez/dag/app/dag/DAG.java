@@ -27,6 +27,8 @@ import org.apache.hadoop.security.Credentials;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.tez.common.counters.CompactCounters;
+import org.apache.tez.common.counters.CounterIndex;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.api.client.DAGStatusBuilder;
@@ -58,6 +60,13 @@ public interface DAG extends DagInfo {
   TezCounters getAllCounters();
   TezCounters getCachedCounters();
 
+  /**
+   * Get the index of the counters seen in this DAG, shared by the
+   * {@link CompactCounters} of its vertices, tasks and attempts.
+   * @return the counter index of the DAG
+   */
+  CounterIndex getCounterIndex();
+
   @SuppressWarnings("rawtypes")
   EventHandler getEventHandler();
 
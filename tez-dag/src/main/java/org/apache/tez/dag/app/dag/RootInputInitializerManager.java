@@ -23,6 +23,7 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -204,6 +205,12 @@ public class RootInputInitializerManager {
     }
   }
 
+  public void addInitializerEvents(String inputName, List<Event> events) {
+    InitializerWrapper initializer = initializerMap.get(inputName);
+    Preconditions.checkState(initializer != null, "Events added for unknown input : " + inputName);
+    initializer.addEvents(events);
+  }
+
   private static class VertexUpdateRegistrationHolder {
     private VertexUpdateRegistrationHolder(String vertexName, Set<org.apache.tez.dag.api.event.VertexState> stateSet) {
       this.vertexName = vertexName;
@@ -380,6 +387,14 @@ public class RootInputInitializerManager {
       unregisterForTaskStatusUpdates();
     }
 
+    @SuppressWarnings("unchecked")
+    synchronized void addEvents(List<Event> events) {
+      Preconditions.checkState(!isComplete(), "Events cannot be added after the initializer for"
+          + " Input: " + input.getName() + " on vertex " + vertexLogIdentifier + " completed");
+      appContext.getEventHandler().handle(new VertexEventRootInputInitialized(vertexId,
+          input.getName(), new ArrayList<Event>(events), true));
+    }
+
     public void registerForVertexStateUpdates(String vertexName, Set<VertexState> stateSet) {
       synchronized(notificationRegisteredVertices) {
         notificationRegisteredVertices.add(vertexName);
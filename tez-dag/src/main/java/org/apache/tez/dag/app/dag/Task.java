@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.tez.common.counters.CompactCounters;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.TaskLocationHint;
 import org.apache.tez.dag.api.oldrecords.TaskReport;
@@ -39,6 +40,11 @@ public interface Task {
   TaskReport getReport();
   TaskState getState();
   TezCounters getCounters();
+  /**
+   * Adds the counters of this task to the given counters, without creating a
+   * copy of the counters of the task.
+   */
+  void aggregateCounters(CompactCounters counters);
   float getProgress();
   Map<TezTaskAttemptID, TaskAttempt> getAttempts();
   TaskAttempt getAttempt(TezTaskAttemptID attemptID);
@@ -28,8 +28,18 @@ public class VertexEventRootInputInitialized extends VertexEvent {
 
   private final String inputName;
   private final List<Event> events;
+  private final boolean initializerRunning;
 
   public VertexEventRootInputInitialized(TezVertexID vertexId, String inputName, List<Event> events) {
+    this(vertexId, inputName, events, false);
+  }
+
+  /**
+   * @param initializerRunning true if the events were sent by the initializer before it
+   *                           completed, and more events will follow
+   */
+  public VertexEventRootInputInitialized(TezVertexID vertexId, String inputName,
+      List<Event> events, boolean initializerRunning) {
     super(vertexId, VertexEventType.V_ROOT_INPUT_INITIALIZED);
     this.inputName = inputName;
     if (events == null) {
@@ -37,6 +47,7 @@ public class VertexEventRootInputInitialized extends VertexEvent {
     } else {
       this.events = events;
     }
+    this.initializerRunning = initializerRunning;
   }
   
   public List<Event> getEvents() {
@@ -47,4 +58,8 @@ public class VertexEventRootInputInitialized extends VertexEvent {
     return this.inputName;
   }
 
+  public boolean isInitializerRunning() {
+    return initializerRunning;
+  }
+
 }
@@ -32,6 +32,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -63,6 +64,8 @@ import org.apache.hadoop.yarn.state.StateMachineFactory;
 import org.apache.hadoop.yarn.util.Clock;
 import org.apache.tez.common.ATSConstants;
 import org.apache.tez.common.ReflectionUtils;
+import org.apache.tez.common.counters.CompactCounters;
+import org.apache.tez.common.counters.CounterIndex;
 import org.apache.tez.common.counters.DAGCounter;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.DagTypeConverters;
@@ -79,11 +82,13 @@ import org.apache.tez.dag.api.client.StatusGetOpts;
 import org.apache.tez.dag.api.client.VertexStatus;
 import org.apache.tez.dag.api.client.VertexStatusBuilder;
 import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
+import org.apache.tez.dag.api.records.DAGProtos.DAGStatusProto;
 import org.apache.tez.dag.api.records.DAGProtos.EdgePlan;
 import org.apache.tez.dag.api.records.DAGProtos.PlanGroupInputEdgeInfo;
 import org.apache.tez.dag.api.records.DAGProtos.PlanKeyValuePair;
 import org.apache.tez.dag.api.records.DAGProtos.PlanVertexGroupInfo;
 import org.apache.tez.dag.api.records.DAGProtos.VertexPlan;
+import org.apache.tez.dag.api.records.DAGProtos.VertexStatusProto;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.app.RecoveryParser.VertexRecoveryData;
 import org.apache.tez.dag.app.TaskCommunicatorManagerInterface;
@@ -161,6 +166,8 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
   private final Lock dagStatusLock = new ReentrantLock();
   private final Condition dagCompletionCondition = dagStatusLock.newCondition();
   private final AtomicBoolean isFinalState = new AtomicBoolean(false);
+  // null when the status snapshots are disabled
+  private final StatusSnapshotCache statusSnapshotCache;
   private final Lock readLock;
   private final Lock writeLock;
   private final String dagName;
@@ -191,6 +198,7 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
   @VisibleForTesting
   Map<String, Edge> edges = new HashMap<String, Edge>();
   private TezCounters dagCounters = new TezCounters();
+  private final CounterIndex counterIndex = new CounterIndex();
   private Object fullCountersLock = new Object();
   @VisibleForTesting
   TezCounters fullCounters = null;
@@ -518,6 +526,10 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
     this.userName = appUserName;
     this.clock = clock;
     this.appContext = appContext;
+    long statusCacheMillis = dagConf.getLong(TezConfiguration.TEZ_AM_CLIENT_STATUS_CACHE_MS,
+        TezConfiguration.TEZ_AM_CLIENT_STATUS_CACHE_MS_DEFAULT);
+    this.statusSnapshotCache =
+        statusCacheMillis > 0 ? new StatusSnapshotCache(clock, statusCacheMillis) : null;
 
     this.taskCommunicatorManagerInterface = taskCommunicatorManagerInterface;
     this.taskHeartbeatHandler = thh;
@@ -696,9 +708,7 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
 
       // dag not yet finished. update cpu time counters
       updateCpuCounters();
-      TezCounters counters = new TezCounters();
-      counters.incrAllCounters(dagCounters);
-      return incrTaskCounters(counters, vertices.values());
+      return aggregateCounters();
 
     } finally {
       readLock.unlock();
@@ -728,9 +738,7 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
 
       // dag not yet finished. update cpu time counters
       updateCpuCounters();
-      TezCounters counters = new TezCounters();
-      counters.incrAllCounters(dagCounters);
-      return incrTaskCounters(counters, vertices.values());
+      return aggregateCounters();
 
     } finally {
       readLock.unlock();
@@ -746,12 +754,18 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
     return false;
   }
 
-  public static TezCounters incrTaskCounters(
-      TezCounters counters, Collection<Vertex> vertices) {
-    for (Vertex vertex : vertices) {
+  private TezCounters aggregateCounters() {
+    CompactCounters counters = new CompactCounters(counterIndex);
+    counters.incrAllCounters(dagCounters);
+    for (Vertex vertex : vertices.values()) {
       counters.incrAllCounters(vertex.getAllCounters());
     }
-    return counters;
+    return counters.toTezCounters();
+  }
+
+  @Override
+  public CounterIndex getCounterIndex() {
+    return counterIndex;
   }
 
   @Override
@@ -858,7 +872,20 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
 
   // monitoring apis
   @Override
-  public DAGStatusBuilder getDAGStatus(Set<StatusGetOpts> statusOptions) {
+  public DAGStatusBuilder getDAGStatus(final Set<StatusGetOpts> statusOptions) {
+    if (statusSnapshotCache == null) {
+      return createDAGStatus(statusOptions);
+    }
+    return new DAGStatusBuilder(statusSnapshotCache.get(null, statusOptions, getState(),
+        new Callable<DAGStatusProto>() {
+          @Override
+          public DAGStatusProto call() throws Exception {
+            return createDAGStatus(statusOptions).getProto();
+          }
+        }));
+  }
+
+  private DAGStatusBuilder createDAGStatus(Set<StatusGetOpts> statusOptions) {
     DAGStatusBuilder status = new DAGStatusBuilder();
     int totalTaskCount = 0;
     int totalSucceededTaskCount = 0;
@@ -970,12 +997,21 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
 
   @Override
   public VertexStatusBuilder getVertexStatus(String vertexName,
-      Set<StatusGetOpts> statusOptions) {
-    Vertex vertex = vertexMap.get(vertexName);
+      final Set<StatusGetOpts> statusOptions) {
+    final Vertex vertex = vertexMap.get(vertexName);
     if(vertex == null) {
       return null;
     }
-    return vertex.getVertexStatus(statusOptions);
+    if (statusSnapshotCache == null) {
+      return vertex.getVertexStatus(statusOptions);
+    }
+    return new VertexStatusBuilder(statusSnapshotCache.get(vertexName, statusOptions,
+        vertex.getState(), new Callable<VertexStatusProto>() {
+          @Override
+          public VertexStatusProto call() throws Exception {
+            return vertex.getVertexStatus(statusOptions).getProto();
+          }
+        }));
   }
   
   public TaskAttemptImpl getTaskAttempt(TezTaskAttemptID taId) {
@@ -1010,13 +1046,21 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
 
   private void commitOutput(OutputCommitter outputCommitter) throws Exception {
     final OutputCommitter committer = outputCommitter;
-    getDagUGI().doAs(new PrivilegedExceptionAction<Void>() {
-      @Override
-      public Void run() throws Exception {
-        committer.commitOutput();
-        return null;
-      }
-    });
+    long startTime = clock.getTime();
+    try {
+      getDagUGI().doAs(new PrivilegedExceptionAction<Void>() {
+        @Override
+        public Void run() throws Exception {
+          committer.commitOutput();
+          return null;
+        }
+      });
+    } finally {
+      DAGEventCounterUpdate counterUpdate = new DAGEventCounterUpdate(dagId);
+      counterUpdate.addCounterUpdate(DAGCounter.OUTPUT_COMMIT_TIME_MILLIS,
+          clock.getTime() - startTime);
+      eventHandler.handle(counterUpdate);
+    }
   }
 
   // either commit when all vertices are completed or just finish if there's no committer
@@ -1111,7 +1155,8 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
         return finished(DAGState.FAILED);
       }
       for (Map.Entry<OutputKey,CallableEvent> entry : commitEvents.entrySet()) {
-        ListenableFuture<Void> commitFuture = appContext.getExecService().submit(entry.getValue());
+        ListenableFuture<Void> commitFuture = appContext.getCommitScheduler().submit(
+            entry.getKey().toString(), entry.getValue());
         Futures.addCallback(commitFuture, entry.getValue().getCallback());
         commitFutures.put(entry.getKey(), commitFuture);
       }
@@ -1826,11 +1871,7 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
 
   @Private
   public void constructFinalFullcounters() {
-    this.fullCounters = new TezCounters();
-    this.fullCounters.incrAllCounters(dagCounters);
-    for (Vertex v : this.vertices.values()) {
-      this.fullCounters.incrAllCounters(v.getAllCounters());
-    }
+    this.fullCounters = aggregateCounters();
   }
 
   /**
@@ -2081,7 +2122,8 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
                   return null;
                 };
               };
-              ListenableFuture<Void> groupCommitFuture = appContext.getExecService().submit(groupCommitCallableEvent);
+              ListenableFuture<Void> groupCommitFuture = appContext.getCommitScheduler().submit(
+                  outputKey.toString(), groupCommitCallableEvent);
               Futures.addCallback(groupCommitFuture, groupCommitCallableEvent.getCallback());
               commitFutures.put(outputKey, groupCommitFuture);
             }
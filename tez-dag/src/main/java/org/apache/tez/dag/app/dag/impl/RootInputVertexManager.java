@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.BitSet;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -99,6 +100,10 @@ public class RootInputVertexManager extends VertexManagerPlugin {
   boolean sourceVerticesScheduled = false;
   List<PendingTaskInfo> pendingTasks = Lists.newLinkedList();
   int totalTasksToSchedule = 0;
+  // While the initializer of the configured input is still sending events, only tasks
+  // which have received their events are scheduled
+  boolean configuredInputInitializerRunning = false;
+  final BitSet tasksWithEvents = new BitSet();
 
   boolean slowStartEnabled = false;
   float slowStartMinFraction = 0;
@@ -322,9 +327,18 @@ public class RootInputVertexManager extends VertexManagerPlugin {
         InputDataInformationEvent rEvent = (InputDataInformationEvent)event;
         rEvent.setTargetIndex(rEvent.getSourceIndex()); // 1:1 routing
         riEvents.add(rEvent);
+        tasksWithEvents.set(rEvent.getTargetIndex());
       }
     }
     getContext().addRootInputEvents(inputName, riEvents);
+    if (inputName.equals(configuredInputName)) {
+      boolean wasRunning = configuredInputInitializerRunning;
+      configuredInputInitializerRunning = getContext().isRootInputInitializerRunning(inputName);
+      if (wasRunning) {
+        // more tasks may be ready
+        processPendingTasks();
+      }
+    }
   }
 
   private boolean canScheduleTasks() {
@@ -420,12 +434,16 @@ public class RootInputVertexManager extends VertexManagerPlugin {
       List<VertexManagerPluginContext.ScheduleTaskRequest> tasksToSchedule =
           Lists.newArrayListWithCapacity(numTasksToSchedule);
 
-      while (!pendingTasks.isEmpty() && numTasksToSchedule > 0) {
+      Iterator<PendingTaskInfo> iter = pendingTasks.iterator();
+      while (iter.hasNext() && numTasksToSchedule > 0) {
+        int taskIndex = iter.next().getIndex();
+        if (configuredInputInitializerRunning && !tasksWithEvents.get(taskIndex)) {
+          continue;
+        }
         numTasksToSchedule--;
-        Integer taskIndex = pendingTasks.get(0).getIndex();
         tasksToSchedule.add(VertexManagerPluginContext.ScheduleTaskRequest
             .create(taskIndex, null));
-        pendingTasks.remove(0);
+        iter.remove();
       }
       return tasksToSchedule;
     }
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.dag.impl;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.yarn.util.Clock;
+import org.apache.tez.dag.api.TezUncheckedException;
+import org.apache.tez.dag.api.client.StatusGetOpts;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.Message;
+
+/**
+ * Snapshots of the status of a DAG and of its vertices, shared by the clients polling the status.
+ *
+ * A snapshot is served until it is older than the configured time, or until the state of the DAG
+ * or of the vertex it was built for changes. Concurrent requests for a missing snapshot wait for
+ * a single one of them to build it. The snapshots are kept as immutable protos, so that each
+ * request gets its own status builder.
+ */
+class StatusSnapshotCache {
+
+  private static final int MAX_SNAPSHOTS = 1000;
+
+  private final Cache<Key, Snapshot> snapshots;
+
+  StatusSnapshotCache(final Clock clock, long expiryMillis) {
+    this.snapshots = CacheBuilder.newBuilder()
+        .maximumSize(MAX_SNAPSHOTS)
+        .expireAfterWrite(expiryMillis, TimeUnit.MILLISECONDS)
+        .ticker(new Ticker() {
+          @Override
+          public long read() {
+            return TimeUnit.MILLISECONDS.toNanos(clock.getTime());
+          }
+        })
+        .build();
+  }
+
+  /**
+   * @param vertexName the vertex, or null for the status of the DAG
+   * @param state the current state of the DAG or of the vertex
+   * @param builder builds the status when there is no valid snapshot
+   */
+  @SuppressWarnings("unchecked")
+  <P extends Message> P get(String vertexName, Set<StatusGetOpts> statusOptions,
+      final Object state, final Callable<P> builder) {
+    Key key = new Key(vertexName, statusOptions);
+    Callable<Snapshot> loader = new Callable<Snapshot>() {
+      @Override
+      public Snapshot call() throws Exception {
+        return new Snapshot(state, builder.call());
+      }
+    };
+    try {
+      Snapshot snapshot = snapshots.get(key, loader);
+      if (!snapshot.state.equals(state)) {
+        snapshots.invalidate(key);
+        snapshot = snapshots.get(key, loader);
+      }
+      return (P) snapshot.status;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new TezUncheckedException(e.getCause());
+    }
+  }
+
+  private static class Snapshot {
+    final Object state;
+    final Message status;
+
+    Snapshot(Object state, Message status) {
+      this.state = state;
+      this.status = status;
+    }
+  }
+
+  private static class Key {
+    final String vertexName;
+    final Set<StatusGetOpts> statusOptions;
+
+    Key(String vertexName, Set<StatusGetOpts> statusOptions) {
+      this.vertexName = vertexName;
+      this.statusOptions = ImmutableSet.copyOf(statusOptions);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(vertexName, statusOptions);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return Objects.equal(vertexName, other.vertexName)
+          && statusOptions.equals(other.statusOptions);
+    }
+  }
+}
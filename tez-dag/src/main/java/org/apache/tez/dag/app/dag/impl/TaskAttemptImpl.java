@@ -61,6 +61,7 @@ import org.apache.hadoop.yarn.util.Clock;
 import org.apache.hadoop.yarn.util.RackResolver;
 import org.apache.hadoop.yarn.util.Records;
 import org.apache.tez.common.TezUtilsInternal;
+import org.apache.tez.common.counters.CompactCounters;
 import org.apache.tez.common.counters.DAGCounter;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.TezConfiguration;
@@ -201,6 +202,8 @@ public class TaskAttemptImpl implements TaskAttempt,
   @VisibleForTesting
   TaskAttemptStatus reportedStatus;
   private DAGCounter localityCounter;
+  // Counters of the attempt once it has finished. Set instead of reportedStatus.counters.
+  private CompactCounters finalCounters;
   
   org.apache.tez.runtime.api.impl.TaskStatistics statistics;
 
@@ -669,6 +672,9 @@ public class TaskAttemptImpl implements TaskAttempt,
   public TezCounters getCounters() {
     readLock.lock();
     try {
+      if (finalCounters != null) {
+        return finalCounters.toTezCounters();
+      }
       reportedStatus.setLocalityCounter(this.localityCounter);
       TezCounters counters = reportedStatus.counters;
       if (counters == null) {
@@ -680,6 +686,33 @@ public class TaskAttemptImpl implements TaskAttempt,
     }
   }
   
+  @Override
+  public void aggregateCounters(CompactCounters counters) {
+    readLock.lock();
+    try {
+      if (finalCounters != null) {
+        counters.incrAllCounters(finalCounters);
+      } else {
+        counters.incrAllCounters(getCounters());
+      }
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  // The counters of a finished attempt do not change any more. They are kept in compact form,
+  // which takes a fraction of the memory in DAGs with many attempts.
+  private void compactCounters() {
+    if (finalCounters != null) {
+      return;
+    }
+    CompactCounters counters = new CompactCounters(getVertex().getDAG().getCounterIndex());
+    counters.incrAllCounters(getCounters());
+    counters.trimToSize();
+    finalCounters = counters;
+    reportedStatus.counters = null;
+  }
+
   TaskStatistics getStatistics() {
     return this.statistics;
   }
@@ -1676,6 +1709,7 @@ public class TaskAttemptImpl implements TaskAttempt,
       // TODO maybe. For reuse ... Stacking pulls for a reduce task, even if the
       // TA finishes independently. // Will likely be the Job's responsibility.
 
+      ta.compactCounters();
     }
   }
 
@@ -1696,6 +1730,7 @@ public class TaskAttemptImpl implements TaskAttempt,
         ta.sendEvent(new SpeculatorEventTaskAttemptStatusUpdate(ta.attemptId, helper.getTaskAttemptState(),
             ta.clock.getTime()));
       }
+      ta.compactCounters();
     }
   }
 
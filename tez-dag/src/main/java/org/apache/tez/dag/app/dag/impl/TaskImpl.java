@@ -50,6 +50,7 @@ import org.apache.hadoop.yarn.state.MultipleArcTransition;
 import org.apache.hadoop.yarn.state.SingleArcTransition;
 import org.apache.hadoop.yarn.state.StateMachineFactory;
 import org.apache.hadoop.yarn.util.Clock;
+import org.apache.tez.common.counters.CompactCounters;
 import org.apache.tez.common.counters.TaskCounter;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.TaskLocationHint;
@@ -465,6 +466,20 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
     }
   }
   
+  @Override
+  public void aggregateCounters(CompactCounters aggregate) {
+    aggregate.incrAllCounters(this.counters);
+    readLock.lock();
+    try {
+      TaskAttempt bestAttempt = selectBestAttempt();
+      if (bestAttempt != null) {
+        bestAttempt.aggregateCounters(aggregate);
+      }
+    } finally {
+      readLock.unlock();
+    }
+  }
+
   TaskStatistics getStatistics() {
     // simply return the stats from the best attempt
     readLock.lock();
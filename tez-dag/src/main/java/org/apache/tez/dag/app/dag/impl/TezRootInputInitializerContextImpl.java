@@ -20,6 +20,7 @@ package org.apache.tez.dag.app.dag.impl;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.List;
 import java.util.Set;
 
 import org.apache.hadoop.yarn.api.records.ApplicationId;
@@ -33,6 +34,7 @@ import org.apache.tez.dag.api.event.VertexState;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.app.dag.RootInputInitializerManager;
 import org.apache.tez.dag.app.dag.Vertex;
+import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.InputInitializerContext;
 
 public class TezRootInputInitializerContextImpl implements
@@ -124,4 +126,10 @@ public class TezRootInputInitializerContextImpl implements
   public void addCounters(final TezCounters tezCounters) {
     vertex.addCounters(tezCounters);
   }
+
+  @Override
+  public void addEvents(List<Event> events) {
+    checkNotNull(events, "events is null");
+    manager.addInitializerEvents(input.getName(), events);
+  }
 }
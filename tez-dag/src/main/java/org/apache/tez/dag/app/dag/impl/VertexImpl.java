@@ -26,6 +26,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -61,6 +62,8 @@ import org.apache.tez.client.TezClientUtils;
 import org.apache.tez.common.ATSConstants;
 import org.apache.tez.common.ReflectionUtils;
 import org.apache.tez.common.TezUtilsInternal;
+import org.apache.tez.common.counters.CompactCounters;
+import org.apache.tez.common.counters.DAGCounter;
 import org.apache.tez.common.counters.LimitExceededException;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.common.io.NonSyncByteArrayInputStream;
@@ -100,6 +103,7 @@ import org.apache.tez.dag.api.records.DAGProtos.RootInputLeafOutputProto;
 import org.apache.tez.dag.api.records.DAGProtos.VertexPlan;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.app.ContainerContext;
+import org.apache.tez.dag.app.OutputCommitScheduler;
 import org.apache.tez.dag.app.RecoveryParser.VertexRecoveryData;
 import org.apache.tez.dag.app.TaskAttemptEventInfo;
 import org.apache.tez.dag.app.TaskCommunicatorManagerInterface;
@@ -115,6 +119,7 @@ import org.apache.tez.dag.app.dag.VertexState;
 import org.apache.tez.dag.app.dag.VertexTerminationCause;
 import org.apache.tez.dag.app.dag.event.CallableEvent;
 import org.apache.tez.dag.app.dag.event.DAGEvent;
+import org.apache.tez.dag.app.dag.event.DAGEventCounterUpdate;
 import org.apache.tez.dag.app.dag.event.DAGEventDiagnosticsUpdate;
 import org.apache.tez.dag.app.dag.event.DAGEventType;
 import org.apache.tez.dag.app.dag.event.DAGEventVertexCompleted;
@@ -410,6 +415,14 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
           .addTransition(VertexState.INITED, VertexState.INITED,
               VertexEventType.V_SOURCE_VERTEX_STARTED,
               new SourceVertexStartedTransition())
+          .addTransition(VertexState.INITED,
+              EnumSet.of(VertexState.INITED, VertexState.FAILED),
+              VertexEventType.V_ROOT_INPUT_INITIALIZED,
+              new RootInputInitializedTransition())
+          .addTransition(VertexState.INITED,
+              EnumSet.of(VertexState.INITED, VertexState.FAILED),
+              VertexEventType.V_INPUT_DATA_INFORMATION,
+              new InputDataInformationTransition())
           .addTransition(VertexState.INITED,
               EnumSet.of(VertexState.INITED),
               VertexEventType.V_SOURCE_TASK_ATTEMPT_COMPLETED,
@@ -440,6 +453,14 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
           .addTransition(VertexState.RUNNING, VertexState.RUNNING,
               VertexEventType.V_TASK_ATTEMPT_COMPLETED,
               TASK_ATTEMPT_COMPLETED_EVENT_TRANSITION)
+          .addTransition(VertexState.RUNNING,
+              EnumSet.of(VertexState.RUNNING, VertexState.TERMINATING),
+              VertexEventType.V_ROOT_INPUT_INITIALIZED,
+              new RootInputInitializedTransition())
+          .addTransition(VertexState.RUNNING,
+              EnumSet.of(VertexState.RUNNING, VertexState.TERMINATING),
+              VertexEventType.V_INPUT_DATA_INFORMATION,
+              new InputDataInformationTransition())
           .addTransition(VertexState.RUNNING,
               EnumSet.of(VertexState.RUNNING, VertexState.TERMINATING),
               VertexEventType.V_SOURCE_TASK_ATTEMPT_COMPLETED,
@@ -507,6 +528,11 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
               EnumSet.of(VertexState.TERMINATING),
               VertexEventType.V_MANAGER_USER_CODE_ERROR,
               new VertexManagerUserCodeErrorTransition())
+          // Ignore-able events
+          // an initializer which added all its events may complete after the tasks
+          .addTransition(VertexState.COMMITTING, VertexState.COMMITTING,
+              EnumSet.of(VertexEventType.V_ROOT_INPUT_INITIALIZED,
+                  VertexEventType.V_INPUT_DATA_INFORMATION))
    
           // Transitions from TERMINATING state.
           .addTransition
@@ -530,6 +556,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
                   VertexEventType.V_ROOT_INPUT_FAILED,
                   VertexEventType.V_SOURCE_VERTEX_STARTED,
                   VertexEventType.V_ROOT_INPUT_INITIALIZED,
+                  VertexEventType.V_INPUT_DATA_INFORMATION,
                   VertexEventType.V_NULL_EDGE_INITIALIZED,
                   VertexEventType.V_ROUTE_EVENT,
                   VertexEventType.V_SOURCE_TASK_ATTEMPT_COMPLETED,
@@ -562,6 +589,8 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
           .addTransition(VertexState.SUCCEEDED, VertexState.SUCCEEDED,
               EnumSet.of(VertexEventType.V_TERMINATE,
                   VertexEventType.V_ROOT_INPUT_FAILED,
+                  VertexEventType.V_ROOT_INPUT_INITIALIZED,
+                  VertexEventType.V_INPUT_DATA_INFORMATION,
                   VertexEventType.V_TASK_ATTEMPT_COMPLETED,
                   // after we are done reruns of source tasks should not affect
                   // us. These reruns may be triggered by other consumer vertices.
@@ -722,6 +751,10 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
   private final List<OutputSpec> additionalOutputSpecs = new ArrayList<OutputSpec>();
   private Set<String> inputsWithInitializers;
   private int numInitializedInputs;
+  // inputs whose initializers have sent events, and will send more
+  private final Set<String> runningInitializerInputs = new HashSet<String>();
+  // number of sets of root input events given to the vertex manager
+  private int numInitializerEventSets = 0;
   @VisibleForTesting
   int numInitializerCompletionsHandled = 0;
   private boolean startSignalPending = false;
@@ -1190,9 +1223,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
         return fullCounters;
       }
 
-      TezCounters counters = new TezCounters();
-      counters.incrAllCounters(this.counters);
-      return incrTaskCounters(counters, tasks.values());
+      return aggregateCounters();
 
     } finally {
       readLock.unlock();
@@ -1219,9 +1250,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
         return fullCounters;
       }
 
-      TezCounters counters = new TezCounters();
-      counters.incrAllCounters(this.counters);
-      cachedCounters = incrTaskCounters(counters, tasks.values());
+      cachedCounters = aggregateCounters();
       return cachedCounters;
     } finally {
       readLock.unlock();
@@ -1329,12 +1358,15 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
     return false;
   }
 
-  public static TezCounters incrTaskCounters(
-      TezCounters counters, Collection<Task> tasks) {
-    for (Task task : tasks) {
-      counters.incrAllCounters(task.getCounters());
+  // The counters of the tasks are added up in compact form, which does not copy the counters of
+  // each task, and converted once for the vertex.
+  private TezCounters aggregateCounters() {
+    CompactCounters aggregate = new CompactCounters(dag.getCounterIndex());
+    aggregate.incrAllCounters(counters);
+    for (Task task : tasks.values()) {
+      task.aggregateCounters(aggregate);
     }
-    return counters;
+    return aggregate.toTezCounters();
   }
 
   public static VertexStats updateVertexStats(
@@ -2004,12 +2036,29 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
       VertexInitializedEvent initEvt = new VertexInitializedEvent(vertexId, vertexName,
           initTimeRequested, initedTime, numTasks,
           getProcessorName(), getAdditionalInputs(), initGeneratedEvents,
-          servicePluginInfo);
+          servicePluginInfo, isInitializerEventsPending());
       this.appContext.getHistoryHandler().handle(
               new DAGHistoryEvent(getDAGId(), initEvt));
     }
   }
 
+  /**
+   * Records the events sent by initializers after the vertex was initialized, so that recovery
+   * can route them along with the events generated before the vertex was initialized.
+   */
+  void logAddedInitGeneratedEvents(List<TezEvent> addedEvents) {
+    VertexInitializedEvent addedEvt = VertexInitializedEvent.createAddedEvents(vertexId,
+        vertexName, new ArrayList<TezEvent>(addedEvents), isInitializerEventsPending());
+    this.appContext.getHistoryHandler().handle(
+        new DAGHistoryEvent(getDAGId(), addedEvt));
+  }
+
+  // Initializers which send events before they complete may send further events
+  private boolean isInitializerEventsPending() {
+    return !runningInitializerInputs.isEmpty()
+        || numInitializerCompletionsHandled != numInitializerEventSets;
+  }
+
   void logJobHistoryVertexStartedEvent() {
     if (recoveryData == null
         || !recoveryData.isVertexStarted()) {
@@ -2116,6 +2165,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
         CallableEvent commitCallableEvent = new CallableEvent(commitCallback) {
           @Override
           public Void call() throws Exception {
+            long startTime = vertex.clock.getTime();
             try {
               TezUtilsInternal.setHadoopCallerContext(vertex.appContext.getHadoopShim(),
                   vertex.vertexId);
@@ -2130,12 +2180,17 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
               });
             } finally {
               vertex.appContext.getHadoopShim().clearHadoopCallerContext();
+              DAGEventCounterUpdate counterUpdate = new DAGEventCounterUpdate(vertex.getDAGId());
+              counterUpdate.addCounterUpdate(DAGCounter.OUTPUT_COMMIT_TIME_MILLIS,
+                  vertex.clock.getTime() - startTime);
+              vertex.eventHandler.handle(counterUpdate);
             }
             return null;
           }
         };
         ListenableFuture<Void> commitFuture = 
-            vertex.getAppContext().getExecService().submit(commitCallableEvent);
+            vertex.getAppContext().getCommitScheduler().submit(
+                "output=" + outputName + " of vertex=" + vertex.logIdentifier, commitCallableEvent);
         Futures.addCallback(commitFuture, commitCallableEvent.getCallback());
         vertex.commitFutures.put(outputName, commitFuture);
       }
@@ -3029,24 +3084,41 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
     @Override
     public VertexState transition(VertexImpl vertex, VertexEvent event) {
       VertexEventRootInputInitialized liInitEvent = (VertexEventRootInputInitialized) event;
+      String inputName = liInitEvent.getInputName();
       VertexState state = vertex.getState();
-      if (state == VertexState.INITIALIZING) {
+      if (state == VertexState.INITIALIZING || state == VertexState.INITED
+          || state == VertexState.RUNNING) {
         try {
-          vertex.vertexManager.onRootVertexInitialized(liInitEvent.getInputName(), vertex
-              .getAdditionalInputs().get(liInitEvent.getInputName()).getIODescriptor(),
-              liInitEvent.getEvents());
+          vertex.vertexManager.onRootVertexInitialized(inputName, vertex
+              .getAdditionalInputs().get(inputName).getIODescriptor(),
+              liInitEvent.getEvents(), liInitEvent.isInitializerRunning());
+          vertex.numInitializerEventSets++;
         } catch (AMUserCodeException e) {
-            String msg = "Exception in " + e.getSource() + ", vertex:" + vertex.getLogIdentifier();
-            LOG.error(msg, e);
-            vertex.finished(VertexState.FAILED,
-                VertexTerminationCause.AM_USERCODE_FAILURE, msg
-                + "," + ExceptionUtils.getStackTrace(e.getCause()));
-            return VertexState.FAILED;
+          if (state != VertexState.INITIALIZING) {
+            // fail via the same path as errors from the vertex manager callbacks
+            vertex.eventHandler.handle(new VertexEventManagerUserCodeError(
+                vertex.getVertexId(), e));
+            return state;
+          }
+          String msg = "Exception in " + e.getSource() + ", vertex:" + vertex.getLogIdentifier();
+          LOG.error(msg, e);
+          vertex.finished(VertexState.FAILED,
+              VertexTerminationCause.AM_USERCODE_FAILURE, msg
+              + "," + ExceptionUtils.getStackTrace(e.getCause()));
+          return VertexState.FAILED;
         }
       }
 
-      vertex.numInitializedInputs++;
-      if (vertex.numInitializedInputs == vertex.inputsWithInitializers.size()) {
+      // Initializers sending events before they complete initialize the input with their
+      // first events
+      if (!vertex.runningInitializerInputs.remove(inputName)) {
+        vertex.numInitializedInputs++;
+      }
+      if (liInitEvent.isInitializerRunning()) {
+        vertex.runningInitializerInputs.add(inputName);
+      }
+      if (vertex.numInitializedInputs == vertex.inputsWithInitializers.size()
+          && vertex.runningInitializerInputs.isEmpty()) {
         // All inputs initialized, shutdown the initializer.
         vertex.rootInputInitializerManager.shutdown();
         vertex.rootInputInitializerManager = null;
@@ -3068,13 +3140,28 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
       VertexEventInputDataInformation iEvent = (VertexEventInputDataInformation) event;
       List<TezEvent> inputInfoEvents = iEvent.getEvents();
       try {
-        if (inputInfoEvents != null && !inputInfoEvents.isEmpty()) {
-          vertex.initGeneratedEvents.addAll(inputInfoEvents);
+        boolean hasEvents = inputInfoEvents != null && !inputInfoEvents.isEmpty();
+        if (vertex.getState() == VertexState.INITIALIZING) {
+          if (hasEvents) {
+            vertex.initGeneratedEvents.addAll(inputInfoEvents);
+          }
+        } else if (hasEvents || !vertex.isInitializerEventsPending()) {
+          // events sent by initializers after the vertex was initialized, and their completion
+          vertex.logAddedInitGeneratedEvents(
+              hasEvents ? inputInfoEvents : Collections.<TezEvent>emptyList());
+        }
+        if (hasEvents) {
           vertex.handleRoutedTezEvents(inputInfoEvents, false);
         }
       } catch (AMUserCodeException e) {
         String msg = "Exception in " + e.getSource() + ", vertex:" + vertex.getLogIdentifier();
         LOG.error(msg, e);
+        if (vertex.getState() == VertexState.RUNNING) {
+          vertex.addDiagnostic(msg + "," + ExceptionUtils.getStackTrace(e.getCause()));
+          vertex.tryEnactKill(VertexTerminationCause.AM_USERCODE_FAILURE,
+              TaskTerminationCause.AM_USERCODE_FAILURE);
+          return VertexState.TERMINATING;
+        }
         vertex.finished(VertexState.FAILED, VertexTerminationCause.AM_USERCODE_FAILURE, msg + ","
             + ExceptionUtils.getStackTrace(e.getCause()));
         return VertexState.FAILED;
@@ -3083,7 +3170,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
       // done. check if we need to do the initialization
       if (vertex.getState() == VertexState.INITIALIZING && vertex.initWaitsForRootInitializers) {
         if (vertex.numInitializedInputs == vertex.inputsWithInitializers.size()
-            && vertex.numInitializerCompletionsHandled == vertex.inputsWithInitializers.size()) {
+            && vertex.numInitializerCompletionsHandled == vertex.numInitializerEventSets) {
           // set the wait flag to false if all initializers are done and InputDataInformation are received from VM
           vertex.initWaitsForRootInitializers = false;
         }
@@ -3268,29 +3355,20 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
     }
 
     if (outputCommitters != null) {
-      LOG.info("Invoking committer abort for vertex, vertexId=" + logIdentifier);
-      try {
-        TezUtilsInternal.setHadoopCallerContext(appContext.getHadoopShim(), vertexId);
-        dagUgi.doAs(new PrivilegedExceptionAction<Void>() {
-          @Override
-          public Void run() {
-            for (Entry<String, OutputCommitter> entry : outputCommitters.entrySet()) {
-              try {
-                LOG.info("Invoking committer abort for output=" + entry.getKey() + ", vertexId="
-                    + logIdentifier);
-                entry.getValue().abortOutput(finalState);
-              } catch (Exception e) {
-                LOG.warn("Could not abort committer for output=" + entry.getKey() + ", vertexId="
-                    + logIdentifier, e);
-              }
-            }
-            return null;
-          }
-        });
-      } catch (Exception e) {
-        throw new TezUncheckedException("Unknown error while attempting VertexCommitter(s) abort", e);
-      } finally {
-        appContext.getHadoopShim().clearHadoopCallerContext();
+      Runnable abort = new Runnable() {
+        @Override
+        public void run() {
+          abortOutputs(finalState);
+        }
+      };
+      // A commit which failed on a timeout may still be running, the outputs are only aborted
+      // once it has stopped
+      OutputCommitScheduler commitScheduler = appContext.getCommitScheduler();
+      if (commitScheduler != null && commitScheduler.deferUntilCommitsStopped(abort)) {
+        LOG.info("Deferring committer abort until the running commits have stopped, vertexId="
+            + logIdentifier);
+      } else {
+        abort.run();
       }
     }
     if (finishTime == 0) {
@@ -3298,6 +3376,33 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
     }
   }
 
+  private void abortOutputs(final VertexStatus.State finalState) {
+    LOG.info("Invoking committer abort for vertex, vertexId=" + logIdentifier);
+    try {
+      TezUtilsInternal.setHadoopCallerContext(appContext.getHadoopShim(), vertexId);
+      dagUgi.doAs(new PrivilegedExceptionAction<Void>() {
+        @Override
+        public Void run() {
+          for (Entry<String, OutputCommitter> entry : outputCommitters.entrySet()) {
+            try {
+              LOG.info("Invoking committer abort for output=" + entry.getKey() + ", vertexId="
+                  + logIdentifier);
+              entry.getValue().abortOutput(finalState);
+            } catch (Exception e) {
+              LOG.warn("Could not abort committer for output=" + entry.getKey() + ", vertexId="
+                  + logIdentifier, e);
+            }
+          }
+          return null;
+        }
+      });
+    } catch (Exception e) {
+      throw new TezUncheckedException("Unknown error while attempting VertexCommitter(s) abort", e);
+    } finally {
+      appContext.getHadoopShim().clearHadoopCallerContext();
+    }
+  }
+
   private void mayBeConstructFinalFullCounters() {
     // Calculating full-counters. This should happen only once for the vertex.
     synchronized (this.fullCountersLock) {
@@ -3316,14 +3421,11 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
 
   @Private
   public void constructFinalFullcounters() {
-    this.fullCounters = new TezCounters();
-    this.fullCounters.incrAllCounters(counters);
+    this.fullCounters = aggregateCounters();
     this.vertexStats = new VertexStats();
 
     for (Task t : this.tasks.values()) {
       vertexStats.updateStats(t.getReport());
-      TezCounters counters = t.getCounters();
-      this.fullCounters.incrAllCounters(counters);
     }
   }
 
@@ -4005,10 +4107,11 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
           }
           if (getState() == VertexState.NEW) {
             pendingInitializerEvents.add(tezEvent);
-          } else  if (getState() == VertexState.INITIALIZING) {
+          } else  if (getState() == VertexState.INITIALIZING || rootInputInitializerManager != null) {
+            // initializers which send events before they complete may run past INITIALIZING
             rootInputInitializerManager.handleInitializerEvents(Collections.singletonList(tezEvent));
           } else {
-            // Currently, INITED and subsequent states means Initializer complete / failure
+            // Otherwise INITED and subsequent states means Initializer complete / failure
             if (LOG.isDebugEnabled()) {
               LOG.debug("Dropping event" + tezEvent + " since state is not INITIALIZING in "
                   + getLogIdentifier() + ", state=" + getState());
@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -102,6 +103,9 @@ public class VertexManager {
   private final LinkedBlockingQueue<VertexManagerEvent> eventQueue;
   private final AtomicBoolean eventInFlight;
   private final AtomicBoolean pluginFailed;
+  // root inputs whose initializers are still sending events. Updated in the plugin thread
+  private final Set<String> runningRootInputInitializers =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
   private static final Logger LOG = LoggerFactory.getLogger(VertexManager.class);
   private final VertexManagerCallback VM_CALLBACK = new VertexManagerCallback();
@@ -312,6 +316,13 @@ public class VertexManager {
       return appContext.getApplicationAttemptId().getAttemptId();
     }
 
+    @Override
+    public boolean isRootInputInitializerRunning(String inputName) {
+      checkAndThrowIfDone();
+      verifyIsRootInput(inputName);
+      return runningRootInputInitializers.contains(inputName);
+    }
+
     private void verifyIsRootInput(String inputName) {
       Preconditions.checkState(managedVertex.getAdditionalInputs().get(inputName) != null,
           "Cannot add events for non-root inputs");
@@ -517,12 +528,21 @@ public class VertexManager {
 
   public void onRootVertexInitialized(String inputName,
       InputDescriptor inputDescriptor, List<Event> events) throws AMUserCodeException {
+    onRootVertexInitialized(inputName, inputDescriptor, events, false);
+  }
+
+  /**
+   * @param initializerRunning true if the initializer of the input will send more events
+   */
+  public void onRootVertexInitialized(String inputName, InputDescriptor inputDescriptor,
+      List<Event> events, boolean initializerRunning) throws AMUserCodeException {
     if (LOG.isDebugEnabled()) {
       LOG.debug("vertex:" + managedVertex.getLogIdentifier() + "; enqueueing onRootVertexInitialized"
-          + " on input:" + inputName + ", current task events size is " + rootInputInitEventQueue.size());
+          + " on input:" + inputName + ", current task events size is " + rootInputInitEventQueue.size()
+          + ", initializerRunning: " + initializerRunning);
     }
     enqueueAndScheduleNextEvent(new VertexManagerEventRootInputInitialized(inputName,
-        inputDescriptor, events));
+        inputDescriptor, events, initializerRunning));
   }
 
   private class VertexManagerCallback implements FutureCallback<Void> {
@@ -652,17 +672,24 @@ public class VertexManager {
     private final String inputName;
     private final InputDescriptor inputDescriptor;
     private final List<Event> events;
+    private final boolean initializerRunning;
     
     public VertexManagerEventRootInputInitialized(String inputName,
-        InputDescriptor inputDescriptor, List<Event> events) {
+        InputDescriptor inputDescriptor, List<Event> events, boolean initializerRunning) {
       super(new VertexManagerRootInputInitializedCallback());
       this.inputName = inputName;
       this.inputDescriptor = inputDescriptor;
       this.events = events;
+      this.initializerRunning = initializerRunning;
     }
 
     @Override
     public void invoke() throws Exception {
+      if (initializerRunning) {
+        runningRootInputInitializers.add(inputName);
+      } else {
+        runningRootInputInitializers.remove(inputName);
+      }
       plugin.onRootVertexInitialized(inputName, inputDescriptor, events);
     }
 
@@ -34,7 +34,6 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -148,9 +147,9 @@ public class LocalContainerLauncher extends DagContainerLauncher {
     } else {
       localEnv = System.getenv();
     }
-    numExecutors = conf.getInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS,
-        TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS_DEFAULT);
-    Preconditions.checkState(numExecutors >=1, "Must have at least 1 executor");
+    numExecutors = TezCommonUtils.getInlineTaskExecutionMaxTasks(conf);
+    LOG.info("Running up to " + numExecutors + " tasks in parallel, with "
+        + (Runtime.getRuntime().maxMemory() / numExecutors >> 20) + " MB of memory per task");
     ExecutorService rawExecutor = Executors.newFixedThreadPool(numExecutors,
         new ThreadFactoryBuilder().setDaemon(true).setNameFormat("LocalTaskExecutionThread #%d")
             .build());
@@ -28,6 +28,7 @@ import java.util.LinkedHashMap;
 
 import com.google.common.primitives.Ints;
 
+import org.apache.tez.common.TezCommonUtils;
 import org.apache.tez.common.TezUtils;
 import org.apache.tez.serviceplugins.api.TaskScheduler;
 import org.apache.tez.serviceplugins.api.TaskSchedulerContext;
@@ -42,7 +43,6 @@ import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.api.records.Priority;
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.tez.serviceplugins.api.TaskAttemptEndReason;
-import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezUncheckedException;
 import org.apache.tez.common.ContainerSignatureMatcher;
 
@@ -327,8 +327,7 @@ public class LocalTaskSchedulerService extends TaskScheduler {
       this.localContainerFactory = localContainerFactory;
       this.taskAllocations = taskAllocations;
       this.taskSchedulerContext = taskSchedulerContext;
-      this.MAX_TASKS = conf.getInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS,
-          TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS_DEFAULT);
+      this.MAX_TASKS = TezCommonUtils.getInlineTaskExecutionMaxTasks(conf);
     }
 
     public void addAllocateTaskRequest(Object task, Resource capability, Priority priority,
@@ -86,6 +86,13 @@ public class YarnTaskSchedulerService extends TaskScheduler
                              implements AMRMClientAsync.CallbackHandler {
   private static final Logger LOG = LoggerFactory.getLogger(YarnTaskSchedulerService.class);
 
+  /**
+   * The number of requests checked for a vertex level match once a request matching a re-used
+   * container has been found, so that the match does not scan all the pending requests.
+   */
+  @VisibleForTesting
+  static final int MAX_VERTEX_AFFINITY_CANDIDATES = 64;
+
 
 
   final TezAMRMClientAsync<CookieContainerRequest> amRmClient;
@@ -95,6 +102,7 @@ public class YarnTaskSchedulerService extends TaskScheduler
   private boolean shouldReuseContainers;
   private boolean reuseRackLocal;
   private boolean reuseNonLocal;
+  private boolean reuseWithVertexAffinity;
 
   // type is linked hash map to maintain order of incoming requests
   Map<Object, CookieContainerRequest> taskRequests =
@@ -298,6 +306,9 @@ public class YarnTaskSchedulerService extends TaskScheduler
       ((!reuseRackLocal && !reuseNonLocal) || (reuseRackLocal)),
       "Re-use Rack-Local cannot be disabled if Re-use Non-Local has been"
       + " enabled");
+    reuseWithVertexAffinity = conf.getBoolean(
+        TezConfiguration.TEZ_AM_CONTAINER_REUSE_VERTEX_AFFINITY_ENABLED,
+        TezConfiguration.TEZ_AM_CONTAINER_REUSE_VERTEX_AFFINITY_ENABLED_DEFAULT);
 
     localitySchedulingDelay = conf.getLong(
       TezConfiguration.TEZ_AM_CONTAINER_REUSE_LOCALITY_DELAY_ALLOCATION_MILLIS,
@@ -348,6 +359,7 @@ public class YarnTaskSchedulerService extends TaskScheduler
             ", containerReuseEnabled: " + shouldReuseContainers +
             ", reuseRackLocal: " + reuseRackLocal +
             ", reuseNonLocal: " + reuseNonLocal + 
+            ", reuseWithVertexAffinity: " + reuseWithVertexAffinity +
             ", localitySchedulingDelay: " + localitySchedulingDelay +
             ", preemptionPercentage: " + preemptionPercentage +
             ", preemptionMaxWaitTime: " + preemptionMaxWaitTime +
@@ -1480,10 +1492,27 @@ public class YarnTaskSchedulerService extends TaskScheduler
     if (pRequestsList == null || pRequestsList.isEmpty()) {
       return null;
     }
+    Object lastTaskSignature = getLastTaskSignatureForVertexAffinity(container);
     CookieContainerRequest firstMatch = null;
+    CookieContainerRequest vertexMatch = null;
+    int vertexAffinityCandidates = 0;
     for (Collection<CookieContainerRequest> requests : pRequestsList) {
       for (CookieContainerRequest cookieContainerRequest : requests) {
+        if (vertexMatch == null && lastTaskSignature != null && firstMatch != null
+            && ++vertexAffinityCandidates > MAX_VERTEX_AFFINITY_CANDIDATES) {
+          // give up on a vertex level match
+          lastTaskSignature = null;
+          if (!considerContainerAffinity) {
+            return firstMatch;
+          }
+        }
+        // a request of the vertex which last ran on the container
+        boolean vertexMatchCandidate = vertexMatch == null && lastTaskSignature != null
+            && containerSignatureMatcher.isExactMatch(lastTaskSignature,
+                cookieContainerRequest.getCookie().getContainerSignature());
         if (firstMatch == null || // we dont have a match. So look for one 
+            // we have a match but are looking for a better vertex level match.
+            vertexMatchCandidate ||
             // we have a match but are looking for a better container level match.
             // skip the expensive canAssignTaskToContainer() if the request is 
             // not affinitized to the container
@@ -1492,7 +1521,13 @@ public class YarnTaskSchedulerService extends TaskScheduler
           if (canAssignTaskToContainer(cookieContainerRequest, container)) {
             // request matched to container
             if (!considerContainerAffinity) {
-              return cookieContainerRequest;
+              if (lastTaskSignature == null || vertexMatchCandidate) {
+                return cookieContainerRequest;
+              }
+              if (firstMatch == null) {
+                firstMatch = cookieContainerRequest;
+              }
+              continue;
             }
             ContainerId affCId = cookieContainerRequest.getAffinitizedContainer();
             boolean canMatchTaskWithAffinity = true;
@@ -1520,6 +1555,9 @@ public class YarnTaskSchedulerService extends TaskScheduler
                     + " affContainer: " + affCId);
               }
             } else {
+              if (vertexMatchCandidate) {
+                vertexMatch = cookieContainerRequest;
+              }
               firstMatch = cookieContainerRequest;
             }
           }
@@ -1527,7 +1565,22 @@ public class YarnTaskSchedulerService extends TaskScheduler
       }
     }
     
-    return firstMatch;
+    return vertexMatch != null ? vertexMatch : firstMatch;
+  }
+
+  /**
+   * @return the container signature of the last task run on the container, if the container
+   *         should prefer the tasks of that vertex
+   */
+  private Object getLastTaskSignatureForVertexAffinity(Container container) {
+    if (!reuseWithVertexAffinity) {
+      return null;
+    }
+    HeldContainer heldContainer = heldContainers.get(container.getId());
+    if (heldContainer == null || heldContainer.isNew()) {
+      return null;
+    }
+    return heldContainer.getLastTaskInfo().getCookie().getContainerSignature();
   }
 
   private boolean canAssignTaskToContainer(
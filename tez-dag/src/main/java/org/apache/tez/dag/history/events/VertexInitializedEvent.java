@@ -40,6 +40,7 @@ import org.apache.tez.dag.recovery.records.RecoveryProtos.TezEventProto;
 import org.apache.tez.dag.recovery.records.RecoveryProtos.VertexInitializedProto;
 import org.apache.tez.runtime.api.impl.TezEvent;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
 public class VertexInitializedEvent implements HistoryEvent {
@@ -53,6 +54,10 @@ public class VertexInitializedEvent implements HistoryEvent {
   private Map<String, RootInputLeafOutput<InputDescriptor, InputInitializerDescriptor>> additionalInputs;
   private List<TezEvent> initGeneratedEvents;
   private ServicePluginInfo servicePluginInfo;
+  // Initializers of the vertex were still sending events when the event was recorded
+  private boolean initializersRunning = false;
+  // The event only records the events added by initializers after the vertex was initialized
+  private boolean addedEvents = false;
 
   public VertexInitializedEvent() {
   }
@@ -62,6 +67,16 @@ public class VertexInitializedEvent implements HistoryEvent {
       int numTasks, String processorName,
       Map<String, RootInputLeafOutput<InputDescriptor, InputInitializerDescriptor>> additionalInputs,
       List<TezEvent> initGeneratedEvents, ServicePluginInfo servicePluginInfo) {
+    this(vertexId, vertexName, initRequestedTime, initedTime, numTasks, processorName,
+        additionalInputs, initGeneratedEvents, servicePluginInfo, false);
+  }
+
+  public VertexInitializedEvent(TezVertexID vertexId,
+      String vertexName, long initRequestedTime, long initedTime,
+      int numTasks, String processorName,
+      Map<String, RootInputLeafOutput<InputDescriptor, InputInitializerDescriptor>> additionalInputs,
+      List<TezEvent> initGeneratedEvents, ServicePluginInfo servicePluginInfo,
+      boolean initializersRunning) {
     this.vertexName = vertexName;
     this.vertexID = vertexId;
     this.initRequestedTime = initRequestedTime;
@@ -71,6 +86,41 @@ public class VertexInitializedEvent implements HistoryEvent {
     this.additionalInputs = additionalInputs;
     this.initGeneratedEvents = initGeneratedEvents;
     this.servicePluginInfo = servicePluginInfo;
+    this.initializersRunning = initializersRunning;
+  }
+
+  /**
+   * Records the events sent by initializers after the vertex was initialized. These are only
+   * used by recovery, and are merged into the event recorded when the vertex was initialized.
+   */
+  public static VertexInitializedEvent createAddedEvents(TezVertexID vertexId,
+      String vertexName, List<TezEvent> addedEvents, boolean initializersRunning) {
+    VertexInitializedEvent event = new VertexInitializedEvent();
+    event.vertexID = vertexId;
+    event.vertexName = vertexName;
+    event.initGeneratedEvents = addedEvents;
+    event.initializersRunning = initializersRunning;
+    event.addedEvents = true;
+    return event;
+  }
+
+  /**
+   * @param added events recorded via {@link #createAddedEvents}
+   * @return an event with the init generated events of this event followed by the added events
+   */
+  public VertexInitializedEvent merge(VertexInitializedEvent added) {
+    Preconditions.checkArgument(added.addedEvents && !addedEvents,
+        "Only added events can be merged into the initialized event");
+    List<TezEvent> events = Lists.newArrayList();
+    if (initGeneratedEvents != null) {
+      events.addAll(initGeneratedEvents);
+    }
+    if (added.initGeneratedEvents != null) {
+      events.addAll(added.initGeneratedEvents);
+    }
+    return new VertexInitializedEvent(vertexID, vertexName, initRequestedTime, initedTime,
+        numTasks, processorName, additionalInputs, events, servicePluginInfo,
+        added.initializersRunning);
   }
 
   @Override
@@ -85,7 +135,7 @@ public class VertexInitializedEvent implements HistoryEvent {
 
   @Override
   public boolean isHistoryEvent() {
-    return true;
+    return !addedEvents;
   }
 
   public RecoveryProtos.VertexInitializedProto toProto() throws IOException {
@@ -116,6 +166,8 @@ public class VertexInitializedEvent implements HistoryEvent {
         .setInitRequestedTime(initRequestedTime)
         .setInitTime(initedTime)
         .setNumTasks(numTasks)
+        .setInitializersRunning(initializersRunning)
+        .setAddedEvents(addedEvents)
         .build();
   }
 
@@ -125,6 +177,8 @@ public class VertexInitializedEvent implements HistoryEvent {
     this.initRequestedTime = proto.getInitRequestedTime();
     this.initedTime = proto.getInitTime();
     this.numTasks = proto.getNumTasks();
+    this.initializersRunning = proto.getInitializersRunning();
+    this.addedEvents = proto.getAddedEvents();
     if (proto.getInputsCount() > 0) {
       this.additionalInputs =
           new LinkedHashMap<String, RootInputLeafOutput<InputDescriptor, InputInitializerDescriptor>>();
@@ -178,7 +232,9 @@ public class VertexInitializedEvent implements HistoryEvent {
         + ", initGeneratedEventsCount="
         + (initGeneratedEvents != null ? initGeneratedEvents.size() : 0)
         + ", servicePluginInfo="
-        + (servicePluginInfo != null ? servicePluginInfo : "null");
+        + (servicePluginInfo != null ? servicePluginInfo : "null")
+        + ", initializersRunning=" + initializersRunning
+        + ", addedEvents=" + addedEvents;
   }
 
   public TezVertexID getVertexID() {
@@ -218,4 +274,12 @@ public class VertexInitializedEvent implements HistoryEvent {
     return servicePluginInfo;
   }
 
+  public boolean isInitializersRunning() {
+    return initializersRunning;
+  }
+
+  public boolean isAddedEvents() {
+    return addedEvents;
+  }
+
 }
@@ -0,0 +1,387 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.logging.impl;
+
+import java.util.List;
+
+import org.apache.tez.common.ATSConstants;
+import org.apache.tez.common.counters.CounterGroup;
+import org.apache.tez.common.counters.TezCounter;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.dag.app.dag.impl.TaskAttemptImpl.DataEventDependencyInfo;
+import org.apache.tez.dag.history.HistoryEvent;
+import org.apache.tez.dag.history.HistoryEventType;
+import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptStartedEvent;
+import org.apache.tez.dag.history.events.TaskFinishedEvent;
+import org.apache.tez.dag.history.events.TaskStartedEvent;
+import org.apache.tez.dag.history.logging.EntityTypes;
+import org.codehaus.jettison.json.JSONException;
+
+/**
+ * Streams history events as json into a {@link StringBuilder}, without building the
+ * {@link org.codehaus.jettison.json.JSONObject} tree created by {@link HistoryEventJsonConversion}.
+ * The task and task attempt events, which make up most of the history of a DAG, are written
+ * directly. All other events are converted through {@link HistoryEventJsonConversion}.
+ *
+ * The json written is the same as the one produced by
+ * {@link HistoryEventJsonConversion#convertToJson(HistoryEvent)}, including the order of the
+ * fields. A writer keeps no state between events and can be reused, but is not thread safe.
+ */
+public class HistoryEventJsonWriter {
+
+  private StringBuilder out;
+  // Whether the next value is the first one in the current object or array, or follows a key.
+  private boolean first;
+
+  /**
+   * Appends the json representation of the history event to the buffer.
+   */
+  public void write(HistoryEvent historyEvent, StringBuilder buffer) throws JSONException {
+    if (!historyEvent.isHistoryEvent()) {
+      throw new UnsupportedOperationException("Invalid Event, does not support history"
+          + ", eventType=" + historyEvent.getEventType());
+    }
+    this.out = buffer;
+    this.first = true;
+    try {
+      switch (historyEvent.getEventType()) {
+        case TASK_STARTED:
+          writeTaskStartedEvent((TaskStartedEvent) historyEvent);
+          break;
+        case TASK_FINISHED:
+          writeTaskFinishedEvent((TaskFinishedEvent) historyEvent);
+          break;
+        case TASK_ATTEMPT_STARTED:
+          writeTaskAttemptStartedEvent((TaskAttemptStartedEvent) historyEvent);
+          break;
+        case TASK_ATTEMPT_FINISHED:
+          writeTaskAttemptFinishedEvent((TaskAttemptFinishedEvent) historyEvent);
+          break;
+        default:
+          buffer.append(HistoryEventJsonConversion.convertToJson(historyEvent).toString());
+          break;
+      }
+    } finally {
+      this.out = null;
+    }
+  }
+
+  private void writeTaskStartedEvent(TaskStartedEvent event) {
+    startObject();
+    field(ATSConstants.ENTITY, event.getTaskID().toString());
+    field(ATSConstants.ENTITY_TYPE, EntityTypes.TEZ_TASK_ID.name());
+
+    // Related entities
+    key(ATSConstants.RELATED_ENTITIES);
+    startArray();
+    relatedEntity(event.getTaskID().getVertexID().toString(), EntityTypes.TEZ_VERTEX_ID.name());
+    endArray();
+
+    writeEvents(event.getStartTime(), HistoryEventType.TASK_STARTED);
+
+    // Other info
+    key(ATSConstants.OTHER_INFO);
+    startObject();
+    field(ATSConstants.START_TIME, event.getStartTime());
+    field(ATSConstants.SCHEDULED_TIME, event.getScheduledTime());
+    endObject();
+
+    endObject();
+  }
+
+  private void writeTaskFinishedEvent(TaskFinishedEvent event) {
+    startObject();
+    field(ATSConstants.ENTITY, event.getTaskID().toString());
+    field(ATSConstants.ENTITY_TYPE, EntityTypes.TEZ_TASK_ID.name());
+
+    writeEvents(event.getFinishTime(), HistoryEventType.TASK_FINISHED);
+
+    key(ATSConstants.OTHER_INFO);
+    startObject();
+    field(ATSConstants.START_TIME, event.getStartTime());
+    field(ATSConstants.FINISH_TIME, event.getFinishTime());
+    field(ATSConstants.TIME_TAKEN, (event.getFinishTime() - event.getStartTime()));
+    field(ATSConstants.STATUS, event.getState().name());
+    field(ATSConstants.DIAGNOSTICS, event.getDiagnostics());
+    writeCounters(event.getTezCounters());
+    if (event.getSuccessfulAttemptID() != null) {
+      field(ATSConstants.SUCCESSFUL_ATTEMPT_ID, event.getSuccessfulAttemptID().toString());
+    }
+    endObject();
+
+    endObject();
+  }
+
+  private void writeTaskAttemptStartedEvent(TaskAttemptStartedEvent event) {
+    startObject();
+    field(ATSConstants.ENTITY, event.getTaskAttemptID().toString());
+    field(ATSConstants.ENTITY_TYPE, EntityTypes.TEZ_TASK_ATTEMPT_ID.name());
+
+    // Related entities
+    key(ATSConstants.RELATED_ENTITIES);
+    startArray();
+    relatedEntity(event.getNodeId().toString(), ATSConstants.NODE_ID);
+    relatedEntity(event.getContainerId().toString(), ATSConstants.CONTAINER_ID);
+    relatedEntity(event.getTaskAttemptID().getTaskID().toString(), EntityTypes.TEZ_TASK_ID.name());
+    endArray();
+
+    writeEvents(event.getStartTime(), HistoryEventType.TASK_ATTEMPT_STARTED);
+
+    // Other info
+    key(ATSConstants.OTHER_INFO);
+    startObject();
+    field(ATSConstants.IN_PROGRESS_LOGS_URL, event.getInProgressLogsUrl());
+    field(ATSConstants.COMPLETED_LOGS_URL, event.getCompletedLogsUrl());
+    endObject();
+
+    endObject();
+  }
+
+  private void writeTaskAttemptFinishedEvent(TaskAttemptFinishedEvent event) {
+    startObject();
+    field(ATSConstants.ENTITY, event.getTaskAttemptID().toString());
+    field(ATSConstants.ENTITY_TYPE, EntityTypes.TEZ_TASK_ATTEMPT_ID.name());
+
+    writeEvents(event.getFinishTime(), HistoryEventType.TASK_ATTEMPT_FINISHED);
+
+    key(ATSConstants.OTHER_INFO);
+    startObject();
+    field(ATSConstants.CREATION_TIME, event.getCreationTime());
+    field(ATSConstants.ALLOCATION_TIME, event.getAllocationTime());
+    field(ATSConstants.START_TIME, event.getStartTime());
+    field(ATSConstants.FINISH_TIME, event.getFinishTime());
+    field(ATSConstants.TIME_TAKEN, (event.getFinishTime() - event.getStartTime()));
+    if (event.getCreationCausalTA() != null) {
+      field(ATSConstants.CREATION_CAUSAL_ATTEMPT, event.getCreationCausalTA().toString());
+    }
+    field(ATSConstants.STATUS, event.getState().name());
+    if (event.getTaskAttemptError() != null) {
+      field(ATSConstants.TASK_ATTEMPT_ERROR_ENUM, event.getTaskAttemptError().name());
+    }
+    if (event.getTaskFailureType() != null) {
+      field(ATSConstants.TASK_FAILURE_TYPE, event.getTaskFailureType().name());
+    }
+    field(ATSConstants.DIAGNOSTICS, event.getDiagnostics());
+    writeCounters(event.getCounters());
+    if (event.getDataEvents() != null && !event.getDataEvents().isEmpty()) {
+      writeDataEvents(event.getDataEvents());
+    }
+    if (event.getNodeId() != null) {
+      field(ATSConstants.NODE_ID, event.getNodeId().toString());
+    }
+    if (event.getContainerId() != null) {
+      field(ATSConstants.CONTAINER_ID, event.getContainerId().toString());
+    }
+    field(ATSConstants.IN_PROGRESS_LOGS_URL, event.getInProgressLogsUrl());
+    field(ATSConstants.COMPLETED_LOGS_URL, event.getCompletedLogsUrl());
+    field(ATSConstants.NODE_HTTP_ADDRESS, event.getNodeHttpAddress());
+    endObject();
+
+    endObject();
+  }
+
+  private void writeEvents(long timestamp, HistoryEventType eventType) {
+    key(ATSConstants.EVENTS);
+    startArray();
+    startObject();
+    field(ATSConstants.TIMESTAMP, timestamp);
+    field(ATSConstants.EVENT_TYPE, eventType.name());
+    endObject();
+    endArray();
+  }
+
+  private void relatedEntity(String entity, String entityType) {
+    startObject();
+    field(ATSConstants.ENTITY, entity);
+    field(ATSConstants.ENTITY_TYPE, entityType);
+    endObject();
+  }
+
+  /**
+   * Same layout as {@link org.apache.tez.dag.history.utils.DAGUtils#convertCountersToATSMap}:
+   * counters and groups without a value are left out.
+   */
+  private void writeCounters(TezCounters counters) {
+    key(ATSConstants.COUNTERS);
+    startObject();
+    if (counters != null) {
+      boolean groupsStarted = false;
+      for (CounterGroup group : counters) {
+        if (!hasNonZeroCounter(group)) {
+          continue;
+        }
+        if (!groupsStarted) {
+          key(ATSConstants.COUNTER_GROUPS);
+          startArray();
+          groupsStarted = true;
+        }
+        startObject();
+        field(ATSConstants.COUNTER_GROUP_NAME, group.getName());
+        if (!group.getDisplayName().equals(group.getName())) {
+          field(ATSConstants.COUNTER_GROUP_DISPLAY_NAME, group.getDisplayName());
+        }
+        key(ATSConstants.COUNTERS);
+        startArray();
+        for (TezCounter counter : group) {
+          if (counter.getValue() != 0) {
+            startObject();
+            field(ATSConstants.COUNTER_NAME, counter.getName());
+            if (!counter.getDisplayName().equals(counter.getName())) {
+              field(ATSConstants.COUNTER_DISPLAY_NAME, counter.getDisplayName());
+            }
+            field(ATSConstants.COUNTER_VALUE, counter.getValue());
+            endObject();
+          }
+        }
+        endArray();
+        endObject();
+      }
+      if (groupsStarted) {
+        endArray();
+      }
+    }
+    endObject();
+  }
+
+  private static boolean hasNonZeroCounter(CounterGroup group) {
+    for (TezCounter counter : group) {
+      if (counter.getValue() != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Same layout as
+   * {@link org.apache.tez.dag.history.utils.DAGUtils#convertDataEventDependecyInfoToATS}.
+   */
+  private void writeDataEvents(List<DataEventDependencyInfo> dataEvents) {
+    key(ATSConstants.LAST_DATA_EVENTS);
+    startObject();
+    key(ATSConstants.LAST_DATA_EVENTS);
+    startArray();
+    for (DataEventDependencyInfo dataEvent : dataEvents) {
+      startObject();
+      field(EntityTypes.TEZ_TASK_ATTEMPT_ID.name(), dataEvent.getTaskAttemptId() == null
+          ? "" : dataEvent.getTaskAttemptId().toString());
+      field(ATSConstants.TIMESTAMP, dataEvent.getTimestamp());
+      endObject();
+    }
+    endArray();
+    endObject();
+  }
+
+  private void startObject() {
+    separator();
+    out.append('{');
+    first = true;
+  }
+
+  private void endObject() {
+    out.append('}');
+    first = false;
+  }
+
+  private void startArray() {
+    separator();
+    out.append('[');
+    first = true;
+  }
+
+  private void endArray() {
+    out.append(']');
+    first = false;
+  }
+
+  private void key(String key) {
+    separator();
+    quote(key);
+    out.append(':');
+    first = true;
+  }
+
+  /**
+   * Null values are left out, the same way {@link org.codehaus.jettison.json.JSONObject#put}
+   * drops them.
+   */
+  private void field(String key, String value) {
+    if (value == null) {
+      return;
+    }
+    key(key);
+    quote(value);
+    first = false;
+  }
+
+  private void field(String key, long value) {
+    key(key);
+    out.append(value);
+    first = false;
+  }
+
+  private void separator() {
+    if (!first) {
+      out.append(',');
+    }
+  }
+
+  private void quote(String value) {
+    out.append('"');
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\b':
+          out.append("\\b");
+          break;
+        case '\f':
+          out.append("\\f");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          if (c < ' ') {
+            String hex = Integer.toHexString(c);
+            out.append("\\u");
+            for (int j = hex.length(); j < 4; ++j) {
+              out.append('0');
+            }
+            out.append(hex);
+          } else {
+            out.append(c);
+          }
+      }
+    }
+    out.append('"');
+  }
+}
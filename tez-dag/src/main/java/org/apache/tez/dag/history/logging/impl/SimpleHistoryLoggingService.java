@@ -18,8 +18,19 @@
 
 package org.apache.tez.dag.history.logging.impl;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -29,11 +40,18 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.history.DAGHistoryEvent;
 import org.apache.tez.dag.history.logging.HistoryLoggingService;
 import org.codehaus.jettison.json.JSONException;
-import org.codehaus.jettison.json.JSONObject;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class SimpleHistoryLoggingService extends HistoryLoggingService {
 
@@ -41,6 +59,10 @@ public class SimpleHistoryLoggingService extends HistoryLoggingService {
   private Path logFileLocation;
   private FileSystem logFileFS;
   private FSDataOutputStream outputStream;
+  private CompressionCodec codec;
+  private Compressor compressor;
+  // Only set when the history is not compressed, compressed batches have their own writers
+  private Writer writer;
   private LinkedBlockingQueue<DAGHistoryEvent> eventQueue =
       new LinkedBlockingQueue<DAGHistoryEvent>();
   public static final String RECORD_SEPARATOR = "\u0001" + System.getProperty("line.separator");
@@ -48,11 +70,24 @@ public class SimpleHistoryLoggingService extends HistoryLoggingService {
 
   private Thread eventHandlingThread;
   private AtomicBoolean stopped = new AtomicBoolean(false);
+  private int maxEventsPerBatch;
+  private ExecutorService conversionExecutor;
+  // Used to convert events on the thread writing them, along with the reused buffers.
+  private final HistoryEventJsonWriter jsonWriter = new HistoryEventJsonWriter();
+  private StringBuilder batchBuffer = new StringBuilder();
+  private final char[] writeBuffer = new char[8192];
+  private static final int MAX_RETAINED_BATCH_BUFFER_SIZE = 1024 * 1024;
 
   private int consecutiveErrors = 0;
   private int maxErrors;
   private boolean loggingDisabled = false;
 
+  // Stats, only updated while holding the lock on the service
+  private long eventsWritten = 0;
+  private long batchesWritten = 0;
+  private long writeTimeMillis = 0;
+  private int maxEventQueueSize = 0;
+
   public SimpleHistoryLoggingService() {
     super(SimpleHistoryLoggingService.class.getName());
   }
@@ -60,7 +95,14 @@ public class SimpleHistoryLoggingService extends HistoryLoggingService {
   @Override
   protected void serviceInit(Configuration conf) throws Exception {
     String logDirPath = conf.get(TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_DIR);
-    final String logFileName = LOG_FILE_NAME_PREFIX + "." + appContext.getApplicationAttemptId();
+    String codecClassName = conf.get(TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_COMPRESSION_CODEC);
+    String logFileName = LOG_FILE_NAME_PREFIX + "." + appContext.getApplicationAttemptId();
+    if (codecClassName != null && !codecClassName.isEmpty()) {
+      Class<? extends CompressionCodec> codecClass =
+          conf.getClassByName(codecClassName).asSubclass(CompressionCodec.class);
+      codec = ReflectionUtils.newInstance(codecClass, conf);
+      logFileName += codec.getDefaultExtension();
+    }
     if (logDirPath == null || logDirPath.isEmpty()) {
       String logDir = appContext.getLogDirs()[new Random().nextInt(appContext.getLogDirs().length)];
       LOG.info("Log file location for SimpleHistoryLoggingService not specified, defaulting to"
@@ -85,8 +127,27 @@ public class SimpleHistoryLoggingService extends HistoryLoggingService {
     }
     maxErrors = conf.getInt(TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_MAX_ERRORS,
         TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_MAX_ERRORS_DEFAULT);
+    maxEventsPerBatch = Math.max(1, conf.getInt(
+        TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_MAX_EVENTS_PER_BATCH,
+        TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_MAX_EVENTS_PER_BATCH_DEFAULT));
+    int maxQueueSize = conf.getInt(TezConfiguration.TEZ_HISTORY_LOGGING_QUEUE_MAX_SIZE,
+        TezConfiguration.TEZ_HISTORY_LOGGING_QUEUE_MAX_SIZE_DEFAULT);
+    if (maxQueueSize > 0) {
+      eventQueue = new LinkedBlockingQueue<DAGHistoryEvent>(maxQueueSize);
+    }
+    int conversionThreads = conf.getInt(TezConfiguration.TEZ_HISTORY_LOGGING_CONVERSION_THREADS,
+        TezConfiguration.TEZ_HISTORY_LOGGING_CONVERSION_THREADS_DEFAULT);
+    if (conversionThreads > 1) {
+      conversionExecutor = Executors.newFixedThreadPool(conversionThreads,
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("HistoryEventConversionThread #%d").build());
+    }
     LOG.info("Initializing SimpleHistoryLoggingService, logFileLocation=" + logFileLocation
-        + ", maxErrors=" + maxErrors);
+        + ", maxErrors=" + maxErrors
+        + ", maxEventsPerBatch=" + maxEventsPerBatch
+        + ", maxQueueSize=" + maxQueueSize
+        + ", conversionThreads=" + conversionThreads
+        + ", compressionCodec=" + (codec == null ? "none" : codec.getClass().getName()));
     super.serviceInit(conf);
   }
 
@@ -94,18 +155,25 @@ public class SimpleHistoryLoggingService extends HistoryLoggingService {
   protected void serviceStart() throws Exception {
     LOG.info("Starting SimpleHistoryLoggingService");
     outputStream = logFileFS.create(logFileLocation, true);
+    if (codec != null) {
+      compressor = CodecPool.getCompressor(codec);
+    } else {
+      writer = new OutputStreamWriter(outputStream, Charsets.UTF_8);
+    }
     eventHandlingThread = new Thread(new Runnable() {
       @Override
       public void run() {
-        DAGHistoryEvent event;
+        List<DAGHistoryEvent> events = new ArrayList<DAGHistoryEvent>(maxEventsPerBatch);
         while (!stopped.get() && !Thread.currentThread().isInterrupted()) {
           try {
-            event = eventQueue.take();
+            events.add(eventQueue.take());
           } catch (InterruptedException e) {
             LOG.info("EventQueue take interrupted. Returning");
             return;
           }
-          handleEvent(event);
+          eventQueue.drainTo(events, maxEventsPerBatch - 1);
+          handleEvents(events);
+          events.clear();
         }
       }
     }, "HistoryEventHandlingThread");
@@ -120,44 +188,100 @@ public class SimpleHistoryLoggingService extends HistoryLoggingService {
     stopped.set(true);
     if (eventHandlingThread != null) {
       eventHandlingThread.interrupt();
+      // Let the handling thread finish writing the batch it is working on before the
+      // remaining events are written out and the file is closed.
+      eventHandlingThread.join();
     }
-    while (!eventQueue.isEmpty()) {
-      DAGHistoryEvent event = eventQueue.poll();
-      if (event == null) {
-        break;
-      }
-      handleEvent(event);
+    List<DAGHistoryEvent> events = new ArrayList<DAGHistoryEvent>(maxEventsPerBatch);
+    while (eventQueue.drainTo(events, maxEventsPerBatch) > 0) {
+      handleEvents(events);
+      events.clear();
     }
-    try {
-      if (outputStream != null) {
-        outputStream.hflush();
-        outputStream.close();
+    synchronized (this) {
+      if (conversionExecutor != null) {
+        conversionExecutor.shutdownNow();
       }
-    } catch (IOException ioe) {
-      LOG.warn("Failed to close output stream", ioe);
+      try {
+        if (writer != null) {
+          writer.close();
+          writer = null;
+        } else if (outputStream != null) {
+          outputStream.close();
+        }
+        outputStream = null;
+      } catch (IOException ioe) {
+        LOG.warn("Failed to close output stream", ioe);
+      } finally {
+        if (compressor != null) {
+          CodecPool.returnCompressor(compressor);
+          compressor = null;
+        }
+      }
+      LOG.info("SimpleHistoryLoggingService stats"
+          + ", eventsWritten=" + eventsWritten
+          + ", batchesWritten=" + batchesWritten
+          + ", writeTimeMillis=" + writeTimeMillis
+          + ", maxEventQueueSize=" + maxEventQueueSize);
     }
     super.serviceStop();
   }
 
   @Override
   public void handle(DAGHistoryEvent event) {
-    eventQueue.add(event);
+    if (stopped.get()) {
+      // Nothing drains the queue anymore, do not block on a full queue.
+      if (!eventQueue.offer(event)) {
+        LOG.warn("Dropping history event after service stop, eventType="
+            + event.getHistoryEvent().getEventType());
+      }
+      return;
+    }
+    try {
+      eventQueue.put(event);
+    } catch (InterruptedException e) {
+      LOG.warn("Interrupted while queueing history event, eventType="
+          + event.getHistoryEvent().getEventType());
+      Thread.currentThread().interrupt();
+    }
   }
 
-  private synchronized void handleEvent(DAGHistoryEvent event) {
-    if (loggingDisabled) {
+  @VisibleForTesting
+  synchronized void handleEvents(List<DAGHistoryEvent> events) {
+    if (loggingDisabled || outputStream == null) {
       return;
     }
+    maxEventQueueSize = Math.max(maxEventQueueSize, events.size() + eventQueue.size());
     if (LOG.isTraceEnabled()) {
-      LOG.trace("Writing event " + event.getHistoryEvent().getEventType() + " to history file");
+      LOG.trace("Writing " + events.size() + " events to history file");
     }
+    long startTime = System.currentTimeMillis();
+    StringBuilder sb = batchBuffer;
+    sb.setLength(0);
+    appendJson(events, sb);
     try {
-      try {
-        JSONObject eventJson = HistoryEventJsonConversion.convertToJson(event.getHistoryEvent());
-        outputStream.writeBytes(eventJson.toString());
-        outputStream.writeBytes(RECORD_SEPARATOR);
-      } catch (JSONException e) {
-        LOG.warn("Failed to convert event to json", e);
+      Writer batchWriter = writer;
+      if (codec != null) {
+        // Each batch is written as a complete compressed stream, the file is a concatenation of
+        // them. The history written so far can then be read even if the AM goes away before the
+        // file is closed, as for uncompressed history.
+        if (compressor != null) {
+          compressor.reset();
+        }
+        batchWriter = new OutputStreamWriter(codec.createOutputStream(
+            new NonClosingOutputStream(outputStream), compressor), Charsets.UTF_8);
+      }
+      for (int offset = 0; offset < sb.length(); offset += writeBuffer.length) {
+        int length = Math.min(writeBuffer.length, sb.length() - offset);
+        sb.getChars(offset, offset + length, writeBuffer, 0);
+        batchWriter.write(writeBuffer, 0, length);
+      }
+      if (batchWriter != writer) {
+        // finishes the compressed stream, and releases the resources of the codec streams which
+        // do not use the pooled compressor
+        batchWriter.close();
+        outputStream.flush();
+      } else {
+        writer.flush();
       }
       consecutiveErrors = 0;
     } catch (IOException ioe) {
@@ -169,7 +293,95 @@ public class SimpleHistoryLoggingService extends HistoryLoggingService {
         LOG.error("Disabling SimpleHistoryLoggingService due to multiple errors," +
             "consecutive max errors reached, maxErrors=" + maxErrors);
       }
+      return;
+    } finally {
+      if (sb.capacity() > MAX_RETAINED_BATCH_BUFFER_SIZE) {
+        // Do not hold on to the memory of an unusually large batch
+        batchBuffer = new StringBuilder();
+      }
+    }
+    writeTimeMillis += System.currentTimeMillis() - startTime;
+    eventsWritten += events.size();
+    ++batchesWritten;
+    if (batchesWritten % 1000 == 0) {
+      LOG.info("Event queue stats"
+          + ", eventsWritten=" + eventsWritten
+          + ", batchesWritten=" + batchesWritten
+          + ", writeTimeMillis=" + writeTimeMillis
+          + ", maxEventQueueSize=" + maxEventQueueSize
+          + ", eventQueueSize=" + eventQueue.size());
+    }
+  }
+
+  /**
+   * Appends the events as json records to the buffer, converting them on the conversion threads
+   * if configured. The records are appended in the order of the events, events which could not
+   * be converted are left out.
+   */
+  private void appendJson(List<DAGHistoryEvent> events, StringBuilder sb) {
+    if (conversionExecutor == null || conversionExecutor.isShutdown() || events.size() == 1) {
+      for (DAGHistoryEvent event : events) {
+        appendJson(jsonWriter, event, sb);
+      }
+      return;
+    }
+    List<Future<String>> futures = new ArrayList<Future<String>>(events.size());
+    for (final DAGHistoryEvent event : events) {
+      futures.add(conversionExecutor.submit(new Callable<String>() {
+        @Override
+        public String call() {
+          StringBuilder eventBuffer = new StringBuilder();
+          appendJson(new HistoryEventJsonWriter(), event, eventBuffer);
+          return eventBuffer.toString();
+        }
+      }));
+    }
+    boolean interrupted = false;
+    for (int i = 0; i < futures.size(); ++i) {
+      try {
+        sb.append(futures.get(i).get());
+      } catch (InterruptedException e) {
+        // Still write out the batch, the interrupt is restored once done.
+        interrupted = true;
+        appendJson(jsonWriter, events.get(i), sb);
+      } catch (ExecutionException e) {
+        LOG.warn("Failed to convert event to json", e.getCause());
+      }
     }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void appendJson(HistoryEventJsonWriter eventWriter, DAGHistoryEvent event,
+      StringBuilder sb) {
+    int length = sb.length();
+    try {
+      eventWriter.write(event.getHistoryEvent(), sb);
+      sb.append(RECORD_SEPARATOR);
+    } catch (JSONException e) {
+      sb.setLength(length);
+      LOG.warn("Failed to convert event to json", e);
+    }
+  }
 
+  /**
+   * Lets the compressed stream of a batch be closed without closing the history file.
+   */
+  private static class NonClosingOutputStream extends FilterOutputStream {
+
+    NonClosingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
   }
 }
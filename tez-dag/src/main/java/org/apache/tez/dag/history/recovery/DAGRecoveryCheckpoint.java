@@ -0,0 +1,312 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.recovery;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.tez.common.TezCommonUtils;
+import org.apache.tez.dag.app.RecoveryParser;
+import org.apache.tez.dag.history.HistoryEvent;
+import org.apache.tez.dag.history.HistoryEventType;
+import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptStartedEvent;
+import org.apache.tez.dag.history.events.TaskFinishedEvent;
+import org.apache.tez.dag.history.events.TaskStartedEvent;
+import org.apache.tez.dag.history.events.VertexConfigurationDoneEvent;
+import org.apache.tez.dag.history.events.VertexFinishedEvent;
+import org.apache.tez.dag.history.events.VertexInitializedEvent;
+import org.apache.tez.dag.history.events.VertexStartedEvent;
+import org.apache.tez.dag.records.TezDAGID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A compacted snapshot of the recovery events of a DAG.
+ *
+ * The checkpoint holds only the events the {@link RecoveryParser} needs to rebuild the DAG
+ * state (the latest event per DAG, vertex, task and task attempt state change) and records up
+ * to which offset of the DAG recovery file of a given AM attempt it is complete. Recovery
+ * loads the latest checkpoint and only replays the recovery log written after that offset.
+ *
+ * Checkpoint files use the same event encoding as the recovery log, framed by a header and a
+ * trailer so that partially written checkpoints are detected and ignored.
+ */
+public class DAGRecoveryCheckpoint {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DAGRecoveryCheckpoint.class);
+
+  private static final int CHECKPOINT_MAGIC = 0x545a4350;
+  private static final int CHECKPOINT_VERSION = 1;
+
+  private final int attemptId;
+  private final long recoveryFileOffset;
+  private final List<HistoryEvent> events;
+
+  public DAGRecoveryCheckpoint(int attemptId, long recoveryFileOffset,
+      List<HistoryEvent> events) {
+    this.attemptId = attemptId;
+    this.recoveryFileOffset = recoveryFileOffset;
+    this.events = events;
+  }
+
+  /**
+   * @return the AM attempt whose DAG recovery file this checkpoint was taken against. The
+   * recovery files of all earlier attempts are fully covered by the checkpoint.
+   */
+  public int getAttemptId() {
+    return attemptId;
+  }
+
+  /**
+   * @return the number of bytes of the DAG recovery file of {@link #getAttemptId()} covered by
+   * this checkpoint
+   */
+  public long getRecoveryFileOffset() {
+    return recoveryFileOffset;
+  }
+
+  public List<HistoryEvent> getEvents() {
+    return Collections.unmodifiableList(events);
+  }
+
+  /**
+   * Drops all events which are not needed to recover the DAG and replaces older events with
+   * newer ones for the same entity, keeping the position of the first occurrence so that
+   * events still appear after the events they depend on. Events following the DAG finished
+   * event are dropped, as they are ignored during recovery.
+   */
+  public static List<HistoryEvent> compact(List<HistoryEvent> events) {
+    Map<String, HistoryEvent> compacted = new LinkedHashMap<String, HistoryEvent>();
+    for (HistoryEvent event : events) {
+      String key = getCompactionKey(event);
+      if (key != null) {
+        HistoryEvent previous = compacted.get(key);
+        if (event instanceof VertexInitializedEvent
+            && ((VertexInitializedEvent) event).isAddedEvents()
+            && previous != null && !((VertexInitializedEvent) previous).isAddedEvents()) {
+          // events added by initializers extend the events the vertex was initialized with
+          event = ((VertexInitializedEvent) previous).merge((VertexInitializedEvent) event);
+        }
+        compacted.put(key, event);
+      }
+      if (event.getEventType() == HistoryEventType.DAG_FINISHED) {
+        break;
+      }
+    }
+    return new ArrayList<HistoryEvent>(compacted.values());
+  }
+
+  private static String getCompactionKey(HistoryEvent event) {
+    HistoryEventType eventType = event.getEventType();
+    switch (eventType) {
+      case DAG_SUBMITTED:
+      case DAG_INITIALIZED:
+      case DAG_STARTED:
+      case DAG_FINISHED:
+        return eventType.name();
+      case VERTEX_INITIALIZED:
+        return ((VertexInitializedEvent) event).getVertexID() + ":" + eventType;
+      case VERTEX_CONFIGURE_DONE:
+        return ((VertexConfigurationDoneEvent) event).getVertexID() + ":" + eventType;
+      case VERTEX_STARTED:
+        return ((VertexStartedEvent) event).getVertexID() + ":" + eventType;
+      case VERTEX_FINISHED:
+        return ((VertexFinishedEvent) event).getVertexID() + ":" + eventType;
+      case TASK_STARTED:
+        return ((TaskStartedEvent) event).getTaskID() + ":" + eventType;
+      case TASK_FINISHED:
+        return ((TaskFinishedEvent) event).getTaskID() + ":" + eventType;
+      case TASK_ATTEMPT_STARTED:
+        return ((TaskAttemptStartedEvent) event).getTaskAttemptID() + ":" + eventType;
+      case TASK_ATTEMPT_FINISHED:
+        return ((TaskAttemptFinishedEvent) event).getTaskAttemptID() + ":" + eventType;
+      default:
+        // Commit, kill request and container events are not used to rebuild the DAG state
+        return null;
+    }
+  }
+
+  /**
+   * Writes the checkpoint to a temporary file first and then moves it in place, so that an
+   * existing checkpoint is only ever replaced by a complete one.
+   */
+  public void write(FileSystem fs, Path checkpointPath, int bufferSize) throws IOException {
+    Path tmpPath = checkpointPath.suffix(".tmp");
+    FSDataOutputStream out = fs.create(tmpPath, true, bufferSize);
+    try {
+      out.writeInt(CHECKPOINT_MAGIC);
+      out.writeInt(CHECKPOINT_VERSION);
+      out.writeInt(attemptId);
+      out.writeLong(recoveryFileOffset);
+      out.writeInt(events.size());
+      for (HistoryEvent event : events) {
+        out.writeInt(event.getEventType().ordinal());
+        event.toProtoStream(out);
+      }
+      out.writeInt(CHECKPOINT_MAGIC);
+    } finally {
+      out.close();
+    }
+    if (fs.exists(checkpointPath) && !fs.delete(checkpointPath, false)) {
+      throw new IOException("Failed to delete old recovery checkpoint " + checkpointPath);
+    }
+    if (!fs.rename(tmpPath, checkpointPath)) {
+      throw new IOException("Failed to rename recovery checkpoint " + tmpPath
+          + " to " + checkpointPath);
+    }
+  }
+
+  /**
+   * @return the checkpoint stored at the given path, or null if it does not exist or is
+   * incomplete
+   */
+  public static DAGRecoveryCheckpoint read(FileSystem fs, Path checkpointPath, int bufferSize)
+      throws IOException {
+    if (!fs.exists(checkpointPath)) {
+      return null;
+    }
+    FSDataInputStream in = fs.open(checkpointPath, bufferSize);
+    try {
+      if (in.readInt() != CHECKPOINT_MAGIC) {
+        LOG.warn("Ignoring recovery checkpoint with invalid header, path=" + checkpointPath);
+        return null;
+      }
+      int version = in.readInt();
+      if (version != CHECKPOINT_VERSION) {
+        LOG.warn("Ignoring recovery checkpoint with unknown version"
+            + ", path=" + checkpointPath + ", version=" + version);
+        return null;
+      }
+      int attemptId = in.readInt();
+      long recoveryFileOffset = in.readLong();
+      int numEvents = in.readInt();
+      List<HistoryEvent> events = new ArrayList<HistoryEvent>(numEvents);
+      for (int i = 0; i < numEvents; ++i) {
+        HistoryEvent event = RecoveryParser.getNextEvent(in);
+        if (event == null) {
+          LOG.warn("Ignoring truncated recovery checkpoint, path=" + checkpointPath);
+          return null;
+        }
+        events.add(event);
+      }
+      if (in.readInt() != CHECKPOINT_MAGIC) {
+        LOG.warn("Ignoring recovery checkpoint with invalid trailer, path=" + checkpointPath);
+        return null;
+      }
+      return new DAGRecoveryCheckpoint(attemptId, recoveryFileOffset, events);
+    } catch (EOFException e) {
+      LOG.warn("Ignoring truncated recovery checkpoint, path=" + checkpointPath);
+      return null;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * @return the most recent valid checkpoint of the DAG written by any of the AM attempts up to
+   * and including maxAttemptId, or null if there is none
+   */
+  public static DAGRecoveryCheckpoint getLatestCheckpoint(FileSystem fs, Path recoveryDataDir,
+      TezDAGID dagId, int maxAttemptId, int bufferSize) throws IOException {
+    for (int i = maxAttemptId; i >= 1; --i) {
+      Path attemptPath = TezCommonUtils.getAttemptRecoveryPath(recoveryDataDir, i);
+      Path checkpointPath =
+          TezCommonUtils.getDAGRecoveryCheckpointPath(attemptPath, dagId.toString());
+      DAGRecoveryCheckpoint checkpoint = read(fs, checkpointPath, bufferSize);
+      if (checkpoint != null) {
+        return checkpoint;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads the recovery events of a recovery file, starting at the given offset.
+   * Reading stops at endOffset (if non-negative), at the end of the file or at the first
+   * corrupt event.
+   */
+  public static List<HistoryEvent> readRecoveryEvents(FileSystem fs, Path recoveryFile,
+      long startOffset, long endOffset, int bufferSize) throws IOException {
+    List<HistoryEvent> events = new ArrayList<HistoryEvent>();
+    if (!fs.exists(recoveryFile)) {
+      return events;
+    }
+    FSDataInputStream in = fs.open(recoveryFile, bufferSize);
+    try {
+      in.seek(startOffset);
+      while (endOffset < 0 || in.getPos() < endOffset) {
+        HistoryEvent event;
+        try {
+          event = RecoveryParser.getNextEvent(in);
+        } catch (EOFException eof) {
+          break;
+        } catch (IOException ioe) {
+          LOG.warn("Corrupt data found when trying to read next event"
+              + ", recoveryFile=" + recoveryFile, ioe);
+          break;
+        }
+        if (event == null) {
+          break;
+        }
+        events.add(event);
+      }
+    } finally {
+      in.close();
+    }
+    return events;
+  }
+
+  /**
+   * @return the compacted recovery events of the DAG written by all AM attempts up to and
+   * including maxAttemptId, based on the latest checkpoint and the recovery log after it.
+   */
+  @VisibleForTesting
+  public static List<HistoryEvent> readDAGEvents(FileSystem fs, Path recoveryDataDir,
+      TezDAGID dagId, int maxAttemptId, int bufferSize) throws IOException {
+    List<HistoryEvent> events = new ArrayList<HistoryEvent>();
+    int startAttemptId = 1;
+    long startOffset = 0;
+    DAGRecoveryCheckpoint checkpoint =
+        getLatestCheckpoint(fs, recoveryDataDir, dagId, maxAttemptId, bufferSize);
+    if (checkpoint != null) {
+      events.addAll(checkpoint.getEvents());
+      startAttemptId = checkpoint.getAttemptId();
+      startOffset = checkpoint.getRecoveryFileOffset();
+    }
+    for (int i = startAttemptId; i <= maxAttemptId; ++i) {
+      Path recoveryFile = TezCommonUtils.getDAGRecoveryPath(
+          TezCommonUtils.getAttemptRecoveryPath(recoveryDataDir, i), dagId.toString());
+      events.addAll(readRecoveryEvents(fs, recoveryFile,
+          i == startAttemptId ? startOffset : 0, -1, bufferSize));
+    }
+    return compact(events);
+  }
+}
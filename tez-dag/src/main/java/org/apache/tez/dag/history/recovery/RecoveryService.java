@@ -19,12 +19,20 @@
 package org.apache.tez.dag.history.recovery;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -39,6 +47,7 @@ import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezConstants;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.history.DAGHistoryEvent;
+import org.apache.tez.dag.history.HistoryEvent;
 import org.apache.tez.dag.history.HistoryEventType;
 import org.apache.tez.dag.history.SummaryEvent;
 import org.apache.tez.dag.history.events.DAGSubmittedEvent;
@@ -47,6 +56,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class RecoveryService extends AbstractService {
 
@@ -96,6 +107,23 @@ public class RecoveryService extends AbstractService {
   private AtomicBoolean recoveryFatalErrorOccurred = new AtomicBoolean(false);
   private boolean drainEventsFlag;
 
+  // Group commit related state. With group commit enabled, all writes and flushes of the
+  // recovery log happen on the event handling thread and callers of summary events wait on
+  // the future of their event until the batch containing it has been flushed.
+  private boolean groupCommitEnabled;
+  private int groupCommitMaxBatchEvents;
+  private final Map<DAGHistoryEvent, SettableFuture<Void>> pendingCommits =
+      new ConcurrentHashMap<DAGHistoryEvent, SettableFuture<Void>>();
+  private final Set<FSDataOutputStream> unflushedStreams = new HashSet<FSDataOutputStream>();
+  private volatile boolean eventHandlingStopped = false;
+
+  // Checkpoints are written in the background, at most one at a time per DAG
+  private int checkpointIntervalEvents;
+  private final Map<TezDAGID, Integer> eventsSinceCheckpoint = new HashMap<TezDAGID, Integer>();
+  private final Set<TezDAGID> checkpointsInProgress =
+      Collections.newSetFromMap(new ConcurrentHashMap<TezDAGID, Boolean>());
+  private ExecutorService checkpointExecutor;
+
   // Indicates all the remaining events on stop have been drained
   // and processed.
   private volatile boolean drained = true;
@@ -122,16 +150,32 @@ public class RecoveryService extends AbstractService {
         TEZ_TEST_RECOVERY_DRAIN_EVENTS_WHEN_STOPPED,
         TEZ_TEST_RECOVERY_DRAIN_EVENTS_WHEN_STOPPED_DEFAULT);
 
+    groupCommitEnabled = conf.getBoolean(TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_ENABLED,
+        TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_ENABLED_DEFAULT);
+    groupCommitMaxBatchEvents = Math.max(1, conf.getInt(
+        TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_MAX_BATCH_EVENTS,
+        TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_MAX_BATCH_EVENTS_DEFAULT));
+    checkpointIntervalEvents = conf.getInt(
+        TezConfiguration.DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS,
+        TezConfiguration.DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS_DEFAULT);
+
     LOG.info("RecoveryService initialized with "
       + "recoveryPath=" + recoveryPath
       + ", bufferSize(bytes)=" + bufferSize
       + ", flushInterval(s)=" + flushInterval
-      + ", maxUnflushedEvents=" + maxUnflushedEvents);
+      + ", maxUnflushedEvents=" + maxUnflushedEvents
+      + ", groupCommitEnabled=" + groupCommitEnabled
+      + ", groupCommitMaxBatchEvents=" + groupCommitMaxBatchEvents
+      + ", checkpointIntervalEvents=" + checkpointIntervalEvents);
   }
 
   @Override
   public void serviceStart() {
     lastFlushTime = appContext.getClock().getTime();
+    if (checkpointIntervalEvents > 0) {
+      checkpointExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+          .setDaemon(true).setNameFormat("RecoveryCheckpointThread").build());
+    }
     eventHandlingThread = new Thread(new Runnable() {
       @Override
       public void run() {
@@ -154,6 +198,7 @@ public class RecoveryService extends AbstractService {
             LOG.error("Recovery failure occurred. Stopping recovery thread."
                 + " Current eventQueueSize=" + eventQueue.size());
             eventQueue.clear();
+            failPendingCommits(new IOException("Recovery failure occurred"));
             return;
           }
 
@@ -175,6 +220,14 @@ public class RecoveryService extends AbstractService {
             return;
           }
 
+          if (groupCommitEnabled) {
+            List<DAGHistoryEvent> batch = new ArrayList<DAGHistoryEvent>();
+            batch.add(event);
+            eventQueue.drainTo(batch, groupCommitMaxBatchEvents - 1);
+            handleEventBatch(batch);
+            continue;
+          }
+
           synchronized (lock) {
             try {
               ++eventsProcessed;
@@ -215,6 +268,16 @@ public class RecoveryService extends AbstractService {
         LOG.warn("Interrupted Exception while stopping", ie);
       }
     }
+    eventHandlingStopped = true;
+    failPendingCommits(new IOException("RecoveryService stopped"));
+
+    if (checkpointExecutor != null) {
+      checkpointExecutor.shutdown();
+      if (!checkpointExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+        LOG.warn("Timed out waiting for recovery checkpoint to be written");
+        checkpointExecutor.shutdownNow();
+      }
+    }
 
     synchronized (lock) {
       if (summaryStream != null) {
@@ -300,7 +363,9 @@ public class RecoveryService extends AbstractService {
       return;
     }
 
-    if (event.getHistoryEvent() instanceof SummaryEvent) {
+    if (groupCommitEnabled && event.getHistoryEvent() instanceof SummaryEvent) {
+      waitForGroupCommit(event, eventType);
+    } else if (event.getHistoryEvent() instanceof SummaryEvent) {
       synchronized (lock) {
         if (stopped.get()) {
           LOG.warn("Igoring event as service stopped, eventType"
@@ -358,6 +423,151 @@ public class RecoveryService extends AbstractService {
     }
   }
 
+  private void waitForGroupCommit(DAGHistoryEvent event, HistoryEventType eventType)
+      throws IOException {
+    SettableFuture<Void> future = SettableFuture.create();
+    pendingCommits.put(event, future);
+    addToEventQueue(event);
+    if (eventHandlingStopped) {
+      // The event handling thread is gone, nobody will commit this event
+      failPendingCommits(new IOException("RecoveryService stopped"));
+    }
+    try {
+      future.get();
+      if (eventType.equals(HistoryEventType.DAG_FINISHED)) {
+        LOG.info("DAG completed"
+            + ", dagId=" + event.getDagID()
+            + ", queueSize=" + eventQueue.size());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while waiting for summary event to be committed"
+          + ", eventType=" + eventType);
+      if (eventType.equals(HistoryEventType.DAG_SUBMITTED)) {
+        throw new IOException("Interrupted while waiting for DAG submission to be committed", e);
+      }
+    } catch (ExecutionException e) {
+      LOG.error("Error handling summary event"
+          + ", eventType=" + eventType, e.getCause());
+      if (eventType.equals(HistoryEventType.DAG_SUBMITTED)) {
+        // Throw error to tell client that dag submission failed
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+    }
+  }
+
+  private void failPendingCommits(IOException cause) {
+    for (DAGHistoryEvent event : pendingCommits.keySet()) {
+      SettableFuture<Void> future = pendingCommits.remove(event);
+      if (future != null) {
+        future.setException(cause);
+      }
+    }
+  }
+
+  /**
+   * Writes a batch of events to the recovery log and flushes it once for the whole batch.
+   * Summary events are flushed to the summary stream, and immediate summary events also
+   * cause all DAG recovery streams to be flushed, before any caller waiting on an event of
+   * this batch is released.
+   */
+  @VisibleForTesting
+  void handleEventBatch(List<DAGHistoryEvent> batch) {
+    List<SettableFuture<Void>> committed = new ArrayList<SettableFuture<Void>>();
+    List<TezDAGID> finishedDAGs = new ArrayList<TezDAGID>();
+    boolean flushSummary = false;
+    boolean flushAll = false;
+    synchronized (lock) {
+      for (DAGHistoryEvent event : batch) {
+        ++eventsProcessed;
+        SettableFuture<Void> future = pendingCommits.remove(event);
+        try {
+          if (event.getHistoryEvent() instanceof SummaryEvent) {
+            SummaryEvent summaryEvent = (SummaryEvent) event.getHistoryEvent();
+            HistoryEventType eventType = event.getHistoryEvent().getEventType();
+            handleSummaryEvent(event.getDagID(), eventType, summaryEvent);
+            flushSummary = true;
+            flushAll |= summaryEvent.writeToRecoveryImmediately();
+            handleRecoveryEvent(event);
+            if (eventType.equals(HistoryEventType.DAG_FINISHED)) {
+              completedDAGs.add(event.getDagID());
+              finishedDAGs.add(event.getDagID());
+            }
+          } else {
+            handleRecoveryEvent(event);
+          }
+          if (future != null) {
+            committed.add(future);
+          }
+        } catch (IOException e) {
+          if (future == null) {
+            // For now, ignore any such errors as these are non-critical
+            LOG.warn("Error handling recovery event", e);
+          } else {
+            createFatalErrorFlagDirQuietly();
+            future.setException(e);
+          }
+        } catch (Exception e) {
+          LOG.warn("Error handling recovery event", e);
+          if (future != null) {
+            future.setException(e);
+          }
+        }
+      }
+
+      long currentTime = appContext.getClock().getTime();
+      try {
+        if (flushSummary && summaryStream != null) {
+          summaryStream.hflush();
+        }
+        if (flushAll || shouldFlush(currentTime)) {
+          for (FSDataOutputStream outputStream : unflushedStreams) {
+            outputStream.hflush();
+          }
+          unflushedStreams.clear();
+          unflushedEventsCount = 0;
+          lastFlushTime = currentTime;
+        }
+      } catch (IOException e) {
+        LOG.error("Error flushing recovery data", e);
+        if (!committed.isEmpty()) {
+          createFatalErrorFlagDirQuietly();
+        }
+        for (SettableFuture<Void> future : committed) {
+          future.setException(e);
+        }
+        return;
+      }
+
+      for (TezDAGID dagId : finishedDAGs) {
+        FSDataOutputStream outputStream = outputStreamMap.remove(dagId);
+        if (outputStream != null) {
+          unflushedStreams.remove(outputStream);
+          try {
+            outputStream.close();
+          } catch (IOException ioe) {
+            LOG.warn("Error when trying to flush/close recovery file for"
+                + " dag, dagId=" + dagId);
+          }
+        }
+      }
+    }
+    for (SettableFuture<Void> future : committed) {
+      future.set(null);
+    }
+  }
+
+  private void createFatalErrorFlagDirQuietly() {
+    try {
+      createFatalErrorFlagDir();
+    } catch (IOException e) {
+      LOG.error("Failed to create fatal error flag dir", e);
+    }
+  }
+
   private void createFatalErrorFlagDir() throws IOException {
     Path fatalErrorDir = new Path(recoveryPath, RECOVERY_FATAL_OCCURRED_DIR);
     try {
@@ -405,7 +615,9 @@ public class RecoveryService extends AbstractService {
           + ", eventType=" + eventType);
     }
     summaryEvent.toSummaryProtoStream(summaryStream);
-    summaryStream.hflush();
+    if (!groupCommitEnabled) {
+      summaryStream.hflush();
+    }
   }
 
   @VisibleForTesting
@@ -455,14 +667,90 @@ public class RecoveryService extends AbstractService {
     ++unflushedEventsCount;
     outputStream.writeInt(event.getHistoryEvent().getEventType().ordinal());
     event.getHistoryEvent().toProtoStream(outputStream);
-    if (!EnumSet.of(HistoryEventType.DAG_SUBMITTED,
+    if (groupCommitEnabled) {
+      // flushed as part of the batch
+      unflushedStreams.add(outputStream);
+    } else if (!EnumSet.of(HistoryEventType.DAG_SUBMITTED,
         HistoryEventType.DAG_FINISHED).contains(eventType)) {
       maybeFlush(outputStream);
     }
+    if (checkpointIntervalEvents > 0) {
+      maybeCheckpoint(dagID, eventType, outputStream);
+    }
+  }
+
+  private void maybeCheckpoint(final TezDAGID dagID, HistoryEventType eventType,
+      FSDataOutputStream outputStream) throws IOException {
+    Integer eventCount = eventsSinceCheckpoint.get(dagID);
+    eventCount = (eventCount == null) ? 1 : eventCount + 1;
+    if (eventCount < checkpointIntervalEvents
+        || eventType.equals(HistoryEventType.DAG_FINISHED)
+        || checkpointsInProgress.contains(dagID)) {
+      eventsSinceCheckpoint.put(dagID, eventCount);
+      return;
+    }
+    // The checkpoint can only cover recovery data that is visible to readers
+    doFlush(outputStream, appContext.getClock().getTime());
+    final long recoveryFileOffset = outputStream.getPos();
+    eventsSinceCheckpoint.put(dagID, 0);
+    checkpointsInProgress.add(dagID);
+    checkpointExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          writeCheckpoint(dagID, recoveryFileOffset);
+        } catch (Exception e) {
+          // Recovery falls back to the previous checkpoint and the full recovery log
+          LOG.warn("Error writing recovery checkpoint, dagId=" + dagID, e);
+        } finally {
+          checkpointsInProgress.remove(dagID);
+        }
+      }
+    });
+  }
+
+  /**
+   * Compacts the previous checkpoint (or the recovery data of the previous AM attempts) and the
+   * events written to the DAG recovery file since then into a new checkpoint covering the DAG
+   * recovery file up to the given offset.
+   */
+  @VisibleForTesting
+  void writeCheckpoint(TezDAGID dagID, long recoveryFileOffset) throws IOException {
+    int attemptId = appContext.getApplicationAttemptId().getAttemptId();
+    Path checkpointPath =
+        TezCommonUtils.getDAGRecoveryCheckpointPath(recoveryPath, dagID.toString());
+    List<HistoryEvent> events = new ArrayList<HistoryEvent>();
+    long startOffset = 0;
+    DAGRecoveryCheckpoint previous =
+        DAGRecoveryCheckpoint.read(recoveryDirFS, checkpointPath, bufferSize);
+    if (previous != null && previous.getAttemptId() == attemptId) {
+      events.addAll(previous.getEvents());
+      startOffset = previous.getRecoveryFileOffset();
+    } else {
+      events.addAll(DAGRecoveryCheckpoint.readDAGEvents(recoveryDirFS, recoveryPath.getParent(),
+          dagID, attemptId - 1, bufferSize));
+    }
+    events.addAll(DAGRecoveryCheckpoint.readRecoveryEvents(recoveryDirFS,
+        TezCommonUtils.getDAGRecoveryPath(recoveryPath, dagID.toString()),
+        startOffset, recoveryFileOffset, bufferSize));
+    DAGRecoveryCheckpoint checkpoint = new DAGRecoveryCheckpoint(attemptId, recoveryFileOffset,
+        DAGRecoveryCheckpoint.compact(events));
+    checkpoint.write(recoveryDirFS, checkpointPath, bufferSize);
+    LOG.info("Wrote recovery checkpoint"
+        + ", dagId=" + dagID
+        + ", recoveryFileOffset=" + recoveryFileOffset
+        + ", numEvents=" + checkpoint.getEvents().size());
   }
 
   private void maybeFlush(FSDataOutputStream outputStream) throws IOException {
     long currentTime = appContext.getClock().getTime();
+    if (!shouldFlush(currentTime)) {
+      return;
+    }
+    doFlush(outputStream, currentTime);
+  }
+
+  private boolean shouldFlush(long currentTime) {
     boolean doFlush = false;
     if (maxUnflushedEvents >=0
         && unflushedEventsCount >= maxUnflushedEvents) {
@@ -479,10 +767,7 @@ public class RecoveryService extends AbstractService {
           + ", timeSinceLastFlush=" + (currentTime - lastFlushTime));
       doFlush = true;
     }
-    if (!doFlush) {
-      return;
-    }
-    doFlush(outputStream, currentTime);
+    return doFlush;
   }
 
   private void doFlush(FSDataOutputStream outputStream,
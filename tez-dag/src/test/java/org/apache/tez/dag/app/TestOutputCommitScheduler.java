@@ -0,0 +1,325 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.dag.api.TezConfiguration;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class TestOutputCommitScheduler {
+
+  private static OutputCommitScheduler createScheduler(int numThreads, long timeoutMillis) {
+    return createScheduler(numThreads, timeoutMillis,
+        TezConfiguration.TEZ_AM_COMMIT_TIMEOUT_GRACE_MS_DEFAULT);
+  }
+
+  private static OutputCommitScheduler createScheduler(int numThreads, long timeoutMillis,
+      long timeoutGraceMillis) {
+    Configuration conf = new Configuration(false);
+    conf.setInt(TezConfiguration.TEZ_AM_COMMIT_THREADS, numThreads);
+    conf.setLong(TezConfiguration.TEZ_AM_COMMIT_TIMEOUT_MS, timeoutMillis);
+    conf.setLong(TezConfiguration.TEZ_AM_COMMIT_TIMEOUT_GRACE_MS, timeoutGraceMillis);
+    return new OutputCommitScheduler(conf);
+  }
+
+  private static int getMaxConcurrency(OutputCommitScheduler scheduler, int numCommits)
+      throws Exception {
+    final AtomicInteger running = new AtomicInteger(0);
+    final AtomicInteger maxRunning = new AtomicInteger(0);
+    List<ListenableFuture<Integer>> futures = new ArrayList<ListenableFuture<Integer>>();
+    for (int i = 0; i < numCommits; i++) {
+      final int index = i;
+      futures.add(scheduler.submit("output" + i, new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          int current = running.incrementAndGet();
+          synchronized (maxRunning) {
+            maxRunning.set(Math.max(maxRunning.get(), current));
+          }
+          Thread.sleep(20);
+          running.decrementAndGet();
+          return index;
+        }
+      }));
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      assertEquals(i, futures.get(i).get().intValue());
+    }
+    return maxRunning.get();
+  }
+
+  @Test(timeout = 10000)
+  public void testBoundedConcurrency() throws Exception {
+    OutputCommitScheduler scheduler = createScheduler(3, -1);
+    try {
+      int maxRunning = getMaxConcurrency(scheduler, 20);
+      assertTrue(maxRunning > 1);
+      assertTrue(maxRunning <= 3);
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testDefaultConcurrencyIsBounded() throws Exception {
+    assertTrue(TezConfiguration.TEZ_AM_COMMIT_THREADS_DEFAULT > 0);
+    OutputCommitScheduler scheduler = new OutputCommitScheduler(new Configuration(false));
+    try {
+      assertTrue(getMaxConcurrency(scheduler, 3 * TezConfiguration.TEZ_AM_COMMIT_THREADS_DEFAULT)
+          <= TezConfiguration.TEZ_AM_COMMIT_THREADS_DEFAULT);
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testUnboundedConcurrency() throws Exception {
+    OutputCommitScheduler scheduler = createScheduler(0, -1);
+    try {
+      // every commit waits for all of them to be running
+      final int numCommits = 20;
+      final CountDownLatch running = new CountDownLatch(numCommits);
+      List<ListenableFuture<Void>> futures = new ArrayList<ListenableFuture<Void>>();
+      for (int i = 0; i < numCommits; i++) {
+        futures.add(scheduler.submit("output" + i, new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            running.countDown();
+            running.await();
+            return null;
+          }
+        }));
+      }
+      for (ListenableFuture<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testFailure() throws Exception {
+    OutputCommitScheduler scheduler = createScheduler(1, -1);
+    try {
+      ListenableFuture<Void> future = scheduler.submit("output", new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          throw new IOException("Commit failed");
+        }
+      });
+      try {
+        future.get();
+        fail("Expected the commit failure");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IOException);
+      }
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testTimeout() throws Exception {
+    OutputCommitScheduler scheduler = createScheduler(1, 200);
+    try {
+      final CountDownLatch interrupted = new CountDownLatch(1);
+      final AtomicBoolean exited = new AtomicBoolean(false);
+      ListenableFuture<Void> future = scheduler.submit("slowOutput", new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          try {
+            Thread.sleep(60000);
+          } catch (InterruptedException e) {
+            interrupted.countDown();
+            // the commit takes a while to stop
+            long endTime = System.currentTimeMillis() + 200;
+            while (System.currentTimeMillis() < endTime) {
+              Thread.yield();
+            }
+            exited.set(true);
+            throw e;
+          }
+          return null;
+        }
+      });
+      try {
+        future.get();
+        fail("Expected the commit to time out");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertTrue(e.getCause().getMessage().contains("slowOutput"));
+        assertTrue(e.getCause().getCause() instanceof InterruptedException);
+      }
+      // the failure is only reported once the commit has stopped, within the grace period
+      assertTrue(exited.get());
+      assertEquals(0, interrupted.getCount());
+
+      // the timeout only starts when the commit runs, and fast commits are not affected
+      ListenableFuture<String> fastFuture = scheduler.submit("fastOutput", new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          Thread.sleep(50);
+          return "done";
+        }
+      });
+      assertEquals("done", fastFuture.get());
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testTimeoutOfStuckCommit() throws Exception {
+    OutputCommitScheduler scheduler = createScheduler(1, 200, 200);
+    try {
+      final CountDownLatch interrupted = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      final AtomicBoolean exited = new AtomicBoolean(false);
+      ListenableFuture<Void> future = scheduler.submit("stuckOutput", new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          // does not respond to the interrupt
+          while (true) {
+            try {
+              release.await();
+              break;
+            } catch (InterruptedException e) {
+              interrupted.countDown();
+            }
+          }
+          exited.set(true);
+          return null;
+        }
+      });
+      try {
+        future.get();
+        fail("Expected the commit to time out");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertTrue(e.getCause().getMessage().contains("stuckOutput"));
+      }
+      // the commit was given up on while it is still running
+      assertEquals(0, interrupted.getCount());
+      assertFalse(exited.get());
+
+      // the abort waits for the stuck commit to stop
+      final CountDownLatch aborted = new CountDownLatch(1);
+      final AtomicBoolean exitedBeforeAbort = new AtomicBoolean(false);
+      assertTrue(scheduler.deferUntilCommitsStopped(new Runnable() {
+        @Override
+        public void run() {
+          exitedBeforeAbort.set(exited.get());
+          aborted.countDown();
+        }
+      }));
+
+      // the stuck commit does not hold up the other commits
+      assertEquals("next", scheduler.submit("next", new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return "next";
+        }
+      }).get());
+      assertEquals(1, aborted.getCount());
+
+      release.countDown();
+      aborted.await();
+      assertTrue(exitedBeforeAbort.get());
+
+      // nothing runs anymore, the caller runs the action itself
+      assertFalse(scheduler.deferUntilCommitsStopped(new Runnable() {
+        @Override
+        public void run() {
+          fail("Expected the action not to be deferred");
+        }
+      }));
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testCancel() throws Exception {
+    OutputCommitScheduler scheduler = createScheduler(1, -1);
+    try {
+      final CountDownLatch started = new CountDownLatch(1);
+      final CountDownLatch interrupted = new CountDownLatch(1);
+      ListenableFuture<Void> running = scheduler.submit("running", new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          started.countDown();
+          try {
+            Thread.sleep(60000);
+          } catch (InterruptedException e) {
+            interrupted.countDown();
+            throw e;
+          }
+          return null;
+        }
+      });
+      final AtomicInteger queuedRuns = new AtomicInteger(0);
+      ListenableFuture<Void> queued = scheduler.submit("queued", new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          queuedRuns.incrementAndGet();
+          return null;
+        }
+      });
+      started.await();
+      queued.cancel(true);
+      running.cancel(true);
+      interrupted.await();
+      try {
+        queued.get();
+        fail("Expected the commit to be cancelled");
+      } catch (CancellationException e) {
+        // expected
+      }
+      // the next commit runs, and the cancelled one did not
+      assertEquals("next", scheduler.submit("next", new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return "next";
+        }
+      }).get());
+      assertEquals(0, queuedRuns.get());
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+}
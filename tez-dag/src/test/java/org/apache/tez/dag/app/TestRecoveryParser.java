@@ -29,6 +29,7 @@ import java.util.Random;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
 import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.api.records.ContainerId;
@@ -36,6 +37,8 @@ import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.util.SystemClock;
 import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
+import org.apache.tez.common.TezCommonUtils;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
 import org.apache.tez.dag.api.oldrecords.TaskState;
 import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
@@ -49,6 +52,8 @@ import org.apache.tez.dag.app.dag.VertexState;
 import org.apache.tez.dag.app.dag.impl.DAGImpl;
 import org.apache.tez.dag.app.dag.impl.TestDAGImpl;
 import org.apache.tez.dag.history.DAGHistoryEvent;
+import org.apache.tez.dag.history.HistoryEvent;
+import org.apache.tez.dag.history.HistoryEventType;
 import org.apache.tez.dag.history.events.DAGCommitStartedEvent;
 import org.apache.tez.dag.history.events.DAGFinishedEvent;
 import org.apache.tez.dag.history.events.DAGInitializedEvent;
@@ -64,6 +69,7 @@ import org.apache.tez.dag.history.events.VertexGroupCommitFinishedEvent;
 import org.apache.tez.dag.history.events.VertexGroupCommitStartedEvent;
 import org.apache.tez.dag.history.events.VertexInitializedEvent;
 import org.apache.tez.dag.history.events.VertexStartedEvent;
+import org.apache.tez.dag.history.recovery.DAGRecoveryCheckpoint;
 import org.apache.tez.dag.history.recovery.RecoveryService;
 import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
@@ -752,6 +758,197 @@ public class TestRecoveryParser {
     assertEquals(ta0t2v2FinishedEvent.getFinishTime(), ta0t2v2Data.getTaskAttemptFinishedEvent().getFinishTime());
   }
 
+  @Test(timeout=5000)
+  public void testRecoveryDataWithRunningInitializers() throws IOException {
+    ApplicationId appId = ApplicationId.newInstance(System.currentTimeMillis(), 1);
+    TezDAGID dagID = TezDAGID.getInstance(appId, 1);
+    AppContext appContext = mock(AppContext.class);
+    when(appContext.getCurrentRecoveryDir()).thenReturn(new Path(recoveryPath+"/1"));
+    when(appContext.getClock()).thenReturn(new SystemClock());
+    when(mockDAGImpl.getID()).thenReturn(dagID);
+    when(appContext.getHadoopShim()).thenReturn(new DefaultHadoopShim());
+    when(appContext.getApplicationID()).thenReturn(appId);
+
+    RecoveryService rService = new RecoveryService(appContext);
+    Configuration conf = new Configuration();
+    conf.setBoolean(RecoveryService.TEZ_TEST_RECOVERY_DRAIN_EVENTS_WHEN_STOPPED, true);
+    rService.init(conf);
+    rService.start();
+
+    // vertex1 -> vertex3 -> vertex4, vertex2 -> vertex3
+    DAGPlan dagPlan = TestDAGImpl.createTestDAGPlan();
+    when(mockDAGImpl.getJobPlan()).thenReturn(dagPlan);
+    rService.handle(new DAGHistoryEvent(dagID,
+        new DAGSubmittedEvent(dagID, 1L, dagPlan, ApplicationAttemptId.newInstance(appId, 1),
+            null, "user", new Configuration(), null, null)));
+    rService.handle(new DAGHistoryEvent(dagID,
+        new DAGInitializedEvent(dagID, 100L, "user", "dagName", null)));
+    rService.handle(new DAGHistoryEvent(dagID,
+        new DAGStartedEvent(dagID, 0L, "user", "dagName")));
+
+    TezVertexID v0Id = TezVertexID.getInstance(dagID, 0);
+    TezVertexID v1Id = TezVertexID.getInstance(dagID, 1);
+    TezVertexID v2Id = TezVertexID.getInstance(dagID, 2);
+    TezVertexID v3Id = TezVertexID.getInstance(dagID, 3);
+    // the initializer of v0 is still running
+    rService.handle(new DAGHistoryEvent(dagID, new VertexInitializedEvent(v0Id, "vertex1",
+        200L, 300L, 2, null, null, createInitGeneratedEvents(1), null, true)));
+    rService.handle(new DAGHistoryEvent(dagID, VertexInitializedEvent.createAddedEvents(
+        v0Id, "vertex1", createInitGeneratedEvents(1), true)));
+    rService.handle(new DAGHistoryEvent(dagID, new VertexStartedEvent(v0Id, 0L, 0L)));
+    // the initializer of v1 completed after the vertex was initialized
+    rService.handle(new DAGHistoryEvent(dagID, new VertexInitializedEvent(v1Id, "vertex2",
+        200L, 300L, 3, null, null, createInitGeneratedEvents(1), null, true)));
+    rService.handle(new DAGHistoryEvent(dagID, VertexInitializedEvent.createAddedEvents(
+        v1Id, "vertex2", createInitGeneratedEvents(2), false)));
+    rService.handle(new DAGHistoryEvent(dagID, new VertexStartedEvent(v1Id, 0L, 0L)));
+    // v2 consumes the output of v0 and v1
+    rService.handle(new DAGHistoryEvent(dagID, new VertexInitializedEvent(v2Id, "vertex3",
+        200L, 300L, 2, null, null, null, null)));
+    rService.handle(new DAGHistoryEvent(dagID, new VertexStartedEvent(v2Id, 0L, 0L)));
+    TezTaskID t0v2Id = TezTaskID.getInstance(v2Id, 0);
+    rService.handle(new DAGHistoryEvent(dagID,
+        new TaskStartedEvent(t0v2Id, "vertex3", 400L, 500L)));
+    rService.stop();
+
+    DAGRecoveryData dagData = parser.parseRecoveryData();
+    assertFalse(dagData.nonRecoverable);
+    // v0 and the vertices downstream of it are run again
+    assertNull(dagData.getVertexRecoveryData(v0Id));
+    assertNull(dagData.getVertexRecoveryData(v2Id));
+    assertNull(dagData.getVertexRecoveryData(v3Id));
+    assertNull(dagData.getTaskRecoveryData(t0v2Id));
+    // the events added to v1 are recovered with the events it was initialized with
+    VertexRecoveryData v1Data = dagData.getVertexRecoveryData(v1Id);
+    assertNotNull(v1Data);
+    assertEquals(300L, v1Data.getVertexInitedEvent().getInitedTime());
+    assertEquals(3, v1Data.getVertexInitedEvent().getNumTasks());
+    assertEquals(3, v1Data.getVertexInitedEvent().getInitGeneratedEvents().size());
+    assertFalse(v1Data.getVertexInitedEvent().isInitializersRunning());
+    assertFalse(v1Data.getVertexInitedEvent().isAddedEvents());
+    assertTrue(v1Data.isVertexStarted());
+  }
+
+  private List<TezEvent> createInitGeneratedEvents(int numEvents) {
+    List<TezEvent> events = Lists.newArrayList();
+    for (int i = 0; i < numEvents; ++i) {
+      events.add(new TezEvent(DataMovementEvent.create(ByteBuffer.wrap(new byte[0])), null));
+    }
+    return events;
+  }
+
+  @Test(timeout=10000)
+  public void testRecoveryDataFromCheckpoint() throws IOException {
+    ApplicationId appId = ApplicationId.newInstance(System.currentTimeMillis(), 1);
+    TezDAGID dagID = TezDAGID.getInstance(appId, 1);
+    AppContext appContext = mock(AppContext.class);
+    when(appContext.getCurrentRecoveryDir()).thenReturn(new Path(recoveryPath+"/1"));
+    when(appContext.getApplicationAttemptId()).thenReturn(
+        ApplicationAttemptId.newInstance(appId, 1));
+    when(appContext.getClock()).thenReturn(new SystemClock());
+    when(mockDAGImpl.getID()).thenReturn(dagID);
+    when(appContext.getHadoopShim()).thenReturn(new DefaultHadoopShim());
+    when(appContext.getApplicationID()).thenReturn(appId);
+
+    // write data in attempt_1, a checkpoint is written after the first 8 events. Checkpoints
+    // are written in the background and skipped while one is in progress, so a single one is
+    // written to keep the test deterministic.
+    RecoveryService rService = new RecoveryService(appContext);
+    Configuration conf = new Configuration();
+    conf.setBoolean(RecoveryService.TEZ_TEST_RECOVERY_DRAIN_EVENTS_WHEN_STOPPED, true);
+    conf.setInt(TezConfiguration.DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS, 8);
+    // checkpoints read back the flushed part of the recovery log while it is being written,
+    // which the checksummed local file system does not support
+    conf.set("fs.file.impl", RawLocalFileSystem.class.getName());
+    conf.setBoolean("fs.file.impl.disable.cache", true);
+    rService.init(conf);
+    rService.start();
+    DAGPlan dagPlan = TestDAGImpl.createTestDAGPlan();
+    rService.handle(new DAGHistoryEvent(dagID,
+        new DAGSubmittedEvent(dagID, 1L, dagPlan, ApplicationAttemptId.newInstance(appId, 1),
+            null, "user", new Configuration(), null, null)));
+    DAGInitializedEvent dagInitedEvent = new DAGInitializedEvent(dagID, 100L,
+        "user", "dagName", null);
+    DAGStartedEvent dagStartedEvent = new DAGStartedEvent(dagID, 0L, "user", "dagName");
+    rService.handle(new DAGHistoryEvent(dagID, dagInitedEvent));
+    rService.handle(new DAGHistoryEvent(dagID, dagStartedEvent));
+    TezVertexID v0Id = TezVertexID.getInstance(dagID, 0);
+    VertexInitializedEvent v0InitedEvent =  new VertexInitializedEvent(
+        v0Id, "v0", 200L, 400L, 2, null, null, null, null);
+    rService.handle(new DAGHistoryEvent(dagID, v0InitedEvent));
+    VertexStartedEvent v0StartedEvent = new VertexStartedEvent(v0Id, 0L, 0L);
+    rService.handle(new DAGHistoryEvent(dagID, v0StartedEvent));
+    TezTaskID t0v0Id = TezTaskID.getInstance(v0Id, 0);
+    rService.handle(new DAGHistoryEvent(dagID,
+        new TaskStartedEvent(t0v0Id, "v0", 400L, 500L)));
+    // a later event of the same type for the same task replaces the earlier one
+    TaskStartedEvent t0v0StartedEvent = new TaskStartedEvent(t0v0Id, "v0", 400L, 600L);
+    rService.handle(new DAGHistoryEvent(dagID, t0v0StartedEvent));
+    TezTaskAttemptID ta0t0v0Id = TezTaskAttemptID.getInstance(t0v0Id, 0);
+    TaskAttemptStartedEvent ta0t0v0StartedEvent = new TaskAttemptStartedEvent(
+        ta0t0v0Id, "v0", 700L, ContainerId.newInstance(
+            ApplicationAttemptId.newInstance(appId, 1), 1),
+        NodeId.newInstance("localhost", 9999), "", "", "");
+    rService.handle(new DAGHistoryEvent(dagID, ta0t0v0StartedEvent));
+    // not covered by the checkpoint of this attempt
+    TaskAttemptFinishedEvent ta0t0v0FinishedEvent = new TaskAttemptFinishedEvent(
+        ta0t0v0Id, "v0", 700L, 800L,
+        TaskAttemptState.SUCCEEDED, null, null, "", null,
+        null, null, 0L, null, 0L, null, null, null, null, null);
+    rService.handle(new DAGHistoryEvent(dagID, ta0t0v0FinishedEvent));
+    rService.stop();
+
+    Path checkpointPath = TezCommonUtils.getDAGRecoveryCheckpointPath(
+        new Path(recoveryPath + "/1"), dagID.toString());
+    DAGRecoveryCheckpoint checkpoint =
+        DAGRecoveryCheckpoint.read(localFS, checkpointPath, 8192);
+    assertNotNull(checkpoint);
+    assertEquals(1, checkpoint.getAttemptId());
+    assertTrue(checkpoint.getRecoveryFileOffset() > 0);
+    // the duplicate task started event is compacted, and the checkpoint does not cover the
+    // task attempt finished event
+    int numTaskStartedEvents = 0;
+    for (HistoryEvent event : checkpoint.getEvents()) {
+      if (event.getEventType() == HistoryEventType.TASK_STARTED) {
+        ++numTaskStartedEvents;
+        assertEquals(t0v0StartedEvent.getStartTime(),
+            ((TaskStartedEvent) event).getStartTime());
+      }
+      assertNotEquals(HistoryEventType.TASK_ATTEMPT_FINISHED, event.getEventType());
+    }
+    assertEquals(1, numTaskStartedEvents);
+    assertEquals(7, checkpoint.getEvents().size());
+
+    // write data in attempt_2
+    when(appContext.getCurrentRecoveryDir()).thenReturn(new Path(recoveryPath+"/2"));
+    when(appContext.getApplicationAttemptId()).thenReturn(
+        ApplicationAttemptId.newInstance(appId, 2));
+    rService = new RecoveryService(appContext);
+    rService.init(conf);
+    rService.start();
+    TaskFinishedEvent t0v0FinishedEvent = new TaskFinishedEvent(t0v0Id, "v0",
+        0L, 900L, null, TaskState.SUCCEEDED, "", null, 4);
+    rService.handle(new DAGHistoryEvent(dagID, t0v0FinishedEvent));
+    rService.stop();
+
+    DAGRecoveryData dagData = parser.parseRecoveryData();
+    assertFalse(dagData.nonRecoverable);
+    verify(mockAppMaster).createDAG(any(DAGPlan.class), any(TezDAGID.class));
+    assertEquals(dagInitedEvent.getInitTime(), dagData.getDAGInitializedEvent().getInitTime());
+    assertEquals(dagStartedEvent.getStartTime(), dagData.getDAGStartedEvent().getStartTime());
+    VertexRecoveryData v0Data = dagData.getVertexRecoveryData(v0Id);
+    assertEquals(v0InitedEvent.getInitedTime(), v0Data.getVertexInitedEvent().getInitedTime());
+    assertEquals(v0StartedEvent.getStartTime(), v0Data.getVertexStartedEvent().getStartTime());
+    TaskRecoveryData t0v0Data = dagData.getTaskRecoveryData(t0v0Id);
+    assertEquals(t0v0StartedEvent.getStartTime(), t0v0Data.getTaskStartedEvent().getStartTime());
+    assertEquals(t0v0FinishedEvent.getFinishTime(), t0v0Data.getTaskFinishedEvent().getFinishTime());
+    TaskAttemptRecoveryData ta0t0v0Data = dagData.getTaskAttemptRecoveryData(ta0t0v0Id);
+    assertEquals(ta0t0v0StartedEvent.getStartTime(),
+        ta0t0v0Data.getTaskAttemptStartedEvent().getStartTime());
+    assertEquals(ta0t0v0FinishedEvent.getFinishTime(),
+        ta0t0v0Data.getTaskAttemptFinishedEvent().getFinishTime());
+  }
+
   // Simulate the behavior that summary event is written 
   // but non-summary is not written to hdfs
   public static class MockRecoveryService extends RecoveryService{
@@ -15,6 +15,8 @@
 package org.apache.tez.dag.app.dag;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.doReturn;
@@ -30,15 +32,18 @@ import java.util.Collections;
 import java.util.List;
 
 import com.google.common.collect.Lists;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.tez.dag.api.InputDescriptor;
 import org.apache.tez.dag.api.InputInitializerDescriptor;
 import org.apache.tez.dag.api.RootInputLeafOutput;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.api.oldrecords.TaskState;
 import org.apache.tez.dag.app.AppContext;
+import org.apache.tez.dag.app.dag.event.VertexEventRootInputInitialized;
 import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 import org.apache.tez.dag.records.TezTaskID;
@@ -47,6 +52,7 @@ import org.apache.tez.hadoop.shim.DefaultHadoopShim;
 import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.InputInitializer;
 import org.apache.tez.runtime.api.InputInitializerContext;
+import org.apache.tez.runtime.api.events.InputDataInformationEvent;
 import org.apache.tez.runtime.api.events.InputInitializerEvent;
 import org.apache.tez.runtime.api.impl.EventMetaData;
 import org.apache.tez.runtime.api.impl.TezEvent;
@@ -132,6 +138,55 @@ public class TestRootInputInitializerManager {
     verify(initializer, never()).handleInputInitializerEvent(argumentCaptor.capture());
   }
 
+  @SuppressWarnings("unchecked")
+  @Test(timeout = 5000)
+  public void testAddEvents() throws Exception {
+    InputDescriptor id = mock(InputDescriptor.class);
+    InputInitializerDescriptor iid = mock(InputInitializerDescriptor.class);
+    RootInputLeafOutput<InputDescriptor, InputInitializerDescriptor> rootInput =
+        new RootInputLeafOutput<InputDescriptor, InputInitializerDescriptor>("InputName", id, iid);
+
+    InputInitializer initializer = mock(InputInitializer.class);
+    InputInitializerContext initializerContext = mock(InputInitializerContext.class);
+    Vertex vertex = mock(Vertex.class);
+    StateChangeNotifier stateChangeNotifier = mock(StateChangeNotifier.class);
+    AppContext appContext = mock(AppContext.class, RETURNS_DEEP_STUBS);
+    EventHandler eventHandler = mock(EventHandler.class);
+    when(appContext.getEventHandler()).thenReturn(eventHandler);
+
+    RootInputInitializerManager.InitializerWrapper initializerWrapper =
+        new RootInputInitializerManager.InitializerWrapper(rootInput, initializer,
+            initializerContext, vertex, stateChangeNotifier, appContext);
+
+    Event event1 = InputDataInformationEvent.createWithSerializedPayload(0, null);
+    Event event2 = InputDataInformationEvent.createWithSerializedPayload(1, null);
+    Event event3 = InputDataInformationEvent.createWithSerializedPayload(2, null);
+
+    // Events are sent to the vertex as they are added, also with recovery enabled
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(TezConfiguration.DAG_RECOVERY_ENABLED, true);
+    when(appContext.getAMConf()).thenReturn(conf);
+    initializerWrapper.addEvents(Collections.singletonList(event1));
+    initializerWrapper.addEvents(Lists.newArrayList(event2, event3));
+    ArgumentCaptor<VertexEventRootInputInitialized> argumentCaptor =
+        ArgumentCaptor.forClass(VertexEventRootInputInitialized.class);
+    verify(eventHandler, times(2)).handle(argumentCaptor.capture());
+    assertTrue(argumentCaptor.getAllValues().get(0).isInitializerRunning());
+    assertEquals(Collections.singletonList(event1),
+        argumentCaptor.getAllValues().get(0).getEvents());
+    assertTrue(argumentCaptor.getAllValues().get(1).isInitializerRunning());
+    assertEquals(Lists.newArrayList(event2, event3),
+        argumentCaptor.getAllValues().get(1).getEvents());
+
+    initializerWrapper.setComplete();
+    assertTrue(initializerWrapper.isComplete());
+    try {
+      initializerWrapper.addEvents(Collections.singletonList(event1));
+      fail("Events added after the initializer completed");
+    } catch (IllegalStateException e) {
+    }
+  }
+
   // Order event1 success1, success2, event2
   // Primarily a failure scenario, when a Task moves back to running from success
   @SuppressWarnings("unchecked")
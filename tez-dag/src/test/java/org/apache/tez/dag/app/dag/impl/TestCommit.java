@@ -50,6 +50,7 @@ import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.hadoop.yarn.util.Clock;
 import org.apache.hadoop.yarn.util.SystemClock;
 import org.apache.tez.common.DrainDispatcher;
+import org.apache.tez.common.counters.DAGCounter;
 import org.apache.tez.common.security.ACLManager;
 import org.apache.tez.dag.api.DAG;
 import org.apache.tez.dag.api.DataSinkDescriptor;
@@ -71,6 +72,7 @@ import org.apache.tez.dag.api.oldrecords.TaskState;
 import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.app.ClusterInfo;
+import org.apache.tez.dag.app.OutputCommitScheduler;
 import org.apache.tez.dag.app.TaskCommunicatorManagerInterface;
 import org.apache.tez.dag.app.TaskHeartbeatHandler;
 import org.apache.tez.dag.app.dag.DAGState;
@@ -310,6 +312,7 @@ public class TestCommit {
     execService = MoreExecutors.listeningDecorator(rawExecutor);
 
     doReturn(execService).when(appContext).getExecService();
+    doReturn(new OutputCommitScheduler(rawExecutor, -1)).when(appContext).getCommitScheduler();
     historyEventHandler = new MockHistoryEventHandler(appContext);
     aclManager = new ACLManager("amUser");
     doReturn(conf).when(appContext).getAMConf();
@@ -917,6 +920,9 @@ public class TestCommit {
     Assert.assertEquals(1, v3OutputCommitter.setupCounter);
     Assert.assertEquals(1, v3OutputCommitter.commitCounter);
     Assert.assertEquals(0, v3OutputCommitter.abortCounter);
+    // the commits were blocked until they were unblocked
+    Assert.assertTrue(dag.getAllCounters()
+        .findCounter(DAGCounter.OUTPUT_COMMIT_TIME_MILLIS).getValue() > 0);
   }
 
   // first commit(v12Out) succeed and then the second commit(v3Out) fail
@@ -1952,6 +1958,7 @@ public class TestCommit {
     rawExecutor = new ControlledThreadPoolExecutor(1);
     execService = MoreExecutors.listeningDecorator(rawExecutor);
     doReturn(execService).when(appContext).getExecService();
+    doReturn(new OutputCommitScheduler(rawExecutor, -1)).when(appContext).getCommitScheduler();
 
     initDAG(dag);
     startDAG(dag);
@@ -20,6 +20,7 @@ package org.apache.tez.dag.app.dag.impl;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -94,6 +95,7 @@ import org.apache.tez.dag.api.records.DAGProtos.TezEntityDescriptorProto;
 import org.apache.tez.dag.api.records.DAGProtos.VertexPlan;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.app.ClusterInfo;
+import org.apache.tez.dag.app.OutputCommitScheduler;
 import org.apache.tez.dag.app.TaskCommunicatorManagerInterface;
 import org.apache.tez.dag.app.TaskHeartbeatHandler;
 import org.apache.tez.dag.app.dag.DAGScheduler;
@@ -163,6 +165,7 @@ public class TestDAGImpl {
   private static Configuration conf;
   private DrainDispatcher dispatcher;
   private ListeningExecutorService execService;
+  private OutputCommitScheduler commitScheduler;
   private Credentials fsTokens;
   private AppContext appContext;
   private ACLManager aclManager;
@@ -861,8 +864,19 @@ public class TestDAGImpl {
           return mockFuture;
       }})
     .when(execService).submit((Callable<Void>) any());
+
+    commitScheduler = mock(OutputCommitScheduler.class);
+    Mockito.doAnswer(new Answer() {
+      public ListenableFuture<Void> answer(InvocationOnMock invocation) {
+          Object[] args = invocation.getArguments();
+          CallableEvent e = (CallableEvent) args[1];
+          dispatcher.getEventHandler().handle(e);
+          return mockFuture;
+      }})
+    .when(commitScheduler).submit(anyString(), (Callable<Void>) any());
     
     doReturn(execService).when(appContext).getExecService();
+    doReturn(commitScheduler).when(appContext).getCommitScheduler();
     historyEventHandler = mock(HistoryEventHandler.class);
     aclManager = new ACLManager("amUser");
     doReturn(conf).when(appContext).getAMConf();
@@ -881,6 +895,7 @@ public class TestDAGImpl {
     mrrAppContext = mock(AppContext.class);
     doReturn(aclManager).when(mrrAppContext).getAMACLManager();
     doReturn(execService).when(mrrAppContext).getExecService();
+    doReturn(commitScheduler).when(mrrAppContext).getCommitScheduler();
     doReturn(defaultShim).when(mrrAppContext).getHadoopShim();
 
     mrrDagId = TezDAGID.getInstance(appAttemptId.getApplicationId(), 2);
@@ -899,6 +914,7 @@ public class TestDAGImpl {
     groupAppContext = mock(AppContext.class);
     doReturn(aclManager).when(groupAppContext).getAMACLManager();
     doReturn(execService).when(groupAppContext).getExecService();
+    doReturn(commitScheduler).when(groupAppContext).getCommitScheduler();
     doReturn(defaultShim).when(groupAppContext).getHadoopShim();
 
     groupDagId = TezDAGID.getInstance(appAttemptId.getApplicationId(), 3);
@@ -980,6 +996,7 @@ public class TestDAGImpl {
     dagWithCustomEdge.entityUpdateTracker = new StateChangeNotifierForTest(dagWithCustomEdge);
     doReturn(conf).when(dagWithCustomEdgeAppContext).getAMConf();
     doReturn(execService).when(dagWithCustomEdgeAppContext).getExecService();
+    doReturn(commitScheduler).when(dagWithCustomEdgeAppContext).getCommitScheduler();
     doReturn(dagWithCustomEdge).when(dagWithCustomEdgeAppContext).getCurrentDAG();
     doReturn(appAttemptId).when(dagWithCustomEdgeAppContext).getApplicationAttemptId();
     doReturn(appAttemptId.getApplicationId()).when(dagWithCustomEdgeAppContext).getApplicationID();
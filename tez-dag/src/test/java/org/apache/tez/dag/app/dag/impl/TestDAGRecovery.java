@@ -18,6 +18,7 @@
 package org.apache.tez.dag.app.dag.impl;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -65,6 +66,7 @@ import org.apache.tez.dag.api.records.DAGProtos.TezEntityDescriptorProto;
 import org.apache.tez.dag.api.records.DAGProtos.VertexPlan;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.app.ClusterInfo;
+import org.apache.tez.dag.app.OutputCommitScheduler;
 import org.apache.tez.dag.app.RecoveryParser.DAGRecoveryData;
 import org.apache.tez.dag.app.RecoveryParser.TaskAttemptRecoveryData;
 import org.apache.tez.dag.app.RecoveryParser.TaskRecoveryData;
@@ -149,6 +151,7 @@ public class TestDAGRecovery {
   private static Configuration conf;
   private DrainDispatcher dispatcher;
   private ListeningExecutorService execService;
+  private OutputCommitScheduler commitScheduler;
   private Credentials fsTokens;
   private AppContext appContext;
   private ACLManager aclManager;
@@ -327,7 +330,18 @@ public class TestDAGRecovery {
       }
     }).when(execService).submit((Callable<Void>) any());
 
+    commitScheduler = mock(OutputCommitScheduler.class);
+    Mockito.doAnswer(new Answer() {
+      public ListenableFuture<Void> answer(InvocationOnMock invocation) {
+        Object[] args = invocation.getArguments();
+        CallableEvent e = (CallableEvent) args[1];
+        dispatcher.getEventHandler().handle(e);
+        return mockFuture;
+      }
+    }).when(commitScheduler).submit(anyString(), (Callable<Void>) any());
+
     doReturn(execService).when(appContext).getExecService();
+    doReturn(commitScheduler).when(appContext).getCommitScheduler();
     historyEventHandler = new MockHistoryEventHandler(appContext);
     aclManager = new ACLManager("amUser");
     doReturn(conf).when(appContext).getAMConf();
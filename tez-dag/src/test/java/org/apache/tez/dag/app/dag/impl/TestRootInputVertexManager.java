@@ -525,6 +525,44 @@ public class TestRootInputVertexManager {
   }
 
 
+  @Test(timeout = 5000)
+  public void testSchedulingWhileInitializerRunning() throws IOException {
+    VertexManagerPluginContext mockContext =
+        mock(VertexManagerPluginContext.class);
+    when(mockContext.getInputVertexEdgeProperties())
+        .thenReturn(new HashMap<String, EdgeProperty>());
+    when(mockContext.getVertexName()).thenReturn("vertex1");
+    when(mockContext.getVertexNumTasks("vertex1")).thenReturn(4);
+    when(mockContext.isRootInputInitializerRunning("input1")).thenReturn(true);
+    final List<Integer> scheduledTasks = Lists.newLinkedList();
+    doAnswer(new ScheduledTasksAnswer(scheduledTasks)).when(
+        mockContext).scheduleTasks(anyList());
+
+    RootInputVertexManager manager =
+        createRootInputVertexManager(new Configuration(), mockContext, null, null);
+    InputDescriptor id1 = mock(InputDescriptor.class);
+    List<Event> events = Lists.newLinkedList();
+    events.add(InputDataInformationEvent.createWithSerializedPayload(0, null));
+    events.add(InputDataInformationEvent.createWithSerializedPayload(2, null));
+    manager.onRootVertexInitialized("input1", id1, events);
+
+    // only tasks which have received their events are scheduled
+    manager.onVertexStarted(emptyCompletions);
+    Assert.assertEquals(Lists.newArrayList(0, 2), scheduledTasks);
+    Assert.assertEquals(2, manager.pendingTasks.size());
+
+    events = Lists.newLinkedList();
+    events.add(InputDataInformationEvent.createWithSerializedPayload(1, null));
+    manager.onRootVertexInitialized("input1", id1, events);
+    Assert.assertEquals(Lists.newArrayList(1), scheduledTasks);
+
+    // remaining tasks are scheduled when the initializer completes
+    when(mockContext.isRootInputInitializerRunning("input1")).thenReturn(false);
+    manager.onRootVertexInitialized("input1", id1, new LinkedList<Event>());
+    Assert.assertEquals(Lists.newArrayList(3), scheduledTasks);
+    Assert.assertEquals(0, manager.pendingTasks.size());
+  }
+
   static RootInputVertexManager createRootInputVertexManager(
       Configuration conf, VertexManagerPluginContext context, Float min,
         Float max) {
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.dag.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tez.dag.api.client.StatusGetOpts;
+import org.apache.tez.dag.api.records.DAGProtos.DAGStatusProto;
+import org.apache.tez.dag.app.MockClock;
+import org.apache.tez.dag.app.dag.DAGState;
+import org.apache.tez.dag.app.dag.VertexState;
+import org.junit.Test;
+
+public class TestStatusSnapshotCache {
+
+  private static class CountingBuilder implements Callable<DAGStatusProto> {
+    final AtomicInteger builds = new AtomicInteger(0);
+
+    @Override
+    public DAGStatusProto call() throws Exception {
+      return DAGStatusProto.newBuilder().addDiagnostics("build" + builds.incrementAndGet())
+          .build();
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testSnapshotReuse() {
+    MockClock clock = new MockClock();
+    StatusSnapshotCache cache = new StatusSnapshotCache(clock, 1000);
+    Set<StatusGetOpts> counters = EnumSet.of(StatusGetOpts.GET_COUNTERS);
+    CountingBuilder builder = new CountingBuilder();
+
+    DAGStatusProto status = cache.get(null, counters, DAGState.RUNNING, builder);
+    clock.incrementTime(500);
+    assertSame(status, cache.get(null, counters, DAGState.RUNNING, builder));
+    assertEquals(1, builder.builds.get());
+
+    // other options and the vertices have their own snapshots
+    cache.get(null, EnumSet.noneOf(StatusGetOpts.class), DAGState.RUNNING, builder);
+    cache.get("v1", counters, VertexState.RUNNING, builder);
+    assertEquals(3, builder.builds.get());
+    assertSame(status, cache.get(null, counters, DAGState.RUNNING, builder));
+    assertEquals(3, builder.builds.get());
+  }
+
+  @Test(timeout = 5000)
+  public void testSnapshotRefresh() {
+    MockClock clock = new MockClock();
+    StatusSnapshotCache cache = new StatusSnapshotCache(clock, 1000);
+    Set<StatusGetOpts> counters = EnumSet.of(StatusGetOpts.GET_COUNTERS);
+    CountingBuilder builder = new CountingBuilder();
+
+    cache.get(null, counters, DAGState.RUNNING, builder);
+    // the snapshot expires
+    clock.incrementTime(1001);
+    assertEquals("build2",
+        cache.get(null, counters, DAGState.RUNNING, builder).getDiagnostics(0));
+    // the state changes before the snapshot expires
+    assertEquals("build3",
+        cache.get(null, counters, DAGState.SUCCEEDED, builder).getDiagnostics(0));
+    assertEquals("build3",
+        cache.get(null, counters, DAGState.SUCCEEDED, builder).getDiagnostics(0));
+    assertEquals(3, builder.builds.get());
+  }
+}
@@ -31,6 +31,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.tez.common.counters.CounterIndex;
 import org.apache.tez.common.TezAbstractEvent;
 import org.apache.tez.dag.api.TezConstants;
 import org.apache.tez.dag.app.dag.event.TaskAttemptEvent;
@@ -75,6 +76,7 @@ import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.app.ContainerContext;
 import org.apache.tez.dag.app.TaskCommunicatorManagerInterface;
 import org.apache.tez.dag.app.TaskHeartbeatHandler;
+import org.apache.tez.dag.app.dag.DAG;
 import org.apache.tez.dag.app.dag.StateChangeNotifier;
 import org.apache.tez.dag.app.dag.TaskStateInternal;
 import org.apache.tez.dag.app.dag.Vertex;
@@ -191,7 +193,10 @@ public class TestTaskImpl {
         taskHeartbeatHandler, appContext, leafVertex,
         taskResource, containerContext, vertex);
     mockTaskSpec = mock(TaskSpec.class);
+    DAG mockDag = mock(DAG.class);
+    when(mockDag.getCounterIndex()).thenReturn(new CounterIndex());
     mockVertex = mock(Vertex.class);
+    when(mockVertex.getDAG()).thenReturn(mockDag);
     ServicePluginInfo servicePluginInfo = new ServicePluginInfo()
       .setContainerLauncherName(TezConstants.getTezYarnServicePluginName());
     when(mockVertex.getServicePluginInfo()).thenReturn(servicePluginInfo);
@@ -55,6 +55,7 @@ import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.tez.common.DrainDispatcher;
 import org.apache.tez.common.TezCommonUtils;
+import org.apache.tez.common.counters.CounterIndex;
 import org.apache.tez.common.counters.Limits;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.TezConstants;
@@ -140,6 +141,7 @@ import org.apache.tez.dag.api.records.DAGProtos.VertexPlan;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.app.ContainerHeartbeatHandler;
 import org.apache.tez.dag.app.MockClock;
+import org.apache.tez.dag.app.OutputCommitScheduler;
 import org.apache.tez.dag.app.TaskAttemptEventInfo;
 import org.apache.tez.dag.app.TaskCommunicatorManagerInterface;
 import org.apache.tez.dag.app.TaskHeartbeatHandler;
@@ -181,6 +183,7 @@ import org.apache.tez.dag.app.rm.TaskSchedulerManager;
 import org.apache.tez.dag.app.rm.container.AMContainerMap;
 import org.apache.tez.dag.app.rm.container.ContainerContextMatcher;
 import org.apache.tez.dag.history.DAGHistoryEvent;
+import org.apache.tez.dag.history.events.VertexInitializedEvent;
 import org.apache.tez.dag.history.HistoryEventHandler;
 import org.apache.tez.dag.history.HistoryEventType;
 import org.apache.tez.dag.library.vertexmanager.InputReadyVertexManager;
@@ -221,6 +224,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.internal.util.collections.Sets;
 
@@ -238,6 +242,7 @@ public class TestVertexImpl {
 
   private static final Logger LOG = LoggerFactory.getLogger(TestVertexImpl.class);
   private ListeningExecutorService execService;
+  private OutputCommitScheduler commitScheduler;
 
   private boolean useCustomInitializer = false;
   private InputInitializer customInitializer = null;
@@ -2511,6 +2516,7 @@ public class TestVertexImpl {
     }
     DAG dag = mock(DAG.class);
     doReturn(ugi).when(dag).getDagUGI();
+    doReturn(new CounterIndex()).when(dag).getCounterIndex();
     doReturn(dagName).when(dag).getName();
     Map<String, LocalResource> localResources = new HashMap<>();
     for (PlanLocalResource planLR : dagPlan.getLocalResourceList()) {
@@ -2533,10 +2539,21 @@ public class TestVertexImpl {
           return mockFuture;
       }})
     .when(execService).submit((Callable<Void>) any());
+
+    commitScheduler = mock(OutputCommitScheduler.class);
+    Mockito.doAnswer(new Answer() {
+      public ListenableFuture<Void> answer(InvocationOnMock invocation) {
+          Object[] args = invocation.getArguments();
+          CallableEvent e = (CallableEvent) args[1];
+          dispatcher.getEventHandler().handle(e);
+          return mockFuture;
+      }})
+    .when(commitScheduler).submit(anyString(), (Callable<Void>) any());
     
     MockClock clock = new MockClock();
     
     doReturn(execService).when(appContext).getExecService();
+    doReturn(commitScheduler).when(appContext).getCommitScheduler();
     doReturn(conf).when(appContext).getAMConf();
     doReturn(new Credentials()).when(dag).getCredentials();
     doReturn(DAGPlan.getDefaultInstance()).when(dag).getJobPlan();
@@ -5557,6 +5574,86 @@ public class TestVertexImpl {
     }
   }
   
+  @Test(timeout = 5000)
+  public void testVertexWithInitializerSendingEvents() throws Exception {
+    useCustomInitializer = true;
+    setupPreDagCreation();
+    dagPlan = createDAGPlanWithInputInitializer("TestInputInitializer");
+    setupPostDagCreation();
+
+    VertexImplWithControlledInitializerManager v1 = (VertexImplWithControlledInitializerManager) vertices
+        .get("vertex1");
+    dispatcher.getEventHandler().handle(
+        new VertexEvent(v1.getVertexId(), VertexEventType.V_INIT));
+    dispatcher.await();
+    Assert.assertEquals(VertexState.INITIALIZING, v1.getState());
+    RootInputInitializerManagerControlled initializerManager1 = v1.getRootInputInitializerManager();
+
+    // The first events configure the vertex and initialize the input
+    List<Event> events = Lists.newArrayList();
+    events.add(InputConfigureVertexTasksEvent.create(5,
+        VertexLocationHint.create(createTaskLocationHints(5)), null));
+    events.add(InputDataInformationEvent.createWithSerializedPayload(0, null));
+    events.add(InputDataInformationEvent.createWithSerializedPayload(1, null));
+    initializerManager1.sendInputEvents(0, events, true);
+    Assert.assertEquals(VertexState.INITED, v1.getState());
+    Assert.assertEquals(5, v1.getTotalTasks());
+    Assert.assertEquals(false, initializerManager1.hasShutDown);
+
+    List<ScheduleTaskRequest> taskList = new LinkedList<VertexManagerPluginContext.ScheduleTaskRequest>();
+    for (int i=0; i<v1.getTotalTasks(); ++i) {
+      taskList.add(ScheduleTaskRequest.create(i, null));
+    }
+    v1.scheduleTasks(taskList);
+    dispatcher.await();
+
+    // Events after the vertex is initialized are routed to the tasks
+    events = Lists.newArrayList();
+    events.add(InputDataInformationEvent.createWithSerializedPayload(2, null));
+    events.add(InputDataInformationEvent.createWithSerializedPayload(3, null));
+    initializerManager1.sendInputEvents(0, events, true);
+    Assert.assertEquals(false, initializerManager1.hasShutDown);
+    events = Lists.newArrayList();
+    events.add(InputDataInformationEvent.createWithSerializedPayload(4, null));
+    initializerManager1.sendInputEvents(0, events, false);
+    Assert.assertEquals(VertexState.INITED, v1.getState());
+    Assert.assertEquals(true, initializerManager1.hasShutDown);
+    Assert.assertEquals(3, v1.numInitializerCompletionsHandled);
+
+    for (int i=0; i<v1.getTotalTasks(); ++i) {
+      Assert.assertEquals(
+          1,
+          v1.getTaskAttemptTezEvents(TezTaskAttemptID.getInstance(v1.getTask(i).getTaskId(), 0),
+              0, 0, 100).getEvents().size());
+    }
+
+    // The events added after the vertex was initialized are recorded for recovery
+    ArgumentCaptor<DAGHistoryEvent> historyCaptor = ArgumentCaptor.forClass(DAGHistoryEvent.class);
+    verify(historyEventHandler, atLeastOnce()).handle(historyCaptor.capture());
+    List<VertexInitializedEvent> initedEvents = Lists.newArrayList();
+    for (DAGHistoryEvent historyEvent : historyCaptor.getAllValues()) {
+      if (historyEvent.getHistoryEvent() instanceof VertexInitializedEvent
+          && ((VertexInitializedEvent) historyEvent.getHistoryEvent()).getVertexID()
+              .equals(v1.getVertexId())) {
+        initedEvents.add((VertexInitializedEvent) historyEvent.getHistoryEvent());
+      }
+    }
+    Assert.assertEquals(3, initedEvents.size());
+    Assert.assertFalse(initedEvents.get(0).isAddedEvents());
+    Assert.assertTrue(initedEvents.get(0).isInitializersRunning());
+    Assert.assertEquals(2, initedEvents.get(0).getInitGeneratedEvents().size());
+    Assert.assertTrue(initedEvents.get(1).isAddedEvents());
+    Assert.assertTrue(initedEvents.get(1).isInitializersRunning());
+    Assert.assertEquals(2, initedEvents.get(1).getInitGeneratedEvents().size());
+    Assert.assertTrue(initedEvents.get(2).isAddedEvents());
+    Assert.assertFalse(initedEvents.get(2).isInitializersRunning());
+    Assert.assertEquals(1, initedEvents.get(2).getInitGeneratedEvents().size());
+    VertexInitializedEvent recoveredEvent =
+        initedEvents.get(0).merge(initedEvents.get(1)).merge(initedEvents.get(2));
+    Assert.assertEquals(5, recoveredEvent.getInitGeneratedEvents().size());
+    Assert.assertFalse(recoveredEvent.isInitializersRunning());
+  }
+
   @Test(timeout = 5000)
   public void testVertexWithInitializerSuccessLegacyRouting() throws Exception {
     // Remove after legacy routing is removed
@@ -5977,6 +6074,13 @@ public class TestVertexImpl {
           .get(initializerIndex).getName(), events));
       dispatcher.await();
     }
+
+    public void sendInputEvents(int initializerIndex, List<Event> events,
+        boolean initializerRunning) {
+      eventHandler.handle(new VertexEventRootInputInitialized(vertexID, inputs
+          .get(initializerIndex).getName(), events, initializerRunning));
+      dispatcher.await();
+    }
   }
 
   @Test(timeout=5000)
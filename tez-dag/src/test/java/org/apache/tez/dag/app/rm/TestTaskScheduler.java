@@ -37,6 +37,7 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -1703,6 +1704,80 @@ public class TestTaskScheduler {
     verify(mockRMClient, times(3)).addContainerRequest(requestCaptor.capture());
   }
 
+  @Test(timeout=10000)
+  public void testTaskSchedulerReuseWithVertexAffinity() throws Exception {
+    // the container prefers the task of the vertex it last ran
+    Assert.assertEquals("taskA2", testReuseWithVertexAffinity(true, 1));
+    Assert.assertEquals("taskA2", testReuseWithVertexAffinity(true,
+        YarnTaskSchedulerService.MAX_VERTEX_AFFINITY_CANDIDATES));
+    // unless too many other tasks are requested before it
+    Assert.assertEquals("taskB0", testReuseWithVertexAffinity(true,
+        YarnTaskSchedulerService.MAX_VERTEX_AFFINITY_CANDIDATES + 1));
+    // otherwise the first task which can run on it is picked
+    Assert.assertEquals("taskB0", testReuseWithVertexAffinity(false, 1));
+  }
+
+  private String testReuseWithVertexAffinity(boolean vertexAffinityEnabled, int otherVertexTasks)
+      throws Exception {
+    TezAMRMClientAsync<CookieContainerRequest> mockRMClient = spy(
+        new AMRMClientAsyncForTest(new AMRMClientForTest(), 100));
+
+    Configuration conf = new Configuration();
+    conf.setLong(TezConfiguration.TEZ_AM_CONTAINER_REUSE_LOCALITY_DELAY_ALLOCATION_MILLIS, 0);
+    conf.setBoolean(TezConfiguration.TEZ_AM_CONTAINER_REUSE_VERTEX_AFFINITY_ENABLED,
+        vertexAffinityEnabled);
+
+    // the signatures of the tasks of the same vertex are the same object
+    TaskSchedulerContext mockApp = setupMockTaskSchedulerContext(DEFAULT_APP_HOST,
+        DEFAULT_APP_PORT, DEFAULT_APP_URL, false, null, null, new PreemptionMatcher(), conf);
+    final TaskSchedulerContextDrainable drainableAppCallback = createDrainableContext(mockApp);
+    TaskSchedulerWithDrainableContext scheduler =
+        new TaskSchedulerWithDrainableContext(drainableAppCallback, mockRMClient);
+
+    scheduler.initialize();
+    scheduler.start();
+    drainableAppCallback.drain();
+
+    Object signatureA = new Object();
+    Object signatureB = new Object();
+    Resource capability = Resource.newInstance(1024, 1);
+    String[] hosts = {"host1"};
+    String[] racks = {"/default-rack"};
+    Priority priority = Priority.newInstance(1);
+    Object cookie = new Object();
+
+    scheduler.allocateTask("taskA1", capability, hosts, racks, priority, signatureA, cookie);
+    drainableAppCallback.drain();
+    Container container = createContainer(1, "host1", capability, priority);
+    AtomicBoolean drainNotifier = new AtomicBoolean(false);
+    scheduler.delayedContainerManager.drainedDelayedContainersForTest = drainNotifier;
+    scheduler.onContainersAllocated(Collections.singletonList(container));
+    TestTaskSchedulerHelpers.waitForDelayedDrainNotify(drainNotifier);
+    drainableAppCallback.drain();
+    verify(mockApp).taskAllocated("taskA1", cookie, container);
+
+    // tasks of another vertex are requested before the next task of the vertex
+    for (int i = 0; i < otherVertexTasks; i++) {
+      scheduler.allocateTask("taskB" + i, capability, hosts, racks, priority, signatureB, cookie);
+    }
+    scheduler.allocateTask("taskA2", capability, hosts, racks, priority, signatureA, cookie);
+    drainableAppCallback.drain();
+
+    // the container is assigned again when the task is deallocated
+    assertTrue(scheduler.deallocateTask("taskA1", true, null, null));
+    drainableAppCallback.drain();
+
+    ArgumentCaptor<Object> taskCaptor = ArgumentCaptor.forClass(Object.class);
+    verify(mockApp, times(2)).taskAllocated(taskCaptor.capture(), eq(cookie), eq(container));
+
+    AppFinalStatus finalStatus =
+        new AppFinalStatus(FinalApplicationStatus.SUCCEEDED, SUCCEED_APP_MESSAGE, DEFAULT_APP_URL);
+    when(mockApp.getFinalAppStatus()).thenReturn(finalStatus);
+    scheduler.shutdown();
+    drainableAppCallback.drain();
+    return (String) taskCaptor.getValue();
+  }
+
   private Container createContainer(int id, String host, Resource resource,
       Priority priority) {
     ContainerId containerID = ContainerId.newInstance(
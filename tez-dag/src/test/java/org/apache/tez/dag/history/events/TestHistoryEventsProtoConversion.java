@@ -297,7 +297,24 @@ public class TestHistoryEventsProtoConversion {
         event.getInitGeneratedEvents().get(0).getEventType());
     Assert.assertEquals(event.getInitGeneratedEvents().size(),
         deserializedEvent.getInitGeneratedEvents().size());
+    Assert.assertFalse(deserializedEvent.isInitializersRunning());
+    Assert.assertFalse(deserializedEvent.isAddedEvents());
     logEvents(event, deserializedEvent);
+
+    VertexInitializedEvent addedEvent = VertexInitializedEvent.createAddedEvents(
+        event.getVertexID(), "vertex1", initGeneratedEvents, true);
+    VertexInitializedEvent deserializedAddedEvent = (VertexInitializedEvent)
+        testProtoConversion(addedEvent);
+    Assert.assertEquals(addedEvent.getVertexID(), deserializedAddedEvent.getVertexID());
+    Assert.assertTrue(deserializedAddedEvent.isInitializersRunning());
+    Assert.assertTrue(deserializedAddedEvent.isAddedEvents());
+    Assert.assertFalse(deserializedAddedEvent.isHistoryEvent());
+    VertexInitializedEvent mergedEvent = deserializedEvent.merge(deserializedAddedEvent);
+    Assert.assertEquals(event.getInitedTime(), mergedEvent.getInitedTime());
+    Assert.assertEquals(2, mergedEvent.getInitGeneratedEvents().size());
+    Assert.assertTrue(mergedEvent.isInitializersRunning());
+    Assert.assertFalse(mergedEvent.isAddedEvents());
+    logEvents(addedEvent, deserializedAddedEvent);
   }
 
   private void testVertexStartedEvent() throws Exception {
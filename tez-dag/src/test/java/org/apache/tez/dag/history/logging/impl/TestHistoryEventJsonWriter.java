@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.logging.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.tez.common.counters.TaskCounter;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
+import org.apache.tez.dag.api.oldrecords.TaskState;
+import org.apache.tez.dag.app.dag.impl.TaskAttemptImpl.DataEventDependencyInfo;
+import org.apache.tez.dag.history.HistoryEvent;
+import org.apache.tez.dag.history.events.AMStartedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptStartedEvent;
+import org.apache.tez.dag.history.events.TaskFinishedEvent;
+import org.apache.tez.dag.history.events.TaskStartedEvent;
+import org.apache.tez.dag.records.TaskAttemptTerminationCause;
+import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.runtime.api.TaskFailureType;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestHistoryEventJsonWriter {
+
+  private ApplicationAttemptId applicationAttemptId;
+  private TezTaskID tezTaskID;
+  private TezTaskAttemptID tezTaskAttemptID;
+  private ContainerId containerId;
+  private NodeId nodeId;
+
+  @SuppressWarnings("deprecation")
+  @Before
+  public void setup() {
+    ApplicationId applicationId = ApplicationId.newInstance(9999l, 1);
+    applicationAttemptId = ApplicationAttemptId.newInstance(applicationId, 1);
+    TezDAGID tezDAGID = TezDAGID.getInstance(applicationId, 1);
+    TezVertexID tezVertexID = TezVertexID.getInstance(tezDAGID, 2);
+    tezTaskID = TezTaskID.getInstance(tezVertexID, 3);
+    tezTaskAttemptID = TezTaskAttemptID.getInstance(tezTaskID, 4);
+    containerId = ContainerId.newInstance(applicationAttemptId, 111);
+    nodeId = NodeId.newInstance("node", 13435);
+  }
+
+  @Test(timeout = 5000)
+  public void testSameJsonAsConversion() throws JSONException {
+    for (HistoryEvent event : createEvents()) {
+      verifySameJson(event);
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testEscaping() throws JSONException {
+    String diagnostics = "quote\" backslash\\ newline\n tab\t control\u0001 unicode\u00e9";
+    TaskFinishedEvent event = new TaskFinishedEvent(tezTaskID, "v1", 1, 2, null,
+        TaskState.FAILED, diagnostics, null, 0);
+    verifySameJson(event);
+    StringBuilder sb = new StringBuilder();
+    new HistoryEventJsonWriter().write(event, sb);
+    Assert.assertEquals(diagnostics, new JSONObject(sb.toString())
+        .getJSONObject("otherinfo").getString("diagnostics"));
+  }
+
+  @Test(timeout = 5000)
+  public void testWriterReuse() throws JSONException {
+    HistoryEventJsonWriter writer = new HistoryEventJsonWriter();
+    StringBuilder sb = new StringBuilder();
+    List<HistoryEvent> events = createEvents();
+    for (HistoryEvent event : events) {
+      writer.write(event, sb);
+      sb.append('\n');
+    }
+    String[] records = sb.toString().split("\n");
+    Assert.assertEquals(events.size(), records.length);
+    for (int i = 0; i < records.length; ++i) {
+      Assert.assertEquals(HistoryEventJsonConversion.convertToJson(events.get(i)).toString(),
+          new JSONObject(records[i]).toString());
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testSameJsonWithMissingValues() throws JSONException {
+    List<HistoryEvent> events = new ArrayList<HistoryEvent>();
+    events.add(new TaskStartedEvent(tezTaskID, null, 0, 0));
+    events.add(new TaskFinishedEvent(tezTaskID, "v1", 100, 300, null,
+        TaskState.KILLED, null, new TezCounters(), 0));
+    events.add(new TaskAttemptStartedEvent(tezTaskAttemptID, "v1", 200, containerId,
+        nodeId, null, null, null));
+    events.add(new TaskAttemptFinishedEvent(tezTaskAttemptID, "v1", 200, 300,
+        TaskAttemptState.SUCCEEDED, null, null, null, new TezCounters(),
+        new ArrayList<DataEventDependencyInfo>(), null, 0, null, 0, null, null, null, null,
+        null));
+    for (HistoryEvent event : events) {
+      verifySameJson(event);
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testSameJsonText() throws JSONException {
+    // The text itself is the same, not only the parsed json, so that the files written by the
+    // writer do not differ from the ones written with the conversion
+    List<HistoryEvent> events = createEvents();
+    events.add(new TaskFinishedEvent(tezTaskID, "v1", 1, 2, null, TaskState.FAILED,
+        "quote\" backslash\\ newline\n unicode\u00e9", null, 0));
+    for (HistoryEvent event : events) {
+      StringBuilder sb = new StringBuilder();
+      new HistoryEventJsonWriter().write(event, sb);
+      Assert.assertEquals(event.getEventType().name(),
+          HistoryEventJsonConversion.convertToJson(event).toString(), sb.toString());
+    }
+  }
+
+  private void verifySameJson(HistoryEvent event) throws JSONException {
+    StringBuilder sb = new StringBuilder();
+    new HistoryEventJsonWriter().write(event, sb);
+    Assert.assertEquals(event.getEventType().name(),
+        HistoryEventJsonConversion.convertToJson(event).toString(),
+        new JSONObject(sb.toString()).toString());
+  }
+
+  private List<HistoryEvent> createEvents() {
+    List<HistoryEvent> events = new ArrayList<HistoryEvent>();
+    events.add(new AMStartedEvent(applicationAttemptId, 100, "user"));
+    events.add(new TaskStartedEvent(tezTaskID, "v1", 100, 200));
+    events.add(new TaskFinishedEvent(tezTaskID, "v1", 100, 300, tezTaskAttemptID,
+        TaskState.SUCCEEDED, null, createCounters(), 0));
+    events.add(new TaskFinishedEvent(tezTaskID, "v1", 100, 300, null,
+        TaskState.FAILED, "diag", null, 1));
+    events.add(new TaskAttemptStartedEvent(tezTaskAttemptID, "v1", 200, containerId,
+        nodeId, "inProgressUrl", null, "nodeHttpAddress"));
+    events.add(new TaskAttemptFinishedEvent(tezTaskAttemptID, "v1", 200, 300,
+        TaskAttemptState.KILLED, null, TaskAttemptTerminationCause.TERMINATED_BY_CLIENT,
+        null, null, null, null, 0, null, 0, containerId, nodeId, null, null, "nodeHttpAddress"));
+    events.add(createTaskAttemptFinishedEvent());
+    return events;
+  }
+
+  private TaskAttemptFinishedEvent createTaskAttemptFinishedEvent() {
+    List<DataEventDependencyInfo> dataEvents = new ArrayList<DataEventDependencyInfo>();
+    dataEvents.add(new DataEventDependencyInfo(150, tezTaskAttemptID));
+    dataEvents.add(new DataEventDependencyInfo(160, null));
+    return new TaskAttemptFinishedEvent(tezTaskAttemptID, "v1", 200, 300,
+        TaskAttemptState.FAILED, TaskFailureType.NON_FATAL,
+        TaskAttemptTerminationCause.APPLICATION_ERROR, "diagnostics", createCounters(),
+        dataEvents, null, 50, tezTaskAttemptID, 100, containerId, nodeId, "inProgressUrl",
+        "completedUrl", "nodeHttpAddress");
+  }
+
+  private TezCounters createCounters() {
+    TezCounters counters = new TezCounters();
+    counters.findCounter(TaskCounter.INPUT_RECORDS_PROCESSED).setValue(100);
+    counters.findCounter(TaskCounter.OUTPUT_RECORDS).setValue(200);
+    counters.findCounter(TaskCounter.SPILLED_RECORDS).setValue(0);
+    counters.findCounter("customGroup", "customCounter").setValue(5);
+    counters.findCounter("emptyGroup", "zeroCounter").setValue(0);
+    return counters;
+  }
+}
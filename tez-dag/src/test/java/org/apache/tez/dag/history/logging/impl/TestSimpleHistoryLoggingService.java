@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.logging.impl;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.tez.dag.api.TezConfiguration;
+import org.apache.tez.dag.app.AppContext;
+import org.apache.tez.dag.history.DAGHistoryEvent;
+import org.apache.tez.dag.history.events.AMStartedEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSimpleHistoryLoggingService {
+
+  private static final String TEST_ROOT_DIR = "target" + File.separatorChar
+      + TestSimpleHistoryLoggingService.class.getName() + "-tmpDir";
+
+  private ApplicationId appId = ApplicationId.newInstance(System.currentTimeMillis(), 1);
+  private Configuration conf;
+  private FileSystem localFS;
+  private Path logDir;
+
+  @Before
+  public void setup() throws IOException {
+    conf = new Configuration();
+    localFS = FileSystem.getLocal(conf);
+    logDir = localFS.makeQualified(new Path(TEST_ROOT_DIR));
+    localFS.delete(logDir, true);
+    conf.set(TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_DIR, logDir.toString());
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    localFS.delete(logDir, true);
+  }
+
+  @Test(timeout = 20000)
+  public void testBatchedWrite() throws Exception {
+    conf.setInt(TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_MAX_EVENTS_PER_BATCH, 7);
+    conf.setInt(TezConfiguration.TEZ_HISTORY_LOGGING_QUEUE_MAX_SIZE, 10);
+    writeAndVerifyEvents(100);
+  }
+
+  @Test(timeout = 20000)
+  public void testCompressedWriteWithConversionThreads() throws Exception {
+    conf.set(TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_COMPRESSION_CODEC,
+        DefaultCodec.class.getName());
+    conf.setInt(TezConfiguration.TEZ_HISTORY_LOGGING_CONVERSION_THREADS, 4);
+    conf.setInt(TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_MAX_EVENTS_PER_BATCH, 10);
+    List<String> records = writeAndVerifyEvents(200);
+    Assert.assertTrue(records.get(0).contains(appId.toString()));
+  }
+
+  @Test(timeout = 20000)
+  public void testGzipCompressedBatches() throws Exception {
+    testCompressedBatches(GzipCodec.class);
+  }
+
+  @Test(timeout = 20000)
+  public void testDefaultCompressedBatches() throws Exception {
+    testCompressedBatches(DefaultCodec.class);
+  }
+
+  private void testCompressedBatches(Class<? extends CompressionCodec> codecClass)
+      throws Exception {
+    conf.set(TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_COMPRESSION_CODEC,
+        codecClass.getName());
+    // the history file is read while it is being written
+    conf.set("fs.file.impl", RawLocalFileSystem.class.getName());
+    conf.setBoolean("fs.file.impl.disable.cache", true);
+    SimpleHistoryLoggingService service = createService();
+    service.init(conf);
+    service.start();
+    int numEvents = 0;
+    for (int batch = 0; batch < 3; ++batch) {
+      List<DAGHistoryEvent> events = new ArrayList<DAGHistoryEvent>();
+      for (int i = 0; i < 5; ++i) {
+        events.add(createEvent(++numEvents));
+      }
+      service.handleEvents(events);
+      // the batches written so far are readable, as if the AM went away at this point
+      verifyRecords(readRecords(getLogFile()), numEvents);
+    }
+    service.stop();
+
+    Path logFile = getLogFile();
+    Assert.assertTrue(logFile.getName().endsWith(
+        ReflectionUtils.newInstance(codecClass, conf).getDefaultExtension()));
+    verifyRecords(readRecords(logFile), numEvents);
+  }
+
+  private void verifyRecords(List<String> records, int numEvents) {
+    Assert.assertEquals(numEvents, records.size());
+    for (int i = 1; i <= numEvents; ++i) {
+      Assert.assertTrue(records.get(i - 1).contains(
+          "\"tez_" + ApplicationAttemptId.newInstance(appId, i) + "\""));
+    }
+  }
+
+  private List<String> writeAndVerifyEvents(int numEvents) throws Exception {
+    SimpleHistoryLoggingService service = createService();
+    service.init(conf);
+    service.start();
+    for (int i = 1; i <= numEvents; ++i) {
+      service.handle(createEvent(i));
+    }
+    service.stop();
+
+    List<String> records = readRecords(getLogFile());
+    Assert.assertEquals(numEvents, records.size());
+    for (int i = 1; i <= numEvents; ++i) {
+      // Events are written in the order they were generated
+      Assert.assertTrue(records.get(i - 1).contains(
+          "\"tez_" + ApplicationAttemptId.newInstance(appId, i) + "\""));
+    }
+    return records;
+  }
+
+  private SimpleHistoryLoggingService createService() {
+    AppContext appContext = mock(AppContext.class);
+    when(appContext.getApplicationAttemptId()).thenReturn(
+        ApplicationAttemptId.newInstance(appId, 1));
+    SimpleHistoryLoggingService service = new SimpleHistoryLoggingService();
+    service.setAppContext(appContext);
+    return service;
+  }
+
+  private DAGHistoryEvent createEvent(int attemptId) {
+    return new DAGHistoryEvent(new AMStartedEvent(
+        ApplicationAttemptId.newInstance(appId, attemptId), attemptId, "user"));
+  }
+
+  private Path getLogFile() throws IOException {
+    FileStatus[] files = localFS.listStatus(logDir);
+    Assert.assertEquals(1, files.length);
+    Assert.assertTrue(files[0].getPath().getName().startsWith(
+        SimpleHistoryLoggingService.LOG_FILE_NAME_PREFIX));
+    return files[0].getPath();
+  }
+
+  private List<String> readRecords(Path logFile) throws IOException {
+    CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(logFile);
+    InputStream in = localFS.open(logFile);
+    if (codec != null) {
+      in = codec.createInputStream(in);
+    }
+    List<String> records = new ArrayList<String>();
+    Scanner scanner = new Scanner(in, "UTF-8");
+    try {
+      scanner.useDelimiter(SimpleHistoryLoggingService.RECORD_SEPARATOR);
+      while (scanner.hasNext()) {
+        records.add(scanner.next());
+      }
+    } finally {
+      scanner.close();
+    }
+    return records;
+  }
+}
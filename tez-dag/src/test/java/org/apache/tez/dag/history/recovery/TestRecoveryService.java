@@ -20,6 +20,7 @@ package org.apache.tez.dag.history.recovery;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -32,6 +33,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -349,6 +352,104 @@ public class TestRecoveryService {
     verify(dagFos, times(2)).hflush();
   }
 
+  @Test(timeout=5000)
+  public void testGroupCommitFlushOnSummaryEvent() throws Exception {
+    setup(true, new String[][] {
+      {TezConfiguration.DAG_RECOVERY_MAX_UNFLUSHED_EVENTS, "-1"},
+      {TezConfiguration.DAG_RECOVERY_FLUSH_INTERVAL_SECS, "-1"},
+      {TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_ENABLED, "true"}
+    });
+    recoveryService.start();
+
+    DAGPlan dagPlan = DAGPlan.newBuilder().setName("test_dag").build();
+    // The caller is released only once the event has been flushed.
+    recoveryService.handle(new DAGHistoryEvent(dagId, new DAGSubmittedEvent(
+        dagId, startTime, dagPlan, appAttemptId, null, "nobody", conf, null, "default")));
+    verify(summaryFos, times(1)).hflush();
+    verify(dagFos, times(1)).hflush();
+
+    // This does not write to recovery immediately, only the summary is flushed.
+    recoveryService.handle(new DAGHistoryEvent(dagId, new DAGCommitStartedEvent(dagId, startTime)));
+    verify(summaryFos, times(2)).hflush();
+    verify(dagFos, times(1)).hflush();
+
+    // Does flush on stop.
+    recoveryService.stop();
+    verify(dagFos, times(2)).hflush();
+  }
+
+  @Test(timeout=5000)
+  public void testGroupCommitSingleFlushPerBatch() throws Exception {
+    setup(true, new String[][] {
+      {TezConfiguration.DAG_RECOVERY_MAX_UNFLUSHED_EVENTS, "-1"},
+      {TezConfiguration.DAG_RECOVERY_FLUSH_INTERVAL_SECS, "-1"},
+      {TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_ENABLED, "true"}
+    });
+    DAGPlan dagPlan = DAGPlan.newBuilder().setName("test_dag").build();
+    List<DAGHistoryEvent> batch = new ArrayList<DAGHistoryEvent>();
+    batch.add(new DAGHistoryEvent(dagId, new DAGSubmittedEvent(
+        dagId, startTime, dagPlan, appAttemptId, null, "nobody", conf, null, "default")));
+    for (int i = 0; i < 10; ++i) {
+      batch.add(new DAGHistoryEvent(dagId,
+          new DAGStartedEvent(dagId, startTime, "nobody", "test-dag")));
+    }
+    batch.add(new DAGHistoryEvent(dagId, new DAGCommitStartedEvent(dagId, startTime)));
+    batch.add(new DAGHistoryEvent(dagId,
+        new DAGFinishedEvent(dagId, 1L, 2L, DAGState.SUCCEEDED, "diag", null, "user", "dag1",
+            null, appAttemptId, null)));
+    recoveryService.handleEventBatch(batch);
+
+    assertEquals(batch.size(), recoveryService.processedRecoveryEventCounter.get());
+    verify(summaryFos, times(1)).hflush();
+    verify(dagFos, times(1)).hflush();
+    verify(dagFos, times(1)).close();
+    assertFalse(recoveryService.outputStreamMap.containsKey(dagId));
+  }
+
+  @Test(timeout=5000)
+  public void testGroupCommitMultipleDAGFinishedEvent() throws Exception {
+    setup(false, new String[][] {
+      {TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_ENABLED, "true"}
+    });
+    recoveryService.start();
+    for (int i = 0; i < 10; ++i) {
+      recoveryService.handle(new DAGHistoryEvent(dagId,
+          new TaskStartedEvent(tezTaskId, "v1", 0L, 0L)));
+    }
+    recoveryService.handle(new DAGHistoryEvent(dagId,
+        new DAGFinishedEvent(dagId, 1L, 2L, DAGState.FAILED, "diag", null, "user", "dag1", null,
+            appAttemptId, null)));
+    // all queued events were written ahead of the finished event and the stream was closed
+    assertEquals(11, recoveryService.processedRecoveryEventCounter.get());
+    assertFalse(recoveryService.outputStreamMap.containsKey(dagId));
+    recoveryService.handle(new DAGHistoryEvent(dagId,
+        new DAGFinishedEvent(dagId, 1L, 2L, DAGState.ERROR, "diag", null, "user", "dag1", null,
+            appAttemptId, null)));
+    assertEquals(0, recoveryService.outputStreamMap.size());
+    recoveryService.stop();
+  }
+
+  @Test(timeout=5000)
+  public void testGroupCommitDAGSubmittedFailure() throws Exception {
+    setup(true, new String[][] {
+      {TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_ENABLED, "true"}
+    });
+    when(fs.create(eq(summaryPath), eq(false), anyInt())).thenThrow(
+        new IOException("summary create failed"));
+    recoveryService.start();
+
+    DAGPlan dagPlan = DAGPlan.newBuilder().setName("test_dag").build();
+    try {
+      recoveryService.handle(new DAGHistoryEvent(dagId, new DAGSubmittedEvent(
+          dagId, startTime, dagPlan, appAttemptId, null, "nobody", conf, null, "default")));
+      fail("Expected DAG submission to fail");
+    } catch (IOException e) {
+      assertEquals("summary create failed", e.getMessage());
+    }
+    assertTrue(recoveryService.hasRecoveryFailed());
+    recoveryService.stop();
+  }
+
   private void waitForDrain(int limit) throws Exception {
     long maxTime = System.currentTimeMillis() + limit;
     while (!recoveryService.eventQueue.isEmpty()) {
@@ -32,7 +32,10 @@ import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.RecordReader;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.tez.common.ReflectionUtils;
+import org.apache.tez.common.counters.TaskCounter;
 import org.apache.tez.dag.api.TezException;
+import org.apache.tez.mapreduce.grouper.SplitReaderPrefetcher;
+import org.apache.tez.mapreduce.grouper.TezSplitGrouper;
 
 import com.google.common.base.Preconditions;
 
@@ -136,12 +139,37 @@ public class TezGroupedSplitsInputFormat<K, V>
     int idx = 0;
     long progress;
     RecordReader<K, V> curReader;
+    final SplitReaderPrefetcher<RecordReader<K, V>> readers;
     
     public TezGroupedSplitsRecordReader(TezGroupedSplit split, JobConf job,
         Reporter reporter) throws IOException {
       this.groupedSplit = split;
       this.job = job;
       this.reporter = reporter;
+      int numPrefetchedSplits = job.getInt(TezSplitGrouper.TEZ_GROUPING_PREFETCH_SPLITS,
+          TezSplitGrouper.TEZ_GROUPING_PREFETCH_SPLITS_DEFAULT);
+      this.readers = new SplitReaderPrefetcher<RecordReader<K, V>>(
+          split.wrappedSplits.size(), numPrefetchedSplits) {
+        @Override
+        protected RecordReader<K, V> createReader(int index) throws Exception {
+          // readers opened ahead get their own copy of the configuration
+          JobConf readerJob = isPrefetching() ? new JobConf(TezGroupedSplitsRecordReader.this.job)
+              : TezGroupedSplitsRecordReader.this.job;
+          return wrappedInputFormat.getRecordReader(groupedSplit.wrappedSplits.get(index),
+              readerJob, TezGroupedSplitsRecordReader.this.reporter);
+        }
+
+        @Override
+        protected void closeReader(RecordReader<K, V> reader) throws IOException {
+          reader.close();
+        }
+
+        @Override
+        protected void incrementWaitTime(long millis) {
+          TezGroupedSplitsRecordReader.this.reporter.incrCounter(
+              TaskCounter.INPUT_SPLIT_OPEN_WAIT_TIME, millis);
+        }
+      };
       initNextRecordReader();
     }
     
@@ -173,6 +201,7 @@ public class TezGroupedSplitsInputFormat<K, V>
     
     @Override
     public void close() throws IOException {
+      readers.close();
       if (curReader != null) {
         curReader.close();
         curReader = null;
@@ -200,8 +229,7 @@ public class TezGroupedSplitsInputFormat<K, V>
 
       // get a record reader for the idx-th chunk
       try {
-        curReader = wrappedInputFormat.getRecordReader(
-            groupedSplit.wrappedSplits.get(idx), job, reporter);
+        curReader = readers.next();
       } catch (Exception e) {
         throw new RuntimeException (e);
       }
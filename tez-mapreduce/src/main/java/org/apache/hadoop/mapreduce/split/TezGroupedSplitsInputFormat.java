@@ -28,14 +28,20 @@ import org.apache.hadoop.classification.InterfaceAudience.Public;
 import org.apache.hadoop.classification.InterfaceStability.Evolving;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.StatusReporter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 import org.apache.tez.common.ReflectionUtils;
+import org.apache.tez.common.counters.TaskCounter;
 import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.api.TezUncheckedException;
+import org.apache.tez.mapreduce.grouper.SplitReaderPrefetcher;
+import org.apache.tez.mapreduce.grouper.TezSplitGrouper;
 
 import com.google.common.base.Preconditions;
 
@@ -138,13 +144,77 @@ public class TezGroupedSplitsInputFormat<K, V> extends InputFormat<K, V>
     int idx = 0;
     long progress;
     RecordReader<K, V> curReader;
+    final SplitReaderPrefetcher<RecordReader<K, V>> readers;
     
     public TezGroupedSplitsRecordReader(TezGroupedSplit split,
         TaskAttemptContext context) throws IOException {
       this.groupedSplit = split;
       this.context = context;
+      int numPrefetchedSplits = context.getConfiguration().getInt(
+          TezSplitGrouper.TEZ_GROUPING_PREFETCH_SPLITS,
+          TezSplitGrouper.TEZ_GROUPING_PREFETCH_SPLITS_DEFAULT);
+      this.readers = new SplitReaderPrefetcher<RecordReader<K, V>>(
+          split.wrappedSplits.size(), numPrefetchedSplits) {
+        @Override
+        protected RecordReader<K, V> createReader(int index) throws Exception {
+          InputSplit wrappedSplit = groupedSplit.wrappedSplits.get(index);
+          // readers opened ahead get their own copy of the configuration
+          TaskAttemptContext readerContext = isPrefetching()
+              ? copyContext(TezGroupedSplitsRecordReader.this.context)
+              : TezGroupedSplitsRecordReader.this.context;
+          RecordReader<K, V> reader =
+              wrappedInputFormat.createRecordReader(wrappedSplit, readerContext);
+          reader.initialize(wrappedSplit, readerContext);
+          return reader;
+        }
+
+        @Override
+        protected void closeReader(RecordReader<K, V> reader) throws IOException {
+          reader.close();
+        }
+
+        @Override
+        protected void incrementWaitTime(long millis) {
+          Counter counter = TezGroupedSplitsRecordReader.this.context.getCounter(
+              TaskCounter.INPUT_SPLIT_OPEN_WAIT_TIME);
+          if (counter != null) {
+            counter.increment(millis);
+          }
+        }
+      };
     }
     
+    // A context with a copy of the configuration, which reports to the given context
+    private TaskAttemptContext copyContext(final TaskAttemptContext context) {
+      return new TaskAttemptContextImpl(new Configuration(context.getConfiguration()),
+          context.getTaskAttemptID(), new StatusReporter() {
+            @Override
+            public Counter getCounter(Enum<?> name) {
+              return context.getCounter(name);
+            }
+
+            @Override
+            public Counter getCounter(String group, String name) {
+              return context.getCounter(group, name);
+            }
+
+            @Override
+            public void progress() {
+              context.progress();
+            }
+
+            @Override
+            public float getProgress() {
+              return context.getProgress();
+            }
+
+            @Override
+            public void setStatus(String status) {
+              context.setStatus(status);
+            }
+          });
+    }
+
     public void initialize(InputSplit split,
         TaskAttemptContext context) throws IOException, InterruptedException {
       if (this.groupedSplit != split) {
@@ -175,6 +245,7 @@ public class TezGroupedSplitsInputFormat<K, V> extends InputFormat<K, V>
     }
     
     public void close() throws IOException {
+      readers.close();
       if (curReader != null) {
         curReader.close();
         curReader = null;
@@ -201,10 +272,7 @@ public class TezGroupedSplitsInputFormat<K, V> extends InputFormat<K, V>
 
       // get a record reader for the idx-th chunk
       try {
-        curReader = wrappedInputFormat.createRecordReader(
-            groupedSplit.wrappedSplits.get(idx), context);
-
-        curReader.initialize(groupedSplit.wrappedSplits.get(idx), context);
+        curReader = readers.next();
       } catch (Exception e) {
         throw new RuntimeException (e);
       }
@@ -21,6 +21,8 @@ package org.apache.tez.mapreduce.committer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.classification.InterfaceAudience.Public;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapred.FileOutputCommitter;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.JobContext;
@@ -96,9 +98,36 @@ public class MROutputCommitter extends OutputCommitter {
     if (!initialized) {
       throw new RuntimeException("Committer not initialized");
     }
+    int numCommitThreads = jobConf.getInt(MRJobConfig.MR_TEZ_OUTPUT_COMMITTER_COMMIT_THREADS,
+        MRJobConfig.MR_TEZ_OUTPUT_COMMITTER_COMMIT_THREADS_DEFAULT);
+    if (numCommitThreads > 1 && isParallelMergeSupported()) {
+      Path outputPath = new Path(jobConf.get(
+          org.apache.hadoop.mapreduce.lib.output.FileOutputFormat.OUTDIR));
+      FileSystem fs = outputPath.getFileSystem(jobConf);
+      outputPath = fs.makeQualified(outputPath);
+      Path jobAttemptPath = org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter
+          .getJobAttemptPath(jobContext, outputPath);
+      new ParallelFileOutputMerger(fs, outputPath, numCommitThreads).merge(jobAttemptPath);
+    }
     committer.commitJob(jobContext);
   }
 
+  /**
+   * Whether the committed task outputs can be merged by {@link ParallelFileOutputMerger} before
+   * the job is committed. Subclasses of FileOutputCommitter may lay out the task outputs
+   * differently, and with version 2 of the algorithm the tasks commit into the output directory.
+   */
+  private boolean isParallelMergeSupported() {
+    Class<?> committerClass = committer.getClass();
+    int algorithmVersion = jobConf.getInt(org.apache.hadoop.mapreduce.lib.output
+        .FileOutputCommitter.FILEOUTPUTCOMMITTER_ALGORITHM_VERSION, org.apache.hadoop.mapreduce
+        .lib.output.FileOutputCommitter.FILEOUTPUTCOMMITTER_ALGORITHM_VERSION_DEFAULT);
+    return (committerClass == FileOutputCommitter.class
+        || committerClass == org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter.class)
+        && jobConf.get(org.apache.hadoop.mapreduce.lib.output.FileOutputFormat.OUTDIR) != null
+        && algorithmVersion == 1;
+  }
+
   @Override
   public void abortOutput(VertexStatus.State finalState) throws IOException {
     if (!initialized) {
@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.mapreduce.committer;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Moves the committed task outputs of a {@link FileOutputCommitter} job attempt to the output
+ * directory, with the file system operations spread over a thread pool.
+ *
+ * With version 1 of the FileOutputCommitter algorithm, FileOutputCommitter#commitJob merges the
+ * directory of each committed task into the output directory one at a time. This class lists
+ * the task directories, creates the directories of the output and renames the files in parallel,
+ * and then deletes the task directories, so that FileOutputCommitter#commitJob is only left with
+ * cleaning up the job attempt and marking the output as successful. As with FileOutputCommitter,
+ * a file of the output is replaced by a committed file with the same name.
+ */
+@Private
+public class ParallelFileOutputMerger {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelFileOutputMerger.class);
+
+  private final FileSystem fs;
+  private final Path outputPath;
+  private final int numThreads;
+
+  public ParallelFileOutputMerger(FileSystem fs, Path outputPath, int numThreads) {
+    this.fs = fs;
+    this.outputPath = outputPath;
+    this.numThreads = numThreads;
+  }
+
+  /**
+   * The files and directories of a committed task output, relative to the task directory
+   */
+  private static class TaskOutput {
+    final Path taskPath;
+    final List<String> dirs = new ArrayList<String>();
+    final List<String> files = new ArrayList<String>();
+
+    TaskOutput(Path taskPath) {
+      this.taskPath = taskPath;
+    }
+  }
+
+  /**
+   * Merge the outputs of the tasks committed in the job attempt directory
+   * @return the number of files moved to the output directory
+   */
+  public int merge(Path jobAttemptPath) throws IOException {
+    long startTime = System.currentTimeMillis();
+    List<Path> taskPaths = new ArrayList<Path>();
+    try {
+      for (FileStatus status : fs.listStatus(jobAttemptPath)) {
+        if (!FileOutputCommitter.PENDING_DIR_NAME.equals(status.getPath().getName())) {
+          taskPaths.add(status.getPath());
+        }
+      }
+    } catch (FileNotFoundException e) {
+      // no task has been committed
+    }
+    if (taskPaths.isEmpty()) {
+      return 0;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads, new ThreadFactoryBuilder()
+        .setDaemon(true).setNameFormat("OutputMerger #%d").build());
+    try {
+      List<Callable<TaskOutput>> listings = new ArrayList<Callable<TaskOutput>>(taskPaths.size());
+      for (final Path taskPath : taskPaths) {
+        listings.add(new Callable<TaskOutput>() {
+          @Override
+          public TaskOutput call() throws Exception {
+            return listTaskOutput(taskPath);
+          }
+        });
+      }
+      List<TaskOutput> taskOutputs = invokeAll(executor, listings);
+
+      // the directories are created before any file is moved into them
+      Set<String> dirs = new TreeSet<String>();
+      List<Callable<Void>> renames = new ArrayList<Callable<Void>>();
+      for (final TaskOutput taskOutput : taskOutputs) {
+        dirs.addAll(taskOutput.dirs);
+        for (final String file : taskOutput.files) {
+          renames.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              rename(new Path(taskOutput.taskPath, file), new Path(outputPath, file));
+              return null;
+            }
+          });
+        }
+      }
+      List<Callable<Void>> mkdirs = new ArrayList<Callable<Void>>(dirs.size());
+      for (final String dir : dirs) {
+        mkdirs.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            Path path = new Path(outputPath, dir);
+            if (!fs.mkdirs(path)) {
+              throw new IOException("Failed to create output directory " + path);
+            }
+            return null;
+          }
+        });
+      }
+      invokeAll(executor, mkdirs);
+      invokeAll(executor, renames);
+
+      List<Callable<Void>> deletes = new ArrayList<Callable<Void>>(taskPaths.size());
+      for (final Path taskPath : taskPaths) {
+        deletes.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            fs.delete(taskPath, true);
+            return null;
+          }
+        });
+      }
+      invokeAll(executor, deletes);
+
+      LOG.info("Merged " + renames.size() + " files of " + taskPaths.size()
+          + " committed task outputs into " + outputPath + " with " + numThreads
+          + " threads in " + (System.currentTimeMillis() - startTime) + " ms");
+      return renames.size();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private TaskOutput listTaskOutput(Path taskPath) throws IOException {
+    TaskOutput taskOutput = new TaskOutput(taskPath);
+    listDir(taskPath, "", taskOutput);
+    return taskOutput;
+  }
+
+  private void listDir(Path dir, String relativeDir, TaskOutput taskOutput) throws IOException {
+    for (FileStatus status : fs.listStatus(dir)) {
+      String relativePath = relativeDir + status.getPath().getName();
+      if (status.isDirectory()) {
+        taskOutput.dirs.add(relativePath);
+        listDir(status.getPath(), relativePath + Path.SEPARATOR, taskOutput);
+      } else {
+        taskOutput.files.add(relativePath);
+      }
+    }
+  }
+
+  private void rename(Path src, Path dst) throws IOException {
+    if (fs.rename(src, dst)) {
+      return;
+    }
+    // replace an existing file, as FileOutputCommitter does
+    if (fs.exists(dst) && fs.delete(dst, true) && fs.rename(src, dst)) {
+      return;
+    }
+    throw new IOException("Failed to rename " + src + " to " + dst);
+  }
+
+  private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> callables)
+      throws IOException {
+    List<Future<T>> futures = new ArrayList<Future<T>>(callables.size());
+    for (Callable<T> callable : callables) {
+      futures.add(executor.submit(callable));
+    }
+    List<T> results = new ArrayList<T>(futures.size());
+    for (Future<T> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while merging the task outputs", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+    return results;
+  }
+}
@@ -0,0 +1,414 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.mapreduce.grouper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.util.RackResolver;
+import org.apache.tez.dag.api.TezUncheckedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Groups splits into groups of about the same estimated size, as a bin packing with locality
+ * preferences, instead of growing groups one node at a time.
+ *
+ * <ol>
+ * <li>Splits are taken largest first. Each split with locations is assigned to the least loaded
+ * of its nodes, which spreads the data evenly over the replicas.</li>
+ * <li>Each node packs its splits into as many full groups as its data allows. A split goes to
+ * the least filled group of the node, and is left over if it does not fit there.</li>
+ * <li>The left over splits are packed the same way per rack, into groups reduced by
+ * {@link TezSplitGrouper#TEZ_GROUPING_RACK_SPLIT_SIZE_REDUCTION}.</li>
+ * <li>Whatever is left, including the splits without locations, is packed into groups without a
+ * location preference.</li>
+ * </ol>
+ *
+ * Groups are balanced by estimated length, or by number of splits when only grouping by count.
+ * The work is O(n log n) in the number of splits, independent of the number of nodes.
+ */
+class BalancedSplitGrouper {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BalancedSplitGrouper.class);
+
+  private final Configuration conf;
+  private final String wrappedInputFormatName;
+  private final SplitSizeEstimatorWrapper estimator;
+  private final SplitLocationProviderWrapper locationProvider;
+
+  // The state of one grouping
+  private int[] groupOf;
+  private final List<String[]> groupLocations = new ArrayList<String[]>();
+  private final List<String> groupRacks = new ArrayList<String>();
+
+  BalancedSplitGrouper(Configuration conf, String wrappedInputFormatName,
+      SplitSizeEstimatorWrapper estimator, SplitLocationProviderWrapper locationProvider) {
+    this.conf = conf;
+    this.wrappedInputFormatName = wrappedInputFormatName;
+    this.estimator = estimator;
+    this.locationProvider = locationProvider;
+  }
+
+  List<GroupedSplitContainer> group(List<SplitContainer> splits, int desiredNumSplits)
+      throws IOException, InterruptedException {
+    boolean groupByLength = conf.getBoolean(
+        TezSplitGrouper.TEZ_GROUPING_SPLIT_BY_LENGTH,
+        TezSplitGrouper.TEZ_GROUPING_SPLIT_BY_LENGTH_DEFAULT);
+    boolean groupByCount = conf.getBoolean(
+        TezSplitGrouper.TEZ_GROUPING_SPLIT_BY_COUNT,
+        TezSplitGrouper.TEZ_GROUPING_SPLIT_BY_COUNT_DEFAULT);
+    boolean nodeLocalOnly = conf.getBoolean(
+        TezSplitGrouper.TEZ_GROUPING_NODE_LOCAL_ONLY,
+        TezSplitGrouper.TEZ_GROUPING_NODE_LOCAL_ONLY_DEFAULT);
+    if (!(groupByLength || groupByCount)) {
+      throw new TezUncheckedException(
+          "None of the grouping parameters are true: "
+              + TezSplitGrouper.TEZ_GROUPING_SPLIT_BY_LENGTH + ", "
+              + TezSplitGrouper.TEZ_GROUPING_SPLIT_BY_COUNT);
+    }
+
+    final int numSplits = splits.size();
+    long[] sizes = new long[numSplits];
+    String[][] locations = new String[numSplits][];
+    long totalSize = 0;
+    Map<String, Integer> nodeIndexes = createLocationsMap();
+    for (int i = 0; i < numSplits; i++) {
+      SplitContainer split = splits.get(i);
+      // Avoid empty groups for splits without data
+      sizes[i] = groupByLength ? Math.max(1, estimator.getEstimatedSize(split)) : 1;
+      totalSize += sizes[i];
+      locations[i] = cleanupLocations(locationProvider.getPreferredLocations(split));
+      for (String location : locations[i]) {
+        nodeIndexes.put(location, null);
+      }
+    }
+    List<String> nodes = new ArrayList<String>(nodeIndexes.keySet());
+    for (int i = 0; i < nodes.size(); i++) {
+      nodeIndexes.put(nodes.get(i), i);
+    }
+    long targetSize = Math.max(1, totalSize / desiredNumSplits);
+
+    int[] indexes = new int[numSplits];
+    for (int i = 0; i < numSplits; i++) {
+      indexes[i] = i;
+    }
+    int[] order = sortBySize(indexes, numSplits, sizes);
+
+    groupOf = new int[numSplits];
+    Arrays.fill(groupOf, -1);
+    groupLocations.clear();
+    groupRacks.clear();
+
+    // Spread the splits over their nodes
+    long[] nodeLoads = new long[nodes.size()];
+    int[] nodeOf = new int[numSplits];
+    int[] remaining = new int[numSplits];
+    int numRemaining = 0;
+    for (int index : order) {
+      int node = -1;
+      for (String location : locations[index]) {
+        int candidate = nodeIndexes.get(location);
+        if (node == -1 || nodeLoads[candidate] < nodeLoads[node]) {
+          node = candidate;
+        }
+      }
+      nodeOf[index] = node;
+      if (node == -1) {
+        remaining[numRemaining++] = index;
+      } else {
+        nodeLoads[node] += sizes[index];
+      }
+    }
+    int[][] nodeSplits = bucket(order, nodeOf, nodes.size());
+
+    // Node local groups
+    int[] leftOver = new int[numSplits];
+    int numLeftOver = 0;
+    for (int node = 0; node < nodes.size(); node++) {
+      int numGroups;
+      long capacity;
+      if (nodeLocalOnly) {
+        numGroups = (int) ((nodeLoads[node] + targetSize - 1) / targetSize);
+        capacity = Long.MAX_VALUE;
+      } else {
+        numGroups = (int) (nodeLoads[node] / targetSize);
+        capacity = targetSize;
+      }
+      numLeftOver = pack(nodeSplits[node], sizes, numGroups, capacity,
+          new String[] { nodes.get(node) }, null, leftOver, numLeftOver);
+    }
+    int numNodeGroups = groupLocations.size();
+
+    // Rack local groups
+    if (numLeftOver > 0) {
+      float rackSplitReduction = conf.getFloat(
+          TezSplitGrouper.TEZ_GROUPING_RACK_SPLIT_SIZE_REDUCTION,
+          TezSplitGrouper.TEZ_GROUPING_RACK_SPLIT_SIZE_REDUCTION_DEFAULT);
+      long rackTargetSize = targetSize;
+      if (rackSplitReduction > 0) {
+        rackTargetSize = Math.max(1, (long) (targetSize * rackSplitReduction));
+      }
+      RackResolver.init(conf);
+      Map<String, Integer> rackIndexes = createLocationsMap();
+      Map<String, Integer> nodeRacks = new HashMap<String, Integer>();
+      List<String> racks = new ArrayList<String>();
+      long[] rackLoads = new long[nodes.size()];
+      int[] rackOf = new int[numSplits];
+      int[] leftOverOrder = sortBySize(leftOver, numLeftOver, sizes);
+      for (int index : leftOverOrder) {
+        int rack = -1;
+        for (String location : locations[index]) {
+          Integer candidate = nodeRacks.get(location);
+          if (candidate == null) {
+            String rackName = RackResolver.resolve(location).getNetworkLocation();
+            candidate = rackIndexes.get(rackName);
+            if (candidate == null) {
+              candidate = racks.size();
+              racks.add(rackName);
+              rackIndexes.put(rackName, candidate);
+            }
+            nodeRacks.put(location, candidate);
+          }
+          if (rack == -1 || rackLoads[candidate] < rackLoads[rack]) {
+            rack = candidate;
+          }
+        }
+        rackOf[index] = rack;
+        rackLoads[rack] += sizes[index];
+      }
+      int[][] rackSplits = bucket(leftOverOrder, rackOf, racks.size());
+      for (int rack = 0; rack < racks.size(); rack++) {
+        numRemaining = pack(rackSplits[rack], sizes,
+            (int) (rackLoads[rack] / rackTargetSize), rackTargetSize, null, racks.get(rack),
+            remaining, numRemaining);
+      }
+    }
+    int numRackGroups = groupLocations.size() - numNodeGroups;
+
+    // Groups without locality
+    if (numRemaining > 0) {
+      int[] remainingOrder = sortBySize(remaining, numRemaining, sizes);
+      long remainingSize = 0;
+      for (int index : remainingOrder) {
+        remainingSize += sizes[index];
+      }
+      int numGroups = (int) Math.max(1, (remainingSize + targetSize / 2) / targetSize);
+      pack(remainingOrder, sizes, numGroups, Long.MAX_VALUE, null, null, null, 0);
+    }
+
+    List<GroupedSplitContainer> groupedSplits = createGroups(splits, locations);
+    LOG.info("Balanced grouping. Desired numSplits: " + desiredNumSplits
+        + " created: " + groupedSplits.size()
+        + " nodeLocal: " + numNodeGroups
+        + " rackLocal: " + numRackGroups
+        + " targetSize: " + targetSize
+        + " totalSize: " + totalSize
+        + " numLocations: " + nodes.size()
+        + " numOriginalSplits: " + numSplits
+        + " . Grouping by length: " + groupByLength
+        + " nodeLocalOnly: " + nodeLocalOnly);
+    return groupedSplits;
+  }
+
+  private static final class Bin {
+    final int group;
+    long size = 0;
+
+    Bin(int group) {
+      this.group = group;
+    }
+  }
+
+  private static final Comparator<Bin> BIN_COMPARATOR = new Comparator<Bin>() {
+    @Override
+    public int compare(Bin o1, Bin o2) {
+      int cmp = Long.compare(o1.size, o2.size);
+      return cmp != 0 ? cmp : Integer.compare(o1.group, o2.group);
+    }
+  };
+
+  /**
+   * Packs the splits, largest first, into the least filled of numGroups new groups. A split
+   * which does not fit into a non-empty group is added to leftOver.
+   *
+   * @return the new number of left over splits
+   */
+  private int pack(int[] members, long[] sizes, int numGroups, long capacity,
+      String[] locations, String rack, int[] leftOver, int numLeftOver) {
+    if (members.length == 0) {
+      return numLeftOver;
+    }
+    if (numGroups <= 0) {
+      for (int index : members) {
+        leftOver[numLeftOver++] = index;
+      }
+      return numLeftOver;
+    }
+    PriorityQueue<Bin> bins = new PriorityQueue<Bin>(numGroups, BIN_COMPARATOR);
+    int firstGroup = groupLocations.size();
+    for (int i = 0; i < numGroups; i++) {
+      bins.add(new Bin(firstGroup + i));
+      groupLocations.add(locations);
+      groupRacks.add(rack);
+    }
+    for (int index : members) {
+      Bin bin = bins.peek();
+      if (bin.size == 0 || bin.size + sizes[index] <= capacity) {
+        bins.poll();
+        bin.size += sizes[index];
+        groupOf[index] = bin.group;
+        bins.add(bin);
+      } else {
+        leftOver[numLeftOver++] = index;
+      }
+    }
+    return numLeftOver;
+  }
+
+  private List<GroupedSplitContainer> createGroups(List<SplitContainer> splits,
+      String[][] locations) {
+    int numGroups = groupLocations.size();
+    int[] groupSizes = new int[numGroups];
+    for (int group : groupOf) {
+      groupSizes[group]++;
+    }
+    // Groups which did not get any splits are dropped
+    int[] groupIndexes = new int[numGroups];
+    int numNonEmpty = 0;
+    for (int group = 0; group < numGroups; group++) {
+      groupIndexes[group] = groupSizes[group] == 0 ? -1 : numNonEmpty++;
+    }
+    GroupedSplitContainer[] groups = new GroupedSplitContainer[numNonEmpty];
+    List<Set<String>> unionLocations = new ArrayList<Set<String>>(numNonEmpty);
+    for (int group = 0; group < numGroups; group++) {
+      if (groupIndexes[group] == -1) {
+        continue;
+      }
+      String[] groupLocation = groupLocations.get(group);
+      String rack = groupRacks.get(group);
+      Set<String> union = null;
+      if (groupLocation == null && rack != null) {
+        // Rack local groups prefer the nodes of their splits
+        union = new LinkedHashSet<String>();
+      }
+      unionLocations.add(union);
+      if (union == null) {
+        groups[groupIndexes[group]] = new GroupedSplitContainer(groupSizes[group],
+            wrappedInputFormatName, groupLocation, rack);
+      }
+    }
+    for (int i = 0; i < groupOf.length; i++) {
+      Set<String> union = unionLocations.get(groupIndexes[groupOf[i]]);
+      if (union != null) {
+        union.addAll(Arrays.asList(locations[i]));
+      }
+    }
+    for (int group = 0; group < numGroups; group++) {
+      int groupIndex = groupIndexes[group];
+      if (groupIndex != -1 && groups[groupIndex] == null) {
+        Set<String> union = unionLocations.get(groupIndex);
+        groups[groupIndex] = new GroupedSplitContainer(groupSizes[group], wrappedInputFormatName,
+            union.toArray(new String[union.size()]), groupRacks.get(group));
+      }
+    }
+    // Splits are added in their original order
+    for (int i = 0; i < groupOf.length; i++) {
+      groups[groupIndexes[groupOf[i]]].addSplit(splits.get(i));
+    }
+    return new ArrayList<GroupedSplitContainer>(Arrays.asList(groups));
+  }
+
+  /**
+   * Distributes the splits, in order, into one array per bucket.
+   */
+  private static int[][] bucket(int[] indexes, int[] bucketOf, int numBuckets) {
+    int[] counts = new int[numBuckets];
+    for (int index : indexes) {
+      if (bucketOf[index] >= 0) {
+        counts[bucketOf[index]]++;
+      }
+    }
+    int[][] buckets = new int[numBuckets][];
+    for (int i = 0; i < numBuckets; i++) {
+      buckets[i] = new int[counts[i]];
+      counts[i] = 0;
+    }
+    for (int index : indexes) {
+      int bucket = bucketOf[index];
+      if (bucket >= 0) {
+        buckets[bucket][counts[bucket]++] = index;
+      }
+    }
+    return buckets;
+  }
+
+  /**
+   * Returns the splits largest first, in their original order for equal sizes.
+   */
+  private static int[] sortBySize(int[] indexes, int length, final long[] sizes) {
+    Integer[] order = new Integer[length];
+    for (int i = 0; i < length; i++) {
+      order[i] = indexes[i];
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        int cmp = Long.compare(sizes[o2], sizes[o1]);
+        return cmp != 0 ? cmp : Integer.compare(o1, o2);
+      }
+    });
+    int[] sorted = new int[length];
+    for (int i = 0; i < length; i++) {
+      sorted[i] = order[i];
+    }
+    return sorted;
+  }
+
+  private Map<String, Integer> createLocationsMap() {
+    if (conf.getBoolean(TezSplitGrouper.TEZ_GROUPING_REPEATABLE,
+        TezSplitGrouper.TEZ_GROUPING_REPEATABLE_DEFAULT)) {
+      return new TreeMap<String, Integer>();
+    }
+    return new HashMap<String, Integer>();
+  }
+
+  private static String[] cleanupLocations(String[] locations) {
+    if (locations == null || locations.length == 0) {
+      return new String[0];
+    }
+    Set<String> cleaned = new LinkedHashSet<String>(locations.length);
+    for (String location : locations) {
+      if (location != null) {
+        cleaned.add(location);
+      }
+    }
+    return cleaned.toArray(new String[cleaned.size()]);
+  }
+}
@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.mapreduce.grouper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Opens the record readers of the splits in a grouped split, in order. When prefetching is
+ * enabled, the readers of the next splits are created and initialized on a background thread
+ * while the current split is read, so that the task does not wait on opening and seeking into
+ * every split. At most the configured number of readers are opened ahead.
+ *
+ * @param <R> the record reader type
+ */
+@Private
+public abstract class SplitReaderPrefetcher<R> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SplitReaderPrefetcher.class);
+
+  private final int numSplits;
+  private final int numPrefetchedSplits;
+  private ExecutorService executor;
+  // readers being opened for the splits after the last one returned
+  private final LinkedList<Future<R>> prefetched = new LinkedList<Future<R>>();
+  private int nextIndex = 0;
+  private int nextPrefetchIndex = 0;
+  private long waitTimeNanos = 0;
+  private long reportedWaitTimeMillis = 0;
+  private volatile boolean closed = false;
+
+  protected SplitReaderPrefetcher(int numSplits, int numPrefetchedSplits) {
+    Preconditions.checkArgument(numPrefetchedSplits >= 0,
+        "Number of prefetched splits cannot be negative: " + numPrefetchedSplits);
+    this.numSplits = numSplits;
+    // no point in prefetching beyond the splits after the first one
+    this.numPrefetchedSplits = Math.min(numPrefetchedSplits, Math.max(0, numSplits - 1));
+  }
+
+  /**
+   * Create and initialize the record reader for a split. Invoked on the background thread when
+   * prefetching, so the reader should not share mutable state with the reader of the current
+   * split.
+   */
+  protected abstract R createReader(int index) throws Exception;
+
+  protected abstract void closeReader(R reader) throws IOException;
+
+  /**
+   * Called with the time, in milliseconds, which has been spent waiting for readers to be opened
+   * since the previous call
+   */
+  protected abstract void incrementWaitTime(long millis);
+
+  /**
+   * @return true if readers are created on the background thread
+   */
+  protected boolean isPrefetching() {
+    return numPrefetchedSplits > 0;
+  }
+
+  public boolean hasNext() {
+    return nextIndex < numSplits;
+  }
+
+  /**
+   * Get the record reader for the next split. Exceptions thrown while creating the reader are
+   * rethrown as they are.
+   */
+  public R next() throws Exception {
+    Preconditions.checkState(hasNext(), "All " + numSplits + " splits have been opened");
+    long startTime = System.nanoTime();
+    try {
+      R reader;
+      if (numPrefetchedSplits == 0) {
+        reader = createReader(nextIndex);
+      } else {
+        if (prefetched.isEmpty()) {
+          prefetch();
+        }
+        reader = getReader(prefetched.removeFirst());
+      }
+      nextIndex++;
+      if (numPrefetchedSplits > 0) {
+        prefetch();
+      }
+      return reader;
+    } finally {
+      waitTimeNanos += System.nanoTime() - startTime;
+      long waitTimeMillis = TimeUnit.NANOSECONDS.toMillis(waitTimeNanos);
+      if (waitTimeMillis > reportedWaitTimeMillis) {
+        incrementWaitTime(waitTimeMillis - reportedWaitTimeMillis);
+        reportedWaitTimeMillis = waitTimeMillis;
+      }
+    }
+  }
+
+  /**
+   * Close any readers which have been opened ahead, and stop the background thread. If the
+   * calling thread is interrupted, the remaining readers are still closed before an
+   * {@link InterruptedIOException} is thrown.
+   */
+  public void close() throws IOException {
+    closed = true;
+    if (executor == null) {
+      return;
+    }
+    // readers which have not been started yet are skipped
+    executor.shutdown();
+    boolean interrupted = false;
+    for (Future<R> future : prefetched) {
+      try {
+        R reader;
+        if (interrupted) {
+          // at most the reader being opened is waited for
+          reader = Uninterruptibles.getUninterruptibly(future);
+        } else {
+          try {
+            reader = future.get();
+          } catch (InterruptedException e) {
+            interrupted = true;
+            reader = Uninterruptibles.getUninterruptibly(future);
+          }
+        }
+        if (reader != null) {
+          closeReader(reader);
+        }
+      } catch (Exception e) {
+        LOG.warn("Failed to close prefetched record reader", e);
+      }
+    }
+    prefetched.clear();
+    executor = null;
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while closing the prefetched splits");
+    }
+  }
+
+  private void prefetch() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+          .setDaemon(true).setNameFormat("SplitReaderPrefetcher #%d").build());
+    }
+    // the splits up to numPrefetchedSplits after the one being read
+    int limit = Math.min(numSplits, nextIndex + numPrefetchedSplits);
+    while (nextPrefetchIndex < limit) {
+      final int index = nextPrefetchIndex++;
+      prefetched.add(executor.submit(new Callable<R>() {
+        @Override
+        public R call() throws Exception {
+          return closed ? null : createReader(index);
+        }
+      }));
+    }
+  }
+
+  private R getReader(Future<R> future) throws Exception {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while opening the next split", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+}
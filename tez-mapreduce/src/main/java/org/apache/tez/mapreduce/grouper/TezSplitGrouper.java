@@ -101,6 +101,27 @@ public abstract class TezSplitGrouper {
   public static final String TEZ_GROUPING_NODE_LOCAL_ONLY = "tez.grouping.node.local.only";
   public static final boolean TEZ_GROUPING_NODE_LOCAL_ONLY_DEFAULT = false;
 
+  /**
+   * Group splits into groups of about the same estimated size, by packing the splits of each node,
+   * and then of each rack, into as many full groups as their data allows. The remaining splits
+   * are packed into groups without a location preference. This avoids the uneven group sizes of
+   * the default grouping when the locations of the splits are skewed. False by default.
+   */
+  public static final String TEZ_GROUPING_BALANCED = "tez.grouping.balanced";
+  public static final boolean TEZ_GROUPING_BALANCED_DEFAULT = false;
+
+  /**
+   * Number of splits of a grouped split whose record readers are opened ahead, on a background
+   * thread, while the task reads the current split. This hides the latency of opening the
+   * splits, at the cost of keeping as many additional record readers open. 0, the default,
+   * opens each split when the previous one has been read. The readers opened ahead get their
+   * own copy of the configuration, but report to the same Reporter, or TaskAttemptContext, as
+   * the reader of the current split. Input formats which update counters or the status while
+   * opening a split must do so in a thread safe manner.
+   */
+  public static final String TEZ_GROUPING_PREFETCH_SPLITS = "tez.grouping.prefetch.splits";
+  public static final int TEZ_GROUPING_PREFETCH_SPLITS_DEFAULT = 0;
+
 
   static class LocationHolder {
     List<SplitContainer> splits;
@@ -285,6 +306,11 @@ public abstract class TezSplitGrouper {
       return groupedSplits;
     }
 
+    if (conf.getBoolean(TEZ_GROUPING_BALANCED, TEZ_GROUPING_BALANCED_DEFAULT)) {
+      return new BalancedSplitGrouper(conf, wrappedInputFormatName, estimator, locationProvider)
+          .group(originalSplits, desiredNumSplits);
+    }
+
     long lengthPerGroup = totalLength/desiredNumSplits;
     int numNodeLocations = distinctLocations.size();
     int numSplitsPerLocation = originalSplits.size()/numNodeLocations;
@@ -639,6 +665,16 @@ public abstract class TezSplitGrouper {
       return this;
     }
 
+    public TezMRSplitsGrouperConfigBuilder setBalancedGrouping(boolean balancedGrouping) {
+      this.conf.setBoolean(TEZ_GROUPING_BALANCED, balancedGrouping);
+      return this;
+    }
+
+    public TezMRSplitsGrouperConfigBuilder setNumPrefetchedSplits(int numPrefetchedSplits) {
+      this.conf.setInt(TEZ_GROUPING_PREFETCH_SPLITS, numPrefetchedSplits);
+      return this;
+    }
+
     /**
      * upper and lower bounds for the splits
      */
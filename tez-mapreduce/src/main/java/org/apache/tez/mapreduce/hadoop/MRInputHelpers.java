@@ -50,11 +50,13 @@ import org.apache.hadoop.io.serializer.SerializationFactory;
 import org.apache.hadoop.io.serializer.Serializer;
 import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.split.TezMapredSplitsGrouper;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.JobSubmissionFiles;
 import org.apache.hadoop.mapreduce.split.JobSplitWriter;
 import org.apache.hadoop.mapreduce.split.TezGroupedSplit;
+import org.apache.hadoop.mapreduce.split.TezMapReduceSplitsGrouper;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.hadoop.yarn.api.records.LocalResourceType;
@@ -444,8 +446,16 @@ public class MRInputHelpers {
       finalInputFormat = inputFormat;
     }
 
-    List<org.apache.hadoop.mapreduce.InputSplit> array = finalInputFormat
-        .getSplits(jobContext);
+    List<org.apache.hadoop.mapreduce.InputSplit> array;
+    if (ParallelSplitGenerator.isEnabled(conf, inputFormat)) {
+      array = ParallelSplitGenerator.getNewSplits(jobContext, inputFormat);
+      if (groupSplits) {
+        array = new TezMapReduceSplitsGrouper().getGroupedSplits(conf, array, numTasks,
+            inputFormat.getClass().getName());
+      }
+    } else {
+      array = finalInputFormat.getSplits(jobContext);
+    }
     org.apache.hadoop.mapreduce.InputSplit[] splits = (org.apache.hadoop.mapreduce.InputSplit[]) array
         .toArray(new org.apache.hadoop.mapreduce.InputSplit[array.size()]);
 
@@ -484,8 +494,16 @@ public class MRInputHelpers {
     } else {
       finalInputFormat = inputFormat;
     }
-    org.apache.hadoop.mapred.InputSplit[] splits = finalInputFormat
-        .getSplits(jobConf, jobConf.getNumMapTasks());
+    org.apache.hadoop.mapred.InputSplit[] splits;
+    if (ParallelSplitGenerator.isEnabled(jobConf, inputFormat)) {
+      splits = ParallelSplitGenerator.getOldSplits(jobConf, inputFormat);
+      if (groupSplits) {
+        splits = new TezMapredSplitsGrouper().getGroupedSplits(jobConf, splits, numTasks,
+            inputFormat.getClass().getName());
+      }
+    } else {
+      splits = finalInputFormat.getSplits(jobConf, jobConf.getNumMapTasks());
+    }
     if (sortSplits) {
       // sort the splits into order based on size, so that the biggest
       // go first
@@ -639,5 +639,39 @@ public interface MRJobConfig {
   public static final String MR_TEZ_INPUT_INITIALIZER_SERIALIZE_EVENT_PAYLOAD = MR_TEZ_PREFIX
       + "input.initializer.serialize.event.payload";
   public static final boolean MR_TEZ_INPUT_INITIALIZER_SERIALIZE_EVENT_PAYLOAD_DEFAULT = true;
+
+  /**
+   * Number of threads used to generate the splits of a FileInputFormat, one input path at a
+   * time. With 1, all the input paths are given to a single getSplits call.
+   */
+  public static final String MR_TEZ_INPUT_INITIALIZER_SPLIT_GENERATION_THREADS = MR_TEZ_PREFIX
+      + "input.initializer.split.generation.threads";
+  public static final int MR_TEZ_INPUT_INITIALIZER_SPLIT_GENERATION_THREADS_DEFAULT = 1;
+
+  /**
+   * Whether the splits of each input path of a FileInputFormat are cached in the AM, and reused
+   * by later DAGs of a session while the path, length and modification time of the input path and
+   * of the files directly below it do not change. Inputs read recursively are not cached.
+   */
+  public static final String MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_ENABLED = MR_TEZ_PREFIX
+      + "input.initializer.split.cache.enabled";
+  public static final boolean MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_ENABLED_DEFAULT = false;
+
+  /**
+   * Maximum number of splits cached in the AM, across all input paths. The splits of the least
+   * recently used input paths are evicted beyond this.
+   */
+  public static final String MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_MAX_SPLITS = MR_TEZ_PREFIX
+      + "input.initializer.split.cache.max.splits";
+  public static final long MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_MAX_SPLITS_DEFAULT = 100000;
+
+  /**
+   * Number of threads used by the output committer of MROutput to move the committed task outputs
+   * of a FileOutputCommitter to the output directory. With 1, the outputs are moved by
+   * FileOutputCommitter#commitJob, one at a time.
+   */
+  public static final String MR_TEZ_OUTPUT_COMMITTER_COMMIT_THREADS = MR_TEZ_PREFIX
+      + "output.committer.commit.threads";
+  public static final int MR_TEZ_OUTPUT_COMMITTER_COMMIT_THREADS_DEFAULT = 1;
   
 }
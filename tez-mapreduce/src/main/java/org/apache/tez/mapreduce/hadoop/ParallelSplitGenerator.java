@@ -0,0 +1,339 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.mapreduce.hadoop;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.security.Credentials;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Generates the splits of a file based InputFormat one input path at a time, on multiple threads,
+ * instead of handing all the input paths to a single getSplits call. The splits of each input
+ * path can be cached for the lifetime of the JVM, i.e. of the AM for a session, so that DAGs
+ * reading the same unchanged inputs do not list them again.
+ *
+ * A cached entry is keyed by the input path, the path, length and modification time of the path
+ * and of each file listed below it, the InputFormat and the mapreduce.input.* settings. A file
+ * appended to or rewritten below an input directory therefore invalidates the splits of the
+ * directory, even though the modification time of the directory does not change. The listing
+ * costs one call to the FileSystem per input path, which is much cheaper than generating the
+ * splits, since block locations are not looked up. Paths with glob patterns and recursive inputs
+ * are not cached, since their files are not all listed directly below the input path. The cache
+ * is bounded by the total number of cached splits, the least recently used paths are evicted
+ * first.
+ *
+ * With the mapred API, each input path is split with a hint of one split, i.e. the number of map
+ * tasks configured for the job does not make the splits of an input smaller than its block size.
+ */
+@Private
+public class ParallelSplitGenerator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelSplitGenerator.class);
+
+  private static final Pattern GLOB_PATTERN = Pattern.compile("[*?\\[\\]{}\\\\]");
+  private static final String INPUT_CONF_PREFIX = "mapreduce.input.";
+
+  private static Cache<String, List<?>> splitCache;
+
+  private ParallelSplitGenerator() {
+  }
+
+  /**
+   * Whether the splits of the InputFormat can be generated by this class for the configuration.
+   */
+  public static boolean isEnabled(Configuration conf, Object inputFormat) {
+    int numThreads = conf.getInt(MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_GENERATION_THREADS,
+        MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_GENERATION_THREADS_DEFAULT);
+    boolean cacheEnabled = conf.getBoolean(MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_ENABLED,
+        MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_ENABLED_DEFAULT);
+    if (numThreads <= 1 && !cacheEnabled) {
+      return false;
+    }
+    // CombineFileInputFormat combines files across input paths
+    return (inputFormat instanceof FileInputFormat
+        && !(inputFormat instanceof CombineFileInputFormat))
+        || inputFormat instanceof org.apache.hadoop.mapred.FileInputFormat;
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  public static List<org.apache.hadoop.mapreduce.InputSplit> getNewSplits(
+      JobContext jobContext, final org.apache.hadoop.mapreduce.InputFormat inputFormat)
+      throws IOException, InterruptedException {
+    JobConf jobConf = new JobConf(jobContext.getConfiguration());
+    jobConf.setCredentials(jobContext.getCredentials());
+    Path[] paths = FileInputFormat.getInputPaths(jobContext);
+    List<List<?>> splitsPerPath = getSplits(jobConf, inputFormat, paths,
+        new SplitComputation() {
+          @Override
+          public List<?> getSplits(JobConf pathConf) throws IOException, InterruptedException {
+            Job job = Job.getInstance(pathConf);
+            org.apache.hadoop.mapreduce.InputFormat format =
+                ReflectionUtils.newInstance(inputFormat.getClass(), job.getConfiguration());
+            return format.getSplits(job);
+          }
+        });
+    List<org.apache.hadoop.mapreduce.InputSplit> splits =
+        new ArrayList<org.apache.hadoop.mapreduce.InputSplit>();
+    for (List<?> pathSplits : splitsPerPath) {
+      splits.addAll((List<org.apache.hadoop.mapreduce.InputSplit>) pathSplits);
+    }
+    return splits;
+  }
+
+  @SuppressWarnings("rawtypes")
+  public static org.apache.hadoop.mapred.InputSplit[] getOldSplits(JobConf jobConf,
+      final org.apache.hadoop.mapred.InputFormat inputFormat) throws IOException {
+    Path[] paths = org.apache.hadoop.mapred.FileInputFormat.getInputPaths(jobConf);
+    List<List<?>> splitsPerPath;
+    try {
+      splitsPerPath = getSplits(jobConf, inputFormat, paths, new SplitComputation() {
+        @Override
+        public List<?> getSplits(JobConf pathConf) throws IOException {
+          org.apache.hadoop.mapred.InputFormat format =
+              ReflectionUtils.newInstance(inputFormat.getClass(), pathConf);
+          return Arrays.asList(format.getSplits(pathConf, 1));
+        }
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while generating splits", e);
+    }
+    List<org.apache.hadoop.mapred.InputSplit> splits =
+        new ArrayList<org.apache.hadoop.mapred.InputSplit>();
+    for (List<?> pathSplits : splitsPerPath) {
+      for (Object split : pathSplits) {
+        splits.add((org.apache.hadoop.mapred.InputSplit) split);
+      }
+    }
+    return splits.toArray(new org.apache.hadoop.mapred.InputSplit[splits.size()]);
+  }
+
+  private interface SplitComputation {
+    List<?> getSplits(JobConf pathConf) throws IOException, InterruptedException;
+  }
+
+  private static List<List<?>> getSplits(final JobConf conf, Object inputFormat, Path[] paths,
+      final SplitComputation computation) throws IOException, InterruptedException {
+    if (paths.length == 0) {
+      throw new IOException("No input paths specified in job");
+    }
+    int numThreads = Math.max(1, Math.min(paths.length, conf.getInt(
+        MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_GENERATION_THREADS,
+        MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_GENERATION_THREADS_DEFAULT)));
+    boolean cacheEnabled = conf.getBoolean(MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_ENABLED,
+        MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_ENABLED_DEFAULT)
+        && !conf.getBoolean(FileInputFormat.INPUT_DIR_RECURSIVE, false);
+    if (cacheEnabled) {
+      initCache(conf.getLong(MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_MAX_SPLITS,
+          MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_MAX_SPLITS_DEFAULT));
+    }
+    final String keyPrefix = cacheEnabled ? getCacheKeyPrefix(conf, inputFormat) : null;
+    final AtomicInteger cachedPaths = new AtomicInteger(0);
+
+    List<Callable<List<?>>> callables = new ArrayList<Callable<List<?>>>(paths.length);
+    for (final Path path : paths) {
+      callables.add(new Callable<List<?>>() {
+        @Override
+        public List<?> call() throws Exception {
+          String cacheKey = keyPrefix == null ? null : getCacheKey(keyPrefix, conf, path);
+          if (cacheKey != null) {
+            List<?> splits = getCachedSplits(cacheKey);
+            if (splits != null) {
+              cachedPaths.incrementAndGet();
+              return splits;
+            }
+          }
+          // Each path gets its own credentials, which getSplits adds the tokens it needs to
+          JobConf pathConf = new JobConf(conf);
+          pathConf.setCredentials(new Credentials(conf.getCredentials()));
+          pathConf.set(FileInputFormat.INPUT_DIR, StringUtils.escapeString(path.toString()));
+          List<?> splits = Collections.unmodifiableList(computation.getSplits(pathConf));
+          synchronized (conf) {
+            conf.getCredentials().mergeAll(pathConf.getCredentials());
+          }
+          if (cacheKey != null) {
+            cacheSplits(cacheKey, splits);
+          }
+          return splits;
+        }
+      });
+    }
+
+    List<List<?>> splitsPerPath = new ArrayList<List<?>>(paths.length);
+    if (numThreads == 1) {
+      for (Callable<List<?>> callable : callables) {
+        splitsPerPath.add(call(callable));
+      }
+    } else {
+      ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("SplitGenerator #%d").build());
+      try {
+        List<Future<List<?>>> futures = new ArrayList<Future<List<?>>>(callables.size());
+        for (Callable<List<?>> callable : callables) {
+          futures.add(executor.submit(callable));
+        }
+        for (Future<List<?>> future : futures) {
+          try {
+            splitsPerPath.add(future.get());
+          } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+          }
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    LOG.info("Generated splits for " + paths.length + " input paths with " + numThreads
+        + " threads, " + cachedPaths.get() + " paths from the split cache");
+    return splitsPerPath;
+  }
+
+  private static List<?> call(Callable<List<?>> callable)
+      throws IOException, InterruptedException {
+    try {
+      return callable.call();
+    } catch (Exception e) {
+      throw rethrow(e);
+    }
+  }
+
+  private static IOException rethrow(Throwable t) throws IOException, InterruptedException {
+    if (t instanceof IOException) {
+      throw (IOException) t;
+    } else if (t instanceof InterruptedException) {
+      throw (InterruptedException) t;
+    } else if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    }
+    throw new IOException(t);
+  }
+
+  private static String getCacheKeyPrefix(Configuration conf, Object inputFormat) {
+    // All the settings of FileInputFormat and of the common file based InputFormats
+    Map<String, String> inputConf = new TreeMap<String, String>();
+    for (Map.Entry<String, String> entry : conf) {
+      if (entry.getKey().startsWith(INPUT_CONF_PREFIX)
+          && !entry.getKey().equals(FileInputFormat.INPUT_DIR)) {
+        inputConf.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return inputFormat.getClass().getName() + "," + inputConf;
+  }
+
+  private static String getCacheKey(String prefix, Configuration conf, Path path)
+      throws IOException {
+    if (GLOB_PATTERN.matcher(path.toString()).find()) {
+      return null;
+    }
+    FileSystem fs = path.getFileSystem(conf);
+    FileStatus status;
+    FileStatus[] listing;
+    try {
+      status = fs.getFileStatus(path);
+      listing = fs.listStatus(path);
+    } catch (FileNotFoundException e) {
+      // Left to the InputFormat to report
+      return null;
+    }
+    Arrays.sort(listing);
+    StringBuilder sb = new StringBuilder();
+    sb.append(status.getModificationTime());
+    for (FileStatus fileStatus : listing) {
+      sb.append(',').append(fileStatus.getPath())
+          .append(',').append(fileStatus.getLen())
+          .append(',').append(fileStatus.getModificationTime());
+    }
+    // The listing of a large directory is kept short in the key
+    return prefix + "," + fs.makeQualified(path) + "," + MD5Hash.digest(sb.toString());
+  }
+
+  private static synchronized void initCache(long maxSplits) {
+    if (splitCache == null) {
+      splitCache = CacheBuilder.newBuilder()
+          .concurrencyLevel(1)
+          .maximumWeight(maxSplits)
+          .weigher(new Weigher<String, List<?>>() {
+            @Override
+            public int weigh(String key, List<?> splits) {
+              return Math.max(1, splits.size());
+            }
+          })
+          .build();
+    }
+  }
+
+  private static synchronized List<?> getCachedSplits(String key) {
+    return splitCache.getIfPresent(key);
+  }
+
+  private static synchronized void cacheSplits(String key, List<?> splits) {
+    splitCache.put(key, splits);
+  }
+
+  @VisibleForTesting
+  static synchronized long getNumCachedSplits() {
+    long numSplits = 0;
+    for (List<?> splits : splitCache.asMap().values()) {
+      numSplits += splits.size();
+    }
+    return numSplits;
+  }
+
+  @VisibleForTesting
+  static synchronized void clearCache() {
+    splitCache = null;
+  }
+}
@@ -91,8 +91,17 @@ public class TestGroupedSplits {
 
   @Test(timeout=10000)
   public void testFormat() throws Exception {
+    verifyFormat(new JobConf(defaultConf));
+  }
+
+  @Test(timeout=10000)
+  public void testFormatWithPrefetch() throws Exception {
     JobConf job = new JobConf(defaultConf);
+    job.setInt(TezSplitGrouper.TEZ_GROUPING_PREFETCH_SPLITS, 3);
+    verifyFormat(job);
+  }
 
+  private void verifyFormat(JobConf job) throws Exception {
     Random random = new Random();
     long seed = random.nextLong();
     LOG.info("seed = "+seed);
@@ -26,9 +26,11 @@ import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 import org.apache.tez.dag.records.TezTaskID;
 import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.InputInitializerContext;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
 public class TezTestUtils {
@@ -130,6 +132,11 @@ public class TezTestUtils {
       throw new UnsupportedOperationException("getUserPayload not implemented in this mock");
     }
 
+    @Override
+    public void addEvents(List<Event> events) {
+      throw new UnsupportedOperationException("addEvents not implemented in this mock");
+    }
+
   }
 
 }
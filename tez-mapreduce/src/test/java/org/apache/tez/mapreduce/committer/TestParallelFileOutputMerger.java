@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.mapreduce.committer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestParallelFileOutputMerger {
+
+  private static final Path TEST_ROOT_DIR = new Path(System.getProperty("test.build.data",
+      System.getProperty("java.io.tmpdir")), TestParallelFileOutputMerger.class.getSimpleName());
+
+  private FileSystem localFs;
+  private Path outputPath;
+  private Configuration conf;
+
+  @Before
+  public void setup() throws IOException {
+    conf = new Configuration();
+    localFs = FileSystem.getLocal(conf);
+    localFs.delete(TEST_ROOT_DIR, true);
+    outputPath = localFs.makeQualified(new Path(TEST_ROOT_DIR, "output"));
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    localFs.delete(TEST_ROOT_DIR, true);
+  }
+
+  private void writeFile(Path path, String contents) throws IOException {
+    FSDataOutputStream out = localFs.create(path);
+    out.writeUTF(contents);
+    out.close();
+  }
+
+  private String readFile(Path path) throws IOException {
+    FSDataInputStream in = localFs.open(path);
+    try {
+      return in.readUTF();
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testMerge() throws Exception {
+    JobContext jobContext = new JobContextImpl(conf, new JobID("test", 1));
+    FileOutputCommitter jobCommitter = new FileOutputCommitter(outputPath, jobContext);
+    jobCommitter.setupJob(jobContext);
+    // an existing file of the output is replaced
+    writeFile(new Path(outputPath, "part-0"), "old");
+
+    int numTasks = 10;
+    for (int i = 0; i < numTasks; i++) {
+      TaskAttemptContext taskContext = new TaskAttemptContextImpl(conf,
+          new TaskAttemptID("test", 1, TaskType.REDUCE, i, 0));
+      FileOutputCommitter taskCommitter = new FileOutputCommitter(outputPath, taskContext);
+      taskCommitter.setupTask(taskContext);
+      Path workPath = taskCommitter.getWorkPath();
+      writeFile(new Path(workPath, "part-" + i), "task" + i);
+      writeFile(new Path(workPath, "dir" + (i % 2) + "/nested/file-" + i), "nested" + i);
+      localFs.mkdirs(new Path(workPath, "empty"));
+      taskCommitter.commitTask(taskContext);
+    }
+    // an attempt which has not been committed
+    TaskAttemptContext failedContext = new TaskAttemptContextImpl(conf,
+        new TaskAttemptID("test", 1, TaskType.REDUCE, 0, 1));
+    FileOutputCommitter failedCommitter = new FileOutputCommitter(outputPath, failedContext);
+    failedCommitter.setupTask(failedContext);
+    writeFile(new Path(failedCommitter.getWorkPath(), "part-failed"), "failed");
+
+    ParallelFileOutputMerger merger = new ParallelFileOutputMerger(localFs, outputPath, 4);
+    assertEquals(2 * numTasks, merger.merge(jobCommitter.getJobAttemptPath(jobContext)));
+    jobCommitter.commitJob(jobContext);
+
+    for (int i = 0; i < numTasks; i++) {
+      assertEquals("task" + i, readFile(new Path(outputPath, "part-" + i)));
+      assertEquals("nested" + i,
+          readFile(new Path(outputPath, "dir" + (i % 2) + "/nested/file-" + i)));
+    }
+    assertTrue(localFs.getFileStatus(new Path(outputPath, "empty")).isDirectory());
+    assertTrue(localFs.exists(new Path(outputPath, FileOutputCommitter.SUCCEEDED_FILE_NAME)));
+    assertFalse(localFs.exists(new Path(outputPath, "part-failed")));
+    assertFalse(localFs.exists(new Path(outputPath, FileOutputCommitter.PENDING_DIR_NAME)));
+    // the part files, the two nested directories, the empty directory and the marker
+    assertEquals(numTasks + 4, localFs.listStatus(outputPath).length);
+  }
+
+  @Test(timeout = 10000)
+  public void testMergeWithoutCommittedTasks() throws Exception {
+    JobContext jobContext = new JobContextImpl(conf, new JobID("test", 1));
+    FileOutputCommitter jobCommitter = new FileOutputCommitter(outputPath, jobContext);
+    ParallelFileOutputMerger merger = new ParallelFileOutputMerger(localFs, outputPath, 4);
+    assertEquals(0, merger.merge(jobCommitter.getJobAttemptPath(jobContext)));
+    jobCommitter.setupJob(jobContext);
+    assertEquals(0, merger.merge(jobCommitter.getJobAttemptPath(jobContext)));
+  }
+}
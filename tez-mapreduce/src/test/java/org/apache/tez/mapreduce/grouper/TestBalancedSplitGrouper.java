@@ -0,0 +1,266 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.mapreduce.grouper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.common.MockDNSToSwitchMapping;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestBalancedSplitGrouper {
+
+  static final long MB = 1024 * 1024;
+
+  @BeforeClass
+  public static void setup() {
+    MockDNSToSwitchMapping.initializeMockRackResolver();
+  }
+
+  static class TestSplitContainer extends SplitContainer {
+    private final long length;
+    private final String[] locations;
+
+    TestSplitContainer(long length, String[] locations) {
+      this.length = length;
+      this.locations = locations;
+    }
+
+    @Override
+    public String[] getPreferredLocations() {
+      return locations;
+    }
+
+    @Override
+    public long getLength() {
+      return length;
+    }
+  }
+
+  static Configuration createConf(boolean balanced) {
+    return TezSplitGrouper.newConfigBuilder(new Configuration(false))
+        .setGroupingSplitSize(1, Long.MAX_VALUE)
+        .setBalancedGrouping(balanced)
+        .build();
+  }
+
+  static List<GroupedSplitContainer> group(Configuration conf, List<SplitContainer> splits,
+      int desiredNumSplits) throws Exception {
+    for (SplitContainer split : splits) {
+      split.setIsProcessed(false);
+    }
+    return new TezSplitGrouper() {}.getGroupedSplits(conf, splits, desiredNumSplits,
+        "InputFormat", null, null);
+  }
+
+  /**
+   * Half of the data is on a single node, the rest is spread over the other nodes with three
+   * replicas. Split sizes vary by a factor of 20.
+   */
+  static List<SplitContainer> createSkewedSplits(int numSplits, int numNodes, long seed) {
+    Random random = new Random(seed);
+    List<SplitContainer> splits = new ArrayList<SplitContainer>(numSplits);
+    for (int i = 0; i < numSplits; i++) {
+      long length = (10 + random.nextInt(190)) * MB;
+      String[] locations;
+      if (i % 2 == 0) {
+        locations = new String[] { "node0" };
+      } else {
+        locations = new String[3];
+        for (int j = 0; j < 3; j++) {
+          locations[j] = "node" + (1 + random.nextInt(numNodes - 1));
+        }
+      }
+      splits.add(new TestSplitContainer(length, locations));
+    }
+    return splits;
+  }
+
+  static void verifyAllSplitsGrouped(List<SplitContainer> splits,
+      List<GroupedSplitContainer> groups) {
+    Map<SplitContainer, Boolean> grouped = new IdentityHashMap<SplitContainer, Boolean>();
+    for (GroupedSplitContainer group : groups) {
+      assertTrue(group.getWrappedSplitContainers().size() > 0);
+      for (SplitContainer split : group.getWrappedSplitContainers()) {
+        assertNull("Split grouped twice", grouped.put(split, true));
+      }
+    }
+    assertEquals(splits.size(), grouped.size());
+  }
+
+  static long getMaxLength(List<GroupedSplitContainer> groups) {
+    long max = 0;
+    for (GroupedSplitContainer group : groups) {
+      max = Math.max(max, group.getLength());
+    }
+    return max;
+  }
+
+  static int getNumGroupsSmallerThan(List<GroupedSplitContainer> groups, long length) {
+    int numGroups = 0;
+    for (GroupedSplitContainer group : groups) {
+      if (group.getLength() < length) {
+        numGroups++;
+      }
+    }
+    return numGroups;
+  }
+
+  static int getNumNodeLocalGroups(List<GroupedSplitContainer> groups) {
+    int numGroups = 0;
+    for (GroupedSplitContainer group : groups) {
+      if (group.getRack() == null && group.getLocations() != null) {
+        numGroups++;
+      }
+    }
+    return numGroups;
+  }
+
+  static long getTotalLength(List<SplitContainer> splits) throws Exception {
+    long total = 0;
+    for (SplitContainer split : splits) {
+      total += split.getLength();
+    }
+    return total;
+  }
+
+  @Test(timeout = 10000)
+  public void testBalancedGroups() throws Exception {
+    List<SplitContainer> splits = createSkewedSplits(2000, 20, 1);
+    int desiredNumSplits = 40;
+    long targetLength = getTotalLength(splits) / desiredNumSplits;
+
+    List<GroupedSplitContainer> groups = group(createConf(true), splits, desiredNumSplits);
+    verifyAllSplitsGrouped(splits, groups);
+    assertTrue("Groups: " + groups.size(), Math.abs(groups.size() - desiredNumSplits) <= 4);
+    // No group is larger than the target by more than a split
+    assertTrue(getMaxLength(groups) <= targetLength + 200 * MB);
+
+    for (GroupedSplitContainer group : groups) {
+      if (group.getRack() == null && group.getLocations() != null) {
+        // Node local groups only have splits on their node
+        assertEquals(1, group.getLocations().length);
+        for (SplitContainer split : group.getWrappedSplitContainers()) {
+          assertTrue(Arrays.asList(split.getPreferredLocations())
+              .contains(group.getLocations()[0]));
+        }
+      }
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testGroupSizesComparedToDefault() throws Exception {
+    List<SplitContainer> splits = createSkewedSplits(5000, 50, 6);
+    int desiredNumSplits = 100;
+    long targetLength = getTotalLength(splits) / desiredNumSplits;
+
+    // The default grouping leaves small groups behind on the nodes with little data, which run
+    // next to full sized groups
+    List<GroupedSplitContainer> defaultGroups = group(createConf(false), splits, desiredNumSplits);
+    verifyAllSplitsGrouped(splits, defaultGroups);
+    assertTrue(getNumGroupsSmallerThan(defaultGroups, targetLength / 2) > 0);
+
+    List<GroupedSplitContainer> groups = group(createConf(true), splits, desiredNumSplits);
+    verifyAllSplitsGrouped(splits, groups);
+    assertTrue("Groups: " + groups.size(), Math.abs(groups.size() - desiredNumSplits) <= 5);
+    assertEquals(0, getNumGroupsSmallerThan(groups, targetLength / 2));
+    assertTrue(getMaxLength(groups) <= targetLength + 200 * MB);
+    // while nearly all groups stay node local
+    assertTrue(getNumNodeLocalGroups(groups) >= groups.size() * 9 / 10);
+  }
+
+  @Test(timeout = 10000)
+  public void testSplitOrderInGroups() throws Exception {
+    List<SplitContainer> splits = createSkewedSplits(100, 5, 2);
+    List<GroupedSplitContainer> groups = group(createConf(true), splits, 10);
+    verifyAllSplitsGrouped(splits, groups);
+    for (GroupedSplitContainer group : groups) {
+      int lastIndex = -1;
+      for (SplitContainer split : group.getWrappedSplitContainers()) {
+        int index = splits.indexOf(split);
+        assertTrue(index > lastIndex);
+        lastIndex = index;
+      }
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testNodeLocalOnly() throws Exception {
+    // 6 splits on each of 4 nodes, and 1 split on each of 3 other nodes
+    List<SplitContainer> splits = new ArrayList<SplitContainer>();
+    for (int i = 0; i < 27; i++) {
+      String location = i < 24 ? "node" + (i % 4) : "node" + (4 + i % 24);
+      splits.add(new TestSplitContainer(100, new String[] { location }));
+    }
+    Configuration conf = TezSplitGrouper.newConfigBuilder(createConf(true))
+        .setNodeLocalGroupsOnly(true)
+        .build();
+
+    List<GroupedSplitContainer> groups = group(conf, splits, 9);
+    verifyAllSplitsGrouped(splits, groups);
+    // 2 groups of 3 splits on each of the first 4 nodes, and a group per remaining node
+    assertEquals(11, groups.size());
+    for (GroupedSplitContainer group : groups) {
+      assertEquals(1, group.getLocations().length);
+      for (SplitContainer split : group.getWrappedSplitContainers()) {
+        assertEquals(group.getLocations()[0], split.getPreferredLocations()[0]);
+      }
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testGroupByCount() throws Exception {
+    List<SplitContainer> splits = createSkewedSplits(1000, 10, 3);
+    Configuration conf = TezSplitGrouper.newConfigBuilder(createConf(true))
+        .setGroupSplitByLength(false)
+        .setGroupSplitByCount(true)
+        .build();
+
+    List<GroupedSplitContainer> groups = group(conf, splits, 20);
+    verifyAllSplitsGrouped(splits, groups);
+    for (GroupedSplitContainer group : groups) {
+      assertTrue(group.getWrappedSplitContainers().size() <= 50);
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testSplitsWithoutLocations() throws Exception {
+    List<SplitContainer> splits = new ArrayList<SplitContainer>();
+    for (int i = 0; i < 100; i++) {
+      splits.add(new TestSplitContainer(10 * MB, i % 2 == 0 ? null : new String[] { null }));
+    }
+    List<GroupedSplitContainer> groups = group(createConf(true), splits, 10);
+    verifyAllSplitsGrouped(splits, groups);
+    assertEquals(10, groups.size());
+    for (GroupedSplitContainer group : groups) {
+      assertNull(group.getLocations());
+      assertEquals(10, group.getWrappedSplitContainers().size());
+    }
+  }
+}
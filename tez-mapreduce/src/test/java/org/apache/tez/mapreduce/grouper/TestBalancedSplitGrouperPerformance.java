@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.mapreduce.grouper;
+
+import static org.apache.tez.mapreduce.grouper.TestBalancedSplitGrouper.MB;
+import static org.apache.tez.mapreduce.grouper.TestBalancedSplitGrouper.createConf;
+import static org.apache.tez.mapreduce.grouper.TestBalancedSplitGrouper.createSkewedSplits;
+import static org.apache.tez.mapreduce.grouper.TestBalancedSplitGrouper.getMaxLength;
+import static org.apache.tez.mapreduce.grouper.TestBalancedSplitGrouper.getNumGroupsSmallerThan;
+import static org.apache.tez.mapreduce.grouper.TestBalancedSplitGrouper.getNumNodeLocalGroups;
+import static org.apache.tez.mapreduce.grouper.TestBalancedSplitGrouper.getTotalLength;
+import static org.apache.tez.mapreduce.grouper.TestBalancedSplitGrouper.group;
+import static org.apache.tez.mapreduce.grouper.TestBalancedSplitGrouper.verifyAllSplitsGrouped;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.tez.common.MockDNSToSwitchMapping;
+import org.apache.tez.mapreduce.grouper.TestBalancedSplitGrouper.TestSplitContainer;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the default and the balanced grouping over large synthetic split layouts. The group
+ * sizes and timings are only logged, so this is not run as part of the unit tests.
+ */
+@Ignore("Benchmark, to be run manually")
+public class TestBalancedSplitGrouperPerformance {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(TestBalancedSplitGrouperPerformance.class);
+
+  @BeforeClass
+  public static void setup() {
+    MockDNSToSwitchMapping.initializeMockRackResolver();
+  }
+
+  @Test
+  public void testGroupingBenchmark() throws Exception {
+    int numSplits = 50000;
+    int numNodes = 200;
+    int desiredNumSplits = 1000;
+    Map<String, List<SplitContainer>> layouts = new LinkedHashMap<String, List<SplitContainer>>();
+    layouts.put("skewed", createSkewedSplits(numSplits, numNodes, 4));
+    Random random = new Random(5);
+    List<SplitContainer> uniform = new ArrayList<SplitContainer>(numSplits);
+    List<SplitContainer> fewNodes = new ArrayList<SplitContainer>(numSplits);
+    for (int i = 0; i < numSplits; i++) {
+      String[] locations = new String[3];
+      for (int j = 0; j < 3; j++) {
+        locations[j] = "node" + random.nextInt(numNodes);
+      }
+      uniform.add(new TestSplitContainer(128 * MB, locations));
+      // Most data on a tenth of the nodes
+      String[] hotLocations = new String[3];
+      for (int j = 0; j < 3; j++) {
+        hotLocations[j] = "node" + (random.nextInt(10) < 8 ?
+            random.nextInt(numNodes / 10) : random.nextInt(numNodes));
+      }
+      fewNodes.add(new TestSplitContainer((1 + random.nextInt(256)) * MB, hotLocations));
+    }
+    layouts.put("uniform", uniform);
+    layouts.put("hotNodes", fewNodes);
+
+    for (Map.Entry<String, List<SplitContainer>> layout : layouts.entrySet()) {
+      List<SplitContainer> splits = layout.getValue();
+      long targetLength = getTotalLength(splits) / desiredNumSplits;
+      for (boolean balanced : new boolean[] { false, true }) {
+        long startTime = System.nanoTime();
+        List<GroupedSplitContainer> groups = group(createConf(balanced), splits, desiredNumSplits);
+        long time = System.nanoTime() - startTime;
+        verifyAllSplitsGrouped(splits, groups);
+        long minLength = Long.MAX_VALUE;
+        for (GroupedSplitContainer group : groups) {
+          minLength = Math.min(minLength, group.getLength());
+        }
+        LOG.info("Split grouping benchmark"
+            + ", layout=" + layout.getKey()
+            + ", balanced=" + balanced
+            + ", numSplits=" + splits.size()
+            + ", numGroups=" + groups.size()
+            + ", nodeLocalGroups=" + getNumNodeLocalGroups(groups)
+            + ", groupsUnderHalfTarget=" + getNumGroupsSmallerThan(groups, targetLength / 2)
+            + ", minGroupToTarget=" + ((double) minLength / targetLength)
+            + ", maxGroupToTarget=" + ((double) getMaxLength(groups) / targetLength)
+            + ", timeMillis=" + time / 1000000);
+      }
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.mapreduce.grouper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestSplitReaderPrefetcher {
+
+  private static class TestPrefetcher extends SplitReaderPrefetcher<Integer> {
+    final List<Integer> created = Collections.synchronizedList(new ArrayList<Integer>());
+    final List<Integer> closed = Collections.synchronizedList(new ArrayList<Integer>());
+    final int failIndex;
+    long waitTime = 0;
+
+    TestPrefetcher(int numSplits, int numPrefetchedSplits, int failIndex) {
+      super(numSplits, numPrefetchedSplits);
+      this.failIndex = failIndex;
+    }
+
+    @Override
+    protected Integer createReader(int index) throws Exception {
+      if (index == failIndex) {
+        throw new IOException("Failed to open split " + index);
+      }
+      created.add(index);
+      return index;
+    }
+
+    @Override
+    protected void closeReader(Integer reader) throws IOException {
+      closed.add(reader);
+    }
+
+    @Override
+    protected void incrementWaitTime(long millis) {
+      assertTrue(millis > 0);
+      waitTime += millis;
+    }
+  }
+
+  private static void waitForCreated(TestPrefetcher prefetcher, int numCreated)
+      throws InterruptedException {
+    while (prefetcher.created.size() < numCreated) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testSplitOrder() throws Exception {
+    for (int depth : new int[] { 0, 1, 3, 10 }) {
+      TestPrefetcher prefetcher = new TestPrefetcher(5, depth, -1);
+      for (int i = 0; i < 5; i++) {
+        assertTrue(prefetcher.hasNext());
+        assertEquals(i, prefetcher.next().intValue());
+      }
+      assertFalse(prefetcher.hasNext());
+      prefetcher.close();
+      assertEquals(5, prefetcher.created.size());
+      assertTrue(prefetcher.closed.isEmpty());
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testPrefetchDepth() throws Exception {
+    TestPrefetcher prefetcher = new TestPrefetcher(10, 2, -1);
+    assertEquals(0, prefetcher.next().intValue());
+    // the next two splits are opened in the background, and no more
+    waitForCreated(prefetcher, 3);
+    Thread.sleep(100);
+    assertEquals(3, prefetcher.created.size());
+    assertEquals(1, prefetcher.next().intValue());
+    waitForCreated(prefetcher, 4);
+
+    // readers opened ahead are closed along with the prefetcher
+    prefetcher.close();
+    assertEquals(4, prefetcher.created.size());
+    assertEquals(2, prefetcher.closed.size());
+    assertTrue(prefetcher.closed.contains(2));
+    assertTrue(prefetcher.closed.contains(3));
+  }
+
+  @Test(timeout = 5000)
+  public void testCloseInterrupted() throws Exception {
+    final CountDownLatch openLatch = new CountDownLatch(1);
+    TestPrefetcher prefetcher = new TestPrefetcher(4, 2, -1) {
+      @Override
+      protected Integer createReader(int index) throws Exception {
+        if (index == 2) {
+          openLatch.await();
+        }
+        return super.createReader(index);
+      }
+    };
+    assertEquals(0, prefetcher.next().intValue());
+    waitForCreated(prefetcher, 2);
+
+    // the reader being opened is closed once it has been opened
+    Thread releaseThread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+        }
+        openLatch.countDown();
+      }
+    };
+    releaseThread.start();
+    Thread.currentThread().interrupt();
+    try {
+      prefetcher.close();
+      fail("Expected the interrupt to be propagated");
+    } catch (InterruptedIOException e) {
+    }
+    assertTrue(Thread.interrupted());
+    releaseThread.join();
+    assertEquals(2, prefetcher.closed.size());
+    assertTrue(prefetcher.closed.contains(1));
+    assertTrue(prefetcher.closed.contains(2));
+  }
+
+  @Test(timeout = 5000)
+  public void testFailedOpen() throws Exception {
+    TestPrefetcher prefetcher = new TestPrefetcher(4, 2, 2);
+    assertEquals(0, prefetcher.next().intValue());
+    assertEquals(1, prefetcher.next().intValue());
+    try {
+      prefetcher.next();
+      fail("Expected the failure of the split to be rethrown");
+    } catch (IOException e) {
+      assertEquals("Failed to open split 2", e.getMessage());
+    }
+    prefetcher.close();
+  }
+
+  @Test(timeout = 5000)
+  public void testWaitTime() throws Exception {
+    TestPrefetcher prefetcher = new TestPrefetcher(2, 1, -1) {
+      @Override
+      protected Integer createReader(int index) throws Exception {
+        Thread.sleep(50);
+        return super.createReader(index);
+      }
+    };
+    long startTime = System.nanoTime();
+    prefetcher.next();
+    prefetcher.next();
+    long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    assertTrue(prefetcher.waitTime >= 50);
+    assertTrue(prefetcher.waitTime <= time);
+    prefetcher.close();
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.mapreduce.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestParallelSplitGenerator {
+
+  private static final Path TEST_ROOT_DIR = new Path(System.getProperty("test.build.data",
+      System.getProperty("java.io.tmpdir")), TestParallelSplitGenerator.class.getSimpleName());
+
+  private FileSystem localFs;
+  private Path[] inputDirs;
+
+  @Before
+  public void setup() throws IOException {
+    localFs = FileSystem.getLocal(new Configuration());
+    localFs.delete(TEST_ROOT_DIR, true);
+    inputDirs = new Path[3];
+    for (int i = 0; i < inputDirs.length; i++) {
+      inputDirs[i] = localFs.makeQualified(new Path(TEST_ROOT_DIR, "dir" + i));
+      for (int j = 0; j < 2; j++) {
+        FSDataOutputStream out = localFs.create(new Path(inputDirs[i], "file" + j));
+        for (int k = 0; k < 100 * (i + j + 1); k++) {
+          out.writeBytes("line" + k + "\n");
+        }
+        out.close();
+      }
+    }
+    ParallelSplitGenerator.clearCache();
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    localFs.delete(TEST_ROOT_DIR, true);
+    ParallelSplitGenerator.clearCache();
+  }
+
+  private static List<String> toStrings(InputSplitInfoMem splitInfo) {
+    List<String> splits = new ArrayList<String>();
+    if (splitInfo.holdsNewFormatSplits()) {
+      for (InputSplit split : splitInfo.getNewFormatSplits()) {
+        splits.add(split.toString());
+      }
+    } else {
+      for (org.apache.hadoop.mapred.InputSplit split : splitInfo.getOldFormatSplits()) {
+        splits.add(split.toString());
+      }
+    }
+    Collections.sort(splits);
+    return splits;
+  }
+
+  @Test(timeout = 10000)
+  public void testNewSplits() throws Exception {
+    Job job = Job.getInstance(new Configuration());
+    job.setInputFormatClass(TextInputFormat.class);
+    job.getConfiguration().setBoolean("mapred.mapper.new-api", true);
+    FileInputFormat.setInputPaths(job, inputDirs);
+    Configuration conf = job.getConfiguration();
+
+    List<String> expected = toStrings(MRInputHelpers.generateInputSplitsToMem(conf, false, 0));
+    assertEquals(6, expected.size());
+    conf.setInt(MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_GENERATION_THREADS, 3);
+    assertEquals(expected, toStrings(MRInputHelpers.generateInputSplitsToMem(conf, false, 0)));
+
+    // Grouping is applied to the splits of all the input paths
+    InputSplitInfoMem grouped = MRInputHelpers.generateInputSplitsToMem(conf, true, 2);
+    assertTrue(grouped.getNumTasks() < 6);
+  }
+
+  @Test(timeout = 10000)
+  public void testOldSplits() throws Exception {
+    JobConf conf = new JobConf(new Configuration());
+    conf.setInputFormat(org.apache.hadoop.mapred.TextInputFormat.class);
+    conf.setNumMapTasks(1);
+    org.apache.hadoop.mapred.FileInputFormat.setInputPaths(conf, inputDirs);
+
+    List<String> expected = toStrings(MRInputHelpers.generateInputSplitsToMem(conf, false, 0));
+    assertEquals(6, expected.size());
+    conf.setInt(MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_GENERATION_THREADS, 3);
+    assertEquals(expected, toStrings(MRInputHelpers.generateInputSplitsToMem(conf, false, 0)));
+  }
+
+  @Test(timeout = 10000)
+  public void testSplitCache() throws Exception {
+    Job job = Job.getInstance(new Configuration());
+    job.getConfiguration().setBoolean(
+        MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_ENABLED, true);
+    FileInputFormat.setInputPaths(job, inputDirs);
+    TextInputFormat inputFormat = new TextInputFormat();
+
+    List<InputSplit> splits1 = ParallelSplitGenerator.getNewSplits(job, inputFormat);
+    List<InputSplit> splits2 = ParallelSplitGenerator.getNewSplits(job, inputFormat);
+    assertEquals(6, splits1.size());
+    for (int i = 0; i < splits1.size(); i++) {
+      assertSame(splits1.get(i), splits2.get(i));
+    }
+
+    // A change to the first input path only invalidates its splits
+    long mtime = localFs.getFileStatus(inputDirs[0]).getModificationTime();
+    localFs.setTimes(inputDirs[0], mtime + 10000, -1);
+    List<InputSplit> splits3 = ParallelSplitGenerator.getNewSplits(job, inputFormat);
+    for (int i = 0; i < splits1.size(); i++) {
+      Path path = ((FileSplit) splits1.get(i)).getPath();
+      if (path.getParent().equals(inputDirs[0])) {
+        assertNotSame(splits1.get(i), splits3.get(i));
+        assertEquals(splits1.get(i).toString(), splits3.get(i).toString());
+      } else {
+        assertSame(splits1.get(i), splits3.get(i));
+      }
+    }
+
+    // Different split settings do not use the cached splits
+    job.getConfiguration().setLong(FileInputFormat.SPLIT_MAXSIZE, 100);
+    List<InputSplit> splits4 = ParallelSplitGenerator.getNewSplits(job, inputFormat);
+    assertTrue(splits4.size() > splits1.size());
+  }
+
+  @Test(timeout = 10000)
+  public void testSplitCacheWithAppendedFile() throws Exception {
+    Job job = Job.getInstance(new Configuration());
+    job.getConfiguration().setBoolean(
+        MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_ENABLED, true);
+    FileInputFormat.setInputPaths(job, inputDirs[1]);
+    TextInputFormat inputFormat = new TextInputFormat();
+    List<InputSplit> splits1 = ParallelSplitGenerator.getNewSplits(job, inputFormat);
+
+    // Rewriting a file does not change the modification time of its directory
+    Path file = new Path(inputDirs[1], "file0");
+    long dirMtime = localFs.getFileStatus(inputDirs[1]).getModificationTime();
+    long length = localFs.getFileStatus(file).getLen();
+    FSDataOutputStream out = localFs.create(file, true);
+    for (int k = 0; k < 300; k++) {
+      out.writeBytes("line" + k + "\n");
+    }
+    out.close();
+    localFs.setTimes(inputDirs[1], dirMtime, -1);
+    assertEquals(dirMtime, localFs.getFileStatus(inputDirs[1]).getModificationTime());
+
+    List<InputSplit> splits2 = ParallelSplitGenerator.getNewSplits(job, inputFormat);
+    for (InputSplit split : splits2) {
+      if (((FileSplit) split).getPath().getName().equals("file0")) {
+        assertTrue(split.getLength() > length);
+      }
+    }
+    for (int i = 0; i < splits1.size(); i++) {
+      assertNotSame(splits1.get(i), splits2.get(i));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testSplitCacheBound() throws Exception {
+    Job job = Job.getInstance(new Configuration());
+    job.getConfiguration().setBoolean(
+        MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_ENABLED, true);
+    job.getConfiguration().setLong(MRJobConfig.MR_TEZ_INPUT_INITIALIZER_SPLIT_CACHE_MAX_SPLITS, 4);
+    FileInputFormat.setInputPaths(job, inputDirs);
+    TextInputFormat inputFormat = new TextInputFormat();
+
+    // Each input path has 2 splits, the splits of only 2 of them are kept
+    List<InputSplit> splits1 = ParallelSplitGenerator.getNewSplits(job, inputFormat);
+    assertEquals(6, splits1.size());
+    assertEquals(4, ParallelSplitGenerator.getNumCachedSplits());
+
+    List<InputSplit> splits2 = ParallelSplitGenerator.getNewSplits(job, inputFormat);
+    int numReused = 0;
+    for (int i = 0; i < splits1.size(); i++) {
+      if (splits1.get(i) == splits2.get(i)) {
+        numReused++;
+      }
+      assertEquals(splits1.get(i).toString(), splits2.get(i).toString());
+    }
+    assertTrue(numReused <= 4);
+    assertTrue(ParallelSplitGenerator.getNumCachedSplits() <= 4);
+  }
+}
@@ -41,6 +41,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.concurrent.Callable;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -59,11 +60,22 @@ public class ATSFileParser extends BaseParser implements ATSData {
   private static final Logger LOG = LoggerFactory.getLogger(ATSFileParser.class);
 
   private final File atsZipFile;
+  private final int numThreads;
 
   public ATSFileParser(File atsZipFile) throws TezException {
+    this(atsZipFile, 1);
+  }
+
+  /**
+   * @param atsZipFile zip file downloaded from ATS
+   * @param numThreads number of threads used to read and parse the files in the zip file
+   */
+  public ATSFileParser(File atsZipFile, int numThreads) throws TezException {
     super();
     Preconditions.checkArgument(atsZipFile.exists(), "Zipfile " + atsZipFile + " does not exist");
+    Preconditions.checkArgument(numThreads > 0, "numThreads should be positive");
     this.atsZipFile = atsZipFile;
+    this.numThreads = numThreads;
   }
 
   @Override
@@ -182,7 +194,8 @@ public class ATSFileParser extends BaseParser implements ATSData {
   }
 
   /**
-   * Read zip file contents. Every file can contain "dag", "vertices", "tasks", "task_attempts"
+   * Read zip file contents. Every file can contain "dag", "vertices", "tasks", "task_attempts".
+   * The files are parsed in parallel, and processed in the order of the zip file entries.
    *
    * @param atsFile
    * @throws IOException
@@ -191,47 +204,63 @@ public class ATSFileParser extends BaseParser implements ATSData {
   private void parseATSZipFile(File atsFile)
       throws IOException, JSONException, TezException, InterruptedException {
     final ZipFile atsZipFile = new ZipFile(atsFile);
+    OrderedParallelExecutor<JSONObject> entryParser = new OrderedParallelExecutor<JSONObject>(
+        "ATSFileParser", numThreads, new OrderedParallelExecutor.ResultHandler<JSONObject>() {
+          @Override
+          public void handle(JSONObject jsonObject) throws Exception {
+            processJson(jsonObject);
+          }
+        });
     try {
       Enumeration<? extends ZipEntry> zipEntries = atsZipFile.entries();
       while (zipEntries.hasMoreElements()) {
-        ZipEntry zipEntry = zipEntries.nextElement();
-        LOG.debug("Processing " + zipEntry.getName());
-        InputStream inputStream = atsZipFile.getInputStream(zipEntry);
-        JSONObject jsonObject = readJson(inputStream);
-
-        //This json can contain dag, vertices, tasks, task_attempts
-        JSONObject dagJson = jsonObject.optJSONObject(Constants.DAG);
-        if (dagJson != null) {
-          //TODO: support for multiple dags per ATS file later.
-          dagInfo = DagInfo.create(dagJson);
-        }
+        final ZipEntry zipEntry = zipEntries.nextElement();
+        entryParser.submit(new Callable<JSONObject>() {
+          @Override
+          public JSONObject call() throws IOException, JSONException {
+            LOG.debug("Processing " + zipEntry.getName());
+            InputStream inputStream = atsZipFile.getInputStream(zipEntry);
+            return readJson(inputStream);
+          }
+        });
+      }
+      entryParser.finish();
+    } finally {
+      entryParser.close();
+      atsZipFile.close();
+    }
+  }
 
-        //Process vertex
-        JSONArray vertexJson = jsonObject.optJSONArray(Constants.VERTICES);
-        if (vertexJson != null) {
-          processVertices(vertexJson);
-        }
+  private void processJson(JSONObject jsonObject) throws JSONException {
+    //This json can contain dag, vertices, tasks, task_attempts
+    JSONObject dagJson = jsonObject.optJSONObject(Constants.DAG);
+    if (dagJson != null) {
+      //TODO: support for multiple dags per ATS file later.
+      dagInfo = DagInfo.create(dagJson);
+    }
 
-        //Process task
-        JSONArray taskJson = jsonObject.optJSONArray(Constants.TASKS);
-        if (taskJson != null) {
-          processTasks(taskJson);
-        }
+    //Process vertex
+    JSONArray vertexJson = jsonObject.optJSONArray(Constants.VERTICES);
+    if (vertexJson != null) {
+      processVertices(vertexJson);
+    }
 
-        //Process task attempts
-        JSONArray attemptsJson = jsonObject.optJSONArray(Constants.TASK_ATTEMPTS);
-        if (attemptsJson != null) {
-          processAttempts(attemptsJson);
-        }
+    //Process task
+    JSONArray taskJson = jsonObject.optJSONArray(Constants.TASKS);
+    if (taskJson != null) {
+      processTasks(taskJson);
+    }
 
-        //Process application (mainly versionInfo)
-        JSONObject tezAppJson = jsonObject.optJSONObject(Constants.APPLICATION);
-        if (tezAppJson != null) {
-          processApplication(tezAppJson);
-        }
-      }
-    } finally {
-      atsZipFile.close();
+    //Process task attempts
+    JSONArray attemptsJson = jsonObject.optJSONArray(Constants.TASK_ATTEMPTS);
+    if (attemptsJson != null) {
+      processAttempts(attemptsJson);
+    }
+
+    //Process application (mainly versionInfo)
+    JSONObject tezAppJson = jsonObject.optJSONObject(Constants.APPLICATION);
+    if (tezAppJson != null) {
+      processApplication(tezAppJson);
     }
   }
 }
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.history.parser;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.tez.dag.api.TezException;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs parsing tasks on a pool of threads and hands their results to a handler in the order the
+ * tasks were submitted, on the submitting thread. The number of tasks in flight is bounded, so
+ * that the input is not read much further ahead than it is consumed. With a single thread the
+ * tasks run inline.
+ */
+class OrderedParallelExecutor<T> implements Closeable {
+
+  interface ResultHandler<T> {
+    void handle(T result) throws Exception;
+  }
+
+  private final ExecutorService executor;
+  private final int maxPendingTasks;
+  private final ResultHandler<T> handler;
+  private final Deque<Future<T>> pendingTasks = new ArrayDeque<Future<T>>();
+
+  OrderedParallelExecutor(String name, int numThreads, ResultHandler<T> handler) {
+    this.handler = handler;
+    if (numThreads > 1) {
+      this.executor = Executors.newFixedThreadPool(numThreads,
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat(name + " #%d").build());
+      this.maxPendingTasks = 2 * numThreads;
+    } else {
+      this.executor = null;
+      this.maxPendingTasks = 0;
+    }
+  }
+
+  void submit(Callable<T> task) throws TezException {
+    if (executor == null) {
+      try {
+        handler.handle(task.call());
+      } catch (Exception e) {
+        throw toTezException(e);
+      }
+      return;
+    }
+    while (pendingTasks.size() >= maxPendingTasks) {
+      handleNext();
+    }
+    pendingTasks.add(executor.submit(task));
+  }
+
+  /**
+   * Waits for all submitted tasks and hands over their results.
+   */
+  void finish() throws TezException {
+    while (!pendingTasks.isEmpty()) {
+      handleNext();
+    }
+  }
+
+  private void handleNext() throws TezException {
+    try {
+      handler.handle(pendingTasks.poll().get());
+    } catch (ExecutionException e) {
+      throw toTezException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TezException(e);
+    } catch (Exception e) {
+      throw toTezException(e);
+    }
+  }
+
+  private static TezException toTezException(Throwable t) {
+    if (t instanceof TezException) {
+      return (TezException) t;
+    }
+    return new TezException(t);
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+}
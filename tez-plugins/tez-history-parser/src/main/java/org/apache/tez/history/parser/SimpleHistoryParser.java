@@ -17,10 +17,17 @@
  */
 package org.apache.tez.history.parser;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
 import org.apache.tez.dag.api.TezException;
+import org.apache.tez.dag.history.HistoryEventType;
 import org.apache.tez.dag.history.logging.impl.SimpleHistoryLoggingService;
 import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
@@ -39,11 +46,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * Parser utility to parse data generated by SimpleHistoryLogging to in-memory datamodel provided
@@ -56,13 +68,28 @@ import java.util.Scanner;
 public class SimpleHistoryParser extends BaseParser {
   private static final Logger LOG = LoggerFactory.getLogger(SimpleHistoryParser.class);
   private static final String UTF8 = "UTF-8";
+  // Number of history records parsed, or entities created, by a single task
+  private static final int RECORDS_PER_CHUNK = 1000;
   private final File historyFile;
+  private final int numThreads;
+  private int maxUnfinishedEntities = 0;
 
 
   public SimpleHistoryParser(File historyFile) {
+    this(historyFile, 1);
+  }
+
+  /**
+   * @param historyFile history file written by SimpleHistoryLogging
+   * @param numThreads number of threads used to parse the history records and to create the
+   *                   in-memory datamodel. The file itself is read sequentially.
+   */
+  public SimpleHistoryParser(File historyFile, int numThreads) {
     super();
     Preconditions.checkArgument(historyFile.exists(), historyFile + " does not exist");
+    Preconditions.checkArgument(numThreads > 0, "numThreads should be positive");
     this.historyFile = historyFile;
+    this.numThreads = numThreads;
   }
 
   /**
@@ -105,26 +132,352 @@ public class SimpleHistoryParser extends BaseParser {
     populateOtherInfo(source, destOtherInfo);
   }
 
+  /**
+   * History files compressed by SimpleHistoryLogging carry the default extension of the codec
+   * used, which is used to pick the codec to read them with.
+   */
+  private Scanner createScanner(File historyFile) throws IOException {
+    CompressionCodec codec = new CompressionCodecFactory(new Configuration())
+        .getCodec(new Path(historyFile.getAbsolutePath()));
+    if (codec == null) {
+      return new Scanner(historyFile, UTF8);
+    }
+    return new Scanner(codec.createInputStream(new FileInputStream(historyFile)), UTF8);
+  }
+
   private void parseContents(File historyFile, String dagId)
-      throws JSONException, FileNotFoundException, TezException {
-    Scanner scanner = new Scanner(historyFile, UTF8);
+      throws JSONException, IOException, TezException {
+    Scanner scanner = createScanner(historyFile);
     scanner.useDelimiter(SimpleHistoryLoggingService.RECORD_SEPARATOR);
-    JSONObject dagJson = null;
-    Map<String, JSONObject> vertexJsonMap = Maps.newHashMap();
-    Map<String, JSONObject> taskJsonMap = Maps.newHashMap();
-    Map<String, JSONObject> attemptJsonMap = Maps.newHashMap();
-    TezDAGID tezDAGID = TezDAGID.fromString(dagId);
-    String userName = null;
-    while (scanner.hasNext()) {
-      String line = scanner.next();
-      JSONObject jsonObject = new JSONObject(line);
+    final DagRecords dagRecords = new DagRecords(dagId);
+    OrderedParallelExecutor<List<JSONObject>> recordParser =
+        new OrderedParallelExecutor<List<JSONObject>>("HistoryRecordParser", numThreads,
+            new OrderedParallelExecutor.ResultHandler<List<JSONObject>>() {
+              @Override
+              public void handle(List<JSONObject> records) throws Exception {
+                for (JSONObject record : records) {
+                  dagRecords.add(record);
+                }
+              }
+            });
+    try {
+      List<String> lines = new ArrayList<String>(RECORDS_PER_CHUNK);
+      while (scanner.hasNext()) {
+        lines.add(scanner.next());
+        if (lines.size() == RECORDS_PER_CHUNK) {
+          recordParser.submit(createParseTask(lines));
+          lines = new ArrayList<String>(RECORDS_PER_CHUNK);
+        }
+      }
+      if (!lines.isEmpty()) {
+        recordParser.submit(createParseTask(lines));
+      }
+      recordParser.finish();
+      dagRecords.finish();
+    } finally {
+      recordParser.close();
+      dagRecords.close();
+      scanner.close();
+    }
+    maxUnfinishedEntities = dagRecords.maxUnfinishedEntities;
+
+    if (dagRecords.dagJson != null) {
+      this.dagInfo = DagInfo.create(dagRecords.dagJson);
+      setUserName(dagRecords.userName);
+    } else {
+      LOG.error("Dag is not yet parsed. Looks like partial file.");
+      throw new TezException(
+          "Please provide a valid/complete history log file containing " + dagId);
+    }
+  }
+
+  /**
+   * @return the largest number of entities whose records were held at the same time by the last
+   *         parse, i.e. entities which were not finished yet
+   */
+  @VisibleForTesting
+  int getMaxUnfinishedEntities() {
+    return maxUnfinishedEntities;
+  }
+
+  private static Callable<List<JSONObject>> createParseTask(final List<String> lines) {
+    return new Callable<List<JSONObject>>() {
+      @Override
+      public List<JSONObject> call() throws JSONException {
+        List<JSONObject> records = new ArrayList<JSONObject>(lines.size());
+        for (String line : lines) {
+          records.add(new JSONObject(line));
+        }
+        return records;
+      }
+    };
+  }
+
+  private interface InfoFactory<T> {
+    T create(JSONObject jsonObject) throws JSONException;
+
+    String getId(T info);
+  }
+
+  private static TaskAttemptInfo createTaskAttemptInfo(JSONObject jsonObject)
+      throws JSONException {
+    /**
+     * For converting SimpleHistoryLogging to in-memory representation
+     *
+     * We need to get "relatedEntities":[{"entity":"cn055-10.l42scl.hortonworks.com:58690",
+     * "entitytype":"nodeId"},{"entity":"container_1438652049951_0008_01_000152",
+     * "entitytype":"containerId"} and populate it in otherInfo object so that in-memory
+     * representation can parse it correctly
+     */
+    JSONArray relatedEntities = jsonObject.optJSONArray(Constants.RELATED_ENTITIES);
+    if (relatedEntities == null) {
+      //This can happen when CONTAINER_EXITED abruptly. (e.g Container failed, exitCode=1)
+      LOG.debug("entity {} did not have related entities",
+          jsonObject.optJSONObject(Constants.ENTITY));
+    } else {
+      JSONObject subJsonObject = relatedEntities.optJSONObject(0);
+      if (subJsonObject != null) {
+        String nodeId = subJsonObject.optString(Constants.ENTITY_TYPE);
+        if (!Strings.isNullOrEmpty(nodeId) && nodeId.equalsIgnoreCase(Constants.NODE_ID)) {
+          //populate it in otherInfo
+          JSONObject otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
+          String nodeIdVal = subJsonObject.optString(Constants.ENTITY);
+          if (otherInfo != null && nodeIdVal != null) {
+            otherInfo.put(Constants.NODE_ID, nodeIdVal);
+          }
+        }
+      }
+
+      subJsonObject = relatedEntities.optJSONObject(1);
+      if (subJsonObject != null) {
+        String containerId = subJsonObject.optString(Constants.ENTITY_TYPE);
+        if (!Strings.isNullOrEmpty(containerId) && containerId
+            .equalsIgnoreCase(Constants.CONTAINER_ID)) {
+          //populate it in otherInfo
+          JSONObject otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
+          String containerIdVal = subJsonObject.optString(Constants.ENTITY);
+          if (otherInfo != null && containerIdVal != null) {
+            otherInfo.put(Constants.CONTAINER_ID, containerIdVal);
+          }
+        }
+      }
+    }
+    TaskAttemptInfo attemptInfo = TaskAttemptInfo.create(jsonObject);
+    LOG.debug("Parsed task attempt {}", attemptInfo.getTaskAttemptId());
+    return attemptInfo;
+  }
+
+  /**
+   * Merges the history records of the entities of a type, in the order they were logged. The
+   * in-memory representation of an entity is created on the parser threads, in chunks, as soon
+   * as its finished record has been merged, and its json is then released. The entities which
+   * are not finished by the end of the file are created last.
+   *
+   * An entity can be finished again, e.g. a task attempt which fails after its output is lost,
+   * so a copy of the json of the finished entities is kept, without their counters and
+   * diagnostics which make up most of it and which the later finished record carries again. The
+   * entity is created again from that copy once it is finished again, and replaces the one
+   * created earlier.
+   */
+  private class EntityRecords<T> {
+    private final String finishedEventType;
+    private final InfoFactory<T> factory;
+    private final List<T> infos;
+    private final Map<String, JSONObject> unfinishedJsonMap = Maps.newHashMap();
+    private final Map<String, JSONObject> finishedJsonMap = Maps.newHashMap();
+    private final Set<String> refinishedIds = Sets.newHashSet();
+    private final OrderedParallelExecutor<List<T>> executor;
+    private List<JSONObject> chunk = new ArrayList<JSONObject>(RECORDS_PER_CHUNK);
+
+    EntityRecords(String name, HistoryEventType finishedEventType, final List<T> infos,
+        InfoFactory<T> factory) {
+      this.finishedEventType = finishedEventType.name();
+      this.factory = factory;
+      this.infos = infos;
+      this.executor = new OrderedParallelExecutor<List<T>>(name, numThreads,
+          new OrderedParallelExecutor.ResultHandler<List<T>>() {
+            @Override
+            public void handle(List<T> result) {
+              infos.addAll(result);
+            }
+          });
+    }
+
+    void add(String entityId, JSONObject jsonObject) throws JSONException, TezException {
+      JSONObject entityJson = unfinishedJsonMap.get(entityId);
+      if (entityJson == null) {
+        entityJson = finishedJsonMap.remove(entityId);
+        if (entityJson != null) {
+          refinishedIds.add(entityId);
+        } else {
+          entityJson = jsonObject;
+        }
+        unfinishedJsonMap.put(entityId, entityJson);
+      }
+      populateOtherInfo(jsonObject.optJSONObject(Constants.OTHER_INFO), entityId,
+          unfinishedJsonMap);
+      if (isFinished(jsonObject)) {
+        unfinishedJsonMap.remove(entityId);
+        finishedJsonMap.put(entityId, copyWithoutFinishedInfo(entityJson));
+        submit(entityJson);
+      }
+    }
+
+    private boolean isFinished(JSONObject jsonObject) throws JSONException {
+      JSONArray events = jsonObject.optJSONArray(Constants.EVENTS);
+      if (events == null) {
+        return false;
+      }
+      for (int i = 0; i < events.length(); i++) {
+        JSONObject event = events.optJSONObject(i);
+        if (event != null && finishedEventType.equals(event.optString(Constants.EVENT_TYPE))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void submit(JSONObject entityJson) throws TezException {
+      chunk.add(entityJson);
+      if (chunk.size() == RECORDS_PER_CHUNK) {
+        submitChunk();
+      }
+    }
+
+    private void submitChunk() throws TezException {
+      final List<JSONObject> jsonObjects = chunk;
+      chunk = new ArrayList<JSONObject>(RECORDS_PER_CHUNK);
+      executor.submit(new Callable<List<T>>() {
+        @Override
+        public List<T> call() throws JSONException {
+          List<T> result = new ArrayList<T>(jsonObjects.size());
+          for (JSONObject jsonObject : jsonObjects) {
+            result.add(factory.create(jsonObject));
+          }
+          return result;
+        }
+      });
+    }
+
+    void finish() throws TezException {
+      for (JSONObject entityJson : unfinishedJsonMap.values()) {
+        submit(entityJson);
+      }
+      unfinishedJsonMap.clear();
+      finishedJsonMap.clear();
+      if (!chunk.isEmpty()) {
+        submitChunk();
+      }
+      executor.finish();
+      if (!refinishedIds.isEmpty()) {
+        // keep the entities created last
+        Set<String> createdIds = Sets.newHashSet();
+        ListIterator<T> it = infos.listIterator(infos.size());
+        while (it.hasPrevious()) {
+          String id = factory.getId(it.previous());
+          if (refinishedIds.contains(id) && !createdIds.add(id)) {
+            it.remove();
+          }
+        }
+      }
+    }
+
+    int getNumUnfinished() {
+      return unfinishedJsonMap.size();
+    }
+
+    void close() {
+      executor.close();
+    }
+  }
+
+  private static JSONObject copyWithoutFinishedInfo(JSONObject jsonObject) throws JSONException {
+    JSONObject copy = new JSONObject();
+    for (Iterator it = jsonObject.keys(); it.hasNext(); ) {
+      String key = (String) it.next();
+      copy.put(key, jsonObject.get(key));
+    }
+    JSONObject otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
+    if (otherInfo != null) {
+      JSONObject otherInfoCopy = new JSONObject();
+      for (Iterator it = otherInfo.keys(); it.hasNext(); ) {
+        String key = (String) it.next();
+        if (!Constants.COUNTERS.equals(key) && !Constants.DIAGNOSTICS.equals(key)) {
+          otherInfoCopy.put(key, otherInfo.get(key));
+        }
+      }
+      copy.put(Constants.OTHER_INFO, otherInfoCopy);
+    }
+    return copy;
+  }
+
+  /**
+   * Merges the history records of a DAG per entity, in the order they were logged.
+   */
+  private class DagRecords {
+    private final String dagId;
+    private final TezDAGID tezDAGID;
+    private JSONObject dagJson = null;
+    private final EntityRecords<VertexInfo> vertexRecords;
+    private final EntityRecords<TaskInfo> taskRecords;
+    private final EntityRecords<TaskAttemptInfo> attemptRecords;
+    private String userName = null;
+    private int maxUnfinishedEntities = 0;
+
+    DagRecords(String dagId) {
+      this.dagId = dagId;
+      this.tezDAGID = TezDAGID.fromString(dagId);
+      vertexRecords = new EntityRecords<VertexInfo>("HistoryVertexParser",
+          HistoryEventType.VERTEX_FINISHED, vertexList, new InfoFactory<VertexInfo>() {
+            @Override
+            public VertexInfo create(JSONObject jsonObject) throws JSONException {
+              VertexInfo vertexInfo = VertexInfo.create(jsonObject);
+              LOG.debug("Parsed vertex {}", vertexInfo.getVertexName());
+              return vertexInfo;
+            }
+
+            @Override
+            public String getId(VertexInfo info) {
+              return info.getVertexId();
+            }
+          });
+      taskRecords = new EntityRecords<TaskInfo>("HistoryTaskParser",
+          HistoryEventType.TASK_FINISHED, taskList, new InfoFactory<TaskInfo>() {
+            @Override
+            public TaskInfo create(JSONObject jsonObject) throws JSONException {
+              TaskInfo taskInfo = TaskInfo.create(jsonObject);
+              LOG.debug("Parsed task {}", taskInfo.getTaskId());
+              return taskInfo;
+            }
+
+            @Override
+            public String getId(TaskInfo info) {
+              return info.getTaskId();
+            }
+          });
+      attemptRecords = new EntityRecords<TaskAttemptInfo>("HistoryTaskAttemptParser",
+          HistoryEventType.TASK_ATTEMPT_FINISHED, attemptList,
+          new InfoFactory<TaskAttemptInfo>() {
+            @Override
+            public TaskAttemptInfo create(JSONObject jsonObject) throws JSONException {
+              return createTaskAttemptInfo(jsonObject);
+            }
+
+            @Override
+            public String getId(TaskAttemptInfo info) {
+              return info.getTaskAttemptId();
+            }
+          });
+    }
+
+    void add(JSONObject jsonObject) throws JSONException, TezException {
       String entity = jsonObject.getString(Constants.ENTITY);
       String entityType = jsonObject.getString(Constants.ENTITY_TYPE);
       switch (entityType) {
       case Constants.TEZ_DAG_ID:
         if (!dagId.equals(entity)) {
           LOG.warn(dagId + " is not matching with " + entity);
-          continue;
+          return;
         }
         // Club all DAG related information together (DAG_INIT, DAG_FINISH etc). Each of them
         // would have a set of entities in otherinfo (e.g vertex mapping, dagPlan, start/finish
@@ -155,108 +508,45 @@ public class SimpleHistoryParser extends BaseParser {
         TezVertexID tezVertexID = TezVertexID.fromString(vertexName);
         if (!tezDAGID.equals(tezVertexID.getDAGId())) {
           LOG.warn(vertexName + " does not belong to " + tezDAGID);
-          continue;
+          return;
         }
-        if (!vertexJsonMap.containsKey(vertexName)) {
-          vertexJsonMap.put(vertexName, jsonObject);
-        }
-        otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
-        populateOtherInfo(otherInfo, vertexName, vertexJsonMap);
+        vertexRecords.add(vertexName, jsonObject);
         break;
       case Constants.TEZ_TASK_ID:
         String taskName = entity;
         TezTaskID tezTaskID = TezTaskID.fromString(taskName);
         if (!tezDAGID.equals(tezTaskID.getVertexID().getDAGId())) {
           LOG.warn(taskName + " does not belong to " + tezDAGID);
-          continue;
-        }
-        if (!taskJsonMap.containsKey(taskName)) {
-          taskJsonMap.put(taskName, jsonObject);
+          return;
         }
-        otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
-        populateOtherInfo(otherInfo, taskName, taskJsonMap);
+        taskRecords.add(taskName, jsonObject);
         break;
       case Constants.TEZ_TASK_ATTEMPT_ID:
         String taskAttemptName = entity;
         TezTaskAttemptID tezAttemptId = TezTaskAttemptID.fromString(taskAttemptName);
         if (!tezDAGID.equals(tezAttemptId.getTaskID().getVertexID().getDAGId())) {
           LOG.warn(taskAttemptName + " does not belong to " + tezDAGID);
-          continue;
-        }
-        if (!attemptJsonMap.containsKey(taskAttemptName)) {
-          attemptJsonMap.put(taskAttemptName, jsonObject);
+          return;
         }
-        otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
-        populateOtherInfo(otherInfo, taskAttemptName, attemptJsonMap);
+        attemptRecords.add(taskAttemptName, jsonObject);
         break;
       default:
         break;
       }
+      maxUnfinishedEntities = Math.max(maxUnfinishedEntities, vertexRecords.getNumUnfinished()
+          + taskRecords.getNumUnfinished() + attemptRecords.getNumUnfinished());
     }
-    scanner.close();
-    if (dagJson != null) {
-      this.dagInfo = DagInfo.create(dagJson);
-      setUserName(userName);
-    } else {
-      LOG.error("Dag is not yet parsed. Looks like partial file.");
-      throw new TezException(
-          "Please provide a valid/complete history log file containing " + dagId);
-    }
-    for (JSONObject jsonObject : vertexJsonMap.values()) {
-      VertexInfo vertexInfo = VertexInfo.create(jsonObject);
-      this.vertexList.add(vertexInfo);
-      LOG.debug("Parsed vertex {}", vertexInfo.getVertexName());
-    }
-    for (JSONObject jsonObject : taskJsonMap.values()) {
-      TaskInfo taskInfo = TaskInfo.create(jsonObject);
-      this.taskList.add(taskInfo);
-      LOG.debug("Parsed task {}", taskInfo.getTaskId());
+
+    void finish() throws TezException {
+      vertexRecords.finish();
+      taskRecords.finish();
+      attemptRecords.finish();
     }
-    for (JSONObject jsonObject : attemptJsonMap.values()) {
-      /**
-       * For converting SimpleHistoryLogging to in-memory representation
-       *
-       * We need to get "relatedEntities":[{"entity":"cn055-10.l42scl.hortonworks.com:58690",
-       * "entitytype":"nodeId"},{"entity":"container_1438652049951_0008_01_000152",
-       * "entitytype":"containerId"} and populate it in otherInfo object so that in-memory
-       * representation can parse it correctly
-       */
-      JSONArray relatedEntities = jsonObject.optJSONArray(Constants.RELATED_ENTITIES);
-      if (relatedEntities == null) {
-        //This can happen when CONTAINER_EXITED abruptly. (e.g Container failed, exitCode=1)
-        LOG.debug("entity {} did not have related entities",
-            jsonObject.optJSONObject(Constants.ENTITY));
-      } else {
-        JSONObject subJsonObject = relatedEntities.optJSONObject(0);
-        if (subJsonObject != null) {
-          String nodeId = subJsonObject.optString(Constants.ENTITY_TYPE);
-          if (!Strings.isNullOrEmpty(nodeId) && nodeId.equalsIgnoreCase(Constants.NODE_ID)) {
-            //populate it in otherInfo
-            JSONObject otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
-            String nodeIdVal = subJsonObject.optString(Constants.ENTITY);
-            if (otherInfo != null && nodeIdVal != null) {
-              otherInfo.put(Constants.NODE_ID, nodeIdVal);
-            }
-          }
-        }
 
-        subJsonObject = relatedEntities.optJSONObject(1);
-        if (subJsonObject != null) {
-          String containerId = subJsonObject.optString(Constants.ENTITY_TYPE);
-          if (!Strings.isNullOrEmpty(containerId) && containerId
-              .equalsIgnoreCase(Constants.CONTAINER_ID)) {
-            //populate it in otherInfo
-            JSONObject otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
-            String containerIdVal = subJsonObject.optString(Constants.ENTITY);
-            if (otherInfo != null && containerIdVal != null) {
-              otherInfo.put(Constants.CONTAINER_ID, containerIdVal);
-            }
-          }
-        }
-      }
-      TaskAttemptInfo attemptInfo = TaskAttemptInfo.create(jsonObject);
-      this.attemptList.add(attemptInfo);
-      LOG.debug("Parsed task attempt {}", attemptInfo.getTaskAttemptId());
+    void close() {
+      vertexRecords.close();
+      taskRecords.close();
+      attemptRecords.close();
     }
   }
-}
\ No newline at end of file
+}
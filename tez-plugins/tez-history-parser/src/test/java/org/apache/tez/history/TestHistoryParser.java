@@ -223,9 +223,18 @@ public class TestHistoryParser {
 
     //Compare dagInfo by parsing ATS data with DagInfo obtained by parsing SimpleHistoryLog
     isDAGEqual(dagInfoFromATS, shDagInfo);
+
+    //Parsing with multiple threads should give the same results
+    isDAGEqual(dagInfoFromATS, getDagInfo(dagInfoFromATS.getDagId(), 4));
+    isDAGEqual(shDagInfo, getDagInfoFromSimpleHistory(dagId, 4));
   }
 
   private DagInfo getDagInfoFromSimpleHistory(String dagId) throws TezException, IOException {
+    return getDagInfoFromSimpleHistory(dagId, 1);
+  }
+
+  private DagInfo getDagInfoFromSimpleHistory(String dagId, int numThreads)
+      throws TezException, IOException {
     TezDAGID tezDAGID = TezDAGID.fromString(dagId);
     ApplicationAttemptId applicationAttemptId = ApplicationAttemptId.newInstance(tezDAGID
         .getApplicationId(), 1);
@@ -239,7 +248,7 @@ public class TestHistoryParser {
     File localFile = new File(DOWNLOAD_DIR, HISTORY_TXT);
 
     //Now parse via SimpleHistory
-    SimpleHistoryParser parser = new SimpleHistoryParser(localFile);
+    SimpleHistoryParser parser = new SimpleHistoryParser(localFile, numThreads);
     DagInfo dagInfo = parser.getDAGData(dagId);
     assertTrue(dagInfo.getDagId().equals(dagId));
     return dagInfo;
@@ -600,10 +609,14 @@ public class TestHistoryParser {
   }
 
   private DagInfo getDagInfo(String dagId) throws TezException {
+    return getDagInfo(dagId, 1);
+  }
+
+  private DagInfo getDagInfo(String dagId, int numThreads) throws TezException {
     //Parse downloaded contents
     File downloadedFile = new File(DOWNLOAD_DIR
         + Path.SEPARATOR + dagId + ".zip");
-    ATSFileParser parser = new ATSFileParser(downloadedFile);
+    ATSFileParser parser = new ATSFileParser(downloadedFile, numThreads);
     DagInfo dagInfo = parser.getDAGData(dagId);
     assertTrue(dagInfo.getDagId().equals(dagId));
     return dagInfo;
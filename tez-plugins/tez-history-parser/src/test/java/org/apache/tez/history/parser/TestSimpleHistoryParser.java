@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tez.history.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.tez.common.counters.TaskCounter;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
+import org.apache.tez.dag.api.oldrecords.TaskState;
+import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
+import org.apache.tez.dag.api.records.DAGProtos.PlanTaskConfiguration;
+import org.apache.tez.dag.api.records.DAGProtos.PlanVertexType;
+import org.apache.tez.dag.api.records.DAGProtos.VertexPlan;
+import org.apache.tez.dag.app.dag.DAGState;
+import org.apache.tez.dag.app.dag.VertexState;
+import org.apache.tez.dag.app.dag.impl.VertexStats;
+import org.apache.tez.dag.history.HistoryEvent;
+import org.apache.tez.dag.history.events.DAGFinishedEvent;
+import org.apache.tez.dag.history.events.DAGInitializedEvent;
+import org.apache.tez.dag.history.events.DAGStartedEvent;
+import org.apache.tez.dag.history.events.DAGSubmittedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptStartedEvent;
+import org.apache.tez.dag.history.events.TaskFinishedEvent;
+import org.apache.tez.dag.history.events.TaskStartedEvent;
+import org.apache.tez.dag.history.events.VertexFinishedEvent;
+import org.apache.tez.dag.history.events.VertexInitializedEvent;
+import org.apache.tez.dag.history.events.VertexStartedEvent;
+import org.apache.tez.dag.history.logging.impl.HistoryEventJsonConversion;
+import org.apache.tez.dag.history.logging.impl.SimpleHistoryLoggingService;
+import org.apache.tez.dag.records.TaskAttemptTerminationCause;
+import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.history.parser.datamodel.DagInfo;
+import org.apache.tez.history.parser.datamodel.TaskAttemptInfo;
+import org.apache.tez.history.parser.datamodel.TaskInfo;
+import org.apache.tez.history.parser.datamodel.VertexInfo;
+import org.codehaus.jettison.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class TestSimpleHistoryParser {
+
+  private static final File TEST_DIR = new File(System.getProperty("test.build.data",
+      System.getProperty("java.io.tmpdir")), TestSimpleHistoryParser.class.getName());
+  private static final int NUM_TASKS = 100;
+
+  private final ApplicationId appId = ApplicationId.newInstance(1000, 1);
+  private final ApplicationAttemptId appAttemptId = ApplicationAttemptId.newInstance(appId, 1);
+  private final TezDAGID dagId = TezDAGID.getInstance(appId, 1);
+  private final TezVertexID vertexId = TezVertexID.getInstance(dagId, 0);
+  private final NodeId nodeId = NodeId.newInstance("host", 1234);
+
+  @Before
+  public void setup() {
+    FileUtil.fullyDelete(TEST_DIR);
+    assertTrue(TEST_DIR.mkdirs());
+  }
+
+  @After
+  public void cleanup() {
+    FileUtil.fullyDelete(TEST_DIR);
+  }
+
+  @Test(timeout = 20000)
+  public void testStreamingParse() throws Exception {
+    testStreamingParse(1);
+  }
+
+  @Test(timeout = 20000)
+  public void testStreamingParseWithThreads() throws Exception {
+    testStreamingParse(4);
+  }
+
+  private void testStreamingParse(int numThreads) throws Exception {
+    File historyFile = writeHistoryFile();
+    SimpleHistoryParser parser = new SimpleHistoryParser(historyFile, numThreads);
+    DagInfo dagInfo = parser.getDAGData(dagId.toString());
+
+    // the records of the tasks and attempts are released as they finish, only the records of
+    // the vertex, of a task and of its attempt are held at the same time
+    assertEquals(3, parser.getMaxUnfinishedEntities());
+
+    assertEquals(1, dagInfo.getVertices().size());
+    VertexInfo vertexInfo = dagInfo.getVertex("v1");
+    assertEquals(vertexId.toString(), vertexInfo.getVertexId());
+    assertEquals(NUM_TASKS, vertexInfo.getTasks().size());
+    for (TaskInfo taskInfo : vertexInfo.getTasks()) {
+      assertEquals(1, taskInfo.getNumberOfTaskAttempts());
+      TaskAttemptInfo attemptInfo = taskInfo.getTaskAttempts().get(0);
+      int taskIndex = TezTaskAttemptID.fromString(attemptInfo.getTaskAttemptId())
+          .getTaskID().getId();
+      // the info of the started record is kept
+      assertEquals(nodeId.getHost(), attemptInfo.getNodeId());
+      assertEquals(ContainerId.newInstance(appAttemptId, taskIndex + 1).toString(),
+          attemptInfo.getContainer().getId());
+      if (taskIndex == 0) {
+        // the attempt finished again, after the other tasks, replaces the first one
+        assertEquals(TaskAttemptState.FAILED.name(), attemptInfo.getStatus());
+        assertEquals(1, attemptInfo.getTezCounters()
+            .findCounter(TaskCounter.OUTPUT_RECORDS).getValue());
+        assertEquals("output lost", attemptInfo.getDiagnostics());
+      } else {
+        assertEquals(TaskAttemptState.SUCCEEDED.name(), attemptInfo.getStatus());
+        assertEquals(taskIndex, attemptInfo.getTezCounters()
+            .findCounter(TaskCounter.OUTPUT_RECORDS).getValue());
+      }
+    }
+  }
+
+  private File writeHistoryFile() throws IOException, JSONException {
+    VertexPlan vertexPlan = VertexPlan.newBuilder()
+        .setName("v1")
+        .setType(PlanVertexType.NORMAL)
+        .setTaskConfig(PlanTaskConfiguration.newBuilder()
+            .setNumTasks(NUM_TASKS)
+            .setMemoryMb(1024)
+            .setVirtualCores(1)
+            .setJavaOpts("")
+            .setTaskModule(""))
+        .build();
+    DAGPlan dagPlan = DAGPlan.newBuilder().setName("dag").addVertex(vertexPlan).build();
+
+    List<HistoryEvent> events = new ArrayList<HistoryEvent>();
+    events.add(new DAGSubmittedEvent(dagId, 1, dagPlan, appAttemptId, null, "user",
+        new Configuration(false), null, "default"));
+    events.add(new DAGInitializedEvent(dagId, 2, "user", "dag",
+        Collections.singletonMap("v1", vertexId)));
+    events.add(new DAGStartedEvent(dagId, 3, "user", "dag"));
+    events.add(new VertexInitializedEvent(vertexId, "v1", 2, 3, NUM_TASKS, "processor", null,
+        null, null));
+    events.add(new VertexStartedEvent(vertexId, 3, 4));
+    for (int i = 0; i < NUM_TASKS; ++i) {
+      TezTaskID taskId = TezTaskID.getInstance(vertexId, i);
+      TezTaskAttemptID attemptId = TezTaskAttemptID.getInstance(taskId, 0);
+      ContainerId containerId = ContainerId.newInstance(appAttemptId, i + 1);
+      events.add(new TaskStartedEvent(taskId, "v1", 4, 5));
+      events.add(new TaskAttemptStartedEvent(attemptId, "v1", 5, containerId, nodeId, null,
+          null, null));
+      events.add(createAttemptFinishedEvent(attemptId, containerId, TaskAttemptState.SUCCEEDED,
+          i, null));
+      events.add(new TaskFinishedEvent(taskId, "v1", 5, 7, attemptId, TaskState.SUCCEEDED, null,
+          createCounters(i), 0));
+    }
+    TezTaskAttemptID lostAttemptId =
+        TezTaskAttemptID.getInstance(TezTaskID.getInstance(vertexId, 0), 0);
+    events.add(createAttemptFinishedEvent(lostAttemptId,
+        ContainerId.newInstance(appAttemptId, 1), TaskAttemptState.FAILED, 1, "output lost"));
+    events.add(new VertexFinishedEvent(vertexId, "v1", NUM_TASKS, 2, 3, 3, 4, 8,
+        VertexState.SUCCEEDED, null, new TezCounters(), new VertexStats(), null, null));
+    events.add(new DAGFinishedEvent(dagId, 3, 9, DAGState.SUCCEEDED, null, new TezCounters(),
+        "user", "dag", null, appAttemptId, dagPlan));
+
+    File historyFile = new File(TEST_DIR, SimpleHistoryLoggingService.LOG_FILE_NAME_PREFIX);
+    Writer writer = new OutputStreamWriter(new FileOutputStream(historyFile), Charsets.UTF_8);
+    try {
+      for (HistoryEvent event : events) {
+        writer.write(HistoryEventJsonConversion.convertToJson(event).toString());
+        writer.write(SimpleHistoryLoggingService.RECORD_SEPARATOR);
+      }
+    } finally {
+      writer.close();
+    }
+    return historyFile;
+  }
+
+  private TaskAttemptFinishedEvent createAttemptFinishedEvent(TezTaskAttemptID attemptId,
+      ContainerId containerId, TaskAttemptState state, int outputRecords, String diagnostics) {
+    return new TaskAttemptFinishedEvent(attemptId, "v1", 5, 6, state, null,
+        state == TaskAttemptState.FAILED ? TaskAttemptTerminationCause.OUTPUT_LOST : null,
+        diagnostics, createCounters(outputRecords), null, null, 0, null, 0, containerId, nodeId,
+        null, null, null);
+  }
+
+  private TezCounters createCounters(int outputRecords) {
+    TezCounters counters = new TezCounters();
+    counters.findCounter(TaskCounter.OUTPUT_RECORDS).setValue(outputRecords);
+    return counters;
+  }
+}
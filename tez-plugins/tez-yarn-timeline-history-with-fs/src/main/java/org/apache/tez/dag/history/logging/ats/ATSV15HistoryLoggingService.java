@@ -19,10 +19,17 @@
 package org.apache.tez.dag.history.logging.ats;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -56,6 +63,7 @@ import org.apache.tez.dag.history.logging.EntityTypes;
 import org.apache.tez.dag.records.TezDAGID;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class ATSV15HistoryLoggingService extends HistoryLoggingService {
 
@@ -92,6 +100,8 @@ public class ATSV15HistoryLoggingService extends HistoryLoggingService {
   HistoryACLPolicyManager historyACLPolicyManager;
 
   private int numDagsPerGroup;
+  private int maxEventsPerBatch;
+  private ExecutorService conversionExecutor;
 
   public ATSV15HistoryLoggingService() {
     super(ATSV15HistoryLoggingService.class.getName());
@@ -164,6 +174,25 @@ public class ATSV15HistoryLoggingService extends HistoryLoggingService {
 
     numDagsPerGroup = conf.getInt(TezConfiguration.TEZ_HISTORY_LOGGING_TIMELINE_NUM_DAGS_PER_GROUP,
         TezConfiguration.TEZ_HISTORY_LOGGING_TIMELINE_NUM_DAGS_PER_GROUP_DEFAULT);
+
+    maxEventsPerBatch = Math.max(1, conf.getInt(TezConfiguration.YARN_ATS_MAX_EVENTS_PER_BATCH,
+        TezConfiguration.YARN_ATS_MAX_EVENTS_PER_BATCH_DEFAULT));
+    int maxQueueSize = conf.getInt(TezConfiguration.TEZ_HISTORY_LOGGING_QUEUE_MAX_SIZE,
+        TezConfiguration.TEZ_HISTORY_LOGGING_QUEUE_MAX_SIZE_DEFAULT);
+    if (maxQueueSize > 0) {
+      eventQueue = new LinkedBlockingQueue<DAGHistoryEvent>(maxQueueSize);
+    }
+    int conversionThreads = conf.getInt(TezConfiguration.TEZ_HISTORY_LOGGING_CONVERSION_THREADS,
+        TezConfiguration.TEZ_HISTORY_LOGGING_CONVERSION_THREADS_DEFAULT);
+    if (conversionThreads > 1) {
+      conversionExecutor = Executors.newFixedThreadPool(conversionThreads,
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("HistoryEventConversionThread #%d").build());
+    }
+    LOG.info("ATSService batching"
+        + ", maxEventsPerBatch=" + maxEventsPerBatch
+        + ", maxQueueSize=" + maxQueueSize
+        + ", conversionThreads=" + conversionThreads);
   }
 
   @Override
@@ -188,6 +217,7 @@ public class ATSV15HistoryLoggingService extends HistoryLoggingService {
         boolean interrupted = false;
         TezUtilsInternal.setHadoopCallerContext(appContext.getHadoopShim(),
             appContext.getApplicationID());
+        List<DAGHistoryEvent> events = new ArrayList<DAGHistoryEvent>(maxEventsPerBatch);
         while (!stopped.get() && !Thread.currentThread().isInterrupted()
               && !interrupted) {
 
@@ -210,15 +240,16 @@ public class ATSV15HistoryLoggingService extends HistoryLoggingService {
               if (event == null) {
                 continue;
               }
-              if (!isValidEvent(event)) {
-                continue;
-              }
+              events.add(event);
+              eventQueue.drainTo(events, maxEventsPerBatch - 1);
 
               try {
-                handleEvents(event);
-                eventsProcessed += 1;
+                handleEvents(events);
+                eventsProcessed += events.size();
               } catch (Exception e) {
                 LOG.warn("Error handling events", e);
+              } finally {
+                events.clear();
               }
             } catch (InterruptedException e) {
               // Finish processing events and then return
@@ -250,6 +281,7 @@ public class ATSV15HistoryLoggingService extends HistoryLoggingService {
               + ", waitForever=" + waitForeverOnShutdown);
           long startTime = appContext.getClock().getTime();
           long endTime = startTime + maxTimeToWaitOnShutdown;
+          List<DAGHistoryEvent> events = new ArrayList<DAGHistoryEvent>(maxEventsPerBatch);
           while (waitForeverOnShutdown || (endTime >= appContext.getClock().getTime())) {
             try {
               DAGHistoryEvent event = eventQueue.poll(maxPollingTimeMillis, TimeUnit.MILLISECONDS);
@@ -257,13 +289,14 @@ public class ATSV15HistoryLoggingService extends HistoryLoggingService {
                 LOG.info("Event queue empty, stopping ATS Service");
                 break;
               }
-              if (!isValidEvent(event)) {
-                continue;
-              }
+              events.add(event);
+              eventQueue.drainTo(events, maxEventsPerBatch - 1);
               try {
-                handleEvents(event);
+                handleEvents(events);
               } catch (Exception e) {
                 LOG.warn("Error handling event", e);
+              } finally {
+                events.clear();
               }
             } catch (InterruptedException e) {
               LOG.info("ATSService interrupted while shutting down. Exiting."
@@ -271,6 +304,9 @@ public class ATSV15HistoryLoggingService extends HistoryLoggingService {
             }
           }
         }
+        if (conversionExecutor != null) {
+          conversionExecutor.shutdownNow();
+        }
       }
     } finally {
       appContext.getHadoopShim().clearHadoopCallerContext();
@@ -326,8 +362,23 @@ public class ATSV15HistoryLoggingService extends HistoryLoggingService {
   }
 
   public void handle(DAGHistoryEvent event) {
-    if (historyLoggingEnabled && timelineClient != null) {
-      eventQueue.add(event);
+    if (!historyLoggingEnabled || timelineClient == null) {
+      return;
+    }
+    if (stopped.get()) {
+      // Nothing drains the queue anymore, do not block on a full queue.
+      if (!eventQueue.offer(event)) {
+        LOG.warn("Dropping history event after service stop, eventType="
+            + event.getHistoryEvent().getEventType());
+      }
+      return;
+    }
+    try {
+      eventQueue.put(event);
+    } catch (InterruptedException e) {
+      LOG.warn("Interrupted while queueing history event, eventType="
+          + event.getHistoryEvent().getEventType());
+      Thread.currentThread().interrupt();
     }
   }
 
@@ -370,28 +421,111 @@ public class ATSV15HistoryLoggingService extends HistoryLoggingService {
     return true;
   }
 
-  private void handleEvents(DAGHistoryEvent event) {
-    String domainId = getDomainForEvent(event);
-    // skippedDags is updated in the above call so check again.
-    if (event.getDagID() != null && skippedDAGs.contains(event.getDagID())) {
-      return;
+  private void handleEvents(List<DAGHistoryEvent> events) {
+    // Validation and domain lookup update skippedDAGs and the dag domain map, so they are done
+    // in event order before the events are converted.
+    List<DAGHistoryEvent> validEvents = new ArrayList<DAGHistoryEvent>(events.size());
+    List<String> domainIds = new ArrayList<String>(events.size());
+    for (DAGHistoryEvent event : events) {
+      if (!isValidEvent(event)) {
+        continue;
+      }
+      String domainId = getDomainForEvent(event);
+      // skippedDags is updated in the above call so check again.
+      if (event.getDagID() != null && skippedDAGs.contains(event.getDagID())) {
+        continue;
+      }
+      validEvents.add(event);
+      domainIds.add(domainId);
     }
-    TimelineEntityGroupId groupId = getGroupId(event);
-    List<TimelineEntity> entities = HistoryEventTimelineConversion.convertToTimelineEntities(
-        event.getHistoryEvent());
-    for (TimelineEntity entity : entities) {
-      logEntity(groupId, entity, domainId);
+
+    // Entities going to the same group are published with a single call.
+    List<List<TimelineEntity>> convertedEntities = convertToTimelineEntities(validEvents);
+    Map<TimelineEntityGroupId, List<TimelineEntity>> groupedEntities =
+        new LinkedHashMap<TimelineEntityGroupId, List<TimelineEntity>>();
+    for (int i = 0; i < validEvents.size(); ++i) {
+      List<TimelineEntity> entities = convertedEntities.get(i);
+      if (entities == null) {
+        continue;
+      }
+      String domainId = domainIds.get(i);
+      TimelineEntityGroupId groupId = getGroupId(validEvents.get(i));
+      List<TimelineEntity> groupEntities = groupedEntities.get(groupId);
+      if (groupEntities == null) {
+        groupEntities = new ArrayList<TimelineEntity>();
+        groupedEntities.put(groupId, groupEntities);
+      }
+      for (TimelineEntity entity : entities) {
+        if (historyACLPolicyManager != null && domainId != null && !domainId.isEmpty()) {
+          historyACLPolicyManager.updateTimelineEntityDomain(entity, domainId);
+        }
+        groupEntities.add(entity);
+      }
+    }
+    for (Map.Entry<TimelineEntityGroupId, List<TimelineEntity>> entry
+        : groupedEntities.entrySet()) {
+      logEntities(entry.getKey(), entry.getValue());
     }
   }
 
-  private void logEntity(TimelineEntityGroupId groupId, TimelineEntity entity, String domainId) {
-    if (historyACLPolicyManager != null && domainId != null && !domainId.isEmpty()) {
-      historyACLPolicyManager.updateTimelineEntityDomain(entity, domainId);
+  /**
+   * Converts the events to timeline entities, on the conversion threads if configured. The
+   * entities are returned in the order of the events, null for events which could not be
+   * converted.
+   */
+  private List<List<TimelineEntity>> convertToTimelineEntities(List<DAGHistoryEvent> events) {
+    List<List<TimelineEntity>> convertedEntities =
+        new ArrayList<List<TimelineEntity>>(events.size());
+    if (conversionExecutor == null || conversionExecutor.isShutdown() || events.size() <= 1) {
+      for (DAGHistoryEvent event : events) {
+        convertedEntities.add(convertToTimelineEntities(event));
+      }
+      return convertedEntities;
     }
+    List<Future<List<TimelineEntity>>> futures =
+        new ArrayList<Future<List<TimelineEntity>>>(events.size());
+    for (final DAGHistoryEvent event : events) {
+      futures.add(conversionExecutor.submit(new Callable<List<TimelineEntity>>() {
+        @Override
+        public List<TimelineEntity> call() {
+          return convertToTimelineEntities(event);
+        }
+      }));
+    }
+    boolean interrupted = false;
+    for (int i = 0; i < futures.size(); ++i) {
+      try {
+        convertedEntities.add(futures.get(i).get());
+      } catch (InterruptedException e) {
+        // Still publish the batch, the interrupt is restored once done.
+        interrupted = true;
+        convertedEntities.add(convertToTimelineEntities(events.get(i)));
+      } catch (ExecutionException e) {
+        LOG.warn("Could not convert history event", e.getCause());
+        convertedEntities.add(null);
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return convertedEntities;
+  }
+
+  private List<TimelineEntity> convertToTimelineEntities(DAGHistoryEvent event) {
+    try {
+      return HistoryEventTimelineConversion.convertToTimelineEntities(event.getHistoryEvent());
+    } catch (Exception e) {
+      LOG.warn("Could not convert history event, eventType="
+          + event.getHistoryEvent().getEventType(), e);
+      return null;
+    }
+  }
 
+  private void logEntities(TimelineEntityGroupId groupId, List<TimelineEntity> entities) {
     try {
       TimelinePutResponse response = timelineClient.putEntities(
-          appContext.getApplicationAttemptId(), groupId, entity);
+          appContext.getApplicationAttemptId(), groupId,
+          entities.toArray(new TimelineEntity[entities.size()]));
       if (response != null
           && !response.getErrors().isEmpty()) {
         int count = response.getErrors().size();
@@ -116,6 +116,39 @@ public class TestATSV15HistoryLoggingService {
     service.stop();
   }
 
+  @Test(timeout=2000)
+  public void testEventBatching() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setInt(TezConfiguration.YARN_ATS_MAX_EVENTS_PER_BATCH, 100);
+    conf.setInt(TezConfiguration.TEZ_HISTORY_LOGGING_CONVERSION_THREADS, 2);
+    ATSV15HistoryLoggingService service = createService(-1, conf);
+
+    // Queue up the events before starting so that they are handled as a single batch.
+    TezDAGID dagId1 = TezDAGID.getInstance(appId, 0);
+    for (DAGHistoryEvent event : makeHistoryEvents(dagId1, service)) {
+      service.handle(event);
+    }
+    service.start();
+    while (!service.eventQueue.isEmpty()) {
+      Thread.sleep(100);
+    }
+    service.stop();
+
+    assertEquals(2, entityLog.size());
+    List<TimelineEntity> amEvents = entityLog.get(
+        TimelineEntityGroupId.newInstance(appId, appId.toString()));
+    assertNotNull(amEvents);
+    assertEquals(1, amEvents.size());
+    List<TimelineEntity> dagEvents = entityLog.get(
+        TimelineEntityGroupId.newInstance(appId, dagId1.toString()));
+    assertNotNull(dagEvents);
+    assertEquals(5, dagEvents.size());
+
+    // One put per group.
+    verify(timelineClient, times(2)).putEntities(any(ApplicationAttemptId.class),
+        any(TimelineEntityGroupId.class), Matchers.<TimelineEntity>anyVararg());
+  }
+
   @Test(timeout=2000)
   public void testDAGGroupingDisabled() throws Exception {
     ATSV15HistoryLoggingService service = createService(1);
@@ -429,13 +462,17 @@ public class TestATSV15HistoryLoggingService {
   }
 
   private ATSV15HistoryLoggingService createService(int numDagsPerGroup) throws IOException, YarnException {
+    return createService(numDagsPerGroup, new Configuration(false));
+  }
+
+  private ATSV15HistoryLoggingService createService(int numDagsPerGroup, Configuration conf)
+      throws IOException, YarnException {
     ATSV15HistoryLoggingService service = new ATSV15HistoryLoggingService();
     appContext = mock(AppContext.class);
     when(appContext.getApplicationID()).thenReturn(appId);
     when(appContext.getHadoopShim()).thenReturn(new HadoopShim() {});
     service.setAppContext(appContext);
 
-    Configuration conf = new Configuration(false);
     if (numDagsPerGroup != -1) {
       conf.setInt(TezConfiguration.TEZ_HISTORY_LOGGING_TIMELINE_NUM_DAGS_PER_GROUP,
           numDagsPerGroup);
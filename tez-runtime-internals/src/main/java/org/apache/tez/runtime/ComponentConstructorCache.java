@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime;
+
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.tez.common.ReflectionUtils;
+import org.apache.tez.dag.api.TezReflectionException;
+import org.apache.tez.runtime.api.ObjectRegistry;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Constructors of the processor, inputs and outputs of a vertex. The cache is kept in the
+ * {@link ObjectRegistry} with vertex life-cycle, so that consecutive tasks of a vertex running in
+ * a reused container do not have to look up the classes and their constructors again. Classes are
+ * not cached beyond the vertex, since the class loader changes with the resources localized for
+ * other vertices.
+ */
+@Private
+public class ComponentConstructorCache {
+
+  private static final String REGISTRY_KEY = ComponentConstructorCache.class.getName();
+
+  private final ConcurrentMap<String, Constructor<?>> constructors =
+      new ConcurrentHashMap<String, Constructor<?>>();
+
+  /**
+   * Returns the cache of the current vertex, creating it if required.
+   */
+  public static synchronized ComponentConstructorCache getVertexCache(
+      ObjectRegistry objectRegistry) {
+    Object cache = objectRegistry.get(REGISTRY_KEY);
+    if (!(cache instanceof ComponentConstructorCache)) {
+      cache = new ComponentConstructorCache();
+      objectRegistry.cacheForVertex(REGISTRY_KEY, cache);
+    }
+    return (ComponentConstructorCache) cache;
+  }
+
+  public <T> T createInstance(String className, Class<?>[] parameterTypes, Object[] parameters)
+      throws TezReflectionException {
+    String key = className + Arrays.toString(parameterTypes);
+    Constructor<?> constructor = constructors.get(key);
+    if (constructor == null) {
+      try {
+        constructor = ReflectionUtils.getClazz(className).getConstructor(parameterTypes);
+      } catch (NoSuchMethodException e) {
+        throw new TezReflectionException(
+            "Unable to find constructor with " + parameterTypes.length + " arguments: "
+                + className, e);
+      }
+      constructors.put(key, constructor);
+    }
+    try {
+      @SuppressWarnings("unchecked")
+      T instance = (T) constructor.newInstance(parameters);
+      return instance;
+    } catch (Exception e) {
+      throw new TezReflectionException(
+          "Unable to instantiate class with " + parameters.length + " arguments: " + className, e);
+    }
+  }
+
+  @VisibleForTesting
+  int getNumConstructors() {
+    return constructors.size();
+  }
+}
@@ -93,7 +93,9 @@ import org.apache.tez.runtime.api.impl.TezInputContextImpl;
 import org.apache.tez.runtime.api.impl.TezMergedInputContextImpl;
 import org.apache.tez.runtime.api.impl.TezOutputContextImpl;
 import org.apache.tez.runtime.api.impl.TezUmbilical;
+import org.apache.tez.runtime.common.objectregistry.ObjectRegistryImpl;
 import org.apache.tez.runtime.common.resources.MemoryDistributor;
+import org.apache.tez.util.LatencyHistogram;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
@@ -159,7 +161,16 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
 
   private final boolean initializeProcessorFirst;
   private final boolean initializeProcessorIOSerially;
+  private final boolean initializePipelined;
   private final TezExecutors sharedExecutor;
+  // Null if constructors are not cached across the tasks of a vertex
+  private final ComponentConstructorCache constructorCache;
+  // Null if the registry does not keep statistics
+  private final ObjectRegistryImpl.Statistics objectRegistryStatistics;
+  // Time spent by the processor. Only recorded if latency histograms are enabled.
+  private final LatencyHistogram processorRunTime;
+  private final LatencyHistogram processorCpuTime;
+  private final LatencyHistogram processorWaitTime;
 
   public LogicalIOProcessorRuntimeTask(TaskSpec taskSpec, int appAttemptNumber,
       Configuration tezConf, String[] localDirs, TezUmbilical tezUmbilical,
@@ -204,10 +215,19 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
     if (initializeProcessorIOSerially) {
       numInitializers = 1;
     }
-    this.initializerExecutor = Executors.newFixedThreadPool(
-        numInitializers,
-        new ThreadFactoryBuilder().setDaemon(true)
-            .setNameFormat("I/O Setup %d").build());
+    this.initializePipelined = !initializeProcessorIOSerially && tezConf.getBoolean(
+        TezConfiguration.TEZ_TASK_INITIALIZE_PIPELINED,
+        TezConfiguration.TEZ_TASK_INITIALIZE_PIPELINED_DEFAULT);
+    if (initializePipelined && sharedExecutor != null) {
+      // Threads are shared with the other tasks running in the container
+      this.initializerExecutor = sharedExecutor.createExecutorService(
+          numInitializers, "I/O Setup %d");
+    } else {
+      this.initializerExecutor = Executors.newFixedThreadPool(
+          numInitializers,
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("I/O Setup %d").build());
+    }
     this.initializerCompletionService = new ExecutorCompletionService<Void>(
         this.initializerExecutor);
     this.groupInputSpecs = taskSpec.getGroupInputs();
@@ -221,6 +241,24 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
     this.maxEventBacklog = tezConf.getInt(TezConfiguration.TEZ_TASK_MAX_EVENT_BACKLOG,
         TezConfiguration.TEZ_TASK_MAX_EVENT_BACKLOG_DEFAULT);
     this.sharedExecutor = sharedExecutor;
+    if (objectRegistry != null && tezConf.getBoolean(
+        TezConfiguration.TEZ_TASK_VERTEX_WARM_CACHE_ENABLED,
+        TezConfiguration.TEZ_TASK_VERTEX_WARM_CACHE_ENABLED_DEFAULT)) {
+      this.constructorCache = ComponentConstructorCache.getVertexCache(objectRegistry);
+    } else {
+      this.constructorCache = null;
+    }
+    boolean latencyHistogramsEnabled = tezConf.getBoolean(
+        TezConfiguration.TEZ_TASK_LATENCY_HISTOGRAMS_ENABLED,
+        TezConfiguration.TEZ_TASK_LATENCY_HISTOGRAMS_ENABLED_DEFAULT);
+    this.processorRunTime = LatencyHistogram.create("PROCESSOR_RUN", latencyHistogramsEnabled);
+    this.processorCpuTime = LatencyHistogram.create("PROCESSOR_CPU", latencyHistogramsEnabled);
+    this.processorWaitTime = LatencyHistogram.create("PROCESSOR_WAIT", latencyHistogramsEnabled);
+    if (objectRegistry instanceof ObjectRegistryImpl) {
+      this.objectRegistryStatistics = ((ObjectRegistryImpl) objectRegistry).getStatistics();
+    } else {
+      this.objectRegistryStatistics = null;
+    }
   }
 
   /**
@@ -273,55 +311,39 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
       }
     }
     LOG.info("All initializers finished");
-    // group inputs depend on inputs beings initialized. So must be done after.
-    initializeGroupInputs();
-    // Register the groups so that appropriate calls can be made.
-    this.inputReadyTracker
-        .setGroupedInputs(groupInputsMap == null ? null : groupInputsMap.values());
-    // Grouped input start will be controlled by the start of the GroupedInput
 
     // Construct the set of groupedInputs up front so that start is not invoked on them.
+    // Grouped input start will be controlled by the start of the GroupedInput
     Set<String> groupInputs = Sets.newHashSet();
-    // Construct Inputs/Outputs map argument for processor.run()
-    // first add the group inputs
-    if (groupInputSpecs !=null && !groupInputSpecs.isEmpty()) {
+    if (groupInputSpecs != null) {
       for (GroupInputSpec groupInputSpec : groupInputSpecs) {
-        runInputMap.put(groupInputSpec.getGroupName(),
-                                 groupInputsMap.get(groupInputSpec.getGroupName()));
         groupInputs.addAll(groupInputSpec.getGroupVertices());
       }
     }
 
-    initialMemoryDistributor.makeInitialAllocations();
-
-    LOG.info("Starting Inputs/Outputs");
     int numAutoStarts = 0;
-    for (InputSpec inputSpec : inputSpecs) {
-      if (groupInputs.contains(inputSpec.getSourceVertexName())) {
-        LOG.info("Ignoring " + inputSpec.getSourceVertexName()
-            + " for start, since it will be controlled via it's Group");
-        continue;
-      }
-      if (!inputAlreadyStarted(taskSpec.getVertexName(), inputSpec.getSourceVertexName())) {
-        startedInputsMap.put(taskSpec.getVertexName(), inputSpec.getSourceVertexName());
-        numAutoStarts++;
-        this.initializerCompletionService.submit(new StartInputCallable(inputsMap.get(inputSpec
-            .getSourceVertexName()), inputSpec.getSourceVertexName()));
-        LOG.info("Input: " + inputSpec.getSourceVertexName()
-            + " being auto started by the framework. Subsequent instances will not be auto-started");
-      }
-    }
-
-    if (groupInputSpecs != null) {
-      for (GroupInputSpec group : groupInputSpecs) {
-        if (!inputAlreadyStarted(taskSpec.getVertexName(), group.getGroupName())) {
-          numAutoStarts++;
-          this.initializerCompletionService.submit(new StartInputCallable(groupInputsMap.get(group
-              .getGroupName()), group.getGroupName()));
-          LOG.info("InputGroup: " + group.getGroupName()
-              + " being auto started by the framework. Subsequent instance will not be auto-started");
-        }
-      }
+    if (initializePipelined) {
+      // The processor and all inputs and outputs are initialized, so events received so far can be
+      // routed. Inputs which are not started yet hold on to their events until they are.
+      startRouterThread();
+      // Merged inputs do not request memory, so allocations do not have to wait for them.
+      initialMemoryDistributor.makeInitialAllocations();
+      LOG.info("Starting Inputs/Outputs");
+      numAutoStarts += startInputs(groupInputs);
+      initializeGroupInputs();
+      this.inputReadyTracker
+          .setGroupedInputs(groupInputsMap == null ? null : groupInputsMap.values());
+      numAutoStarts += startGroupInputs();
+    } else {
+      // group inputs depend on inputs beings initialized. So must be done after.
+      initializeGroupInputs();
+      // Register the groups so that appropriate calls can be made.
+      this.inputReadyTracker
+          .setGroupedInputs(groupInputsMap == null ? null : groupInputsMap.values());
+      initialMemoryDistributor.makeInitialAllocations();
+      LOG.info("Starting Inputs/Outputs");
+      numAutoStarts += startInputs(groupInputs);
+      numAutoStarts += startGroupInputs();
     }
 
     // Shutdown after all tasks complete.
@@ -345,7 +367,14 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
     }
     LOG.info("AutoStartComplete");
 
-
+    // Construct Inputs/Outputs map argument for processor.run()
+    // first add the group inputs
+    if (groupInputSpecs != null) {
+      for (GroupInputSpec groupInputSpec : groupInputSpecs) {
+        runInputMap.put(groupInputSpec.getGroupName(),
+            groupInputsMap.get(groupInputSpec.getGroupName()));
+      }
+    }
 
     // then add the non-grouped inputs
     for (InputSpec inputSpec : inputSpecs) {
@@ -364,14 +393,66 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
     // TODO Maybe close initialized inputs / outputs in case of failure to
     // initialize.
 
-    startRouterThread();
+    if (!initializePipelined) {
+      startRouterThread();
+    }
+  }
+
+  private int startInputs(Set<String> groupInputs) {
+    int numAutoStarts = 0;
+    for (InputSpec inputSpec : inputSpecs) {
+      if (groupInputs.contains(inputSpec.getSourceVertexName())) {
+        LOG.info("Ignoring " + inputSpec.getSourceVertexName()
+            + " for start, since it will be controlled via it's Group");
+        continue;
+      }
+      if (!inputAlreadyStarted(taskSpec.getVertexName(), inputSpec.getSourceVertexName())) {
+        startedInputsMap.put(taskSpec.getVertexName(), inputSpec.getSourceVertexName());
+        numAutoStarts++;
+        this.initializerCompletionService.submit(new StartInputCallable(inputsMap.get(inputSpec
+            .getSourceVertexName()), inputSpec.getSourceVertexName()));
+        LOG.info("Input: " + inputSpec.getSourceVertexName()
+            + " being auto started by the framework. Subsequent instances will not be auto-started");
+      }
+    }
+    return numAutoStarts;
+  }
+
+  private int startGroupInputs() {
+    int numAutoStarts = 0;
+    if (groupInputSpecs != null) {
+      for (GroupInputSpec group : groupInputSpecs) {
+        if (!inputAlreadyStarted(taskSpec.getVertexName(), group.getGroupName())) {
+          numAutoStarts++;
+          this.initializerCompletionService.submit(new StartInputCallable(groupInputsMap.get(group
+              .getGroupName()), group.getGroupName()));
+          LOG.info("InputGroup: " + group.getGroupName()
+              + " being auto started by the framework. Subsequent instance will not be auto-started");
+        }
+      }
+    }
+    return numAutoStarts;
   }
 
   public void run() throws Exception {
     Preconditions.checkState(this.state.get() == State.INITED,
         "Can only run while in INITED state. Current: " + this.state);
     this.state.set(State.RUNNING);
+    if (!processorRunTime.isEnabled()) {
+      processor.run(runInputMap, runOutputMap);
+      return;
+    }
+    // Only the CPU time of the thread running the processor is known. Time spent by threads
+    // started by the processor is not accounted for.
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    long startNanos = System.nanoTime();
+    long startCpuNanos = threadMXBean.getCurrentThreadCpuTime();
     processor.run(runInputMap, runOutputMap);
+    long runNanos = System.nanoTime() - startNanos;
+    long cpuNanos = threadMXBean.getCurrentThreadCpuTime() - startCpuNanos;
+    processorRunTime.record(runNanos);
+    processorCpuTime.record(cpuNanos);
+    processorWaitTime.record(Math.max(0, runNanos - cpuNanos));
   }
 
   public void close() throws Exception {
@@ -404,6 +485,13 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
       processorClosed = true;
       processor.close();
 
+      processorRunTime.updateCounters(tezCounters);
+      processorCpuTime.updateCounters(tezCounters);
+      processorWaitTime.updateCounters(tezCounters);
+      if (objectRegistryStatistics != null) {
+        ((ObjectRegistryImpl) objectRegistry).updateCounters(tezCounters, objectRegistryStatistics);
+      }
+
     } finally {
       setTaskDone();
       // Clear the interrupt status since the task execution is done.
@@ -633,7 +721,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
 
   private LogicalInput createInput(InputSpec inputSpec, InputContext inputContext) throws TezException {
     InputDescriptor inputDesc = inputSpec.getInputDescriptor();
-    Input input = ReflectionUtils.createClazzInstance(inputDesc.getClassName(),
+    Input input = createComponent(inputDesc.getClassName(),
         new Class[]{InputContext.class, Integer.TYPE},
         new Object[]{inputContext, inputSpec.getPhysicalEdgeCount()});
     if (!(input instanceof LogicalInput)) {
@@ -647,7 +735,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
   private LogicalInput createMergedInput(InputDescriptor inputDesc,
                                          MergedInputContext mergedInputContext,
                                          List<Input> constituentInputs) throws TezException {
-    LogicalInput input = ReflectionUtils.createClazzInstance(inputDesc.getClassName(),
+    LogicalInput input = createComponent(inputDesc.getClassName(),
         new Class[]{MergedInputContext.class, List.class},
         new Object[]{mergedInputContext, constituentInputs});
     return input;
@@ -655,7 +743,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
 
   private LogicalOutput createOutput(OutputSpec outputSpec, OutputContext outputContext) throws TezException {
     OutputDescriptor outputDesc = outputSpec.getOutputDescriptor();
-    Output output = ReflectionUtils.createClazzInstance(outputDesc.getClassName(),
+    Output output = createComponent(outputDesc.getClassName(),
         new Class[]{OutputContext.class, Integer.TYPE},
         new Object[]{outputContext, outputSpec.getPhysicalEdgeCount()});
 
@@ -669,7 +757,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
 
   private AbstractLogicalIOProcessor createProcessor(
       String processorClassName, ProcessorContext processorContext) throws TezException {
-    Processor processor = ReflectionUtils.createClazzInstance(processorClassName,
+    Processor processor = createComponent(processorClassName,
         new Class[]{ProcessorContext.class}, new Object[]{processorContext});
     if (!(processor instanceof AbstractLogicalIOProcessor)) {
       throw new TezUncheckedException(processor.getClass().getName()
@@ -679,6 +767,14 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
     return (AbstractLogicalIOProcessor) processor;
   }
 
+  private <T> T createComponent(String className, Class<?>[] parameterTypes,
+      Object[] parameters) throws TezException {
+    if (constructorCache != null) {
+      return constructorCache.createInstance(className, parameterTypes, parameters);
+    }
+    return ReflectionUtils.createClazzInstance(className, parameterTypes, parameters);
+  }
+
   private void sendTaskGeneratedEvents(List<Event> events,
       EventProducerConsumerType generator, String taskVertexName,
       String edgeVertexName, TezTaskAttemptID taskAttemptID) {
@@ -843,6 +939,13 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
     }
   }
 
+  @Override
+  public void setFrameworkCounters() {
+    super.setFrameworkCounters();
+    // Reported whatever the outcome of the task, since memory use matters most for failures
+    initialMemoryDistributor.updateCounters(tezCounters);
+  }
+
   public void cleanup() throws InterruptedException {
     LOG.info("Final Counters for " + taskSpec.getTaskAttemptID() + ": " + getCounters().toShortString());
     setTaskDone();
@@ -67,7 +67,7 @@ public abstract class RuntimeTask {
     this.taskDone = new AtomicBoolean(false);
     this.statistics = new TaskStatistics();
     if (setupSysCounterUpdater) {
-      this.counterUpdater = new TaskCounterUpdater(tezCounters, tezConf, pid);
+      this.counterUpdater = new TaskCounterUpdater(tezCounters, counterMap.values(), tezConf, pid);
     } else {
       this.counterUpdater = null;
     }
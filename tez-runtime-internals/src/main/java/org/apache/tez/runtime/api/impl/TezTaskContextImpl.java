@@ -214,6 +214,16 @@ public abstract class TezTaskContextImpl implements TaskContext, Closeable {
     this.initialMemoryDistributor.requestMemory(size, callbackHandler, this, this.descriptor);
   }
 
+  @Override
+  public void releaseMemory(long size) {
+    this.initialMemoryDistributor.releaseMemory(size, this);
+  }
+
+  @Override
+  public void requestAdditionalMemory(long size) {
+    this.initialMemoryDistributor.requestAdditionalMemory(size, this);
+  }
+
   @Override
   public long getTotalMemoryAvailableToTask() {
     return memAvailable;
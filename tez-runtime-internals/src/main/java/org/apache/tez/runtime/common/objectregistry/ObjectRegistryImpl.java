@@ -18,16 +18,44 @@
 
 package org.apache.tez.runtime.common.objectregistry;
 
-import java.util.AbstractMap;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.common.counters.CounterGroup;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.runtime.api.ObjectRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+
+/**
+ * Registry of the objects cached by the tasks running in a container. Lookups do not block each
+ * other, since multi-threaded processors may access the registry concurrently.
+ *
+ * Session and DAG scoped objects can be bounded in size. Byte arrays and byte buffers weigh their
+ * size, objects implementing {@link ObjectRegistry.Weighable} weigh what they report, and other
+ * objects weigh a configured nominal size, since their footprint cannot be measured cheaply. When
+ * the bound is exceeded, the least recently used session and DAG scoped objects are evicted.
+ * Vertex scoped objects are kept separately and are never evicted, since they are in use by the
+ * running vertex.
+ */
 public class ObjectRegistryImpl implements ObjectRegistry {
-  
+
+  private static final Logger LOG = LoggerFactory.getLogger(ObjectRegistryImpl.class);
+
   public enum ObjectLifeCycle {
     /** Objects are valid for the lifetime of the Tez JVM/Session
      */
@@ -40,54 +68,231 @@ public class ObjectRegistryImpl implements ObjectRegistry {
     VERTEX,
   }
 
-  private Map<String, Map.Entry<Object, ObjectLifeCycle>> objectCache =
-      new HashMap<String, Entry<Object, ObjectLifeCycle>>();
+  /**
+   * Values of the statistics of the registry at a point in time.
+   */
+  public static class Statistics {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    Statistics(long hits, long misses, long evictions) {
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+    }
+  }
+
+  private static class ObjectEntry {
+    private final Object value;
+    private final ObjectLifeCycle lifeCycle;
+    private final long weight;
+
+    ObjectEntry(Object value, ObjectLifeCycle lifeCycle, long weight) {
+      this.value = value;
+      this.lifeCycle = lifeCycle;
+      this.weight = weight;
+    }
+
+    Object getValue() {
+      if (value instanceof OffHeapBytes) {
+        return ((OffHeapBytes) value).toByteArray();
+      }
+      return value;
+    }
+  }
+
+  // Byte arrays stored outside of the heap. Read back as a copy, so that callers get the byte
+  // array they stored and may modify it without affecting the stored bytes.
+  private static class OffHeapBytes {
+    private final ByteBuffer buffer;
+
+    OffHeapBytes(byte[] bytes) {
+      buffer = ByteBuffer.allocateDirect(bytes.length);
+      buffer.put(bytes);
+      buffer.flip();
+    }
+
+    byte[] toByteArray() {
+      byte[] bytes = new byte[buffer.remaining()];
+      // A duplicate, since lookups may happen concurrently
+      buffer.duplicate().get(bytes);
+      return bytes;
+    }
+  }
+
+  // Vertex scoped objects, never evicted
+  private final ConcurrentMap<String, ObjectEntry> vertexObjects =
+      new ConcurrentHashMap<String, ObjectEntry>();
+  // Session and DAG scoped objects, evicted least recently used first when bounded
+  private final Cache<String, ObjectEntry> evictableObjects;
+
+  private final long objectWeight;
+  private final boolean storeBytesOffHeap;
+
+  private final AtomicLong hits = new AtomicLong(0);
+  private final AtomicLong misses = new AtomicLong(0);
+  private final AtomicLong evictions = new AtomicLong(0);
+
+  public ObjectRegistryImpl() {
+    this(-1, TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_OBJECT_SIZE_BYTES_DEFAULT, false);
+  }
+
+  public ObjectRegistryImpl(Configuration conf) {
+    this(conf.getLong(TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_MAX_SIZE_MB,
+        TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_MAX_SIZE_MB_DEFAULT) << 20,
+        conf.getLong(TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_OBJECT_SIZE_BYTES,
+            TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_OBJECT_SIZE_BYTES_DEFAULT),
+        conf.getBoolean(TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_OFFHEAP_ENABLED,
+            TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_OFFHEAP_ENABLED_DEFAULT));
+  }
+
+  @VisibleForTesting
+  ObjectRegistryImpl(long maxWeight, long objectWeight, boolean storeBytesOffHeap) {
+    this.objectWeight = objectWeight;
+    this.storeBytesOffHeap = storeBytesOffHeap;
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+    if (maxWeight >= 0) {
+      // A single segment, so that the bound applies to the whole registry rather than to each
+      // segment. Only updates lock the segment.
+      builder.concurrencyLevel(1)
+          .maximumWeight(maxWeight)
+          .weigher(new Weigher<String, ObjectEntry>() {
+            @Override
+            public int weigh(String key, ObjectEntry entry) {
+              return (int) Math.min(entry.weight, Integer.MAX_VALUE);
+            }
+          });
+      LOG.info("Object registry bounded to " + maxWeight + " bytes, objectWeight=" + objectWeight
+          + ", storeBytesOffHeap=" + storeBytesOffHeap);
+    }
+    this.evictableObjects = builder
+        .removalListener(new RemovalListener<String, ObjectEntry>() {
+          @Override
+          public void onRemoval(RemovalNotification<String, ObjectEntry> notification) {
+            if (notification.getCause() == RemovalCause.SIZE) {
+              evictions.incrementAndGet();
+              if (LOG.isDebugEnabled()) {
+                LOG.debug("Evicted " + notification.getKey() + " from the object registry"
+                    + ", weight=" + notification.getValue().weight);
+              }
+            }
+          }
+        })
+        .build();
+  }
 
-  private synchronized Object add(ObjectLifeCycle lifeCycle,
+  private Object add(ObjectLifeCycle lifeCycle,
       String key, Object value) {
-    Map.Entry<Object, ObjectLifeCycle> oldEntry =
-        objectCache.put(key,
-            new AbstractMap.SimpleImmutableEntry<Object, ObjectLifeCycle>(
-                value, lifeCycle));
-    return oldEntry != null ? oldEntry.getKey() : null;
+    Object storedValue = value;
+    if (storeBytesOffHeap && value instanceof byte[]) {
+      storedValue = new OffHeapBytes((byte[]) value);
+    }
+    ObjectEntry entry = new ObjectEntry(storedValue, lifeCycle, weigh(value));
+    // There is only one object for a key, irrespective of its life-cycle
+    ObjectEntry oldEntry;
+    ObjectEntry otherEntry;
+    if (lifeCycle == ObjectLifeCycle.VERTEX) {
+      oldEntry = vertexObjects.put(key, entry);
+      otherEntry = evictableObjects.asMap().remove(key);
+    } else {
+      oldEntry = evictableObjects.asMap().put(key, entry);
+      otherEntry = vertexObjects.remove(key);
+    }
+    if (oldEntry == null) {
+      oldEntry = otherEntry;
+    }
+    return oldEntry != null ? oldEntry.getValue() : null;
   }
 
   @Override
-  public synchronized Object get(String key) {
-    Map.Entry<Object, ObjectLifeCycle> entry =
-        objectCache.get(key);
-    return entry != null ? entry.getKey() : null;
+  public Object get(String key) {
+    ObjectEntry entry = vertexObjects.get(key);
+    if (entry == null) {
+      entry = evictableObjects.getIfPresent(key);
+    }
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.getValue();
   }
 
   @Override
-  public synchronized boolean delete(String key) {
-    return (null != objectCache.remove(key));
+  public boolean delete(String key) {
+    boolean deleted = vertexObjects.remove(key) != null;
+    return evictableObjects.asMap().remove(key) != null || deleted;
   }
 
-  public synchronized void clearCache(ObjectLifeCycle lifeCycle) {
-    Iterator<Entry<String, Entry<Object, ObjectLifeCycle>>> it =
-      objectCache.entrySet().iterator();
+  public void clearCache(ObjectLifeCycle lifeCycle) {
+    if (lifeCycle == ObjectLifeCycle.VERTEX) {
+      vertexObjects.clear();
+      return;
+    }
+    Iterator<Map.Entry<String, ObjectEntry>> it =
+        evictableObjects.asMap().entrySet().iterator();
     while (it.hasNext()) {
-      Entry<String, Entry<Object, ObjectLifeCycle>> entry = it.next();
-      if (entry.getValue().getValue().equals(lifeCycle)) {
+      if (it.next().getValue().lifeCycle.equals(lifeCycle)) {
         it.remove();
       }
     }
   }
 
   @Override
-  public synchronized Object cacheForVertex(String key, Object value) {
+  public Object cacheForVertex(String key, Object value) {
     return add(ObjectLifeCycle.VERTEX, key, value);
   }
 
   @Override
-  public synchronized Object cacheForDAG(String key, Object value) {
+  public Object cacheForDAG(String key, Object value) {
     return add(ObjectLifeCycle.DAG, key, value);
   }
 
   @Override
-  public synchronized Object cacheForSession(String key, Object value) {
+  public Object cacheForSession(String key, Object value) {
     return add(ObjectLifeCycle.SESSION, key, value);
   }
 
+  /**
+   * Returns the current values of the hit, miss and eviction counts.
+   */
+  public Statistics getStatistics() {
+    return new Statistics(hits.get(), misses.get(), evictions.get());
+  }
+
+  /**
+   * Records the accesses to the registry since the given statistics were taken, along with the
+   * current size of the registry, in the provided counters.
+   */
+  public void updateCounters(TezCounters counters, Statistics since) {
+    CounterGroup group = counters.getGroup(ObjectRegistry.class.getSimpleName());
+    group.findCounter("HITS").setValue(hits.get() - since.hits);
+    group.findCounter("MISSES").setValue(misses.get() - since.misses);
+    group.findCounter("EVICTIONS").setValue(evictions.get() - since.evictions);
+    group.findCounter("SIZE_BYTES").setValue(getTotalWeight());
+  }
+
+  @VisibleForTesting
+  long getTotalWeight() {
+    long totalWeight = 0;
+    for (ObjectEntry entry : vertexObjects.values()) {
+      totalWeight += entry.weight;
+    }
+    for (ObjectEntry entry : evictableObjects.asMap().values()) {
+      totalWeight += entry.weight;
+    }
+    return totalWeight;
+  }
+
+  private long weigh(Object value) {
+    if (value instanceof byte[]) {
+      return ((byte[]) value).length;
+    } else if (value instanceof ByteBuffer) {
+      return ((ByteBuffer) value).capacity();
+    } else if (value instanceof ObjectRegistry.Weighable) {
+      return ((ObjectRegistry.Weighable) value).getWeight();
+    }
+    return objectWeight;
+  }
 }
@@ -18,10 +18,14 @@
 
 package org.apache.tez.runtime.common.resources;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -31,6 +35,8 @@ import org.slf4j.LoggerFactory;
 import org.apache.hadoop.classification.InterfaceAudience.Private;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.tez.common.ReflectionUtils;
+import org.apache.tez.common.counters.CounterGroup;
+import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.EntityDescriptor;
 import org.apache.tez.dag.api.TezException;
@@ -63,10 +69,16 @@ public class MemoryDistributor {
   private final boolean isEnabled;
   private final boolean isInputOutputConcurrent;
   private final String allocatorClassName;
-  private final Set<TaskContext> dupSet = Collections
-      .newSetFromMap(new ConcurrentHashMap<TaskContext, Boolean>());
+  private final boolean isDynamic;
+  private final Map<TaskContext, RequestorInfo> requestorMap =
+      new ConcurrentHashMap<TaskContext, RequestorInfo>();
   private final List<RequestorInfo> requestList;
 
+  // Used only when dynamic distribution is enabled. Guarded by this.
+  private boolean initialAllocationsDone = false;
+  private long availableMemory = 0;
+  private final Set<RequestorInfo> pendingRequests = new LinkedHashSet<RequestorInfo>();
+
   /**
    * @param numTotalInputs
    *          total number of Inputs for the task
@@ -82,6 +94,8 @@ public class MemoryDistributor {
     isInputOutputConcurrent = conf.getBoolean(
         TezConfiguration.TEZ_TASK_SCALE_MEMORY_INPUT_OUTPUT_CONCURRENT,
         TezConfiguration.TEZ_TASK_SCALE_MEMORY_INPUT_OUTPUT_CONCURRENT_DEFAULT);
+    isDynamic = conf.getBoolean(TezConfiguration.TEZ_TASK_SCALE_MEMORY_DYNAMIC_ENABLED,
+        TezConfiguration.TEZ_TASK_SCALE_MEMORY_DYNAMIC_ENABLED_DEFAULT);
 
     if (isEnabled) {
       allocatorClassName = conf.get(TezConfiguration.TEZ_TASK_SCALE_MEMORY_ALLOCATOR_CLASS,
@@ -94,7 +108,8 @@ public class MemoryDistributor {
     this.numTotalOutputs = numTotalOutputs;
     this.totalJvmMemory = Runtime.getRuntime().maxMemory();
     this.requestList = Collections.synchronizedList(new LinkedList<RequestorInfo>());
-    LOG.info("InitialMemoryDistributor (isEnabled=" + isEnabled + ") invoked with: numInputs="
+    LOG.info("InitialMemoryDistributor (isEnabled=" + isEnabled + ", isDynamic=" + isDynamic
+        + ") invoked with: numInputs="
         + numTotalInputs + ", numOutputs=" + numTotalOutputs
         + ", JVM.maxFree=" + totalJvmMemory
         + ", allocatorClassName=" + allocatorClassName);
@@ -156,8 +171,146 @@ public class MemoryDistributor {
             + rInfo.getRequestContext().getComponentClassName() + ": requested="
             + rInfo.getRequestContext().getRequestedSize() + ", allocated=" + allocated);
       }
+      rInfo.initialAssigned(allocated);
       rInfo.getCallback().memoryAssigned(allocated);
     }
+    synchronized (this) {
+      initialAllocationsDone = true;
+    }
+  }
+
+  /**
+   * Used by the Tez framework to return memory released by a component while the task is
+   * running. The memory is handed to components with pending requests for additional memory.
+   * The releasing component is informed of its reduced assignment through its callback.
+   */
+  public void releaseMemory(long size, TaskContext taskContext) {
+    Preconditions.checkArgument(size >= 0);
+    if (!isDynamic) {
+      LOG.debug("Ignoring release of memory since dynamic memory distribution is disabled");
+      return;
+    }
+    RequestorInfo requestInfo = getRequestor(taskContext);
+    List<MemoryUpdate> updates;
+    synchronized (this) {
+      Preconditions.checkState(initialAllocationsDone,
+          "Memory can only be released after the initial allocations");
+      long released = requestInfo.release(size);
+      pendingRequests.remove(requestInfo);
+      availableMemory += released;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Released " + released + " by " + requestInfo + ", available="
+            + availableMemory);
+      }
+      updates = distributeAvailableMemory();
+      if (released > 0) {
+        // The component is told about its reduced assignment like about any other update
+        updates.add(0, new MemoryUpdate(requestInfo, requestInfo.assigned));
+      }
+    }
+    informUpdates(updates);
+  }
+
+  /**
+   * Used by the Tez framework to request memory in addition to the memory already assigned
+   * to a component, while the task is running.
+   */
+  public void requestAdditionalMemory(long size, TaskContext taskContext) {
+    Preconditions.checkArgument(size >= 0);
+    if (!isDynamic) {
+      LOG.debug("Ignoring request for additional memory since dynamic memory distribution "
+          + "is disabled");
+      return;
+    }
+    RequestorInfo requestInfo = getRequestor(taskContext);
+    List<MemoryUpdate> updates;
+    synchronized (this) {
+      Preconditions.checkState(initialAllocationsDone,
+          "Additional memory can only be requested after the initial allocations");
+      requestInfo.request(size);
+      pendingRequests.add(requestInfo);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Additional request of " + size + " by " + requestInfo + ", available="
+            + availableMemory);
+      }
+      updates = distributeAvailableMemory();
+    }
+    informUpdates(updates);
+  }
+
+  /**
+   * Adds counters about the memory used by the components to the task counters. Only done when
+   * dynamic distribution is enabled, since the assignments are fixed otherwise. The values are
+   * summed up per type of component, so that the number of counters does not grow with the
+   * number of inputs and outputs.
+   */
+  public synchronized void updateCounters(TezCounters counters) {
+    if (!isDynamic) {
+      return;
+    }
+    Map<InitialMemoryRequestContext.ComponentType, long[]> totals =
+        new EnumMap<InitialMemoryRequestContext.ComponentType, long[]>(
+            InitialMemoryRequestContext.ComponentType.class);
+    synchronized (requestList) {
+      for (RequestorInfo rInfo : requestList) {
+        InitialMemoryRequestContext.ComponentType type =
+            rInfo.getRequestContext().getComponentType();
+        long[] total = totals.get(type);
+        if (total == null) {
+          total = new long[5];
+          totals.put(type, total);
+        }
+        total[0] += rInfo.assigned;
+        total[1] += rInfo.peakAssigned;
+        total[2] += rInfo.released;
+        total[3] += rInfo.acquired;
+        total[4] += rInfo.pendingRequest;
+      }
+    }
+    CounterGroup group = counters.getGroup(MemoryDistributor.class.getSimpleName());
+    for (Map.Entry<InitialMemoryRequestContext.ComponentType, long[]> entry : totals.entrySet()) {
+      String prefix = entry.getKey() + "_";
+      long[] total = entry.getValue();
+      group.findCounter(prefix + "ASSIGNED_BYTES").setValue(total[0]);
+      group.findCounter(prefix + "PEAK_ASSIGNED_BYTES").setValue(total[1]);
+      group.findCounter(prefix + "RELEASED_BYTES").setValue(total[2]);
+      group.findCounter(prefix + "ACQUIRED_BYTES").setValue(total[3]);
+      group.findCounter(prefix + "PENDING_REQUEST_BYTES").setValue(total[4]);
+    }
+  }
+
+  private RequestorInfo getRequestor(TaskContext taskContext) {
+    RequestorInfo requestInfo = requestorMap.get(taskContext);
+    Preconditions.checkState(requestInfo != null,
+        "Memory can only be updated by components which requested initial memory");
+    return requestInfo;
+  }
+
+  // Satisfies pending requests in the order they were made. Must be called with the lock held.
+  private List<MemoryUpdate> distributeAvailableMemory() {
+    List<MemoryUpdate> updates = new ArrayList<MemoryUpdate>();
+    Iterator<RequestorInfo> iter = pendingRequests.iterator();
+    while (availableMemory > 0 && iter.hasNext()) {
+      RequestorInfo rInfo = iter.next();
+      long granted = rInfo.acquire(availableMemory);
+      availableMemory -= granted;
+      if (rInfo.pendingRequest == 0) {
+        iter.remove();
+      }
+      if (granted > 0) {
+        updates.add(new MemoryUpdate(rInfo, rInfo.assigned));
+      }
+    }
+    return updates;
+  }
+
+  // Callbacks are made outside of the lock, since components may hold their own locks while
+  // releasing or requesting memory.
+  private void informUpdates(List<MemoryUpdate> updates) {
+    for (MemoryUpdate update : updates) {
+      LOG.info("Informing: " + update.requestInfo + ": updated=" + update.assigned);
+      update.requestInfo.getCallback().memoryUpdated(update.assigned);
+    }
   }
 
 
@@ -178,12 +331,12 @@ public class MemoryDistributor {
     Preconditions.checkNotNull(callback);
     Preconditions.checkNotNull(entityContext);
     Preconditions.checkNotNull(descriptor);
-    if (!dupSet.add(entityContext)) {
+    RequestorInfo requestInfo = new RequestorInfo(entityContext,requestSize, callback, descriptor);
+    if (requestorMap.put(entityContext, requestInfo) != null) {
       throw new TezUncheckedException(
           "A single entity can only make one call to request resources for now");
     }
 
-    RequestorInfo requestInfo = new RequestorInfo(entityContext,requestSize, callback, descriptor);
     switch (requestInfo.getRequestContext().getComponentType()) {
     case INPUT:
       numInputsSeen.incrementAndGet();
@@ -232,6 +385,13 @@ public class MemoryDistributor {
     private final MemoryUpdateCallback callback;
     private final InitialMemoryRequestContext requestContext;
 
+    // Updated only while holding the MemoryDistributor lock
+    private long assigned;
+    private long peakAssigned;
+    private long released;
+    private long acquired;
+    private long pendingRequest;
+
     public RequestorInfo(TaskContext taskContext, long requestSize,
         final MemoryUpdateCallback callback, EntityDescriptor<?> descriptor) {
       InitialMemoryRequestContext.ComponentType type;
@@ -261,6 +421,49 @@ public class MemoryDistributor {
     public InitialMemoryRequestContext getRequestContext() {
       return requestContext;
     }
+
+    void initialAssigned(long size) {
+      assigned = size;
+      peakAssigned = size;
+    }
+
+    long release(long size) {
+      long releasedSize = Math.min(size, assigned);
+      assigned -= releasedSize;
+      released += releasedSize;
+      pendingRequest = 0;
+      return releasedSize;
+    }
+
+    void request(long size) {
+      pendingRequest += size;
+    }
+
+    long acquire(long available) {
+      long acquiredSize = Math.min(available, pendingRequest);
+      pendingRequest -= acquiredSize;
+      assigned += acquiredSize;
+      acquired += acquiredSize;
+      peakAssigned = Math.max(peakAssigned, assigned);
+      return acquiredSize;
+    }
+
+    @Override
+    public String toString() {
+      return requestContext.getComponentType() + ", "
+          + requestContext.getComponentVertexName() + ", "
+          + requestContext.getComponentClassName();
+    }
+  }
+
+  private static class MemoryUpdate {
+    private final RequestorInfo requestInfo;
+    private final long assigned;
+
+    MemoryUpdate(RequestorInfo requestInfo, long assigned) {
+      this.requestInfo = requestInfo;
+      this.assigned = assigned;
+    }
   }
 
 
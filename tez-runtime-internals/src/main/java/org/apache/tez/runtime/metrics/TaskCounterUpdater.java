@@ -19,10 +19,13 @@
 package org.apache.tez.runtime.metrics;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.tez.util.LatencyHistogram;
 import org.apache.tez.util.TezMxBeanResourceCalculator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +49,7 @@ public class TaskCounterUpdater {
   private static final Logger LOG = LoggerFactory.getLogger(TaskCounterUpdater.class);
 
   private final TezCounters tezCounters;
+  private final Collection<TezCounters> componentCounters;
   private final Configuration conf;
 
   /**
@@ -59,7 +63,17 @@ public class TaskCounterUpdater {
   private final String pid;
   
   public TaskCounterUpdater(TezCounters counters, Configuration conf, String pid) {
+    this(counters, Collections.<TezCounters>emptyList(), conf, pid);
+  }
+
+  /**
+   * @param componentCounters the counters of the inputs, outputs and processor of the task, which
+   *          the {@link LatencyHistogram}s of these components are reported to
+   */
+  public TaskCounterUpdater(TezCounters counters, Collection<TezCounters> componentCounters,
+      Configuration conf, String pid) {
     this.tezCounters = counters;
+    this.componentCounters = componentCounters;
     this.conf = conf;   
     this.gcUpdater = new GcTimeUpdater(tezCounters);
     this.pid = pid;
@@ -100,6 +114,14 @@ public class TaskCounterUpdater {
 
     gcUpdater.incrementGcCounter();
     updateResourceCounters();
+    updateLatencyHistograms();
+  }
+
+  private void updateLatencyHistograms() {
+    LatencyHistogram.updateRegisteredCounters(tezCounters);
+    for (TezCounters counters : componentCounters) {
+      LatencyHistogram.updateRegisteredCounters(counters);
+    }
   }
   
   private void recordInitialCpuStats() {
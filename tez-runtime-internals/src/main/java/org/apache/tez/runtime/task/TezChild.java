@@ -56,6 +56,7 @@ import org.apache.tez.common.TezExecutors;
 import org.apache.tez.common.TezLocalResource;
 import org.apache.tez.common.TezSharedExecutor;
 import org.apache.tez.common.TezTaskUmbilicalProtocol;
+import org.apache.tez.common.TezUtils;
 import org.apache.tez.common.TezUtilsInternal;
 import org.apache.tez.common.counters.Limits;
 import org.apache.tez.common.security.JobTokenIdentifier;
@@ -89,6 +90,9 @@ public class TezChild {
 
   private static final Logger LOG = LoggerFactory.getLogger(TezChild.class);
 
+  // Enough for the processor and IOs of a vertex
+  private static final int MAX_CACHED_PAYLOAD_CONFS = 64;
+
   private final Configuration defaultConf;
   private final String containerIdString;
   private final int appAttemptNumber;
@@ -113,6 +117,7 @@ public class TezChild {
   private final AtomicBoolean isShutdown = new AtomicBoolean(false);
   private final String user;
   private final boolean updateSysCounters;
+  private final boolean vertexWarmCacheEnabled;
 
   private Multimap<String, String> startedInputsMap = HashMultimap.create();
   private final boolean ownUmbilical;
@@ -160,6 +165,13 @@ public class TezChild {
     maxEventsToGet = defaultConf.getInt(TezConfiguration.TEZ_TASK_MAX_EVENTS_PER_HEARTBEAT,
         TezConfiguration.TEZ_TASK_MAX_EVENTS_PER_HEARTBEAT_DEFAULT);
 
+    vertexWarmCacheEnabled = defaultConf.getBoolean(
+        TezConfiguration.TEZ_TASK_VERTEX_WARM_CACHE_ENABLED,
+        TezConfiguration.TEZ_TASK_VERTEX_WARM_CACHE_ENABLED_DEFAULT);
+    if (vertexWarmCacheEnabled) {
+      TezUtils.enableConfCache(MAX_CACHED_PAYLOAD_CONFS);
+    }
+
     ExecutorService executor = Executors.newFixedThreadPool(1, new ThreadFactoryBuilder()
         .setDaemon(true).setNameFormat("TezChild").build());
     this.executor = MoreExecutors.listeningDecorator(executor);
@@ -373,7 +385,11 @@ public class TezChild {
         .getVertexID();
     if (lastVertexID != null) {
       if (!lastVertexID.equals(newVertexID)) {
+        // Also drops the buffers pooled for the tasks of the previous vertex
         objectRegistry.clearCache(ObjectRegistryImpl.ObjectLifeCycle.VERTEX);
+        if (vertexWarmCacheEnabled) {
+          TezUtils.clearConfCache();
+        }
       }
       if (!lastVertexID.getDAGId().equals(newVertexID.getDAGId())) {
         objectRegistry.clearCache(ObjectRegistryImpl.ObjectLifeCycle.DAG);
@@ -468,7 +484,7 @@ public class TezChild {
     TezUtilsInternal.setSecurityUtilConfigration(LOG, conf);
 
     // singleton of ObjectRegistry for this JVM
-    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl();
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl(conf);
 
     return new TezChild(conf, host, port, containerIdentifier, tokenIdentifier,
         attemptNumber, workingDirectory, localDirs, serviceProviderEnvMap, objectRegistry, pid,
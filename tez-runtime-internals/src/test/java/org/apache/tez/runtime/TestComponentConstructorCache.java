@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.tez.dag.api.TezReflectionException;
+import org.apache.tez.runtime.common.objectregistry.ObjectRegistryImpl;
+import org.junit.Test;
+
+public class TestComponentConstructorCache {
+
+  private static final Class<?>[] STRING_PARAMETER = new Class<?>[] { String.class };
+
+  @Test(timeout = 5000)
+  public void testVertexCache() {
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl();
+    ComponentConstructorCache cache = ComponentConstructorCache.getVertexCache(objectRegistry);
+    assertSame(cache, ComponentConstructorCache.getVertexCache(objectRegistry));
+
+    // A new vertex may load the classes with a different class loader
+    objectRegistry.clearCache(ObjectRegistryImpl.ObjectLifeCycle.VERTEX);
+    assertNotSame(cache, ComponentConstructorCache.getVertexCache(objectRegistry));
+
+    // Another object stored under the same key is replaced
+    objectRegistry.cacheForVertex(ComponentConstructorCache.class.getName(), "other");
+    cache = ComponentConstructorCache.getVertexCache(objectRegistry);
+    assertSame(cache, objectRegistry.get(ComponentConstructorCache.class.getName()));
+  }
+
+  @Test(timeout = 5000)
+  public void testCreateInstance() throws TezReflectionException {
+    ComponentConstructorCache cache = new ComponentConstructorCache();
+    TestComponent component1 = cache.createInstance(TestComponent.class.getName(),
+        STRING_PARAMETER, new Object[] { "first" });
+    TestComponent component2 = cache.createInstance(TestComponent.class.getName(),
+        STRING_PARAMETER, new Object[] { "second" });
+    assertEquals("first", component1.value);
+    assertEquals("second", component2.value);
+    assertEquals(1, cache.getNumConstructors());
+
+    // Constructors with other parameters are cached separately
+    TestComponent component3 = cache.createInstance(TestComponent.class.getName(),
+        new Class<?>[0], new Object[0]);
+    assertEquals("default", component3.value);
+    assertEquals(2, cache.getNumConstructors());
+  }
+
+  @Test(timeout = 5000)
+  public void testCreateInstanceFailures() {
+    ComponentConstructorCache cache = new ComponentConstructorCache();
+    try {
+      cache.createInstance(TestComponent.class.getName(), new Class<?>[] { Integer.class },
+          new Object[] { 1 });
+      fail("Expected a missing constructor to fail");
+    } catch (TezReflectionException e) {
+      assertTrue(e.getCause() instanceof NoSuchMethodException);
+    }
+    try {
+      cache.createInstance(TestComponent.class.getName(), STRING_PARAMETER,
+          new Object[] { null });
+      fail("Expected a failing constructor to fail");
+    } catch (TezReflectionException e) {
+      assertTrue(e.getMessage().contains(TestComponent.class.getName()));
+    }
+    assertEquals(1, cache.getNumConstructors());
+  }
+
+  public static class TestComponent {
+
+    private final String value;
+
+    public TestComponent() {
+      this("default");
+    }
+
+    public TestComponent(String value) {
+      if (value == null) {
+        throw new IllegalArgumentException("value should not be null");
+      }
+      this.value = value;
+    }
+  }
+}
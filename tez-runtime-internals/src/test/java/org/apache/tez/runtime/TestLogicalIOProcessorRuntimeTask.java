@@ -19,18 +19,23 @@
 package org.apache.tez.runtime;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.tez.common.TezSharedExecutor;
+import org.apache.tez.common.counters.CounterGroup;
 import org.apache.tez.dag.api.InputDescriptor;
 import org.apache.tez.dag.api.OutputDescriptor;
 import org.apache.tez.dag.api.ProcessorDescriptor;
@@ -46,17 +51,24 @@ import org.apache.tez.runtime.api.AbstractLogicalOutput;
 import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.LogicalInput;
 import org.apache.tez.runtime.api.LogicalOutput;
+import org.apache.tez.runtime.api.MemoryUpdateCallback;
 import org.apache.tez.runtime.api.Reader;
 import org.apache.tez.runtime.api.InputContext;
 import org.apache.tez.runtime.api.OutputContext;
 import org.apache.tez.runtime.api.ProcessorContext;
 import org.apache.tez.runtime.api.Writer;
+import org.apache.tez.runtime.api.events.DataMovementEvent;
+import org.apache.tez.runtime.api.impl.EventMetaData;
+import org.apache.tez.runtime.api.impl.EventMetaData.EventProducerConsumerType;
 import org.apache.tez.runtime.api.impl.ExecutionContextImpl;
 import org.apache.tez.runtime.api.impl.InputSpec;
 import org.apache.tez.runtime.api.impl.OutputSpec;
 import org.apache.tez.runtime.api.impl.TaskSpec;
+import org.apache.tez.runtime.api.impl.TezEvent;
 import org.apache.tez.runtime.api.impl.TezUmbilical;
+import org.apache.tez.runtime.common.resources.MemoryDistributor;
 import org.apache.tez.runtime.common.resources.ScalingAllocator;
+import org.apache.tez.util.LatencyHistogram;
 import org.junit.Test;
 
 import com.google.common.collect.HashMultimap;
@@ -142,6 +154,150 @@ public class TestLogicalIOProcessorRuntimeTask {
 
   }
 
+  @Test(timeout = 5000)
+  public void testPipelinedInitialization() throws Exception {
+    // Events are routed while the inputs are being started, so an input can consume the events
+    // which were received before the task was initialized from its start()
+    assertTrue(runWithEventBeforeStart(true));
+  }
+
+  @Test(timeout = 5000)
+  public void testSerialInitialization() throws Exception {
+    // Events are only routed once all inputs have started
+    assertFalse(runWithEventBeforeStart(false));
+  }
+
+  private boolean runWithEventBeforeStart(boolean pipelined) throws Exception {
+    TezDAGID dagId = createTezDagId();
+    TezVertexID vertexId = createTezVertexId(dagId);
+    Map<String, ByteBuffer> serviceConsumerMetadata = new HashMap<String, ByteBuffer>();
+    Multimap<String, String> startedInputsMap = HashMultimap.create();
+    TezUmbilical umbilical = mock(TezUmbilical.class);
+    TezConfiguration tezConf = new TezConfiguration();
+    tezConf.set(TezConfiguration.TEZ_TASK_SCALE_MEMORY_ALLOCATOR_CLASS,
+        ScalingAllocator.class.getName());
+    tezConf.setBoolean(TezConfiguration.TEZ_TASK_INITIALIZE_PIPELINED, pipelined);
+
+    TezTaskAttemptID taId = createTaskAttemptID(vertexId, 3);
+    TaskSpec task = new TaskSpec(taId, "dag3", "vertex3", 5, createProcessorDescriptor(),
+        Lists.newArrayList(new InputSpec("inedge",
+            InputDescriptor.create(EventBeforeStartInput.class.getName()), 1)),
+        createOutputSpecList(), null, null);
+
+    TezSharedExecutor sharedExecutor = new TezSharedExecutor(tezConf);
+    LogicalIOProcessorRuntimeTask lio = new LogicalIOProcessorRuntimeTask(task, 0, tezConf, null,
+        umbilical, serviceConsumerMetadata, new HashMap<String, String>(), startedInputsMap, null,
+        "", new ExecutionContextImpl("localhost"), Runtime.getRuntime().maxMemory(), true,
+        new DefaultHadoopShim(), sharedExecutor);
+
+    EventBeforeStartInput.reset();
+    int runCount = TestProcessor.runCount;
+    try {
+      TezEvent event = new TezEvent(DataMovementEvent.create(null),
+          new EventMetaData(EventProducerConsumerType.OUTPUT, "vertex0", "vertex3", null));
+      event.setDestinationInfo(
+          new EventMetaData(EventProducerConsumerType.INPUT, "vertex3", "inedge", taId));
+      lio.handleEvents(Collections.singletonList(event));
+
+      lio.initialize();
+      lio.run();
+      // The event is delivered in both modes, only the time of the delivery differs
+      EventBeforeStartInput.eventReceived.await();
+      lio.close();
+
+      assertEquals(runCount + 1, TestProcessor.runCount);
+      assertEquals(5, EventBeforeStartInput.vertexParallelism);
+      return EventBeforeStartInput.eventBeforeStart;
+    } finally {
+      cleanupAndTest(lio);
+      sharedExecutor.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testDynamicMemoryTransfer() throws Exception {
+    TezDAGID dagId = createTezDagId();
+    TezVertexID vertexId = createTezVertexId(dagId);
+    Map<String, ByteBuffer> serviceConsumerMetadata = new HashMap<String, ByteBuffer>();
+    Multimap<String, String> startedInputsMap = HashMultimap.create();
+    TezUmbilical umbilical = mock(TezUmbilical.class);
+    TezConfiguration tezConf = new TezConfiguration();
+    tezConf.set(TezConfiguration.TEZ_TASK_SCALE_MEMORY_ALLOCATOR_CLASS,
+        ScalingAllocator.class.getName());
+    tezConf.setBoolean(TezConfiguration.TEZ_TASK_SCALE_MEMORY_DYNAMIC_ENABLED, true);
+
+    TezTaskAttemptID taId = createTaskAttemptID(vertexId, 4);
+    TaskSpec task = new TaskSpec(taId, "dag4", "vertex4", 1,
+        ProcessorDescriptor.create(MemoryTransferProcessor.class.getName()),
+        Lists.newArrayList(new InputSpec("inedge",
+            InputDescriptor.create(MemoryReleasingInput.class.getName()), 1)),
+        Lists.newArrayList(new OutputSpec("outedge",
+            OutputDescriptor.create(MemoryRequestingOutput.class.getName()), 1)), null, null);
+
+    TezSharedExecutor sharedExecutor = new TezSharedExecutor(tezConf);
+    LogicalIOProcessorRuntimeTask lio = new LogicalIOProcessorRuntimeTask(task, 0, tezConf, null,
+        umbilical, serviceConsumerMetadata, new HashMap<String, String>(), startedInputsMap, null,
+        "", new ExecutionContextImpl("localhost"), Runtime.getRuntime().maxMemory(), true,
+        new DefaultHadoopShim(), sharedExecutor);
+    try {
+      lio.initialize();
+      lio.run();
+      lio.close();
+      lio.setFrameworkCounters();
+
+      // The output gets the memory the input released once its data was loaded
+      assertEquals(MemoryRequestingOutput.MEMORY, MemoryRequestingOutput.assigned);
+      assertEquals(MemoryRequestingOutput.MEMORY + MemoryReleasingInput.MEMORY,
+          MemoryRequestingOutput.updated);
+      // and the input is told that it has no memory left
+      assertEquals(0, MemoryReleasingInput.updated);
+      CounterGroup group = lio.getCounters().getGroup(MemoryDistributor.class.getSimpleName());
+      assertEquals(MemoryReleasingInput.MEMORY,
+          group.findCounter("INPUT_RELEASED_BYTES").getValue());
+      assertEquals(MemoryReleasingInput.MEMORY,
+          group.findCounter("OUTPUT_ACQUIRED_BYTES").getValue());
+    } finally {
+      cleanupAndTest(lio);
+      sharedExecutor.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testLatencyHistogramsReported() throws Exception {
+    TezDAGID dagId = createTezDagId();
+    TezVertexID vertexId = createTezVertexId(dagId);
+    TezUmbilical umbilical = mock(TezUmbilical.class);
+    TezConfiguration tezConf = new TezConfiguration();
+    tezConf.set(TezConfiguration.TEZ_TASK_SCALE_MEMORY_ALLOCATOR_CLASS,
+        ScalingAllocator.class.getName());
+
+    TezTaskAttemptID taId = createTaskAttemptID(vertexId, 5);
+    TaskSpec task = new TaskSpec(taId, "dag5", "vertex5", 1,
+        ProcessorDescriptor.create(LatencyRecordingProcessor.class.getName()),
+        Collections.<InputSpec>emptyList(), Collections.<OutputSpec>emptyList(), null, null);
+
+    TezSharedExecutor sharedExecutor = new TezSharedExecutor(tezConf);
+    LogicalIOProcessorRuntimeTask lio = new LogicalIOProcessorRuntimeTask(task, 0, tezConf, null,
+        umbilical, new HashMap<String, ByteBuffer>(), new HashMap<String, String>(),
+        HashMultimap.<String, String>create(), null, "", new ExecutionContextImpl("localhost"),
+        Runtime.getRuntime().maxMemory(), true, new DefaultHadoopShim(), sharedExecutor);
+    try {
+      lio.initialize();
+      lio.run();
+      lio.close();
+
+      CounterGroup group = lio.getCounters().getGroup(LatencyHistogram.COUNTER_GROUP);
+      assertNull(group.findCounter("PROCESS_COUNT", false));
+      // the histograms of the components are reported with the framework counters
+      lio.setFrameworkCounters();
+      group = lio.getCounters().getGroup(LatencyHistogram.COUNTER_GROUP);
+      assertEquals(2, group.findCounter("PROCESS_COUNT").getValue());
+    } finally {
+      cleanupAndTest(lio);
+      sharedExecutor.shutdownNow();
+    }
+  }
+
   private void cleanupAndTest(LogicalIOProcessorRuntimeTask lio) throws InterruptedException {
 
     ProcessorContext procContext = lio.getProcessorContext();
@@ -263,6 +419,7 @@ public class TestLogicalIOProcessorRuntimeTask {
   public static class TestInput extends AbstractLogicalInput {
 
     public static volatile int startCount = 0;
+    public static volatile int eventCount = 0;
     public static volatile int vertexParallelism;
 
     public TestInput(InputContext inputContext, int numPhysicalInputs) {
@@ -290,6 +447,7 @@ public class TestLogicalIOProcessorRuntimeTask {
 
     @Override
     public void handleEvents(List<Event> inputEvents) throws Exception {
+      eventCount += inputEvents.size();
     }
 
     @Override
@@ -299,6 +457,53 @@ public class TestLogicalIOProcessorRuntimeTask {
 
   }
 
+  public static class EventBeforeStartInput extends AbstractLogicalInput {
+
+    static volatile CountDownLatch eventReceived;
+    static volatile boolean eventBeforeStart;
+    static volatile int vertexParallelism;
+
+    public EventBeforeStartInput(InputContext inputContext, int numPhysicalInputs) {
+      super(inputContext, numPhysicalInputs);
+    }
+
+    static void reset() {
+      eventReceived = new CountDownLatch(1);
+      eventBeforeStart = false;
+      vertexParallelism = 0;
+    }
+
+    @Override
+    public List<Event> initialize() throws Exception {
+      getContext().requestInitialMemory(0, null);
+      getContext().inputIsReady();
+      return null;
+    }
+
+    @Override
+    public void start() throws Exception {
+      vertexParallelism = getContext().getVertexParallelism();
+      // Waits for a bit only, since events are not routed before all inputs have started unless
+      // the initialization is pipelined
+      eventBeforeStart = eventReceived.await(1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Reader getReader() throws Exception {
+      return null;
+    }
+
+    @Override
+    public void handleEvents(List<Event> inputEvents) throws Exception {
+      eventReceived.countDown();
+    }
+
+    @Override
+    public List<Event> close() throws Exception {
+      return null;
+    }
+  }
+
   public static class TestOutput extends AbstractLogicalOutput {
 
     public static volatile int startCount = 0;
@@ -338,4 +543,157 @@ public class TestLogicalIOProcessorRuntimeTask {
     }
 
   }
+
+  public static class MemoryTransferProcessor extends AbstractLogicalIOProcessor {
+
+    public MemoryTransferProcessor(ProcessorContext context) {
+      super(context);
+    }
+
+    @Override
+    public void initialize() throws Exception {
+    }
+
+    @Override
+    public void run(Map<String, LogicalInput> inputs, Map<String, LogicalOutput> outputs)
+        throws Exception {
+      ((MemoryRequestingOutput) outputs.get("outedge")).spill();
+      ((MemoryReleasingInput) inputs.get("inedge")).load();
+    }
+
+    @Override
+    public void handleEvents(List<Event> processorEvents) {
+    }
+
+    @Override
+    public void close() throws Exception {
+    }
+  }
+
+  public static class LatencyRecordingProcessor extends AbstractLogicalIOProcessor {
+
+    public LatencyRecordingProcessor(ProcessorContext context) {
+      super(context);
+    }
+
+    @Override
+    public void initialize() throws Exception {
+    }
+
+    @Override
+    public void run(Map<String, LogicalInput> inputs, Map<String, LogicalOutput> outputs)
+        throws Exception {
+      LatencyHistogram histogram =
+          LatencyHistogram.create("PROCESS", true, getContext().getCounters());
+      histogram.record(1000);
+      histogram.record(2000);
+    }
+
+    @Override
+    public void handleEvents(List<Event> processorEvents) {
+    }
+
+    @Override
+    public void close() throws Exception {
+    }
+  }
+
+  public static class MemoryReleasingInput extends AbstractLogicalInput {
+
+    static final long MEMORY = 1 << 20;
+    static volatile long updated = -1;
+
+    public MemoryReleasingInput(InputContext inputContext, int numPhysicalInputs) {
+      super(inputContext, numPhysicalInputs);
+    }
+
+    @Override
+    public List<Event> initialize() throws Exception {
+      getContext().requestInitialMemory(MEMORY, new MemoryUpdateCallback() {
+        @Override
+        public void memoryAssigned(long assignedSize) {
+        }
+
+        @Override
+        public void memoryUpdated(long assignedSize) {
+          updated = assignedSize;
+        }
+      });
+      getContext().inputIsReady();
+      return null;
+    }
+
+    void load() {
+      // all the data is loaded, the memory used to fetch it is not needed anymore
+      getContext().releaseMemory(MEMORY);
+    }
+
+    @Override
+    public void start() throws Exception {
+    }
+
+    @Override
+    public Reader getReader() throws Exception {
+      return null;
+    }
+
+    @Override
+    public void handleEvents(List<Event> inputEvents) throws Exception {
+    }
+
+    @Override
+    public List<Event> close() throws Exception {
+      return null;
+    }
+  }
+
+  public static class MemoryRequestingOutput extends AbstractLogicalOutput {
+
+    static final long MEMORY = 1 << 20;
+    static volatile long assigned;
+    static volatile long updated;
+
+    public MemoryRequestingOutput(OutputContext outputContext, int numPhysicalOutputs) {
+      super(outputContext, numPhysicalOutputs);
+    }
+
+    @Override
+    public List<Event> initialize() throws Exception {
+      getContext().requestInitialMemory(MEMORY, new MemoryUpdateCallback() {
+        @Override
+        public void memoryAssigned(long assignedSize) {
+          assigned = assignedSize;
+        }
+
+        @Override
+        public void memoryUpdated(long assignedSize) {
+          updated = assignedSize;
+        }
+      });
+      return null;
+    }
+
+    void spill() {
+      // spilling repeatedly, ask for more memory
+      getContext().requestAdditionalMemory(MEMORY);
+    }
+
+    @Override
+    public void start() throws Exception {
+    }
+
+    @Override
+    public Writer getWriter() throws Exception {
+      return null;
+    }
+
+    @Override
+    public void handleEvents(List<Event> outputEvents) {
+    }
+
+    @Override
+    public List<Event> close() throws Exception {
+      return null;
+    }
+  }
 }
@@ -18,6 +18,10 @@
 
 package org.apache.tez.runtime.common.objectregistry;
 
+import java.nio.ByteBuffer;
+
+import org.apache.tez.common.counters.CounterGroup;
+import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.runtime.api.ObjectRegistry;
 import org.junit.Assert;
 import org.junit.Test;
@@ -68,4 +72,92 @@ public class TestObjectRegistry {
     Assert.assertNotNull(objectRegistry.get(one));
     Assert.assertNull(objectRegistry.get(two));
   }
+
+  @Test(timeout = 5000)
+  public void testEviction() {
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl(300, 10, false);
+    objectRegistry.cacheForVertex("vertex", new byte[200]);
+    objectRegistry.cacheForSession("session", new byte[50]);
+    objectRegistry.cacheForDAG("dag", "dag");
+    Assert.assertEquals(260, objectRegistry.getTotalWeight());
+    Assert.assertNotNull(objectRegistry.get("session"));
+
+    // Least recently used DAG and session scoped objects are evicted first
+    objectRegistry.cacheForDAG("buffer", ByteBuffer.allocate(250));
+    Assert.assertNull(objectRegistry.get("dag"));
+    Assert.assertNotNull(objectRegistry.get("session"));
+    Assert.assertNotNull(objectRegistry.get("buffer"));
+    Assert.assertEquals(500, objectRegistry.getTotalWeight());
+
+    // Vertex scoped objects are not bounded and never evicted
+    objectRegistry.cacheForVertex("vertex", new byte[400]);
+    Assert.assertNotNull(objectRegistry.get("vertex"));
+    Assert.assertNotNull(objectRegistry.get("session"));
+    Assert.assertEquals(700, objectRegistry.getTotalWeight());
+
+    // Objects can report their own weight
+    objectRegistry.cacheForSession("table", new TestWeighable(280));
+    Assert.assertNotNull(objectRegistry.get("table"));
+    Assert.assertNull(objectRegistry.get("session"));
+    Assert.assertNull(objectRegistry.get("buffer"));
+    Assert.assertEquals(680, objectRegistry.getTotalWeight());
+
+    // Moving an object to the vertex scope removes it from the evictable ones
+    objectRegistry.cacheForVertex("table", new TestWeighable(280));
+    objectRegistry.cacheForDAG("other", new byte[300]);
+    Assert.assertNotNull(objectRegistry.get("table"));
+    Assert.assertNotNull(objectRegistry.get("other"));
+
+    objectRegistry.clearCache(ObjectRegistryImpl.ObjectLifeCycle.VERTEX);
+    objectRegistry.clearCache(ObjectRegistryImpl.ObjectLifeCycle.DAG);
+    Assert.assertEquals(0, objectRegistry.getTotalWeight());
+  }
+
+  @Test(timeout = 5000)
+  public void testOffHeapStorage() {
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl(-1, 0, true);
+    byte[] bytes = new byte[] {1, 2, 3};
+    Assert.assertNull(objectRegistry.cacheForDAG("bytes", bytes));
+    // Callers get back a byte array with the stored bytes
+    byte[] cached = (byte[]) objectRegistry.get("bytes");
+    Assert.assertNotSame(bytes, cached);
+    Assert.assertArrayEquals(bytes, cached);
+    // Every lookup gets its own copy
+    cached[0] = 4;
+    Assert.assertArrayEquals(bytes, (byte[]) objectRegistry.get("bytes"));
+    Assert.assertArrayEquals(bytes, (byte[]) objectRegistry.cacheForDAG("bytes", "other"));
+    Assert.assertEquals("other", objectRegistry.get("bytes"));
+  }
+
+  @Test(timeout = 5000)
+  public void testCounters() {
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl(10, 0, false);
+    objectRegistry.get("missing");
+    ObjectRegistryImpl.Statistics statistics = objectRegistry.getStatistics();
+    objectRegistry.cacheForSession("one", new byte[8]);
+    objectRegistry.get("one");
+    objectRegistry.get("two");
+    objectRegistry.cacheForSession("two", new byte[8]);
+
+    TezCounters counters = new TezCounters();
+    objectRegistry.updateCounters(counters, statistics);
+    CounterGroup group = counters.getGroup(ObjectRegistry.class.getSimpleName());
+    Assert.assertEquals(1, group.findCounter("HITS").getValue());
+    Assert.assertEquals(1, group.findCounter("MISSES").getValue());
+    Assert.assertEquals(1, group.findCounter("EVICTIONS").getValue());
+    Assert.assertEquals(8, group.findCounter("SIZE_BYTES").getValue());
+  }
+
+  private static class TestWeighable implements ObjectRegistry.Weighable {
+    private final long weight;
+
+    TestWeighable(long weight) {
+      this.weight = weight;
+    }
+
+    @Override
+    public long getWeight() {
+      return weight;
+    }
+  }
 }
@@ -24,6 +24,8 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.common.counters.CounterGroup;
+import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.InputDescriptor;
 import org.apache.tez.dag.api.OutputDescriptor;
 import org.apache.tez.dag.api.ProcessorDescriptor;
@@ -210,16 +212,112 @@ public class TestMemoryDistributor {
     assertEquals(2000, e2Callback.assigned);
     assertEquals(1000, e3Callback.assigned);
   }
+
+  @Test(timeout = 5000)
+  public void testDynamicRedistribution() throws TezException {
+    Configuration conf = new Configuration(this.conf);
+    conf.setBoolean(TezConfiguration.TEZ_TASK_SCALE_MEMORY_DYNAMIC_ENABLED, true);
+    MemoryDistributor dist = new MemoryDistributor(2, 1, conf);
+
+    dist.setJvmMemory(10000l);
+
+    MemoryUpdateCallbackForTest e1Callback = new MemoryUpdateCallbackForTest();
+    InputContext e1InputContext1 = createTestInputContext();
+    dist.requestMemory(10000, e1Callback, e1InputContext1, createTestInputDescriptor());
+
+    MemoryUpdateCallbackForTest e2Callback = new MemoryUpdateCallbackForTest();
+    InputContext e2InputContext2 = createTestInputContext();
+    dist.requestMemory(10000, e2Callback, e2InputContext2, createTestInputDescriptor());
+
+    MemoryUpdateCallbackForTest e3Callback = new MemoryUpdateCallbackForTest();
+    OutputContext e3OutputContext1 = createTestOutputContext();
+    dist.requestMemory(5000, e3Callback, e3OutputContext1, createTestOutputDescriptor());
+
+    dist.makeInitialAllocations();
+    assertEquals(2800, e1Callback.assigned);
+    assertEquals(2800, e2Callback.assigned);
+    assertEquals(1400, e3Callback.assigned);
+
+    // Nothing has been released yet
+    dist.requestAdditionalMemory(3000, e3OutputContext1);
+    assertEquals(-1000, e3Callback.updated);
+
+    // Partially satisfies the pending request
+    dist.releaseMemory(2000, e1InputContext1);
+    assertEquals(3400, e3Callback.updated);
+    assertEquals(800, e1Callback.updated);
+
+    // Pending requests are satisfied in order. Only the remaining 800 can be released.
+    dist.requestAdditionalMemory(500, e2InputContext2);
+    dist.releaseMemory(5000, e1InputContext1);
+    assertEquals(4200, e3Callback.updated);
+    assertEquals(-1000, e2Callback.updated);
+    assertEquals(0, e1Callback.updated);
+
+    // Releasing cancels the pending request of the component
+    dist.requestAdditionalMemory(1000, e2InputContext2);
+    dist.releaseMemory(300, e2InputContext2);
+    assertEquals(4400, e3Callback.updated);
+    assertEquals(2500, e2Callback.updated);
+    dist.requestAdditionalMemory(200, e3OutputContext1);
+    assertEquals(4500, e3Callback.updated);
+
+    TezCounters counters = new TezCounters();
+    dist.updateCounters(counters);
+    CounterGroup group = counters.getGroup(MemoryDistributor.class.getSimpleName());
+    // Summed up per type of component
+    assertEquals(10, counters.countCounters());
+    assertEquals(2500, group.findCounter("INPUT_ASSIGNED_BYTES").getValue());
+    assertEquals(5600, group.findCounter("INPUT_PEAK_ASSIGNED_BYTES").getValue());
+    assertEquals(0, group.findCounter("INPUT_ACQUIRED_BYTES").getValue());
+    assertEquals(3100, group.findCounter("INPUT_RELEASED_BYTES").getValue());
+    assertEquals(0, group.findCounter("INPUT_PENDING_REQUEST_BYTES").getValue());
+    assertEquals(4500, group.findCounter("OUTPUT_ASSIGNED_BYTES").getValue());
+    assertEquals(4500, group.findCounter("OUTPUT_PEAK_ASSIGNED_BYTES").getValue());
+    assertEquals(3100, group.findCounter("OUTPUT_ACQUIRED_BYTES").getValue());
+    assertEquals(0, group.findCounter("OUTPUT_RELEASED_BYTES").getValue());
+    assertEquals(100, group.findCounter("OUTPUT_PENDING_REQUEST_BYTES").getValue());
+  }
+
+  @Test(timeout = 5000)
+  public void testDynamicRedistributionDisabled() throws TezException {
+    MemoryDistributor dist = new MemoryDistributor(1, 1, conf);
+
+    dist.setJvmMemory(10000l);
+
+    MemoryUpdateCallbackForTest e1Callback = new MemoryUpdateCallbackForTest();
+    InputContext e1InputContext1 = createTestInputContext();
+    dist.requestMemory(10000, e1Callback, e1InputContext1, createTestInputDescriptor());
+
+    MemoryUpdateCallbackForTest e2Callback = new MemoryUpdateCallbackForTest();
+    OutputContext e2OutputContext1 = createTestOutputContext();
+    dist.requestMemory(10000, e2Callback, e2OutputContext1, createTestOutputDescriptor());
+
+    dist.makeInitialAllocations();
+    dist.requestAdditionalMemory(1000, e2OutputContext1);
+    dist.releaseMemory(1000, e1InputContext1);
+    assertEquals(-1000, e2Callback.updated);
+
+    TezCounters counters = new TezCounters();
+    dist.updateCounters(counters);
+    assertEquals(0, counters.countCounters());
+  }
   
   
   private static class MemoryUpdateCallbackForTest extends MemoryUpdateCallback {
 
     long assigned = -1000;
+    long updated = -1000;
 
     @Override
     public void memoryAssigned(long assignedSize) {
       this.assigned = assignedSize;
     }
+
+    @Override
+    public void memoryUpdated(long assignedSize) {
+      this.updated = assignedSize;
+    }
   }
 
   protected InputDescriptor createTestInputDescriptor() {
@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.api;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.classification.InterfaceAudience.Public;
+import org.apache.hadoop.classification.InterfaceStability.Evolving;
+import org.apache.hadoop.io.DataInputBuffer;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A batch of serialized key/value pairs, used with {@link KeyValueBatchWriter} and
+ * {@link KeyValueBatchReader}. The keys and the values of a batch are stored back to back in two
+ * byte arrays, so that a batch can be filled and consumed without an object per record.
+ *
+ * Keys and values are in the serialized form of the key and value classes configured for the
+ * edge, i.e. the bytes the configured serializations write for them, and the bytes the configured
+ * comparator and deserializers are given on the other side of the edge.
+ *
+ * A record may carry the partition it is written to. Records read from a sorted and grouped input
+ * are marked when they start a new key. A batch can be reused after {@link #clear()}.
+ */
+@Public
+@Evolving
+public class KeyValueBatch {
+
+  private final int capacity;
+  private int size = 0;
+
+  private byte[] keyData;
+  private int keyDataLength = 0;
+  private int[] keyOffsets;
+
+  private byte[] valueData;
+  private int valueDataLength = 0;
+  private int[] valueOffsets;
+
+  // Allocated when first used, and kept across clear()
+  private int[] partitions;
+  private boolean[] newKeys;
+  private boolean hasPartitions = false;
+  private boolean hasNewKeys = false;
+
+  /**
+   * @param capacity the number of records after which the batch is considered full. Records can
+   *                 still be added to a full batch.
+   */
+  public KeyValueBatch(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "Invalid batch capacity: " + capacity);
+    this.capacity = capacity;
+    this.keyData = new byte[capacity * 16];
+    this.keyOffsets = new int[capacity + 1];
+    this.valueData = new byte[capacity * 16];
+    this.valueOffsets = new int[capacity + 1];
+  }
+
+  /**
+   * Adds a record to the batch. The bytes are copied.
+   *
+   * @return the index of the record in the batch
+   */
+  public int add(byte[] key, int keyOffset, int keyLength,
+      byte[] value, int valueOffset, int valueLength) {
+    if (size + 1 == keyOffsets.length) {
+      int newLength = keyOffsets.length * 2;
+      keyOffsets = Arrays.copyOf(keyOffsets, newLength);
+      valueOffsets = Arrays.copyOf(valueOffsets, newLength);
+      if (partitions != null) {
+        partitions = Arrays.copyOf(partitions, newLength);
+      }
+      if (newKeys != null) {
+        newKeys = Arrays.copyOf(newKeys, newLength);
+      }
+    }
+    keyData = append(keyData, keyDataLength, key, keyOffset, keyLength);
+    keyDataLength += keyLength;
+    valueData = append(valueData, valueDataLength, value, valueOffset, valueLength);
+    valueDataLength += valueLength;
+    int index = size++;
+    keyOffsets[size] = keyDataLength;
+    valueOffsets[size] = valueDataLength;
+    if (partitions != null) {
+      partitions[index] = -1;
+    }
+    if (newKeys != null) {
+      newKeys[index] = false;
+    }
+    return index;
+  }
+
+  /**
+   * Sets the partition a record is written to. Records without a partition are partitioned by
+   * the partitioner of the Output, which has to deserialize them.
+   */
+  public void setPartition(int index, int partition) {
+    checkIndex(index);
+    if (partitions == null) {
+      partitions = new int[keyOffsets.length];
+      Arrays.fill(partitions, -1);
+    }
+    partitions[index] = partition;
+    hasPartitions = true;
+  }
+
+  /**
+   * Marks a record as the first record of a key, in a batch read from a grouped input.
+   */
+  public void setNewKey(int index) {
+    checkIndex(index);
+    if (newKeys == null) {
+      newKeys = new boolean[keyOffsets.length];
+    }
+    newKeys[index] = true;
+    hasNewKeys = true;
+  }
+
+  /**
+   * Removes all records from the batch, keeping the memory allocated for them.
+   */
+  public void clear() {
+    size = 0;
+    keyDataLength = 0;
+    valueDataLength = 0;
+    hasPartitions = false;
+    hasNewKeys = false;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public boolean isFull() {
+    return size >= capacity;
+  }
+
+  /**
+   * Returns the array holding the keys of the batch, at the offsets given by
+   * {@link #getKeyOffset(int)}.
+   */
+  public byte[] getKeyData() {
+    return keyData;
+  }
+
+  public int getKeyOffset(int index) {
+    checkIndex(index);
+    return keyOffsets[index];
+  }
+
+  public int getKeyLength(int index) {
+    checkIndex(index);
+    return keyOffsets[index + 1] - keyOffsets[index];
+  }
+
+  /**
+   * Returns the array holding the values of the batch, at the offsets given by
+   * {@link #getValueOffset(int)}.
+   */
+  public byte[] getValueData() {
+    return valueData;
+  }
+
+  public int getValueOffset(int index) {
+    checkIndex(index);
+    return valueOffsets[index];
+  }
+
+  public int getValueLength(int index) {
+    checkIndex(index);
+    return valueOffsets[index + 1] - valueOffsets[index];
+  }
+
+  /**
+   * Points the buffer at the key of a record, without copying it.
+   */
+  public void getKey(int index, DataInputBuffer key) {
+    key.reset(keyData, getKeyOffset(index), getKeyLength(index));
+  }
+
+  /**
+   * Points the buffer at the value of a record, without copying it.
+   */
+  public void getValue(int index, DataInputBuffer value) {
+    value.reset(valueData, getValueOffset(index), getValueLength(index));
+  }
+
+  public boolean hasPartitions() {
+    return hasPartitions;
+  }
+
+  /**
+   * Returns the partition of a record, or -1 if it has not been set.
+   */
+  public int getPartition(int index) {
+    checkIndex(index);
+    return hasPartitions ? partitions[index] : -1;
+  }
+
+  /**
+   * Whether the record is the first record of a key, in a batch read from a grouped input.
+   */
+  public boolean isNewKey(int index) {
+    checkIndex(index);
+    return hasNewKeys && newKeys[index];
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+  }
+
+  private static byte[] append(byte[] data, int length, byte[] bytes, int offset, int len) {
+    if (length + len > data.length) {
+      data = Arrays.copyOf(data, Math.max(data.length * 2, length + len));
+    }
+    System.arraycopy(bytes, offset, data, length, len);
+    return data;
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.api;
+
+import java.io.IOException;
+
+import org.apache.hadoop.classification.InterfaceAudience.Public;
+import org.apache.hadoop.classification.InterfaceStability.Evolving;
+
+/**
+ * Implemented by the readers of Inputs which can hand out their records as batches of serialized
+ * keys and values, without deserializing them.
+ *
+ * Example usage
+ * <code>
+ * KeyValueBatch batch = new KeyValueBatch(1024);
+ * while (((KeyValueBatchReader) reader).next(batch)) {
+ *   for (int i = 0; i < batch.size(); i++) {
+ *     ...
+ *   }
+ * }
+ * </code>
+ *
+ * A reader is used either one record at a time or in batches, not both.
+ */
+@Public
+@Evolving
+public interface KeyValueBatchReader {
+
+  /**
+   * Clears the batch and fills it with the next records, until it is full or the input is
+   * exhausted. For grouped inputs, records are in key order and the first record of each key is
+   * marked with {@link KeyValueBatch#setNewKey(int)}.
+   *
+   * @param batch the batch to fill
+   * @return true if any records were read, false if there are no more.
+   * @throws IOException
+   *           if an error occurs
+   * @throws {@link IOInterruptedException} if IO was performing a blocking operation and was interrupted
+   */
+  boolean next(KeyValueBatch batch) throws IOException;
+}
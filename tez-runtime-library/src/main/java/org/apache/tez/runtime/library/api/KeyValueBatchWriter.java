@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.api;
+
+import java.io.IOException;
+
+import org.apache.hadoop.classification.InterfaceAudience.Public;
+import org.apache.hadoop.classification.InterfaceStability.Evolving;
+
+/**
+ * Implemented by the {@link KeyValueWriter}s of Outputs which accept batches of serialized
+ * records, for processors which already have their records in serialized form.
+ *
+ * Example usage
+ * <code>
+ * if (writer instanceof KeyValueBatchWriter) {
+ *   ((KeyValueBatchWriter) writer).write(batch);
+ * }
+ * </code>
+ */
+@Public
+@Evolving
+public interface KeyValueBatchWriter {
+
+  /**
+   * Writes all the records of a batch. The records are not serialized again, and the partitioner
+   * is only invoked for records which do not have a partition set in the batch, which requires
+   * deserializing them. The batch may be reused once this returns.
+   *
+   * @param batch the records to write
+   * @throws IOException
+   *           if an error occurs
+   * @throws {@link IOInterruptedException} if IO was performing a blocking operation and was interrupted
+   */
+  void write(KeyValueBatch batch) throws IOException;
+}
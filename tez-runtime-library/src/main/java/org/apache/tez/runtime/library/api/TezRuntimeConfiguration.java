@@ -214,6 +214,69 @@ public class TezRuntimeConfiguration {
       TEZ_RUNTIME_PREFIX +
           "unordered.output.max-per-buffer.size-bytes";
 
+  /**
+   * Whether the sort and output buffers are drawn from a pool shared by the tasks of a vertex
+   * running in a container. Buffers returned by a task are reused by the next task which asks
+   * for buffers of the same size, instead of being reallocated. This is mostly useful with
+   * container reuse, where consecutive tasks of a vertex ask for the same buffers. The pool is
+   * dropped when the container runs a task of another vertex.
+   */
+  @ConfigurationProperty(type = "boolean")
+  public static final String TEZ_RUNTIME_BUFFER_POOL_ENABLED = TEZ_RUNTIME_PREFIX +
+      "buffer.pool.enabled";
+  public static final boolean TEZ_RUNTIME_BUFFER_POOL_ENABLED_DEFAULT = false;
+
+  /**
+   * Fraction of the JVM heap which may be held by buffers in the pool which are not in use.
+   * This memory is not accounted for when the memory of a task is distributed, so the limit
+   * should stay small. Unused buffers beyond this limit are released to the garbage collector,
+   * and all unused buffers are released when a buffer of a size which is not in the pool is
+   * allocated.
+   */
+  @ConfigurationProperty(type = "float")
+  public static final String TEZ_RUNTIME_BUFFER_POOL_MAX_IDLE_FRACTION = TEZ_RUNTIME_PREFIX +
+      "buffer.pool.max-idle.fraction";
+  public static final float TEZ_RUNTIME_BUFFER_POOL_MAX_IDLE_FRACTION_DEFAULT = 0.1f;
+
+  /**
+   * Whether the time taken by sorts, spills, fetches and merges is recorded in histograms, which
+   * are reported as counters of the task. Meant for analysing where the time of tasks goes.
+   */
+  @ConfigurationProperty(type = "boolean")
+  public static final String TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED = TEZ_RUNTIME_PREFIX +
+      "latency-histograms.enabled";
+  public static final boolean TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED_DEFAULT = false;
+
+  /**
+   * Size of the buffer used to write spill files and intermediate merge outputs to local disk.
+   * Larger buffers mean fewer, larger writes.
+   */
+  @ConfigurationProperty(type = "integer")
+  public static final String TEZ_RUNTIME_SPILL_BUFFER_BYTES = TEZ_RUNTIME_PREFIX +
+      "spill.buffer.bytes";
+  public static final int TEZ_RUNTIME_SPILL_BUFFER_BYTES_DEFAULT = 64 * 1024;
+
+  /**
+   * Whether spill files and intermediate merge outputs which are read back exactly once, by a
+   * merge, are dropped from the OS page cache as they are written. This keeps spills from
+   * evicting the final outputs cached for the shuffle handler, at the cost of reading the spills
+   * back from disk. Requires the Hadoop native library, and has no effect otherwise.
+   */
+  @ConfigurationProperty(type = "boolean")
+  public static final String TEZ_RUNTIME_SPILL_DROP_BEHIND = TEZ_RUNTIME_PREFIX +
+      "spill.drop-behind";
+  public static final boolean TEZ_RUNTIME_SPILL_DROP_BEHIND_DEFAULT = false;
+
+  /**
+   * Whether spill files and the outputs of on-disk merges are spread over the local directories
+   * based on the load of each disk, instead of the free space alone. Disks with fewer writes in
+   * progress from this container and higher recent write throughput are preferred.
+   */
+  @ConfigurationProperty(type = "boolean")
+  public static final String TEZ_RUNTIME_LOCAL_DIRS_LOAD_AWARE = TEZ_RUNTIME_PREFIX +
+      "local-dirs.load-aware";
+  public static final boolean TEZ_RUNTIME_LOCAL_DIRS_LOAD_AWARE_DEFAULT = false;
+
   /**
    * Specifies a partitioner class, which is used in Tez Runtime components
    * like OnFileSortedOutput
@@ -561,6 +624,12 @@ public class TezRuntimeConfiguration {
     tezRuntimeKeys.add(TEZ_RUNTIME_PIPELINED_SORTER_LAZY_ALLOCATE_MEMORY);
     tezRuntimeKeys.add(TEZ_RUNTIME_UNORDERED_OUTPUT_BUFFER_SIZE_MB);
     tezRuntimeKeys.add(TEZ_RUNTIME_UNORDERED_OUTPUT_MAX_PER_BUFFER_SIZE_BYTES);
+    tezRuntimeKeys.add(TEZ_RUNTIME_BUFFER_POOL_ENABLED);
+    tezRuntimeKeys.add(TEZ_RUNTIME_BUFFER_POOL_MAX_IDLE_FRACTION);
+    tezRuntimeKeys.add(TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED);
+    tezRuntimeKeys.add(TEZ_RUNTIME_SPILL_BUFFER_BYTES);
+    tezRuntimeKeys.add(TEZ_RUNTIME_SPILL_DROP_BEHIND);
+    tezRuntimeKeys.add(TEZ_RUNTIME_LOCAL_DIRS_LOAD_AWARE);
     tezRuntimeKeys.add(TEZ_RUNTIME_PARTITIONER_CLASS);
     tezRuntimeKeys.add(TEZ_RUNTIME_COMBINER_CLASS);
     tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_USE_ASYNC_HTTP);
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common;
+
+import java.io.IOException;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.serializer.Deserializer;
+import org.apache.hadoop.io.serializer.SerializationFactory;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
+import org.apache.tez.runtime.library.api.Partitioner;
+
+/**
+ * Finds the partitions of the records of a {@link KeyValueBatch} written to an Output. Records
+ * are only deserialized, to be given to the partitioner, if the batch does not carry their
+ * partition and the Output has more than one partition.
+ */
+@Private
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class BatchPartitioner {
+
+  private final Configuration conf;
+  private final Partitioner partitioner;
+  private final int numPartitions;
+
+  // Created when a record without a partition is seen
+  private Deserializer keyDeserializer;
+  private Deserializer valDeserializer;
+  private final DataInputBuffer keyIn = new DataInputBuffer();
+  private final DataInputBuffer valIn = new DataInputBuffer();
+  private Object key;
+  private Object value;
+
+  public BatchPartitioner(Configuration conf, Partitioner partitioner, int numPartitions) {
+    this.conf = conf;
+    this.partitioner = partitioner;
+    this.numPartitions = numPartitions;
+  }
+
+  public int getPartition(KeyValueBatch batch, int index) throws IOException {
+    int partition = batch.getPartition(index);
+    if (partition >= 0) {
+      return partition;
+    }
+    if (numPartitions == 1) {
+      return 0;
+    }
+    if (keyDeserializer == null) {
+      SerializationFactory serializationFactory = new SerializationFactory(conf);
+      keyDeserializer = serializationFactory.getDeserializer(
+          ConfigUtils.getIntermediateOutputKeyClass(conf));
+      keyDeserializer.open(keyIn);
+      valDeserializer = serializationFactory.getDeserializer(
+          ConfigUtils.getIntermediateOutputValueClass(conf));
+      valDeserializer.open(valIn);
+    }
+    batch.getKey(index, keyIn);
+    batch.getValue(index, valIn);
+    key = keyDeserializer.deserialize(key);
+    value = valDeserializer.deserialize(value);
+    return partitioner.getPartition(key, value, numPartitions);
+  }
+}
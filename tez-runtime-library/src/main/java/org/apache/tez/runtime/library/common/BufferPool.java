@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.runtime.api.ObjectRegistry;
+import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Pool of the large buffers used by sorters and writers, shared by the tasks of a vertex running
+ * in a container. A buffer returned to the pool is handed out again when a buffer of the same size
+ * is asked for, which is the common case for consecutive tasks of a vertex in a reused container.
+ * The sizes of the buffers are still decided by the components, based on the memory assigned to
+ * them by the MemoryDistributor, so the pool does not change the memory accounting of a task.
+ *
+ * Unused buffers are not accounted for by the MemoryDistributor, so the pool holds on to them only
+ * while they may be reused. The pool is kept in the {@link ObjectRegistry} with a vertex
+ * life-cycle, so it is dropped with all its unused buffers when a container moves on to the tasks
+ * of another vertex. All unused buffers are also released to the garbage collector as soon as a
+ * buffer of a size which is not in the pool is asked for, i.e. before a task allocates buffers
+ * which differ from the ones of the previous task. The memory held by unused buffers is also
+ * bounded, the oldest buffers are released first when the bound would be exceeded.
+ */
+@Private
+public class BufferPool {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BufferPool.class);
+
+  private static final String REGISTRY_KEY = BufferPool.class.getName();
+  private static final BufferPool NO_POOLING = new BufferPool(0);
+
+  private final Deque<byte[]> idleBuffers = new ArrayDeque<byte[]>();
+  private long maxIdleSize;
+  private long idleSize = 0;
+
+  // Statistics
+  private long numAllocated = 0;
+  private long numReused = 0;
+  private long numEvicted = 0;
+
+  @VisibleForTesting
+  BufferPool(long maxIdleSize) {
+    this.maxIdleSize = maxIdleSize;
+  }
+
+  /**
+   * Returns the pool shared by the tasks of the current vertex running in this JVM. If pooling is
+   * disabled in the provided configuration, or there is no registry to keep the pool in, a pool
+   * which does not retain any buffers is returned.
+   */
+  public static BufferPool getSharedPool(Configuration conf, ObjectRegistry objectRegistry) {
+    if (objectRegistry == null
+        || !conf.getBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_BUFFER_POOL_ENABLED,
+        TezRuntimeConfiguration.TEZ_RUNTIME_BUFFER_POOL_ENABLED_DEFAULT)) {
+      return NO_POOLING;
+    }
+    float maxIdleFraction = conf.getFloat(
+        TezRuntimeConfiguration.TEZ_RUNTIME_BUFFER_POOL_MAX_IDLE_FRACTION,
+        TezRuntimeConfiguration.TEZ_RUNTIME_BUFFER_POOL_MAX_IDLE_FRACTION_DEFAULT);
+    Preconditions.checkArgument(maxIdleFraction >= 0 && maxIdleFraction <= 1,
+        TezRuntimeConfiguration.TEZ_RUNTIME_BUFFER_POOL_MAX_IDLE_FRACTION
+            + " should be between 0 and 1");
+    long maxIdleSize = (long) (Runtime.getRuntime().maxMemory() * maxIdleFraction);
+    BufferPool pool;
+    synchronized (BufferPool.class) {
+      pool = (BufferPool) objectRegistry.get(REGISTRY_KEY);
+      if (pool == null) {
+        pool = new BufferPool(maxIdleSize);
+        objectRegistry.cacheForVertex(REGISTRY_KEY, pool);
+        LOG.info("Created shared buffer pool: " + pool);
+      } else {
+        // Components of a vertex may be configured differently, the smallest bound applies
+        pool.limitMaxIdleSize(maxIdleSize);
+      }
+    }
+    return pool;
+  }
+
+  /**
+   * Returns a buffer of the requested size. The contents of the buffer are undefined.
+   */
+  public byte[] allocate(int size) {
+    Preconditions.checkArgument(size >= 0, "Invalid buffer size: " + size);
+    synchronized (this) {
+      Iterator<byte[]> iter = idleBuffers.iterator();
+      while (iter.hasNext()) {
+        byte[] buffer = iter.next();
+        if (buffer.length == size) {
+          iter.remove();
+          idleSize -= size;
+          numReused++;
+          return buffer;
+        }
+      }
+      // The unused buffers are not going to be asked for soon. Release all of them before the
+      // new buffer is allocated, since the memory is accounted to the new buffer only.
+      numEvicted += idleBuffers.size();
+      idleBuffers.clear();
+      idleSize = 0;
+      numAllocated++;
+    }
+    return new byte[size];
+  }
+
+  /**
+   * Returns a buffer to the pool. The caller must not access the buffer afterwards.
+   */
+  public synchronized void release(byte[] buffer) {
+    if (buffer == null) {
+      return;
+    }
+    if (buffer.length > maxIdleSize) {
+      numEvicted++;
+      return;
+    }
+    evict(buffer.length);
+    idleBuffers.addLast(buffer);
+    idleSize += buffer.length;
+  }
+
+  private void evict(long requiredSize) {
+    while (!idleBuffers.isEmpty() && idleSize + requiredSize > maxIdleSize) {
+      idleSize -= idleBuffers.removeFirst().length;
+      numEvicted++;
+    }
+  }
+
+  private synchronized void limitMaxIdleSize(long maxIdleSize) {
+    if (maxIdleSize < this.maxIdleSize) {
+      this.maxIdleSize = maxIdleSize;
+      evict(0);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized long getIdleSize() {
+    return idleSize;
+  }
+
+  @VisibleForTesting
+  synchronized long getNumReused() {
+    return numReused;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "maxIdleSize=" + maxIdleSize
+        + ", idleSize=" + idleSize
+        + ", numIdleBuffers=" + idleBuffers.size()
+        + ", numAllocated=" + numAllocated
+        + ", numReused=" + numReused
+        + ", numEvicted=" + numEvicted;
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.fs.Path;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Tracks the load on the local directories from the writes of the tasks running in a container,
+ * and picks the least loaded directory for new spill files.
+ *
+ * The load of a directory is the number of writes in progress on it, and the throughput of the
+ * recent writes to it. The throughput of a write is measured from the creation of the file to its
+ * close, so it includes the time taken to produce the data. Writes of the same kind are slower on
+ * a busy disk, which is what matters when comparing directories. Directories without any
+ * completed writes yet are assumed to be as fast as the fastest directory, so that they get used.
+ */
+@Private
+public class LocalDirLoadTracker {
+
+  // Weight of the latest write in the throughput of a directory
+  private static final double THROUGHPUT_SMOOTHING = 0.3;
+  // Smaller writes are dominated by the cost of creating the file
+  @VisibleForTesting
+  static final long MIN_BYTES_FOR_THROUGHPUT = 1024 * 1024;
+
+  private static final LocalDirLoadTracker SHARED_TRACKER = new LocalDirLoadTracker();
+
+  private final ConcurrentMap<String, DirLoad> dirLoads = new ConcurrentHashMap<String, DirLoad>();
+  private final AtomicInteger nextDir = new AtomicInteger();
+
+  @VisibleForTesting
+  LocalDirLoadTracker() {
+  }
+
+  /**
+   * Returns the tracker shared by the tasks running in this JVM.
+   */
+  public static LocalDirLoadTracker getSharedTracker() {
+    return SHARED_TRACKER;
+  }
+
+  /**
+   * Returns a path under the least loaded of the local directories which has the space required,
+   * or null if none of the directories is usable.
+   *
+   * @param pathStr the path relative to the local directory
+   * @param size the size of the file, or a negative value if it is not known
+   * @param localDirs the local directories to choose from
+   */
+  public Path getLocalPathForWrite(String pathStr, long size, String[] localDirs) {
+    if (localDirs == null || localDirs.length == 0) {
+      return null;
+    }
+    double maxThroughput = 1;
+    for (DirLoad load : dirLoads.values()) {
+      maxThroughput = Math.max(maxThroughput, load.throughput);
+    }
+    // Directories with the same load are used in turn
+    int start = (nextDir.getAndIncrement() & Integer.MAX_VALUE) % localDirs.length;
+    String bestDir = null;
+    double bestScore = Double.MAX_VALUE;
+    for (int i = 0; i < localDirs.length; ++i) {
+      String dir = getDirPath(localDirs[(start + i) % localDirs.length]);
+      File file = new File(dir);
+      if (!file.isDirectory() || (size > 0 && file.getUsableSpace() < size)) {
+        continue;
+      }
+      DirLoad load = getDirLoad(dir);
+      double throughput = load.throughput > 0 ? load.throughput : maxThroughput;
+      double score = (load.activeWrites.get() + 1) / throughput;
+      if (score < bestScore) {
+        bestScore = score;
+        bestDir = dir;
+      }
+    }
+    return bestDir == null ? null : new Path(bestDir, pathStr);
+  }
+
+  /**
+   * Records the start of a write to a file under one of the local directories.
+   *
+   * @return the load of the directory the file is in, to report the end of the write to, or null
+   * if the file is not under a tracked directory
+   */
+  public DirLoad writeStarted(Path path) {
+    String filePath = path.toUri().getPath();
+    for (DirLoad load : dirLoads.values()) {
+      if (filePath.startsWith(load.dir)) {
+        load.activeWrites.incrementAndGet();
+        return load;
+      }
+    }
+    return null;
+  }
+
+  private DirLoad getDirLoad(String dir) {
+    DirLoad load = dirLoads.get(dir);
+    if (load == null) {
+      load = new DirLoad(dir);
+      DirLoad existing = dirLoads.putIfAbsent(dir, load);
+      if (existing != null) {
+        load = existing;
+      }
+    }
+    return load;
+  }
+
+  private static String getDirPath(String localDir) {
+    String dir = new Path(localDir).toUri().getPath();
+    return dir.endsWith(Path.SEPARATOR) ? dir : dir + Path.SEPARATOR;
+  }
+
+  /**
+   * Load of a single local directory.
+   */
+  public static class DirLoad {
+    private final String dir;
+    private final AtomicInteger activeWrites = new AtomicInteger();
+    // Bytes per second
+    private volatile double throughput = 0;
+
+    DirLoad(String dir) {
+      this.dir = dir;
+    }
+
+    /**
+     * Records the end of a write started with {@link LocalDirLoadTracker#writeStarted(Path)}.
+     */
+    public void writeFinished(long bytes, long elapsedNanos) {
+      activeWrites.decrementAndGet();
+      if (bytes < MIN_BYTES_FOR_THROUGHPUT || elapsedNanos <= 0) {
+        return;
+      }
+      double sample = (double) bytes * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+      synchronized (this) {
+        throughput = throughput == 0 ? sample
+            : THROUGHPUT_SMOOTHING * sample + (1 - THROUGHPUT_SMOOTHING) * throughput;
+      }
+    }
+
+    @VisibleForTesting
+    int getActiveWrites() {
+      return activeWrites.get();
+    }
+
+    @VisibleForTesting
+    double getThroughput() {
+      return throughput;
+    }
+
+    @Override
+    public String toString() {
+      return "dir=" + dir + ", activeWrites=" + activeWrites.get()
+          + ", throughput=" + (long) throughput;
+    }
+  }
+}
@@ -37,6 +37,11 @@ public class MemoryUpdateCallbackHandler extends MemoryUpdateCallback {
     this.assignedMemory = assignedSize;
   }
 
+  @Override
+  public synchronized void memoryUpdated(long assignedSize) {
+    this.assignedMemory = assignedSize;
+  }
+
   public synchronized long getMemoryAssigned() {
     return this.assignedMemory;
   }
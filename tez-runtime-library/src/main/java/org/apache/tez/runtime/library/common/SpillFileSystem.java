@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FilterFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.io.nativeio.NativeIO;
+import org.apache.hadoop.util.Progressable;
+import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Local file system for spill files and intermediate merge outputs. Files are written with a
+ * large buffer, and files which are read back exactly once can be dropped from the OS page cache
+ * as they are written, so that spills do not evict the final outputs cached for the shuffle
+ * handler.
+ *
+ * Dropping is done the same way as the drop-behind of HDFS data nodes: writeback of each chunk
+ * written is started with sync_file_range, and the chunk before it, which has been written back
+ * by then, is dropped with posix_fadvise(DONTNEED). Both are no-ops without the Hadoop native
+ * library.
+ *
+ * If the local directories are picked by load, writes are reported to the
+ * {@link LocalDirLoadTracker}.
+ */
+@Private
+public class SpillFileSystem extends FilterFileSystem {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SpillFileSystem.class);
+
+  @VisibleForTesting
+  static final long DROP_BEHIND_CHUNK_BYTES = 8 * 1024 * 1024;
+
+  private final int bufferSize;
+  private final boolean dropBehind;
+  private final LocalDirLoadTracker loadTracker;
+
+  /**
+   * @param rawLocalFs the raw local file system to write to
+   * @param conf the configuration of the component
+   * @param readOnce whether the files will be read back exactly once. Files which may be served
+   *                 by the shuffle handler are never dropped from the page cache.
+   */
+  public SpillFileSystem(RawLocalFileSystem rawLocalFs, Configuration conf, boolean readOnce) {
+    super(rawLocalFs);
+    this.bufferSize = conf.getInt(TezRuntimeConfiguration.TEZ_RUNTIME_SPILL_BUFFER_BYTES,
+        TezRuntimeConfiguration.TEZ_RUNTIME_SPILL_BUFFER_BYTES_DEFAULT);
+    this.dropBehind = readOnce && conf.getBoolean(
+        TezRuntimeConfiguration.TEZ_RUNTIME_SPILL_DROP_BEHIND,
+        TezRuntimeConfiguration.TEZ_RUNTIME_SPILL_DROP_BEHIND_DEFAULT);
+    this.loadTracker = conf.getBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_LOCAL_DIRS_LOAD_AWARE,
+        TezRuntimeConfiguration.TEZ_RUNTIME_LOCAL_DIRS_LOAD_AWARE_DEFAULT)
+        ? LocalDirLoadTracker.getSharedTracker() : null;
+  }
+
+  @Override
+  public FSDataOutputStream create(Path f, FsPermission permission, boolean overwrite,
+      int bufferSize, short replication, long blockSize, Progressable progress)
+      throws IOException {
+    FSDataOutputStream out = fs.create(f, permission, overwrite,
+        Math.max(bufferSize, this.bufferSize), replication, blockSize, progress);
+    if (dropBehind && NativeIO.isAvailable()) {
+      out = createDropBehindStream(f, out);
+    }
+    if (loadTracker != null) {
+      LocalDirLoadTracker.DirLoad load = loadTracker.writeStarted(f);
+      if (load != null) {
+        out = new FSDataOutputStream(new LoadTrackingOutputStream(out, load), null);
+      }
+    }
+    return out;
+  }
+
+  private FSDataOutputStream createDropBehindStream(Path f, FSDataOutputStream out)
+      throws IOException {
+    // The page cache belongs to the file, so a separate descriptor can be used to manage it.
+    FileInputStream cacheIn;
+    try {
+      cacheIn = new FileInputStream(((RawLocalFileSystem) fs).pathToFile(f));
+    } catch (IOException e) {
+      out.close();
+      throw e;
+    }
+    // Statistics are counted by the underlying stream
+    return new FSDataOutputStream(new DropBehindOutputStream(out, cacheIn, f.toString()), null);
+  }
+
+  private static class LoadTrackingOutputStream extends OutputStream {
+    private final FSDataOutputStream out;
+    private final LocalDirLoadTracker.DirLoad load;
+    private final long startTime = System.nanoTime();
+    private boolean closed = false;
+
+    LoadTrackingOutputStream(FSDataOutputStream out, LocalDirLoadTracker.DirLoad load) {
+      this.out = out;
+      this.load = load;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        out.close();
+      } finally {
+        load.writeFinished(out.getPos(), System.nanoTime() - startTime);
+      }
+    }
+  }
+
+  private static class DropBehindOutputStream extends OutputStream {
+    private final FSDataOutputStream out;
+    private final FileInputStream cacheIn;
+    private final String identifier;
+    private long written = 0;
+    // Writeback has been started up to syncedOffset, and cached pages dropped up to droppedOffset.
+    private long syncedOffset = 0;
+    private long droppedOffset = 0;
+    private boolean failed = false;
+
+    DropBehindOutputStream(FSDataOutputStream out, FileInputStream cacheIn, String identifier) {
+      this.out = out;
+      this.cacheIn = cacheIn;
+      this.identifier = identifier;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      ++written;
+      if (written - syncedOffset >= DROP_BEHIND_CHUNK_BYTES) {
+        dropBehind();
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      written += len;
+      if (written - syncedOffset >= DROP_BEHIND_CHUNK_BYTES) {
+        dropBehind();
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        out.flush();
+        dropBehind();
+        // Pages still under writeback are kept by the kernel, everything else is dropped.
+        fadvise(0, written);
+      } finally {
+        try {
+          out.close();
+        } finally {
+          cacheIn.close();
+        }
+      }
+    }
+
+    private void dropBehind() throws IOException {
+      if (failed) {
+        syncedOffset = written;
+        return;
+      }
+      out.flush();
+      try {
+        FileDescriptor fd = cacheIn.getFD();
+        NativeIO.POSIX.syncFileRangeIfPossible(fd, syncedOffset, written - syncedOffset,
+            NativeIO.POSIX.SYNC_FILE_RANGE_WRITE);
+        if (syncedOffset > droppedOffset) {
+          NativeIO.POSIX.getCacheManipulator().posixFadviseIfPossible(identifier, fd,
+              droppedOffset, syncedOffset - droppedOffset, NativeIO.POSIX.POSIX_FADV_DONTNEED);
+          droppedOffset = syncedOffset;
+        }
+      } catch (IOException e) {
+        disable(e);
+      }
+      syncedOffset = written;
+    }
+
+    private void fadvise(long offset, long len) {
+      if (failed) {
+        return;
+      }
+      try {
+        NativeIO.POSIX.getCacheManipulator().posixFadviseIfPossible(identifier,
+            cacheIn.getFD(), offset, len, NativeIO.POSIX.POSIX_FADV_DONTNEED);
+      } catch (IOException e) {
+        disable(e);
+      }
+    }
+
+    // Managing the page cache is an optimization. Failures are not fatal to the spill.
+    private void disable(IOException e) {
+      failed = true;
+      LOG.warn("Unable to drop " + identifier + " from the page cache", e);
+    }
+  }
+}
@@ -27,10 +27,12 @@ import org.slf4j.LoggerFactory;
 import org.apache.hadoop.classification.InterfaceAudience.Private;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.serializer.Deserializer;
 import org.apache.hadoop.io.serializer.SerializationFactory;
 import org.apache.tez.common.counters.TezCounter;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
 import org.apache.tez.runtime.library.common.sort.impl.TezRawKeyValueIterator;
 
 import com.google.common.base.Preconditions;
@@ -64,6 +66,11 @@ public class ValuesIterator<KEY,VALUE> {
   private boolean isFirstRecord = true;
 
   private boolean completedProcessing;
+
+  // Used by readBatch, which compares serialized keys
+  private boolean batchMode = false;
+  private final DataOutputBuffer lastKey = new DataOutputBuffer();
+  private boolean hasLastKey = false;
   
   public ValuesIterator (TezRawKeyValueIterator in, 
                          RawComparator<KEY> comparator, 
@@ -91,6 +98,7 @@ public class ValuesIterator<KEY,VALUE> {
    * @throws IOException 
    */
   public boolean moveToNext() throws IOException {
+    Preconditions.checkState(!batchMode, "Cannot move to the next key after reading batches");
     if (isFirstRecord) {
       readNextKey();
       key = nextKey;
@@ -106,6 +114,52 @@ public class ValuesIterator<KEY,VALUE> {
     return more;
   }
 
+  /**
+   * Fills the batch with the next records, in their serialized form, marking the records which
+   * start a new key. Keys are compared in serialized form, so the records are never deserialized.
+   * Cannot be combined with moveToNext().
+   *
+   * @return true if any records were read, otherwise false.
+   * @throws IOException
+   */
+  public boolean readBatch(KeyValueBatch batch) throws IOException {
+    Preconditions.checkState(batchMode || isFirstRecord,
+        "Cannot read batches after moving to the next key");
+    batchMode = true;
+    batch.clear();
+    while (!batch.isFull() && in.next()) {
+      DataInputBuffer nextKeyBytes = in.getKey();
+      DataInputBuffer nextValueBytes = in.getValue();
+      int keyLength = nextKeyBytes.getLength() - nextKeyBytes.getPosition();
+      int index = batch.add(nextKeyBytes.getData(), nextKeyBytes.getPosition(), keyLength,
+          nextValueBytes.getData(), nextValueBytes.getPosition(),
+          nextValueBytes.getLength() - nextValueBytes.getPosition());
+      boolean newKey = !hasLastKey || (!in.isSameKey() && comparator.compare(
+          lastKey.getData(), 0, lastKey.getLength(),
+          nextKeyBytes.getData(), nextKeyBytes.getPosition(), keyLength) != 0);
+      if (newKey) {
+        batch.setNewKey(index);
+        // The iterator may reuse the buffer of the key
+        lastKey.reset();
+        lastKey.write(nextKeyBytes.getData(), nextKeyBytes.getPosition(), keyLength);
+        hasLastKey = true;
+        if (inputKeyCounter != null) {
+          inputKeyCounter.increment(1);
+        }
+        ++keyCtr;
+      }
+    }
+    if (inputValueCounter != null) {
+      inputValueCounter.increment(batch.size());
+    }
+    if (batch.size() == 0) {
+      hasCompletedProcessing();
+      completedProcessing = true;
+      return false;
+    }
+    return true;
+  }
+
   /** The current key. */
   public KEY getKey() { 
     return key; 
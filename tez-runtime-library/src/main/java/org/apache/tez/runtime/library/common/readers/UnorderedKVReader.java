@@ -33,6 +33,8 @@ import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.serializer.Deserializer;
 import org.apache.hadoop.io.serializer.SerializationFactory;
 import org.apache.tez.common.counters.TezCounter;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
+import org.apache.tez.runtime.library.api.KeyValueBatchReader;
 import org.apache.tez.runtime.library.api.KeyValueReader;
 import org.apache.tez.runtime.library.common.ConfigUtils;
 import org.apache.tez.runtime.library.common.shuffle.impl.ShuffleManager;
@@ -44,7 +46,7 @@ import org.apache.tez.runtime.library.common.shuffle.MemoryFetchedInput;
 
 @Unstable
 @Private
-public class UnorderedKVReader<K, V> extends KeyValueReader {
+public class UnorderedKVReader<K, V> extends KeyValueReader implements KeyValueBatchReader {
 
   private static final Logger LOG = LoggerFactory.getLogger(UnorderedKVReader.class);
   
@@ -132,12 +134,47 @@ public class UnorderedKVReader<K, V> extends KeyValueReader {
         }
         nextInputExists = moveToNextInput();
       }
+      completeReading();
+      return false;
+    }
+  }
+
+
+  @Override
+  public boolean next(KeyValueBatch batch) throws IOException {
+    batch.clear();
+    while (!batch.isFull()) {
+      if (readNextRawFromCurrentReader()) {
+        batch.add(keyIn.getData(), keyIn.getPosition(), keyIn.getLength() - keyIn.getPosition(),
+            valIn.getData(), valIn.getPosition(), valIn.getLength() - valIn.getPosition());
+      } else if (!moveToNextInput()) {
+        break;
+      }
+    }
+    if (batch.size() == 0) {
+      completeReading();
+      return false;
+    }
+    inputRecordCounter.increment(batch.size());
+    context.notifyProgress();
+    numRecordsRead += batch.size();
+    return true;
+  }
+
+  private void completeReading() {
+    if (!completedProcessing) {
       LOG.info("Num Records read: " + numRecordsRead);
       completedProcessing = true;
-      return false;
+      readCompleted();
     }
   }
 
+  /**
+   * Invoked once all the records have been read. None of the fetched data is held in memory
+   * anymore at this point.
+   */
+  protected void readCompleted() {
+  }
 
   @Override
   public Object getCurrentKey() throws IOException {
@@ -165,6 +202,20 @@ public class UnorderedKVReader<K, V> extends KeyValueReader {
    * @throws IOException
    */
   private boolean readNextFromCurrentReader() throws IOException {
+    if (readNextRawFromCurrentReader()) {
+      this.key = keyDeserializer.deserialize(this.key);
+      this.value = valDeserializer.deserialize(this.value);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Tries reading the next serialized key and value from the current reader, into keyIn and valIn.
+   * @return true if the current reader has more records
+   * @throws IOException
+   */
+  private boolean readNextRawFromCurrentReader() throws IOException {
     // Initial reader.
     if (this.currentReader == null) {
       return false;
@@ -172,8 +223,6 @@ public class UnorderedKVReader<K, V> extends KeyValueReader {
       boolean hasMore = this.currentReader.nextRawKey(keyIn);
       if (hasMore) {
         this.currentReader.nextRawValue(valIn);
-        this.key = keyDeserializer.deserialize(this.key);
-        this.value = valDeserializer.deserialize(this.value);
         return true;
       }
       return false;
@@ -487,6 +487,7 @@ public class Fetcher extends CallableWithNdc<FetchResult> {
   }
 
   private HostFetchResult setupConnection(Collection<InputAttemptIdentifier> attempts) {
+    long startNanos = System.nanoTime();
     try {
       StringBuilder baseURI = ShuffleUtils.constructBaseURIForShuffleHandler(host,
           port, partition, partitionCount, appId.toString(), dagIdentifier, httpConnectionParams.isSslShuffle());
@@ -529,6 +530,7 @@ public class Fetcher extends CallableWithNdc<FetchResult> {
       input = httpConnection.getInputStream();
       httpConnection.validate();
       //validateConnectionResponse(msgToEncode, encHash);
+      fetcherCallback.connectSucceeded(host, System.nanoTime() - startNanos);
     } catch (IOException e) {
       // ioErrs.increment(1);
       // If we got a read error at this stage, it implies there was a problem
@@ -30,4 +30,6 @@ public interface FetcherCallback {
   
   public void fetchFailed(String host, InputAttemptIdentifier srcAttemptIdentifier, boolean connectFailed);
 
+  public void connectSucceeded(String host, long connectNanos);
+
 }
@@ -83,6 +83,7 @@ import org.apache.tez.runtime.library.common.shuffle.InputHost;
 import org.apache.tez.runtime.library.common.shuffle.InputHost.PartitionToInputs;
 import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils;
 import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils.FetchStatsLogger;
+import org.apache.tez.util.LatencyHistogram;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
@@ -177,6 +178,11 @@ public class ShuffleManager implements FetcherCallback {
   private final int shufflePort;
 
   private final TezCounter shufflePhaseTime;
+
+  // Time taken to connect to hosts and to transfer inputs from them. Only recorded if latency
+  // histograms are enabled.
+  private final LatencyHistogram fetchConnectTime;
+  private final LatencyHistogram fetchTransferTime;
   private final TezCounter firstEventReceived;
   private final TezCounter lastEventReceived;
 
@@ -214,6 +220,13 @@ public class ShuffleManager implements FetcherCallback {
         TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_VERIFY_DISK_CHECKSUM_DEFAULT);
 
     this.shufflePhaseTime = inputContext.getCounters().findCounter(TaskCounter.SHUFFLE_PHASE_TIME);
+    boolean latencyHistogramsEnabled = conf.getBoolean(
+        TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED,
+        TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED_DEFAULT);
+    this.fetchConnectTime = LatencyHistogram.create("FETCH_CONNECT", latencyHistogramsEnabled,
+        inputContext.getCounters());
+    this.fetchTransferTime = LatencyHistogram.create("FETCH_TRANSFER", latencyHistogramsEnabled,
+        inputContext.getCounters());
     this.firstEventReceived = inputContext.getCounters().findCounter(TaskCounter.FIRST_EVENT_RECEIVED);
     this.lastEventReceived = inputContext.getCounters().findCounter(TaskCounter.LAST_EVENT_RECEIVED);
     this.compositeFetch = ShuffleUtils.isTezShuffleHandler(conf);
@@ -645,6 +658,9 @@ public class ShuffleManager implements FetcherCallback {
       FetchedInput fetchedInput, long fetchedBytes, long decompressedLength, long copyDuration)
       throws IOException {
     int inputIdentifier = srcAttemptIdentifier.getInputIdentifier();
+    if (fetchedInput.getType() != Type.DISK_DIRECT) {
+      fetchTransferTime.record(TimeUnit.MILLISECONDS.toNanos(copyDuration));
+    }
 
     // Count irrespective of whether this is a copy of an already fetched input
     lock.lock();
@@ -788,6 +804,11 @@ public class ShuffleManager implements FetcherCallback {
     inputContext.reportFailure(TaskFailureType.NON_FATAL, exception, message);
   }
 
+  @Override
+  public void connectSucceeded(String host, long connectNanos) {
+    fetchConnectTime.record(connectNanos);
+  }
+
   @Override
   public void fetchFailed(String host,
       InputAttemptIdentifier srcAttemptIdentifier, boolean connectFailed) {
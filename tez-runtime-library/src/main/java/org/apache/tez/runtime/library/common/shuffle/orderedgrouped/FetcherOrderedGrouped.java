@@ -334,6 +334,7 @@ class FetcherOrderedGrouped extends CallableWithNdc<Void> {
   boolean setupConnection(MapHost host, Collection<InputAttemptIdentifier> attempts)
       throws IOException {
     boolean connectSucceeded = false;
+    long startNanos = System.nanoTime();
     try {
       StringBuilder baseURI = ShuffleUtils.constructBaseURIForShuffleHandler(host.getHost(),
           host.getPort(), host.getPartitionId(), host.getPartitionCount(), applicationId, dagId, sslShuffle);
@@ -350,6 +351,7 @@ class FetcherOrderedGrouped extends CallableWithNdc<Void> {
       }
       input = httpConnection.getInputStream();
       httpConnection.validate();
+      scheduler.connectSucceeded(host, System.nanoTime() - startNanos);
       return true;
     } catch (IOException | InterruptedException ie) {
       if (ie instanceof InterruptedException) {
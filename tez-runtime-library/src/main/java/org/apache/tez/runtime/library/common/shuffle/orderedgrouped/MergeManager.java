@@ -30,6 +30,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocalDirAllocator;
 import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
 import org.apache.hadoop.io.BoundedByteArrayOutputStream;
 import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.FileChunk;
@@ -46,6 +47,7 @@ import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.apache.tez.runtime.library.common.ConfigUtils;
 import org.apache.tez.runtime.library.common.Constants;
 import org.apache.tez.runtime.library.common.InputAttemptIdentifier;
+import org.apache.tez.runtime.library.common.SpillFileSystem;
 import org.apache.tez.runtime.library.common.combine.Combiner;
 import org.apache.tez.runtime.library.common.sort.impl.IFile;
 import org.apache.tez.runtime.library.common.sort.impl.IFile.Writer;
@@ -54,6 +56,7 @@ import org.apache.tez.runtime.library.common.sort.impl.TezMerger.DiskSegment;
 import org.apache.tez.runtime.library.common.sort.impl.TezMerger.Segment;
 import org.apache.tez.runtime.library.common.sort.impl.TezRawKeyValueIterator;
 import org.apache.tez.runtime.library.common.task.local.output.TezTaskOutputFiles;
+import org.apache.tez.util.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -84,6 +87,8 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
   private final Configuration conf;
   private final FileSystem localFS;
   private final FileSystem rfs;
+  // Merge outputs are read back exactly once, by a later merge
+  private final FileSystem spillFs;
   private final LocalDirAllocator localDirAllocator;
   
   private final  TezTaskOutputFiles mapOutputFile;
@@ -129,6 +134,9 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
   
   private final InputContext inputContext;
 
+  // Time taken by merges. Only recorded if latency histograms are enabled.
+  final LatencyHistogram mergeTime;
+
   private final TezCounter spilledRecordsCounter;
 
   private final TezCounter reduceCombineInputCounter;
@@ -176,6 +184,10 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
                       int ifileReadAheadLength) {
     this.inputContext = inputContext;
     this.conf = conf;
+    this.mergeTime = LatencyHistogram.create("MERGE",
+        conf.getBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED,
+            TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED_DEFAULT),
+        inputContext.getCounters());
     this.localDirAllocator = localDirAllocator;
     this.exceptionReporter = exceptionReporter;
     this.initialMemoryAvailable = initialMemoryAvailable;
@@ -191,6 +203,7 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
 
     this.localFS = localFS;
     this.rfs = ((LocalFileSystem)localFS).getRaw();
+    this.spillFs = new SpillFileSystem((RawLocalFileSystem) rfs, conf, true);
     
     this.numDiskToDiskMerges = inputContext.getCounters().findCounter(TaskCounter.NUM_DISK_TO_DISK_MERGES);
     this.numMemToDiskMerges = inputContext.getCounters().findCounter(TaskCounter.NUM_MEM_TO_DISK_MERGES);
@@ -653,7 +666,9 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
       // shuffle exception / error.
       if (tryFinalMerge) {
         try {
+          long startNanos = mergeTime.start();
           TezRawKeyValueIterator kvIter = finalMerge(conf, rfs, memory, disk);
+          mergeTime.recordSince(startNanos);
           this.finalMergeComplete = true;
           return kvIter;
         } catch (InterruptedException e) {
@@ -873,7 +888,7 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
       long outFileLen = 0;
       try {
         writer =
-            new Writer(conf, rfs, outputPath,
+            new Writer(conf, spillFs, outputPath,
                 (Class)ConfigUtils.getIntermediateInputKeyClass(conf),
                 (Class)ConfigUtils.getIntermediateInputValueClass(conf),
                 codec, null, null);
@@ -1015,7 +1030,7 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
       outputPath = outputPath.suffix(Constants.MERGED_OUTPUT_PREFIX + mergeFileSequenceId.getAndIncrement());
 
       Writer writer =
-        new Writer(conf, rfs, outputPath, 
+        new Writer(conf, spillFs, outputPath, 
                         (Class)ConfigUtils.getIntermediateInputKeyClass(conf), 
                         (Class)ConfigUtils.getIntermediateInputValueClass(conf),
                         codec, null, null);
@@ -1188,7 +1203,7 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
         final TezRawKeyValueIterator rIter = TezMerger.merge(job, fs, keyClass, valueClass,
             memDiskSegments, numMemDiskSegments, tmpDir, comparator, progressable,
             spilledRecordsCounter, null, additionalBytesRead, null);
-        final Writer writer = new Writer(job, fs, outputPath,
+        final Writer writer = new Writer(job, spillFs, outputPath,
             keyClass, valueClass, codec, null, null);
         try {
           TezMerger.writeFile(rIter, writer, progressable, TezRuntimeConfiguration.TEZ_RUNTIME_RECORDS_BEFORE_PROGRESS_DEFAULT);
@@ -96,7 +96,9 @@ abstract class MergeThread<T> extends Thread {
         }
 
         // Merge
+        long startNanos = manager.mergeTime.start();
         merge(inputs);
+        manager.mergeTime.recordSince(startNanos);
       } catch (InterruptedException ie) {
         // Meant to handle a shutdown of the entire fetch/merge process
         Thread.currentThread().interrupt();
@@ -80,6 +80,7 @@ import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils.FetchStatsLogg
 import org.apache.tez.runtime.library.common.shuffle.HostPort;
 import org.apache.tez.runtime.library.common.shuffle.orderedgrouped.MapHost.HostPortPartition;
 import org.apache.tez.runtime.library.common.shuffle.orderedgrouped.MapOutput.Type;
+import org.apache.tez.util.LatencyHistogram;
 
 import com.google.common.collect.Lists;
 
@@ -229,6 +230,11 @@ class ShuffleScheduler {
   private final TezCounter connectionErrsCounter;
   private final TezCounter wrongReduceErrsCounter;
 
+  // Time taken to connect to hosts and to transfer inputs from them. Only recorded if latency
+  // histograms are enabled.
+  private final LatencyHistogram fetchConnectTime;
+  private final LatencyHistogram fetchTransferTime;
+
   private final int maxTaskOutputAtOnce;
   private final int maxFetchFailuresBeforeReporting;
   private final boolean reportReadErrorImmediately;
@@ -341,6 +347,13 @@ class ShuffleScheduler {
     this.shufflePort = ShuffleUtils.deserializeShuffleProviderMetaData(shuffleMetadata);
 
     this.referee = new Referee();
+    boolean latencyHistogramsEnabled = conf.getBoolean(
+        TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED,
+        TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED_DEFAULT);
+    this.fetchConnectTime = LatencyHistogram.create("FETCH_CONNECT", latencyHistogramsEnabled,
+        inputContext.getCounters());
+    this.fetchTransferTime = LatencyHistogram.create("FETCH_TRANSFER", latencyHistogramsEnabled,
+        inputContext.getCounters());
     // Counters used by the ShuffleScheduler
     this.shuffledInputsCounter = inputContext.getCounters().findCounter(
         TaskCounter.NUM_SHUFFLED_INPUTS);
@@ -566,6 +579,13 @@ class ShuffleScheduler {
     }
   }
 
+  /**
+   * Called by fetchers once a connection to a host has been established and validated.
+   */
+  public void connectSucceeded(MapHost host, long connectNanos) {
+    fetchConnectTime.record(connectNanos);
+  }
+
   public synchronized void copySucceeded(InputAttemptIdentifier srcAttemptIdentifier,
                                          MapHost host,
                                          long bytesCompressed,
@@ -576,6 +596,9 @@ class ShuffleScheduler {
                                          ) throws IOException {
 
     inputContext.notifyProgress();
+    if (!isLocalFetch) {
+      fetchTransferTime.record(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
     if (!isInputFinished(srcAttemptIdentifier.getInputIdentifier())) {
       if (!isLocalFetch) {
         /**
@@ -37,6 +37,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.Compressor;
@@ -51,15 +52,20 @@ import org.apache.tez.common.TezRuntimeFrameworkConfigs;
 import org.apache.tez.common.counters.TaskCounter;
 import org.apache.tez.common.counters.TezCounter;
 import org.apache.tez.runtime.api.OutputContext;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
 import org.apache.tez.runtime.library.api.Partitioner;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration.ReportPartitionStats;
+import org.apache.tez.runtime.library.common.BatchPartitioner;
+import org.apache.tez.runtime.library.common.BufferPool;
 import org.apache.tez.runtime.library.common.ConfigUtils;
+import org.apache.tez.runtime.library.common.SpillFileSystem;
 import org.apache.tez.runtime.library.common.TezRuntimeUtils;
 import org.apache.tez.runtime.library.common.combine.Combiner;
 import org.apache.tez.runtime.library.common.shuffle.orderedgrouped.ShuffleHeader;
 import org.apache.tez.runtime.library.common.sort.impl.IFile.Writer;
 import org.apache.tez.runtime.library.common.task.local.output.TezTaskOutput;
+import org.apache.tez.util.LatencyHistogram;
 
 import com.google.common.base.Preconditions;
 
@@ -77,6 +83,15 @@ public abstract class ExternalSorter {
 
   public abstract void flush() throws IOException;
 
+  /**
+   * Informs the sorter that the memory assigned to it has changed while it is running. Sorters
+   * which size their buffers upfront ignore this.
+   *
+   * @param assignedSize the memory now assigned to the sorter
+   */
+  public void memoryUpdated(long assignedSize) {
+  }
+
   public abstract void write(Object key, Object value) throws IOException;
 
   public void write(Object key, Iterable<Object> values) throws IOException {
@@ -87,6 +102,42 @@ public abstract class ExternalSorter {
     }
   }
 
+  /**
+   * Writes the records of a batch, which are already serialized.
+   */
+  public void write(KeyValueBatch batch) throws IOException {
+    if (batchPartitioner == null) {
+      batchPartitioner = new BatchPartitioner(conf, partitioner, partitions);
+    }
+    for (int i = 0; i < batch.size(); ++i) {
+      batch.getKey(i, batchKey);
+      batch.getValue(i, batchValue);
+      collectSerialized(batchKey, batchValue, batchPartitioner.getPartition(batch, i));
+    }
+  }
+
+  /**
+   * Adds a record in the serialized form of the key and value classes to the sorter.
+   */
+  protected abstract void collectSerialized(DataInputBuffer key, DataInputBuffer value,
+      int partition) throws IOException;
+
+  /**
+   * Appends a record which did not fit in the sort buffer.
+   *
+   * @param serialized whether the key and value are the {@link DataInputBuffer}s passed to
+   *          {@link #collectSerialized(DataInputBuffer, DataInputBuffer, int)}, rather than
+   *          objects of the key and value classes
+   */
+  protected static void appendRecord(Writer writer, Object key, Object value,
+      boolean serialized) throws IOException {
+    if (serialized) {
+      writer.append((DataInputBuffer) key, (DataInputBuffer) value);
+    } else {
+      writer.append(key, value);
+    }
+  }
+
   protected final Progressable progressable = new Progressable() {
     @Override
     public void progress() {
@@ -99,6 +150,13 @@ public abstract class ExternalSorter {
   protected final Partitioner partitioner;
   protected final Configuration conf;
   protected final FileSystem rfs;
+  // Spills and outputs are written with a large buffer. Spills which are merged into the final
+  // output are read exactly once, and may be dropped from the page cache as they are written.
+  private final FileSystem spillFs;
+  private final FileSystem mergedSpillFs;
+  private BatchPartitioner batchPartitioner;
+  private final DataInputBuffer batchKey = new DataInputBuffer();
+  private final DataInputBuffer batchValue = new DataInputBuffer();
   protected final TezTaskOutput mapOutputFile;
   protected final int partitions;
   protected final Class keyClass;
@@ -116,6 +174,13 @@ public abstract class ExternalSorter {
 
   protected final IndexedSorter sorter;
 
+  // Source of the sort buffers, shared with other tasks in the container if pooling is enabled
+  protected final BufferPool bufferPool;
+
+  // Time taken by sorts and spills. Only recorded if latency histograms are enabled.
+  protected final LatencyHistogram sortTime;
+  protected final LatencyHistogram spillTime;
+
   // Compression for map-outputs
   protected final CompressionCodec codec;
 
@@ -186,6 +251,14 @@ public abstract class ExternalSorter {
     int assignedMb = (int) (initialMemoryAvailable >> 20);
     //Let the overflow checks happen in appropriate sorter impls
     this.availableMemoryMb = assignedMb;
+    this.bufferPool = BufferPool.getSharedPool(this.conf, outputContext.getObjectRegistry());
+    boolean latencyHistogramsEnabled = this.conf.getBoolean(
+        TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED,
+        TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED_DEFAULT);
+    this.sortTime = LatencyHistogram.create("SORT", latencyHistogramsEnabled,
+        outputContext.getCounters());
+    this.spillTime = LatencyHistogram.create("SPILL", latencyHistogramsEnabled,
+        outputContext.getCounters());
 
     // sorter
     sorter = ReflectionUtils.newInstance(this.conf.getClass(
@@ -271,11 +344,30 @@ public abstract class ExternalSorter {
     this.finalMergeEnabled = conf.getBoolean(
         TezRuntimeConfiguration.TEZ_RUNTIME_ENABLE_FINAL_MERGE_IN_OUTPUT,
         TezRuntimeConfiguration.TEZ_RUNTIME_ENABLE_FINAL_MERGE_IN_OUTPUT_DEFAULT);
+    this.spillFs = new SpillFileSystem((RawLocalFileSystem) rfs, this.conf, false);
+    this.mergedSpillFs = new SpillFileSystem((RawLocalFileSystem) rfs, this.conf,
+        finalMergeEnabled);
     this.sendEmptyPartitionDetails = conf.getBoolean(
         TezRuntimeConfiguration.TEZ_RUNTIME_EMPTY_PARTITION_INFO_VIA_EVENTS_ENABLED,
         TezRuntimeConfiguration.TEZ_RUNTIME_EMPTY_PARTITION_INFO_VIA_EVENTS_ENABLED_DEFAULT);
   }
 
+  /**
+   * Returns the file system to create the given spill with. With the final merge enabled, all
+   * spills but the first are merged into the final output. The first spill becomes the final
+   * output, served by the shuffle handler, if there is no other spill.
+   */
+  protected FileSystem getSpillFileSystem(int spillNumber) {
+    return spillNumber > 0 ? mergedSpillFs : spillFs;
+  }
+
+  /**
+   * Returns the file system to create the final output with.
+   */
+  protected FileSystem getOutputFileSystem() {
+    return spillFs;
+  }
+
   @VisibleForTesting
   public boolean isFinalMergeEnabled() {
     return finalMergeEnabled;
@@ -31,6 +31,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.Deflater;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -52,6 +53,8 @@ import org.apache.tez.common.io.NonSyncDataOutputStream;
 import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.library.common.comparator.ProxyComparator;
 import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.serializer.Deserializer;
+import org.apache.hadoop.io.serializer.SerializationFactory;
 import org.apache.hadoop.util.IndexedSortable;
 import org.apache.hadoop.util.IndexedSorter;
 import org.apache.hadoop.util.Progress;
@@ -80,6 +83,9 @@ public class PipelinedSorter extends ExternalSorter {
 
   private final static int APPROX_HEADER_LENGTH = 150;
 
+  // Spills caused by running out of memory, after which additional memory is requested
+  private static final int MEMORY_FULL_SPILLS_BEFORE_REQUEST = 2;
+
   private final int partitionBits;
   
   private static final int PARTITION = 0;        // partition offset in acct
@@ -91,11 +97,15 @@ public class PipelinedSorter extends ExternalSorter {
 
   private final int minSpillsForCombine;
   private final ProxyComparator hasher;
+  // Deserializes the keys written by collectSerialized, to find their proxy
+  private Deserializer proxyKeyDeserializer;
+  private final DataInputBuffer proxyKeyIn = new DataInputBuffer();
+  private Object proxyKey;
   // SortSpans  
   private SortSpan span;
 
   //total memory capacity allocated to sorter
-  private final long capacity;
+  private long capacity;
 
   //track buffer overflow recursively in all buffers
   private int bufferOverflowRecursion;
@@ -113,18 +123,25 @@ public class PipelinedSorter extends ExternalSorter {
   //Maintain a list of ByteBuffers
   @VisibleForTesting
   final List<ByteBuffer> buffers;
-  final int maxNumberOfBlocks;
+  int maxNumberOfBlocks;
   private int bufferIndex = -1;
   private final int MIN_BLOCK_SIZE;
   private final boolean lazyAllocateMem;
   private final Deflater deflater;
   private final String auxiliaryService;
 
+  // Memory granted in addition to the initial memory while the sorter is running
+  private final long initialMemoryAssigned;
+  private final AtomicLong additionalMemoryGranted = new AtomicLong(0);
+  private long additionalMemoryUsed = 0;
+  private int numMemoryFullSpills = 0;
+
   // TODO Set additional countesr - total bytes written, spills etc.
 
   public PipelinedSorter(OutputContext outputContext, Configuration conf, int numOutputs,
       long initialMemoryAvailable) throws IOException {
     super(outputContext, conf, numOutputs, initialMemoryAvailable);
+    this.initialMemoryAssigned = initialMemoryAvailable;
 
     lazyAllocateMem = this.conf.getBoolean(TezRuntimeConfiguration
         .TEZ_RUNTIME_PIPELINED_SORTER_LAZY_ALLOCATE_MEMORY, TezRuntimeConfiguration
@@ -236,6 +253,9 @@ public class PipelinedSorter extends ExternalSorter {
   }
 
   ByteBuffer allocateSpace() {
+    if (currentAllocatableMemory <= 0) {
+      addGrantedMemory();
+    }
     if (currentAllocatableMemory <= 0) {
       //No space available.
       return null;
@@ -244,7 +264,7 @@ public class PipelinedSorter extends ExternalSorter {
     int size = computeBlockSize(currentAllocatableMemory, availableMemoryMb << 20);
     currentAllocatableMemory -= size;
     int sizeWithoutMeta = (size) - (size % METASIZE);
-    ByteBuffer space = ByteBuffer.allocate(sizeWithoutMeta);
+    ByteBuffer space = ByteBuffer.wrap(bufferPool.allocate(sizeWithoutMeta));
 
     buffers.add(space);
     bufferIndex++;
@@ -263,6 +283,34 @@ public class PipelinedSorter extends ExternalSorter {
   }
 
 
+  /**
+   * Makes the memory granted since the last call available to allocate new blocks. Only done
+   * once the allocatable memory has been used up, so that the blocks are sized the same way as
+   * the blocks of the initial memory.
+   */
+  private void addGrantedMemory() {
+    long granted = additionalMemoryGranted.get() - additionalMemoryUsed;
+    if (granted <= 0) {
+      return;
+    }
+    additionalMemoryUsed += granted;
+    currentAllocatableMemory = granted;
+    long availableMem = granted;
+    while (availableMem > 0) {
+      long size = Math.min(availableMem, computeBlockSize(availableMem, availableMemoryMb << 20));
+      capacity += size - (size % METASIZE);
+      availableMem -= size;
+      maxNumberOfBlocks++;
+    }
+    LOG.info(outputContext.getDestinationVertexName() + ": Using additional memory=" + granted
+        + ", #blocks=" + maxNumberOfBlocks + ", capacity=" + capacity);
+  }
+
+  @Override
+  public void memoryUpdated(long assignedSize) {
+    additionalMemoryGranted.set(Math.max(0, assignedSize - initialMemoryAssigned));
+  }
+
   @VisibleForTesting
   int computeBlockSize(long availableMem, long maxAllocatedMemory) {
     int maxBlockSize = 0;
@@ -328,6 +376,13 @@ public class PipelinedSorter extends ExternalSorter {
       if (pipelinedShuffle && ret) {
         sendPipelinedShuffleEvents();
       }
+      if (ret && ++numMemoryFullSpills == MEMORY_FULL_SPILLS_BEFORE_REQUEST) {
+        // Spilling repeatedly, ask for the memory released by other components of the task.
+        // Only has an effect when dynamic memory distribution is enabled.
+        LOG.info(outputContext.getDestinationVertexName() + ": Requesting additional memory="
+            + initialMemoryAssigned + " after " + numMemoryFullSpills + " spills");
+        outputContext.requestAdditionalMemory(initialMemoryAssigned);
+      }
       //safe to reset bufferIndex to 0;
       bufferIndex = 0;
       int items = 1024*1024;
@@ -402,7 +457,7 @@ public class PipelinedSorter extends ExternalSorter {
     if (span.kvmeta.remaining() < METASIZE) {
       this.sort();
       if (span.length() == 0) {
-        spillSingleRecord(key, value, partition);
+        spillSingleRecord(key, value, partition, false);
         return;
       }
     }
@@ -420,7 +475,7 @@ public class PipelinedSorter extends ExternalSorter {
       this.sort();
       if (span.length() == 0 || bufferOverflowRecursion > buffers.size()) {
         // spill the current key value pair
-        spillSingleRecord(key, value, partition);
+        spillSingleRecord(key, value, partition, false);
         bufferOverflowRecursion = 0;
         return;
       }
@@ -434,13 +489,67 @@ public class PipelinedSorter extends ExternalSorter {
       bufferOverflowRecursion--;
     }
 
-    int prefix = 0;
+    addMetadata(hasher != null ? hasher.getProxy(key) : 0, partition, keystart, valstart, valend);
+  }
+
+  @Override
+  protected synchronized void collectSerialized(DataInputBuffer key, DataInputBuffer value,
+      final int partition) throws IOException {
+    if (partition < 0 || partition >= partitions) {
+      throw new IOException("Illegal partition (" + partition + ")");
+    }
+    if (span.kvmeta.remaining() < METASIZE) {
+      this.sort();
+      if (span.length() == 0) {
+        spillSingleRecord(key, value, partition, true);
+        return;
+      }
+    }
+    int keystart = span.kvbuffer.position();
+    int valstart = -1;
+    int valend = -1;
+    try {
+      span.kvbuffer.put(key.getData(), key.getPosition(), key.getLength() - key.getPosition());
+      valstart = span.kvbuffer.position();
+      span.kvbuffer.put(value.getData(), value.getPosition(),
+          value.getLength() - value.getPosition());
+      valend = span.kvbuffer.position();
+    } catch(BufferOverflowException overflow) {
+      // restore limit
+      span.kvbuffer.position(keystart);
+      this.sort();
+      if (span.length() == 0 || bufferOverflowRecursion > buffers.size()) {
+        // spill the current key value pair
+        spillSingleRecord(key, value, partition, true);
+        bufferOverflowRecursion = 0;
+        return;
+      }
+      bufferOverflowRecursion++;
+      // try again
+      this.collectSerialized(key, value, partition);
+      return;
+    }
+
+    if (bufferOverflowRecursion > 0) {
+      bufferOverflowRecursion--;
+    }
 
-    if(hasher != null) {
-      prefix = hasher.getProxy(key);
+    int proxy = 0;
+    if (hasher != null) {
+      // The proxy is computed from the key object, so that the order matches collect()
+      if (proxyKeyDeserializer == null) {
+        proxyKeyDeserializer = new SerializationFactory(conf).getDeserializer(keyClass);
+        proxyKeyDeserializer.open(proxyKeyIn);
+      }
+      proxyKeyIn.reset(key.getData(), key.getPosition(), key.getLength() - key.getPosition());
+      proxyKey = proxyKeyDeserializer.deserialize(proxyKey);
+      proxy = hasher.getProxy(proxyKey);
     }
+    addMetadata(proxy, partition, keystart, valstart, valend);
+  }
 
-    prefix = (partition << (32 - partitionBits)) | (prefix >>> partitionBits);
+  private void addMetadata(int proxy, int partition, int keystart, int valstart, int valend) {
+    int prefix = (partition << (32 - partitionBits)) | (proxy >>> partitionBits);
 
     /* maintain order as in PARTITION, KEYSTART, VALSTART, VALLEN */
     span.kvmeta.put(prefix);
@@ -470,7 +579,7 @@ public class PipelinedSorter extends ExternalSorter {
   // it is guaranteed that when spillSingleRecord is called, there is
   // no merger spans queued in executor.
   private void spillSingleRecord(final Object key, final Object value,
-          int partition) throws IOException {
+          int partition, boolean serialized) throws IOException {
     final TezSpillRecord spillRec = new TezSpillRecord(partitions);
     // getSpillFileForWrite with size -1 as the serialized size of KV pair is still unknown
     final Path filename = mapOutputFile.getSpillFileForWrite(numSpills, -1);
@@ -478,7 +587,7 @@ public class PipelinedSorter extends ExternalSorter {
         mapOutputFile.getSpillIndexFileForWrite(numSpills, partitions
             * MAP_OUTPUT_INDEX_RECORD_LENGTH);
     spillFilePaths.put(numSpills, filename);
-    FSDataOutputStream out = rfs.create(filename, true, 4096);
+    FSDataOutputStream out = getSpillFileSystem(numSpills).create(filename, true, 4096);
 
     try {
       LOG.info(outputContext.getDestinationVertexName() + ": Spilling to " + filename.toString() +
@@ -497,7 +606,7 @@ public class PipelinedSorter extends ExternalSorter {
           // we need not check for combiner since its a single record
           if (i == partition) {
             final long recordStart = out.getPos();
-            writer.append(key, value);
+            appendRecord(writer, key, value, serialized);
             mapOutputRecordCounter.increment(1);
             mapOutputByteCounter.increment(out.getPos() - recordStart);
           }
@@ -556,6 +665,7 @@ public class PipelinedSorter extends ExternalSorter {
         throw new IOInterruptedException(outputContext.getDestinationVertexName() + ": Interrupted while waiting for mergers to complete", e);
       }
 
+      long startNanos = spillTime.start();
       // create spill file
       final long size = capacity +
           + (partitions * APPROX_HEADER_LENGTH);
@@ -563,7 +673,7 @@ public class PipelinedSorter extends ExternalSorter {
       final Path filename =
         mapOutputFile.getSpillFileForWrite(numSpills, size);
       spillFilePaths.put(numSpills, filename);
-      out = rfs.create(filename, true, 4096);
+      out = getSpillFileSystem(numSpills).create(filename, true, 4096);
       LOG.info(outputContext.getDestinationVertexName() + ": Spilling to " + filename.toString());
       for (int i = 0; i < partitions; ++i) {
         if (isThreadInterrupted()) {
@@ -619,6 +729,7 @@ public class PipelinedSorter extends ExternalSorter {
         //No final merge. Set the number of files offered via shuffle-handler
         numShuffleChunks.setValue(numSpills);
       }
+      spillTime.recordSince(startNanos);
       return true;
     } finally {
       if (out != null) {
@@ -670,6 +781,9 @@ public class PipelinedSorter extends ExternalSorter {
       sortmaster.shutdown();
 
       //safe to clean up
+      for (ByteBuffer buffer : buffers) {
+        bufferPool.release(buffer.array());
+      }
       buffers.clear();
 
 
@@ -748,7 +862,7 @@ public class PipelinedSorter extends ExternalSorter {
                 + finalIndexFile);
       }
       //The output stream for the final single output file
-      FSDataOutputStream finalOut = rfs.create(finalOutputFile, true, 4096);
+      FSDataOutputStream finalOut = getOutputFileSystem().create(finalOutputFile, true, 4096);
 
       final TezSpillRecord spillRec = new TezSpillRecord(partitions);
 
@@ -935,9 +1049,11 @@ public class PipelinedSorter extends ExternalSorter {
 
     public SpanIterator sort(IndexedSorter sorter) {
       long start = System.currentTimeMillis();
+      long startNanos = sortTime.start();
       if(length() > 1) {
         sorter.sort(this, 0, length(), progressable);
       }
+      sortTime.recordSince(startNanos);
       LOG.info(outputContext.getDestinationVertexName() + ": " + "done sorting span=" + index + ", length=" + length() + ", "
           + "time=" + (System.currentTimeMillis() - start));
       return new SpanIterator((SortSpan)this);
@@ -92,6 +92,7 @@ public final class DefaultSorter extends ExternalSorter implements IndexedSortab
                           // reading at the end of the buffer
 
   private byte[] kvbuffer;        // main output buffer
+  private boolean flushDone = false;
   private final byte[] b0 = new byte[0];
 
   protected static final int VALSTART = 0;         // val offset in acct
@@ -161,7 +162,7 @@ public final class DefaultSorter extends ExternalSorter implements IndexedSortab
     // buffers and accounting
     int maxMemUsage = sortmb << 20;
     maxMemUsage -= maxMemUsage % METASIZE;
-    kvbuffer = new byte[maxMemUsage];
+    kvbuffer = bufferPool.allocate(maxMemUsage);
     bufvoid = kvbuffer.length;
     kvmeta = ByteBuffer.wrap(kvbuffer)
        .order(ByteOrder.nativeOrder())
@@ -261,6 +262,74 @@ public final class DefaultSorter extends ExternalSorter implements IndexedSortab
       throw new IOException("Illegal partition for " + key + " (" +
           partition + ")" + ", TotalPartitions: " + partitions);
     }
+    reserveMetadata();
+
+    try {
+      // serialize key bytes into buffer
+      int keystart = bufindex;
+      keySerializer.serialize(key);
+      if (bufindex < keystart) {
+        // wrapped the key; must make contiguous
+        bb.shiftBufferedKey();
+        keystart = 0;
+      }
+      // serialize value bytes into buffer
+      final int valstart = bufindex;
+      valSerializer.serialize(value);
+      // It's possible for records to have zero length, i.e. the serializer
+      // will perform no writes. To ensure that the boundary conditions are
+      // checked and that the kvindex invariant is maintained, perform a
+      // zero-length write into the buffer. The logic monitoring this could be
+      // moved into collect, but this is cleaner and inexpensive. For now, it
+      // is acceptable.
+      bb.write(b0, 0, 0);
+
+      // the record must be marked after the preceding write, as the metadata
+      // for this record are not yet written
+      int valend = bb.markRecord();
+      addMetadata(partition, keystart, valstart, valend);
+    } catch (MapBufferTooSmallException e) {
+      LOG.info(outputContext.getDestinationVertexName() + ": Record too large for in-memory buffer: " + e.getMessage());
+      spillSingleRecord(key, value, partition, false);
+      mapOutputRecordCounter.increment(1);
+      return;
+    }
+  }
+
+  @Override
+  protected synchronized void collectSerialized(DataInputBuffer key, DataInputBuffer value,
+      final int partition) throws IOException {
+    if (partition < 0 || partition >= partitions) {
+      throw new IOException("Illegal partition (" + partition + ")" +
+          ", TotalPartitions: " + partitions);
+    }
+    reserveMetadata();
+
+    try {
+      int keystart = bufindex;
+      bb.write(key.getData(), key.getPosition(), key.getLength() - key.getPosition());
+      if (bufindex < keystart) {
+        // wrapped the key; must make contiguous
+        bb.shiftBufferedKey();
+        keystart = 0;
+      }
+      final int valstart = bufindex;
+      bb.write(value.getData(), value.getPosition(), value.getLength() - value.getPosition());
+      // zero-length write to check the boundary conditions, as in collect
+      bb.write(b0, 0, 0);
+      int valend = bb.markRecord();
+      addMetadata(partition, keystart, valstart, valend);
+    } catch (MapBufferTooSmallException e) {
+      LOG.info(outputContext.getDestinationVertexName() + ": Record too large for in-memory buffer: " + e.getMessage());
+      spillSingleRecord(key, value, partition, true);
+      mapOutputRecordCounter.increment(1);
+    }
+  }
+
+  /**
+   * Makes room for the metadata of a record, starting a spill if the soft limit is reached.
+   */
+  private void reserveMetadata() throws IOException {
     checkSpillException();
     bufferRemaining -= METASIZE;
     if (bufferRemaining <= 0) {
@@ -330,50 +399,22 @@ public final class DefaultSorter extends ExternalSorter implements IndexedSortab
         spillLock.unlock();
       }
     }
+  }
 
-    try {
-      // serialize key bytes into buffer
-      int keystart = bufindex;
-      keySerializer.serialize(key);
-      if (bufindex < keystart) {
-        // wrapped the key; must make contiguous
-        bb.shiftBufferedKey();
-        keystart = 0;
-      }
-      // serialize value bytes into buffer
-      final int valstart = bufindex;
-      valSerializer.serialize(value);
-      // It's possible for records to have zero length, i.e. the serializer
-      // will perform no writes. To ensure that the boundary conditions are
-      // checked and that the kvindex invariant is maintained, perform a
-      // zero-length write into the buffer. The logic monitoring this could be
-      // moved into collect, but this is cleaner and inexpensive. For now, it
-      // is acceptable.
-      bb.write(b0, 0, 0);
-
-      // the record must be marked after the preceding write, as the metadata
-      // for this record are not yet written
-      int valend = bb.markRecord();
-
-      mapOutputRecordCounter.increment(1);
-      outputContext.notifyProgress();
-      mapOutputByteCounter.increment(
-          distanceTo(keystart, valend, bufvoid));
-
-      // write accounting info
-      kvmeta.put(kvindex + PARTITION, partition);
-      kvmeta.put(kvindex + KEYSTART, keystart);
-      kvmeta.put(kvindex + VALSTART, valstart);
-      kvmeta.put(kvindex + VALLEN, distanceTo(valstart, valend));
-      // advance kvindex
-      kvindex = (int)(((long)kvindex - NMETA + kvmeta.capacity()) % kvmeta.capacity());
-      totalKeys++;
-    } catch (MapBufferTooSmallException e) {
-      LOG.info(outputContext.getDestinationVertexName() + ": Record too large for in-memory buffer: " + e.getMessage());
-      spillSingleRecord(key, value, partition);
-      mapOutputRecordCounter.increment(1);
-      return;
-    }
+  private void addMetadata(int partition, int keystart, int valstart, int valend) {
+    mapOutputRecordCounter.increment(1);
+    outputContext.notifyProgress();
+    mapOutputByteCounter.increment(
+        distanceTo(keystart, valend, bufvoid));
+
+    // write accounting info
+    kvmeta.put(kvindex + PARTITION, partition);
+    kvmeta.put(kvindex + KEYSTART, keystart);
+    kvmeta.put(kvindex + VALSTART, valstart);
+    kvmeta.put(kvindex + VALLEN, distanceTo(valstart, valend));
+    // advance kvindex
+    kvindex = (int)(((long)kvindex - NMETA + kvmeta.capacity()) % kvmeta.capacity());
+    totalKeys++;
   }
 
   /**
@@ -747,11 +788,16 @@ public final class DefaultSorter extends ExternalSorter implements IndexedSortab
     if (isFinalMergeEnabled()) {
       fileOutputByteCounter.increment(rfs.getFileStatus(finalOutputFile).getLen());
     }
+    flushDone = true;
   }
 
   @Override
   public void close() throws IOException {
     super.close();
+    if (flushDone) {
+      // The spill thread is done with the buffer only once the flush has completed
+      bufferPool.release(kvbuffer);
+    }
     kvbuffer = null;
     kvmeta = null;
   }
@@ -857,8 +903,12 @@ public final class DefaultSorter extends ExternalSorter implements IndexedSortab
       throws IOException, InterruptedException {
     final int mstart = getMetaStart();
     final int mend = getMetaEnd();
+    long startNanos = sortTime.start();
     sorter.sort(this, mstart, mend, progressable);
+    sortTime.recordSince(startNanos);
+    startNanos = spillTime.start();
     spill(mstart, mend, sameKeyCount, totalKeysCount);
+    spillTime.recordSince(startNanos);
   }
 
   private void adjustSpillCounters(long rawLen, long compLength) {
@@ -892,7 +942,7 @@ public final class DefaultSorter extends ExternalSorter implements IndexedSortab
       final Path filename =
           mapOutputFile.getSpillFileForWrite(numSpills, size);
       spillFilePaths.put(numSpills, filename);
-      out = rfs.create(filename);
+      out = getSpillFileSystem(numSpills).create(filename);
 
       int spindex = mstart;
       final InMemValBytes value = createInMemValBytes();
@@ -990,7 +1040,7 @@ public final class DefaultSorter extends ExternalSorter implements IndexedSortab
    * directly to a spill file. Consider this "losing".
    */
   private void spillSingleRecord(final Object key, final Object value,
-                                 int partition) throws IOException {
+                                 int partition, boolean serialized) throws IOException {
     long size = kvbuffer.length + partitions * APPROX_HEADER_LENGTH;
     FSDataOutputStream out = null;
     try {
@@ -999,7 +1049,7 @@ public final class DefaultSorter extends ExternalSorter implements IndexedSortab
       final Path filename =
           mapOutputFile.getSpillFileForWrite(numSpills, size);
       spillFilePaths.put(numSpills, filename);
-      out = rfs.create(filename);
+      out = getSpillFileSystem(numSpills).create(filename);
 
       // we don't run the combiner for a single record
       for (int i = 0; i < partitions; ++i) {
@@ -1013,7 +1063,7 @@ public final class DefaultSorter extends ExternalSorter implements IndexedSortab
           }
           if (i == partition) {
             final long recordStart = out.getPos();
-            writer.append(key, value);
+            appendRecord(writer, key, value, serialized);
             // Note that our map byte count will not be accurate with
             // compression
             mapOutputByteCounter.increment(out.getPos() - recordStart);
@@ -1272,7 +1322,7 @@ public final class DefaultSorter extends ExternalSorter implements IndexedSortab
     }
 
     //The output stream for the final single output file
-    FSDataOutputStream finalOut = rfs.create(finalOutputFile, true, 4096);
+    FSDataOutputStream finalOut = getOutputFileSystem().create(finalOutputFile, true, 4096);
 
     if (numSpills == 0) {
       // TODO Change event generation to say there is no data rather than generating a dummy file
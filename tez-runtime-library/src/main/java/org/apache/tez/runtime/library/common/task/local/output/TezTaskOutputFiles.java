@@ -29,7 +29,9 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.LocalDirAllocator;
 import org.apache.hadoop.fs.Path;
 import org.apache.tez.common.TezRuntimeFrameworkConfigs;
+import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.apache.tez.runtime.library.common.Constants;
+import org.apache.tez.runtime.library.common.LocalDirLoadTracker;
 import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils;
 
 /**
@@ -44,6 +46,9 @@ public class TezTaskOutputFiles extends TezTaskOutput {
 
   public TezTaskOutputFiles(Configuration conf, String uniqueId, int dagID) {
     super(conf, uniqueId, dagID);
+    this.loadTracker = conf.getBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_LOCAL_DIRS_LOAD_AWARE,
+        TezRuntimeConfiguration.TEZ_RUNTIME_LOCAL_DIRS_LOAD_AWARE_DEFAULT)
+        ? LocalDirLoadTracker.getSharedTracker() : null;
   }
 
   private static final Logger LOG = LoggerFactory.getLogger(TezTaskOutputFiles.class);
@@ -60,6 +65,9 @@ public class TezTaskOutputFiles extends TezTaskOutput {
   private final LocalDirAllocator lDirAlloc =
     new LocalDirAllocator(TezRuntimeFrameworkConfigs.LOCAL_DIRS);
 
+  // Picks the directories of spills and merge outputs by disk load, if enabled
+  private final LocalDirLoadTracker loadTracker;
+
   /*
    * if service_id = mapreduce_shuffle  then "${appDir}/output/${uniqueId}"
    * if service_id = tez_shuffle  then "${appDir}/dagId/output/${uniqueId}"
@@ -208,7 +216,7 @@ public class TezTaskOutputFiles extends TezTaskOutput {
     Path taskAttemptDir = new Path(dagPath,
         String.format(SPILL_FILE_DIR_PATTERN, uniqueId, spillNumber));
     Path outputDir = new Path(taskAttemptDir, Constants.TEZ_RUNTIME_TASK_OUTPUT_FILENAME_STRING);
-    return lDirAlloc.getLocalPathForWrite(outputDir.toString(), size, conf);
+    return getSpillPathForWrite(outputDir.toString(), size);
   }
 
   /**
@@ -231,7 +239,7 @@ public class TezTaskOutputFiles extends TezTaskOutput {
         SPILL_FILE_DIR_PATTERN, uniqueId, spillNumber));
     Path outputDir = new Path(taskAttemptDir, Constants.TEZ_RUNTIME_TASK_OUTPUT_FILENAME_STRING +
         Constants.TEZ_RUNTIME_TASK_OUTPUT_INDEX_SUFFIX_STRING);
-    return lDirAlloc.getLocalPathForWrite(outputDir.toString(), size, conf);
+    return getSpillPathForWrite(outputDir.toString(), size);
   }
 
 
@@ -253,7 +261,7 @@ public class TezTaskOutputFiles extends TezTaskOutput {
   public Path getInputFileForWrite(int srcIdentifier,
       int spillNum, long size) throws IOException {
     String dagPath = getDagOutputDir(getSpillFileName(srcIdentifier, spillNum));
-    return lDirAlloc.getLocalPathForWrite(dagPath, size, conf);
+    return getSpillPathForWrite(dagPath, size);
   }
 
   /**
@@ -272,6 +280,17 @@ public class TezTaskOutputFiles extends TezTaskOutput {
     return String.format(SPILL_FILE_PATTERN, uniqueId, srcId, spillNum);
   }
 
+  private Path getSpillPathForWrite(String pathStr, long size) throws IOException {
+    if (loadTracker != null) {
+      Path path = loadTracker.getLocalPathForWrite(pathStr, size,
+          conf.getTrimmedStrings(TezRuntimeFrameworkConfigs.LOCAL_DIRS));
+      if (path != null) {
+        return path;
+      }
+    }
+    return lDirAlloc.getLocalPathForWrite(pathStr, size, conf);
+  }
+
   private String getDagOutputDir(String child) {
     return ShuffleUtils.isTezShuffleHandler(conf) ? dagId.concat(child) : child;
   }
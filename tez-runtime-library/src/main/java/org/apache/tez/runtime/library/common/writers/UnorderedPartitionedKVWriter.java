@@ -47,8 +47,10 @@ import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
 import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.serializer.Serializer;
 import org.apache.tez.common.CallableWithNdc;
 import org.apache.tez.common.TezCommonUtils;
 import org.apache.tez.common.TezUtilsInternal;
@@ -61,15 +63,21 @@ import org.apache.tez.runtime.api.TaskFailureType;
 import org.apache.tez.runtime.api.OutputContext;
 import org.apache.tez.runtime.api.events.CompositeDataMovementEvent;
 import org.apache.tez.runtime.library.api.IOInterruptedException;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
+import org.apache.tez.runtime.library.api.KeyValueBatchWriter;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration.ReportPartitionStats;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.apache.tez.runtime.library.common.BatchPartitioner;
+import org.apache.tez.runtime.library.common.BufferPool;
 import org.apache.tez.runtime.library.common.Constants;
+import org.apache.tez.runtime.library.common.SpillFileSystem;
 import org.apache.tez.runtime.library.common.sort.impl.IFile;
 import org.apache.tez.runtime.library.common.sort.impl.TezIndexRecord;
 import org.apache.tez.runtime.library.common.sort.impl.IFile.Writer;
 import org.apache.tez.runtime.library.common.sort.impl.TezSpillRecord;
 import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils;
 import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.DataMovementEventPayloadProto;
+import org.apache.tez.util.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -83,7 +91,8 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ByteString;
 
-public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWriter {
+public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWriter
+    implements KeyValueBatchWriter {
 
   private static final Logger LOG = LoggerFactory.getLogger(UnorderedPartitionedKVWriter.class);
 
@@ -105,11 +114,23 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
   final WrappedBuffer[] buffers;
   @VisibleForTesting
   final BlockingQueue<WrappedBuffer> availableBuffers;
+  private final BufferPool bufferPool;
+  private final LatencyHistogram spillTime;
+  // Buffers can be reused once all spills are complete
+  private boolean releaseBuffersToPool = false;
   private final ByteArrayOutputStream baos;
   private final NonSyncDataOutputStream dos;
   @VisibleForTesting
   WrappedBuffer currentBuffer;
   private final FileSystem rfs;
+  // Outputs and spills are written with a large buffer. Spills which are merged into the final
+  // output are read exactly once, and may be dropped from the page cache as they are written.
+  private final FileSystem spillFs;
+  private final FileSystem mergedSpillFs;
+
+  private BatchPartitioner batchPartitioner;
+  private final DataInputBuffer batchKey = new DataInputBuffer();
+  private final DataInputBuffer batchValue = new DataInputBuffer();
 
   private final List<SpillInfo> spillInfoList = Collections
       .synchronizedList(new ArrayList<SpillInfo>());
@@ -224,10 +245,15 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
         Integer.MAX_VALUE);
     computeNumBuffersAndSize(maxSingleBufferSizeBytes);
 
+    bufferPool = BufferPool.getSharedPool(conf, outputContext.getObjectRegistry());
+    spillTime = LatencyHistogram.create("SPILL",
+        conf.getBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED,
+            TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED_DEFAULT),
+        outputContext.getCounters());
     availableBuffers = new LinkedBlockingQueue<WrappedBuffer>();
     buffers = new WrappedBuffer[numBuffers];
     // Set up only the first buffer to start with.
-    buffers[0] = new WrappedBuffer(numOutputs, sizePerBuffer);
+    buffers[0] = new WrappedBuffer(numOutputs, sizePerBuffer, bufferPool);
     numInitializedBuffers = 1;
     if (LOG.isDebugEnabled()) {
       LOG.debug(destNameTrimmed + ": " + "Initializing Buffer #" +
@@ -239,6 +265,8 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
     keySerializer.open(dos);
     valSerializer.open(dos);
     rfs = ((LocalFileSystem) FileSystem.getLocal(this.conf)).getRaw();
+    spillFs = new SpillFileSystem((RawLocalFileSystem) rfs, this.conf, false);
+    mergedSpillFs = new SpillFileSystem((RawLocalFileSystem) rfs, this.conf, true);
 
     int maxThreads = Math.max(2, numBuffers/2);
     //TODO: Make use of TezSharedExecutor later
@@ -345,13 +373,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
     // there as well.
 
     // How expensive are checks like these ?
-    if (isShutdown.get()) {
-      throw new RuntimeException("Writer already closed");
-    }
-    if (spillException != null) {
-      // Already reported as a fatalError - report to the user code
-      throw new IOException("Exception during spill", new IOException(spillException));
-    }
+    checkWritable();
     if (skipBuffers) {
       //special case, where we have only one partition and pipelining is disabled.
       // The reason outputRecordsCounter isn't updated here:
@@ -362,12 +384,61 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
       outputContext.notifyProgress();
     } else {
       int partition = partitioner.getPartition(key, value, numPartitions);
-      write(key, value, partition);
+      write(key, value, partition, false);
+    }
+  }
+
+  @Override
+  public void write(KeyValueBatch batch) throws IOException {
+    checkWritable();
+    if (batchPartitioner == null) {
+      batchPartitioner = new BatchPartitioner(conf, partitioner, numPartitions);
+    }
+    for (int i = 0; i < batch.size(); ++i) {
+      batch.getKey(i, batchKey);
+      batch.getValue(i, batchValue);
+      if (skipBuffers) {
+        writer.append(batchKey, batchValue);
+      } else {
+        int partition = batchPartitioner.getPartition(batch, i);
+        if (partition < 0 || partition >= numPartitions) {
+          throw new IOException("Illegal partition (" + partition + ")" +
+              ", TotalPartitions: " + numPartitions);
+        }
+        write(batchKey, batchValue, partition, true);
+      }
+    }
+    outputContext.notifyProgress();
+  }
+
+  private void checkWritable() throws IOException {
+    if (isShutdown.get()) {
+      throw new RuntimeException("Writer already closed");
+    }
+    if (spillException != null) {
+      // Already reported as a fatalError - report to the user code
+      throw new IOException("Exception during spill", new IOException(spillException));
     }
   }
 
   @SuppressWarnings("unchecked")
-  private void write(Object key, Object value, int partition) throws IOException {
+  private void serialize(Serializer serializer, Object obj, boolean serialized)
+      throws IOException {
+    if (serialized) {
+      DataInputBuffer buffer = (DataInputBuffer) obj;
+      dos.write(buffer.getData(), buffer.getPosition(), buffer.getLength() - buffer.getPosition());
+    } else {
+      serializer.serialize(obj);
+    }
+  }
+
+  /**
+   * @param serialized whether the key and value are {@link DataInputBuffer}s holding the
+   *          serialized record, as written by {@link #write(KeyValueBatch)}, rather than objects
+   *          of the key and value classes
+   */
+  private void write(Object key, Object value, int partition, boolean serialized)
+      throws IOException {
     // Wrap to 4 byte (Int) boundary for metaData
     int mod = currentBuffer.nextPosition % INT_SIZE;
     int metaSkip = mod == 0 ? 0 : (INT_SIZE - mod);
@@ -381,37 +452,37 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
     currentBuffer.availableSize -= (META_SIZE + metaSkip);
     currentBuffer.nextPosition += META_SIZE;
 
-    keySerializer.serialize(key);
+    serialize(keySerializer, key, serialized);
 
     if (currentBuffer.full) {
       if (metaStart == 0) { // Started writing at the start of the buffer. Write Key to disk.
         // Key too large for any buffer. Write entire record to disk.
         currentBuffer.reset();
-        writeLargeRecord(key, value, partition);
+        writeLargeRecord(key, value, partition, serialized);
         return;
       } else { // Exceeded length on current buffer.
         // Try resetting the buffer to the next one, if this was not the start of a buffer,
         // and begin spilling the current buffer to disk if it has any records.
         setupNextBuffer();
-        write(key, value, partition);
+        write(key, value, partition, serialized);
         return;
       }
     }
 
     int valStart = currentBuffer.nextPosition;
-    valSerializer.serialize(value);
+    serialize(valSerializer, value, serialized);
 
     if (currentBuffer.full) {
       // Value too large for current buffer, or K-V too large for entire buffer.
       if (metaStart == 0) {
         // Key + Value too large for a single buffer.
         currentBuffer.reset();
-        writeLargeRecord(key, value, partition);
+        writeLargeRecord(key, value, partition, serialized);
         return;
       } else { // Exceeded length on current buffer.
         // Try writing key+value to a new buffer - will fall back to disk if that fails.
         setupNextBuffer();
-        write(key, value, partition);
+        write(key, value, partition, serialized);
         return;
       }
     }
@@ -531,7 +602,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
     if (availableBuffers.peek() == null) {
       if (numInitializedBuffers < numBuffers) {
         buffers[numInitializedBuffers] = new WrappedBuffer(numPartitions,
-            numInitializedBuffers == numBuffers - 1 ? lastBufferSize : sizePerBuffer);
+            numInitializedBuffers == numBuffers - 1 ? lastBufferSize : sizePerBuffer, bufferPool);
         numInitializedBuffers++;
         return buffers[numInitializedBuffers - 1];
       } else {
@@ -582,12 +653,14 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
 
       // Number of parallel spills determined by number of threads.
       // Last spill synchronization handled separately.
+      long startNanos = spillTime.start();
       SpillResult spillResult = null;
       if (spillPathDetails == null) {
         this.spillPathDetails = getSpillPathDetails(false, -1, spillNumber);
         this.spillIndex = spillPathDetails.spillIndex;
       }
-      FSDataOutputStream out = rfs.create(spillPathDetails.outputFilePath);
+      FSDataOutputStream out = getSpillFileSystem(spillPathDetails)
+          .create(spillPathDetails.outputFilePath);
       TezSpillRecord spillRecord = new TezSpillRecord(numPartitions);
       DataInputBuffer key = new DataInputBuffer();
       DataInputBuffer val = new DataInputBuffer();
@@ -635,6 +708,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
       spillResult = new SpillResult(compressedLength, this.filledBuffers);
 
       handleSpillIndex(spillPathDetails, spillRecord);
+      spillTime.recordSince(startNanos);
       LOG.info(destNameTrimmed + ": " + "Finished spill " + spillIndex);
 
       if (LOG.isDebugEnabled()) {
@@ -702,6 +776,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
       }
     } else {
       LOG.info(destNameTrimmed + ": " + "All spills complete");
+      releaseBuffersToPool = true;
       // Assuming close will be called on the same thread as the write
       cleanup();
 
@@ -851,6 +926,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
   }
 
   private void cleanupCurrentBuffer() {
+    releaseToPool(currentBuffer);
     currentBuffer.cleanup();
     currentBuffer = null;
   }
@@ -861,6 +937,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
     }
     for (int i = 0; i < buffers.length; i++) {
       if (buffers[i] != null && buffers[i] != currentBuffer) {
+        releaseToPool(buffers[i]);
         buffers[i].cleanup();
         buffers[i] = null;
       }
@@ -868,6 +945,12 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
     availableBuffers.clear();
   }
 
+  private void releaseToPool(WrappedBuffer wrappedBuffer) {
+    if (releaseBuffersToPool) {
+      bufferPool.release(wrappedBuffer.buffer);
+    }
+  }
+
   private SpillResult finalSpill() throws IOException {
     if (currentBuffer.nextPosition == 0) {
       if (pipelinedShuffle || !isFinalMergeEnabled) {
@@ -940,6 +1023,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
 
     Path outputFilePath = null;
     Path indexFilePath = null;
+    boolean merged = false;
 
     if (!pipelinedShuffle && isFinalMergeEnabled) {
       if (isFinalSpill) {
@@ -951,13 +1035,18 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
         finalIndexPath = indexFilePath;
       } else {
         outputFilePath = outputFileHandler.getSpillFileForWrite(spillNumber, spillSize);
+        merged = true;
       }
     } else {
       outputFilePath = outputFileHandler.getSpillFileForWrite(spillNumber, spillSize);
       indexFilePath  = outputFileHandler.getSpillIndexFileForWrite(spillNumber, indexFileSizeEstimate);
     }
 
-    return new SpillPathDetails(outputFilePath, indexFilePath, spillNumber);
+    return new SpillPathDetails(outputFilePath, indexFilePath, spillNumber, merged);
+  }
+
+  private FileSystem getSpillFileSystem(SpillPathDetails spillPathDetails) {
+    return spillPathDetails.merged ? mergedSpillFs : spillFs;
   }
 
   private void mergeAll() throws IOException {
@@ -983,7 +1072,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
 
     FSDataOutputStream out = null;
     try {
-      out = rfs.create(finalOutPath);
+      out = spillFs.create(finalOutPath);
       Writer writer = null;
 
       for (int i = 0; i < numPartitions; i++) {
@@ -1045,9 +1134,10 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
     LOG.info(destNameTrimmed + ": " + "Finished final spill after merging : " + numSpills.get() + " spills");
   }
 
-  private void writeLargeRecord(final Object key, final Object value, final int partition)
-      throws IOException {
+  private void writeLargeRecord(final Object key, final Object value, final int partition,
+      boolean serialized) throws IOException {
     numAdditionalSpillsCounter.increment(1);
+    long startNanos = spillTime.start();
     long size = sizePerBuffer - (currentBuffer.numRecords * META_SIZE) - currentBuffer.skipSize
         + numPartitions * APPROX_HEADER_LENGTH;
     SpillPathDetails spillPathDetails = getSpillPathDetails(false, size);
@@ -1057,7 +1147,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
     try {
       final TezSpillRecord spillRecord = new TezSpillRecord(numPartitions);
       final Path outPath = spillPathDetails.outputFilePath;
-      out = rfs.create(outPath);
+      out = getSpillFileSystem(spillPathDetails).create(outPath);
       BitSet emptyPartitions = null;
       if (pipelinedShuffle || !isFinalMergeEnabled) {
         emptyPartitions = new BitSet(numPartitions);
@@ -1069,7 +1159,11 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
           Writer writer = null;
           try {
             writer = new IFile.Writer(conf, out, keyClass, valClass, codec, null, null);
-            writer.append(key, value);
+            if (serialized) {
+              writer.append((DataInputBuffer) key, (DataInputBuffer) value);
+            } else {
+              writer.append(key, value);
+            }
             outputLargeRecordsCounter.increment(1);
             numRecordsPerPartition[i]++;
             if (reportPartitionStats()) {
@@ -1096,6 +1190,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
         }
       }
       handleSpillIndex(spillPathDetails, spillRecord);
+      spillTime.recordSince(startNanos);
 
       mayBeSendEventsForSpill(emptyPartitions, sizePerPartition,
           spillIndex, false);
@@ -1170,7 +1265,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
     private int availableSize;
     private boolean full = false;
 
-    WrappedBuffer(int numPartitions, int size) {
+    WrappedBuffer(int numPartitions, int size, BufferPool bufferPool) {
       this.partitionPositions = new int[numPartitions];
       this.recordsPerPartition = new int[numPartitions];
       this.sizePerPartition = new long[numPartitions];
@@ -1182,7 +1277,7 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
       }
       size = size - (size % INT_SIZE);
       this.size = size;
-      this.buffer = new byte[size];
+      this.buffer = bufferPool.allocate(size);
       this.metaBuffer = ByteBuffer.wrap(buffer).order(ByteOrder.nativeOrder()).asIntBuffer();
       availableSize = size;
     }
@@ -1389,11 +1484,14 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
     final Path indexFilePath;
     final Path outputFilePath;
     final int spillIndex;
+    // Whether the spill is merged into the final output
+    final boolean merged;
 
-    SpillPathDetails(Path outputFilePath, Path indexFilePath, int spillIndex) {
+    SpillPathDetails(Path outputFilePath, Path indexFilePath, int spillIndex, boolean merged) {
       this.outputFilePath = outputFilePath;
       this.indexFilePath = indexFilePath;
       this.spillIndex = spillIndex;
+      this.merged = merged;
     }
   }
 }
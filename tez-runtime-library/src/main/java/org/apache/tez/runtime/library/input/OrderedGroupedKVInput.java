@@ -46,6 +46,8 @@ import org.apache.tez.dag.api.TezException;
 import org.apache.tez.runtime.api.AbstractLogicalInput;
 import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.InputContext;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
+import org.apache.tez.runtime.library.api.KeyValueBatchReader;
 import org.apache.tez.runtime.library.api.KeyValuesReader;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.apache.tez.runtime.library.common.ConfigUtils;
@@ -323,7 +325,8 @@ public class OrderedGroupedKVInput extends AbstractLogicalInput {
   }
 
   @SuppressWarnings("rawtypes")
-  private static class OrderedGroupedKeyValuesReader extends KeyValuesReader {
+  private static class OrderedGroupedKeyValuesReader extends KeyValuesReader
+      implements KeyValueBatchReader {
 
     private final ValuesIterator valuesIter;
     private final InputContext context;
@@ -349,6 +352,12 @@ public class OrderedGroupedKVInput extends AbstractLogicalInput {
     public Iterable<Object> getCurrentValues() throws IOException {
       return valuesIter.getValues();
     }
+
+    @Override
+    public boolean next(KeyValueBatch batch) throws IOException {
+      context.notifyProgress();
+      return valuesIter.readBatch(batch);
+    }
   };
 
 
@@ -410,6 +419,10 @@ public class OrderedGroupedKVInput extends AbstractLogicalInput {
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_CLEANUP_FILES_ON_INTERRUPT);
     confKeys.add(Constants.TEZ_RUNTIME_TASK_MEMORY);
     confKeys.add(TezConfiguration.TEZ_AM_SHUFFLE_AUXILIARY_SERVICE_ID);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_SPILL_BUFFER_BYTES);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_SPILL_DROP_BEHIND);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_LOCAL_DIRS_LOAD_AWARE);
   }
 
   // TODO Maybe add helper methods to extract keys
@@ -247,7 +247,15 @@ public class UnorderedKVInput extends AbstractLogicalInput {
       int ifileBufferSize, boolean ifileReadAheadEnabled, int ifileReadAheadLength)
       throws IOException {
     return new UnorderedKVReader(shuffleManager, conf, codec, ifileReadAheadEnabled,
-        ifileReadAheadLength, ifileBufferSize, inputRecordCounter, getContext());
+        ifileReadAheadLength, ifileBufferSize, inputRecordCounter, getContext()) {
+      @Override
+      protected void readCompleted() {
+        // All the data has been loaded by the consumer, e.g. into a hash table for a broadcast
+        // join. The memory used for fetching can be used by other components of the task. The
+        // reduced assignment is reported back to memoryUpdateCallbackHandler.
+        getContext().releaseMemory(memoryUpdateCallbackHandler.getMemoryAssigned());
+      }
+    };
   }
 
   private static final Set<String> confKeys = new HashSet<String>();
@@ -288,6 +296,8 @@ public class UnorderedKVInput extends AbstractLogicalInput {
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_CLEANUP_FILES_ON_INTERRUPT);
     confKeys.add(Constants.TEZ_RUNTIME_TASK_MEMORY);
     confKeys.add(TezConfiguration.TEZ_AM_SHUFFLE_AUXILIARY_SERVICE_ID);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_LOCAL_DIRS_LOAD_AWARE);
   }
 
   // TODO Maybe add helper methods to extract keys
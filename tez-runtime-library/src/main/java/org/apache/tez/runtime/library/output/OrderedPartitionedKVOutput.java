@@ -43,6 +43,8 @@ import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.runtime.api.AbstractLogicalOutput;
 import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.OutputContext;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
+import org.apache.tez.runtime.library.api.KeyValueBatchWriter;
 import org.apache.tez.runtime.library.api.KeyValuesWriter;
 import org.apache.tez.runtime.library.api.Partitioner;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
@@ -65,7 +67,7 @@ public class OrderedPartitionedKVOutput extends AbstractLogicalOutput {
 
   private static final Logger LOG = LoggerFactory.getLogger(OrderedPartitionedKVOutput.class);
 
-  protected ExternalSorter sorter;
+  protected volatile ExternalSorter sorter;
   protected Configuration conf;
   protected MemoryUpdateCallbackHandler memoryUpdateCallbackHandler;
   private long startTime;
@@ -92,7 +94,16 @@ public class OrderedPartitionedKVOutput extends AbstractLogicalOutput {
     // places (wherever LocalDirAllocator is used) - TezTaskOutputFiles,
     // TezMerger, etc.
     this.conf.setStrings(TezRuntimeFrameworkConfigs.LOCAL_DIRS, getContext().getWorkDirs());
-    this.memoryUpdateCallbackHandler = new MemoryUpdateCallbackHandler();
+    this.memoryUpdateCallbackHandler = new MemoryUpdateCallbackHandler() {
+      @Override
+      public synchronized void memoryUpdated(long assignedSize) {
+        super.memoryUpdated(assignedSize);
+        ExternalSorter sorterRef = sorter;
+        if (sorterRef != null) {
+          sorterRef.memoryUpdated(assignedSize);
+        }
+      }
+    };
     getContext().requestInitialMemory(
         ExternalSorter.getInitialMemoryRequirement(conf,
             getContext().getTotalMemoryAvailableToTask()), memoryUpdateCallbackHandler);
@@ -161,17 +172,24 @@ public class OrderedPartitionedKVOutput extends AbstractLogicalOutput {
   @Override
   public synchronized KeyValuesWriter getWriter() throws IOException {
     Preconditions.checkState(isStarted.get(), "Cannot get writer before starting the Output");
-    return new KeyValuesWriter() {
-      @Override
-      public void write(Object key, Object value) throws IOException {
-        sorter.write(key, value);
-      }
+    return new SorterWriter();
+  }
 
-      @Override
-      public void write(Object key, Iterable<Object> values) throws IOException {
-        sorter.write(key, values);
-      }
-    };
+  private class SorterWriter extends KeyValuesWriter implements KeyValueBatchWriter {
+    @Override
+    public void write(Object key, Object value) throws IOException {
+      sorter.write(key, value);
+    }
+
+    @Override
+    public void write(Object key, Iterable<Object> values) throws IOException {
+      sorter.write(key, values);
+    }
+
+    @Override
+    public void write(KeyValueBatch batch) throws IOException {
+      sorter.write(batch);
+    }
   }
 
   @Override
@@ -234,6 +252,8 @@ public class OrderedPartitionedKVOutput extends AbstractLogicalOutput {
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_PIPELINED_SORTER_SORT_THREADS);
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_PIPELINED_SORTER_MIN_BLOCK_SIZE_IN_MB);
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_PIPELINED_SORTER_LAZY_ALLOCATE_MEMORY);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_BUFFER_POOL_ENABLED);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_BUFFER_POOL_MAX_IDLE_FRACTION);
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_PARTITIONER_CLASS);
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_COMBINER_CLASS);
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_INTERNAL_SORTER_CLASS);
@@ -253,6 +273,10 @@ public class OrderedPartitionedKVOutput extends AbstractLogicalOutput {
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_SORTER_CLASS);
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_CLEANUP_FILES_ON_INTERRUPT);
     confKeys.add(TezConfiguration.TEZ_AM_SHUFFLE_AUXILIARY_SERVICE_ID);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_SPILL_BUFFER_BYTES);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_SPILL_DROP_BEHIND);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_LOCAL_DIRS_LOAD_AWARE);
   }
 
   // TODO Maybe add helper methods to extract keys
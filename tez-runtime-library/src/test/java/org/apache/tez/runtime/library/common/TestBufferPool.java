@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.runtime.common.objectregistry.ObjectRegistryImpl;
+import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.junit.Test;
+
+public class TestBufferPool {
+
+  @Test(timeout = 5000)
+  public void testReuse() {
+    BufferPool pool = new BufferPool(1000);
+    byte[] buffer1 = pool.allocate(100);
+    byte[] buffer2 = pool.allocate(200);
+    pool.release(buffer1);
+    pool.release(buffer2);
+    assertEquals(300, pool.getIdleSize());
+
+    // Only buffers of the same size are reused
+    assertSame(buffer2, pool.allocate(200));
+    assertSame(buffer1, pool.allocate(100));
+    assertEquals(0, pool.getIdleSize());
+    assertEquals(2, pool.getNumReused());
+  }
+
+  @Test(timeout = 5000)
+  public void testIdleSizeLimit() {
+    BufferPool pool = new BufferPool(300);
+    byte[] buffer1 = pool.allocate(100);
+    byte[] buffer2 = pool.allocate(200);
+    byte[] buffer3 = pool.allocate(150);
+    pool.release(buffer1);
+    pool.release(buffer2);
+    assertEquals(300, pool.getIdleSize());
+
+    // The oldest buffers make room for the new one
+    pool.release(buffer3);
+    assertEquals(150, pool.getIdleSize());
+    assertNotSame(buffer1, pool.allocate(100));
+
+    // Buffers larger than the limit are not retained
+    pool.release(new byte[400]);
+    assertEquals(0, pool.getNumReused());
+  }
+
+  @Test(timeout = 5000)
+  public void testAllocationEvictsUnusedBuffers() {
+    BufferPool pool = new BufferPool(300);
+    pool.release(new byte[100]);
+    pool.release(new byte[200]);
+    assertEquals(300, pool.getIdleSize());
+
+    // Allocating a buffer of a different size releases all unused buffers
+    pool.allocate(150);
+    assertEquals(0, pool.getIdleSize());
+    pool.release(new byte[100]);
+    pool.allocate(50);
+    assertEquals(0, pool.getIdleSize());
+
+    // A buffer of the same size is reused, the other unused buffers are kept
+    byte[] buffer = new byte[100];
+    pool.release(buffer);
+    pool.release(new byte[200]);
+    assertSame(buffer, pool.allocate(100));
+    assertEquals(200, pool.getIdleSize());
+  }
+
+  @Test(timeout = 5000)
+  public void testPoolingDisabled() {
+    Configuration conf = new Configuration(false);
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl();
+    BufferPool pool = BufferPool.getSharedPool(conf, objectRegistry);
+    byte[] buffer = pool.allocate(100);
+    pool.release(buffer);
+    assertEquals(0, pool.getIdleSize());
+    assertNotSame(buffer, pool.allocate(100));
+
+    conf.setBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_BUFFER_POOL_ENABLED, true);
+    pool = BufferPool.getSharedPool(conf, null);
+    pool.release(buffer);
+    assertEquals(0, pool.getIdleSize());
+  }
+
+  @Test(timeout = 5000)
+  public void testSharedPoolDroppedWithVertex() {
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_BUFFER_POOL_ENABLED, true);
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl();
+    BufferPool pool = BufferPool.getSharedPool(conf, objectRegistry);
+    assertSame(pool, BufferPool.getSharedPool(conf, objectRegistry));
+    byte[] buffer = pool.allocate(100);
+    pool.release(buffer);
+    assertEquals(100, pool.getIdleSize());
+
+    // The unused buffers go away with the pool when the container moves on to another vertex
+    objectRegistry.clearCache(ObjectRegistryImpl.ObjectLifeCycle.VERTEX);
+    BufferPool newPool = BufferPool.getSharedPool(conf, objectRegistry);
+    assertNotSame(pool, newPool);
+    assertEquals(0, newPool.getIdleSize());
+    assertNotSame(buffer, newPool.allocate(100));
+  }
+
+  @Test(timeout = 5000)
+  public void testSharedPoolKeepsSmallestIdleLimit() {
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_BUFFER_POOL_ENABLED, true);
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl();
+    BufferPool pool = BufferPool.getSharedPool(conf, objectRegistry);
+    pool.release(new byte[100]);
+    assertEquals(100, pool.getIdleSize());
+
+    // A component configured with a smaller limit lowers the limit of the shared pool
+    Configuration noIdleConf = new Configuration(conf);
+    noIdleConf.setFloat(TezRuntimeConfiguration.TEZ_RUNTIME_BUFFER_POOL_MAX_IDLE_FRACTION, 0);
+    assertSame(pool, BufferPool.getSharedPool(noIdleConf, objectRegistry));
+    assertEquals(0, pool.getIdleSize());
+
+    // but a larger limit does not raise it again
+    assertSame(pool, BufferPool.getSharedPool(conf, objectRegistry));
+    pool.release(new byte[100]);
+    assertEquals(0, pool.getIdleSize());
+  }
+}
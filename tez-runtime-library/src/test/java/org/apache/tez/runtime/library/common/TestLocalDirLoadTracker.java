@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLocalDirLoadTracker {
+
+  private static final File TEST_DIR = new File(System.getProperty("test.build.data", "/tmp"),
+      TestLocalDirLoadTracker.class.getSimpleName());
+
+  private String[] localDirs;
+
+  @Before
+  public void setup() throws IOException {
+    FileUtil.fullyDelete(TEST_DIR);
+    localDirs = new String[3];
+    for (int i = 0; i < localDirs.length; ++i) {
+      File dir = new File(TEST_DIR, "disk" + i);
+      assertTrue(dir.mkdirs());
+      localDirs[i] = dir.getAbsolutePath();
+    }
+  }
+
+  @After
+  public void cleanup() {
+    FileUtil.fullyDelete(TEST_DIR);
+  }
+
+  private static String getDir(Path path) {
+    return path.getParent().toUri().getPath();
+  }
+
+  @Test(timeout = 5000)
+  public void testActiveWrites() {
+    LocalDirLoadTracker tracker = new LocalDirLoadTracker();
+    // Each write in progress makes its directory less attractive
+    Path path1 = tracker.getLocalPathForWrite("file.out", 100, localDirs);
+    LocalDirLoadTracker.DirLoad load1 = tracker.writeStarted(path1);
+    Path path2 = tracker.getLocalPathForWrite("file.out", 100, localDirs);
+    LocalDirLoadTracker.DirLoad load2 = tracker.writeStarted(path2);
+    Path path3 = tracker.getLocalPathForWrite("file.out", 100, localDirs);
+    tracker.writeStarted(path3);
+    assertTrue(!getDir(path1).equals(getDir(path2)) && !getDir(path1).equals(getDir(path3))
+        && !getDir(path2).equals(getDir(path3)));
+    assertEquals(1, load1.getActiveWrites());
+
+    load1.writeFinished(100, 1000);
+    load2.writeFinished(100, 1000);
+    assertEquals(0, load1.getActiveWrites());
+    // Small writes do not count towards the throughput
+    assertEquals(0, load1.getThroughput(), 0);
+    // Only the third directory has a write in progress
+    assertTrue(!getDir(tracker.getLocalPathForWrite("file.out", 100, localDirs))
+        .equals(getDir(path3)));
+  }
+
+  @Test(timeout = 5000)
+  public void testThroughput() {
+    LocalDirLoadTracker tracker = new LocalDirLoadTracker();
+    long bytes = LocalDirLoadTracker.MIN_BYTES_FOR_THROUGHPUT;
+    // A slow disk, a fast disk, and one which has not been written to yet
+    Path slowPath = new Path(localDirs[0], "file.out");
+    Path fastPath = new Path(localDirs[1], "file.out");
+    for (int i = 0; i < localDirs.length; ++i) {
+      tracker.getLocalPathForWrite("file.out", 100, localDirs);
+    }
+    tracker.writeStarted(slowPath).writeFinished(bytes, TimeUnit.SECONDS.toNanos(1));
+    tracker.writeStarted(fastPath).writeFinished(bytes, TimeUnit.MILLISECONDS.toNanos(10));
+
+    for (int i = 0; i < 10; ++i) {
+      Path path = tracker.getLocalPathForWrite("file.out", 100, localDirs);
+      assertTrue(!getDir(path).equals(getDir(slowPath)));
+    }
+    // With a write in progress on each of the fast disks, the slow disk is still the worse choice
+    tracker.writeStarted(fastPath);
+    tracker.writeStarted(new Path(localDirs[2], "file.out"));
+    assertTrue(!getDir(tracker.getLocalPathForWrite("file.out", 100, localDirs))
+        .equals(getDir(slowPath)));
+  }
+
+  @Test(timeout = 5000)
+  public void testUnusableDirs() {
+    LocalDirLoadTracker tracker = new LocalDirLoadTracker();
+    assertNull(tracker.getLocalPathForWrite("file.out", 100,
+        new String[] { new File(TEST_DIR, "missing").getAbsolutePath() }));
+    assertNull(tracker.getLocalPathForWrite("file.out", Long.MAX_VALUE, localDirs));
+    assertNotNull(tracker.getLocalPathForWrite("file.out", -1, localDirs));
+    // Files outside the local directories are not tracked
+    assertNull(tracker.writeStarted(new Path(TEST_DIR.getAbsolutePath(), "file.out")));
+  }
+}
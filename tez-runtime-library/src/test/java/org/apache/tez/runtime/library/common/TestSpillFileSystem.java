@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSpillFileSystem {
+
+  private static final Path TEST_DIR = new Path(System.getProperty("test.build.data", "/tmp"),
+      TestSpillFileSystem.class.getSimpleName());
+
+  private RawLocalFileSystem rawLocalFs;
+
+  @Before
+  public void setup() throws IOException {
+    rawLocalFs = (RawLocalFileSystem) FileSystem.getLocal(new Configuration()).getRaw();
+    rawLocalFs.delete(TEST_DIR, true);
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    rawLocalFs.delete(TEST_DIR, true);
+  }
+
+  @Test(timeout = 10000)
+  public void testWrite() throws IOException {
+    Configuration conf = new Configuration(false);
+    conf.setInt(TezRuntimeConfiguration.TEZ_RUNTIME_SPILL_BUFFER_BYTES, 1024 * 1024);
+    verifyWrite(new SpillFileSystem(rawLocalFs, conf, true), new Path(TEST_DIR, "spill"), 1000);
+  }
+
+  @Test(timeout = 10000)
+  public void testWriteWithDropBehind() throws IOException {
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_SPILL_DROP_BEHIND, true);
+    // Write more than a couple of chunks, so that earlier chunks are dropped while writing
+    verifyWrite(new SpillFileSystem(rawLocalFs, conf, true), new Path(TEST_DIR, "spill"),
+        (int) (2.5 * SpillFileSystem.DROP_BEHIND_CHUNK_BYTES));
+  }
+
+  private void verifyWrite(FileSystem fs, Path path, int length) throws IOException {
+    byte[] data = new byte[length];
+    new Random(length).nextBytes(data);
+    FSDataOutputStream out = fs.create(path);
+    out.write(data[0]);
+    out.write(data, 1, length - 1);
+    assertEquals(length, out.getPos());
+    out.close();
+
+    assertEquals(length, rawLocalFs.getFileStatus(path).getLen());
+    byte[] read = new byte[length];
+    FSDataInputStream in = rawLocalFs.open(path);
+    in.readFully(read);
+    in.close();
+    assertArrayEquals(data, read);
+  }
+}
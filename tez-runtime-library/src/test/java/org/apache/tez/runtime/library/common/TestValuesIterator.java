@@ -34,6 +34,7 @@ import org.apache.tez.common.counters.TezCounter;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.UserPayload;
 import org.apache.tez.runtime.api.InputContext;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.apache.tez.runtime.library.common.comparator.TezBytesComparator;
 import org.apache.tez.runtime.library.common.serializer.TezBytesWritableSerialization;
@@ -206,6 +207,37 @@ public class TestValuesIterator {
     }
   }
 
+  @Test(timeout = 20000)
+  public void testReadBatch() throws IOException, InterruptedException {
+    TezCounter keyCounter = new GenericCounter("inputKeyCounter", "y3");
+    TezCounter tupleCounter = new GenericCounter("inputValuesCounter", "y4");
+    ValuesIterator iterator = createCountedIterator(false, keyCounter, tupleCounter);
+    KeyValueBatch batch = new KeyValueBatch(7);
+    int records = 0;
+    int keys = 0;
+    while (iterator.readBatch(batch)) {
+      assertTrue(batch.size() <= batch.getCapacity());
+      for (int i = 0; i < batch.size(); i++) {
+        if (batch.isNewKey(i)) {
+          keys++;
+        }
+      }
+      records += batch.size();
+    }
+    assertEquals(originalData.size(), records);
+    assertEquals(records, tupleCounter.getValue());
+    assertEquals(keys, keyCounter.getValue());
+    if (expectedTestResult) {
+      assertEquals(originalData.keySet().size(), keys);
+    }
+    try {
+      iterator.readBatch(batch);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("Please check if you are invoking moveToNext()"));
+    }
+  }
+
   @Test(timeout = 20000)
   public void testIteratorWithIFileReaderEmptyPartitions() throws IOException, InterruptedException {
     ValuesIterator iterator = createEmptyIterator(false);
@@ -22,12 +22,14 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.Text;
 import org.apache.tez.common.counters.TaskCounter;
 import org.apache.tez.common.counters.TezCounter;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.runtime.api.InputContext;
 import org.apache.tez.runtime.library.api.IOInterruptedException;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.apache.tez.runtime.library.common.InputAttemptIdentifier;
 import org.apache.tez.runtime.library.common.shuffle.FetchedInput;
@@ -46,6 +48,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.TestCase.fail;
 import static org.mockito.Mockito.doAnswer;
@@ -168,6 +171,74 @@ public class TestUnorderedKVReader {
     }
   }
 
+  @Test(timeout = 5000)
+  public void testBatchRead() throws Exception {
+    // two inputs of 5 records each, read in batches which span both inputs
+    final LinkedList<FetchedInput> inputs = new LinkedList<FetchedInput>();
+    for (int i = 0; i < 2; i++) {
+      Path path = new Path(workDir, "batch" + i + ".out");
+      createIFile(path, 5);
+      LocalDiskFetchedInput fetchedInput = spy(new LocalDiskFetchedInput(0, compLen,
+          new InputAttemptIdentifier(i, 0), path, defaultConf, mock(FetchedInputCallback.class)));
+      doNothing().when(fetchedInput).free();
+      inputs.add(fetchedInput);
+    }
+    ShuffleManager manager = mock(ShuffleManager.class);
+    doAnswer(new Answer() {
+      @Override public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+        return (inputs.isEmpty()) ? null : inputs.remove();
+      }
+    }).when(manager).getNextInput();
+    TezCounters counters = new TezCounters();
+    TezCounter inputRecords = counters.findCounter(TaskCounter.INPUT_RECORDS_PROCESSED);
+    UnorderedKVReader<Text, Text> reader = new UnorderedKVReader<Text, Text>(manager,
+        defaultConf, null, false, -1, -1, inputRecords, mock(InputContext.class));
+
+    KeyValueBatch batch = new KeyValueBatch(4);
+    DataInputBuffer keyIn = new DataInputBuffer();
+    DataInputBuffer valIn = new DataInputBuffer();
+    Text key = new Text();
+    Text value = new Text();
+    int[] batchSizes = { 4, 4, 2 };
+    int numRecords = 0;
+    for (int batchSize : batchSizes) {
+      Assert.assertTrue(reader.next(batch));
+      Assert.assertEquals(batchSize, batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+        batch.getKey(i, keyIn);
+        batch.getValue(i, valIn);
+        key.readFields(keyIn);
+        value.readFields(valIn);
+        Assert.assertEquals("Key_" + (numRecords % 5), key.toString());
+        Assert.assertEquals("Value_" + (numRecords % 5), value.toString());
+        numRecords++;
+      }
+    }
+    Assert.assertFalse(reader.next(batch));
+    Assert.assertEquals(0, batch.size());
+    Assert.assertEquals(10, inputRecords.getValue());
+  }
+
+  @Test(timeout = 5000)
+  public void testReadCompleted() throws Exception {
+    ShuffleManager shuffleManager = mock(ShuffleManager.class);
+    TezCounters counters = new TezCounters();
+    TezCounter inputRecords = counters.findCounter(TaskCounter.INPUT_RECORDS_PROCESSED);
+    final AtomicInteger completions = new AtomicInteger(0);
+    UnorderedKVReader<Text, Text> reader =
+        new UnorderedKVReader<Text, Text>(shuffleManager, defaultConf, null, false, -1, -1,
+            inputRecords, mock(InputContext.class)) {
+          @Override
+          protected void readCompleted() {
+            completions.incrementAndGet();
+          }
+        };
+
+    // no more inputs
+    Assert.assertFalse(reader.next());
+    Assert.assertEquals(1, completions.get());
+  }
+
   @Test(timeout = 5000)
   public void testInterruptOnNext() throws IOException, InterruptedException {
     ShuffleManager shuffleManager = mock(ShuffleManager.class);
@@ -41,6 +41,7 @@ import org.apache.tez.runtime.api.OutputContext;
 import org.apache.tez.runtime.api.OutputStatisticsReporter;
 import org.apache.tez.runtime.api.TaskContext;
 import org.apache.tez.runtime.api.impl.ExecutionContextImpl;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration.ReportPartitionStats;
 import org.apache.tez.runtime.library.common.combine.Combiner;
@@ -60,9 +61,11 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.UUID;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
@@ -145,6 +148,49 @@ public class TestPipelinedSorter {
 
   }
 
+  @Test
+  public void testBatchWrite() throws IOException {
+    this.numOutputs = 1;
+    Configuration conf = getConf();
+    conf.setInt(TezRuntimeConfiguration
+        .TEZ_RUNTIME_PIPELINED_SORTER_MIN_BLOCK_SIZE_IN_MB, 3);
+    PipelinedSorter sorter = new PipelinedSorter(this.outputContext, conf, numOutputs,
+        (10 * 1024l * 1024l));
+
+    sortedDataMap.clear();
+    KeyValueBatch batch = new KeyValueBatch(128);
+    DataOutputBuffer keyOut = new DataOutputBuffer();
+    DataOutputBuffer valueOut = new DataOutputBuffer();
+    for (int i = 0; i < 10000; i++) {
+      // One record which does not fit in a block
+      int keyLen = (i == 5000) ? (4 << 20) : 100;
+      Text key = new Text(RandomStringUtils.randomAlphanumeric(keyLen));
+      Text value = new Text(RandomStringUtils.randomAlphanumeric(100));
+      keyOut.reset();
+      key.write(keyOut);
+      valueOut.reset();
+      value.write(valueOut);
+      batch.add(keyOut.getData(), 0, keyOut.getLength(), valueOut.getData(), 0,
+          valueOut.getLength());
+      sortedDataMap.put(key.toString(), value.toString());
+      if (batch.isFull()) {
+        sorter.write(batch);
+        batch.clear();
+      }
+    }
+    sorter.write(batch);
+    closeSorter(sorter);
+
+    verifyCounters(sorter, outputContext);
+    assertEquals(10000, outputContext.getCounters()
+        .findCounter(TaskCounter.OUTPUT_RECORDS).getValue());
+    Path outputFile = sorter.finalOutputFile;
+    FileSystem fs = outputFile.getFileSystem(conf);
+    IFile.Reader reader = new IFile.Reader(fs, outputFile, null, null, null, false, -1, 4096);
+    verifyData(reader);
+    reader.close();
+  }
+
   @Test
   public void testWithoutPartitionStats() throws IOException {
     Configuration conf = getConf();
@@ -677,6 +723,30 @@ public class TestPipelinedSorter {
     Assert.assertTrue(blockSize == (8 << 20));
   }
 
+  @Test
+  public void testAdditionalMemoryOnRepeatedSpills() throws IOException {
+    Configuration conf = getConf();
+    this.numOutputs = 1;
+    this.initialAvailableMem = 2 * 1024 * 1024;
+    conf.setInt(TezRuntimeConfiguration
+        .TEZ_RUNTIME_PIPELINED_SORTER_MIN_BLOCK_SIZE_IN_MB, 1);
+    PipelinedSorter sorter = new PipelinedSorter(this.outputContext, conf, numOutputs,
+        initialAvailableMem);
+    Assert.assertEquals(2, sorter.maxNumberOfBlocks);
+
+    // ~4 MB of data spills at least twice
+    writeData(sorter, 10000, 200, false);
+    verify(outputContext, times(1)).requestAdditionalMemory(initialAvailableMem);
+
+    // the granted memory is used for new blocks once the current blocks are full
+    sorter.memoryUpdated(2 * initialAvailableMem);
+    writeData(sorter, 10000, 200, false);
+    Assert.assertEquals(4, sorter.maxNumberOfBlocks);
+    Assert.assertEquals(4, sorter.buffers.size());
+    verify(outputContext, times(1)).requestAdditionalMemory(anyLong());
+    closeSorter(sorter);
+  }
+
   @Test
   //Intentionally not having timeout
   public void test_without_lazyMemAllocation() throws IOException {
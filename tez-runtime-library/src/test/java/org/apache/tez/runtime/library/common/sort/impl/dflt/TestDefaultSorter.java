@@ -20,6 +20,7 @@ package org.apache.tez.runtime.library.common.sort.impl.dflt;
 
 import org.junit.Assert;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
@@ -36,6 +37,8 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ThreadLocalRandom;
 
 import com.google.protobuf.ByteString;
@@ -44,6 +47,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
@@ -64,10 +68,12 @@ import org.apache.tez.runtime.api.OutputContext;
 import org.apache.tez.runtime.api.OutputStatisticsReporter;
 import org.apache.tez.runtime.api.events.CompositeDataMovementEvent;
 import org.apache.tez.runtime.api.impl.ExecutionContextImpl;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.apache.tez.runtime.library.common.MemoryUpdateCallbackHandler;
 import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils;
 import org.apache.tez.runtime.library.common.sort.impl.ExternalSorter;
+import org.apache.tez.runtime.library.common.sort.impl.IFile;
 import org.apache.tez.runtime.library.common.sort.impl.TezIndexRecord;
 import org.apache.tez.runtime.library.common.sort.impl.TezSpillRecord;
 import org.apache.tez.runtime.library.conf.OrderedPartitionedKVOutputConfig.SorterImpl;
@@ -274,6 +280,62 @@ public class TestDefaultSorter {
     }
   }
 
+  @Test(timeout = 30000)
+  public void testBatchWrite() throws IOException {
+    OutputContext context = createTezOutputContext();
+    conf.setLong(TezRuntimeConfiguration.TEZ_RUNTIME_IO_SORT_MB, 1);
+    MemoryUpdateCallbackHandler handler = new MemoryUpdateCallbackHandler();
+    context.requestInitialMemory(ExternalSorter.getInitialMemoryRequirement(conf,
+        context.getTotalMemoryAvailableToTask()), handler);
+    DefaultSorter sorter = new DefaultSorter(context, conf, 1, handler.getMemoryAssigned());
+
+    TreeMap<String, String> expected = new TreeMap<String, String>();
+    KeyValueBatch batch = new KeyValueBatch(64);
+    DataOutputBuffer keyOut = new DataOutputBuffer();
+    DataOutputBuffer valueOut = new DataOutputBuffer();
+    for (int i = 0; i < 1000; i++) {
+      // One record which does not fit in the sort buffer, and is spilled on its own
+      int keyLen = (i == 500) ? (2 << 20) : 100;
+      Text key = new Text(RandomStringUtils.randomAlphanumeric(keyLen));
+      Text value = new Text(RandomStringUtils.randomAlphanumeric(100));
+      keyOut.reset();
+      key.write(keyOut);
+      valueOut.reset();
+      value.write(valueOut);
+      batch.add(keyOut.getData(), 0, keyOut.getLength(), valueOut.getData(), 0,
+          valueOut.getLength());
+      expected.put(key.toString(), value.toString());
+      if (batch.isFull()) {
+        sorter.write(batch);
+        batch.clear();
+      }
+    }
+    sorter.write(batch);
+    sorter.flush();
+    sorter.close();
+
+    assertTrue(sorter.getNumSpills() > 1);
+    assertEquals(1000, context.getCounters().findCounter(TaskCounter.OUTPUT_RECORDS).getValue());
+    verifyCounters(sorter, context);
+
+    IFile.Reader reader = new IFile.Reader(localFs, sorter.getFinalOutputFile(), null, null,
+        null, false, -1, 4096);
+    DataInputBuffer keyIn = new DataInputBuffer();
+    DataInputBuffer valueIn = new DataInputBuffer();
+    Text readKey = new Text();
+    Text readValue = new Text();
+    for (Map.Entry<String, String> entry : expected.entrySet()) {
+      assertTrue(reader.nextRawKey(keyIn));
+      reader.nextRawValue(valueIn);
+      readKey.readFields(keyIn);
+      readValue.readFields(valueIn);
+      assertEquals(entry.getKey(), readKey.toString());
+      assertEquals(entry.getValue(), readValue.toString());
+    }
+    assertFalse(reader.nextRawKey(keyIn));
+    reader.close();
+  }
+
   @Test(timeout = 30000)
   public void testEmptyCaseFileLengths() throws IOException {
     testEmptyCaseFileLengthsHelper(50, 2, 1, 48);
@@ -37,6 +37,7 @@ import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
@@ -65,6 +66,7 @@ import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
@@ -75,12 +77,14 @@ import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.tez.common.TezCommonUtils;
 import org.apache.tez.common.TezRuntimeFrameworkConfigs;
 import org.apache.tez.common.TezUtilsInternal;
+import org.apache.tez.common.counters.CounterGroup;
 import org.apache.tez.common.counters.TaskCounter;
 import org.apache.tez.common.counters.TezCounter;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.OutputContext;
 import org.apache.tez.runtime.api.events.CompositeDataMovementEvent;
+import org.apache.tez.runtime.library.api.KeyValueBatch;
 import org.apache.tez.runtime.library.api.Partitioner;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration.ReportPartitionStats;
@@ -91,6 +95,7 @@ import org.apache.tez.runtime.library.common.task.local.output.TezTaskOutput;
 import org.apache.tez.runtime.library.common.task.local.output.TezTaskOutputFiles;
 import org.apache.tez.runtime.library.partitioner.HashPartitioner;
 import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.DataMovementEventPayloadProto;
+import org.apache.tez.util.LatencyHistogram;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -341,6 +346,113 @@ public class TestUnorderedPartitionedKVWriter {
     textTest(100, 10, 2048, 10, 10, 10, false, false);
   }
 
+  @Test(timeout = 10000)
+  public void testBatchWrite() throws IOException, InterruptedException {
+    ApplicationId appId = ApplicationId.newInstance(10000000, 1);
+    TezCounters counters = new TezCounters();
+    String uniqueId = UUID.randomUUID().toString();
+    String auxiliaryService = defaultConf.get(TezConfiguration.TEZ_AM_SHUFFLE_AUXILIARY_SERVICE_ID,
+        TezConfiguration.TEZ_AM_SHUFFLE_AUXILIARY_SERVICE_ID_DEFAULT);
+    OutputContext outputContext = createMockOutputContext(counters, appId, uniqueId, auxiliaryService);
+    Configuration conf = createConfiguration(outputContext, Text.class, Text.class, shouldCompress,
+        -1, HashPartitioner.class);
+    CompressionCodec codec = null;
+    if (shouldCompress) {
+      codec = new DefaultCodec();
+      ((Configurable) codec).setConf(conf);
+    }
+
+    int numPartitions = 2;
+    UnorderedPartitionedKVWriter kvWriter = new UnorderedPartitionedKVWriterForTest(outputContext,
+        conf, numPartitions, 2048);
+    List<Multimap<String, String>> expectedValues = new ArrayList<Multimap<String, String>>();
+    for (int i = 0; i < numPartitions; i++) {
+      expectedValues.add(LinkedListMultimap.<String, String>create());
+    }
+    KeyValueBatch batch = new KeyValueBatch(16);
+    DataOutputBuffer keyOut = new DataOutputBuffer();
+    DataOutputBuffer valOut = new DataOutputBuffer();
+    Text keyText = new Text();
+    Text valText = new Text();
+    for (int i = 0; i < 100; i++) {
+      // One record which does not fit in a buffer, and is spilled on its own
+      keyText.set(createRandomString(i == 50 ? kvWriter.sizePerBuffer + 10 : 10));
+      valText.set(createRandomString(20));
+      keyOut.reset();
+      keyText.write(keyOut);
+      valOut.reset();
+      valText.write(valOut);
+      int index = batch.add(keyOut.getData(), 0, keyOut.getLength(), valOut.getData(), 0,
+          valOut.getLength());
+      batch.setPartition(index, i % numPartitions);
+      expectedValues.get(i % numPartitions).put(keyText.toString(), valText.toString());
+      if (batch.isFull()) {
+        kvWriter.write(batch);
+        batch.clear();
+      }
+    }
+    kvWriter.write(batch);
+    kvWriter.close();
+
+    // the large record is counted on its own
+    assertEquals(1, counters.findCounter(TaskCounter.OUTPUT_LARGE_RECORDS).getValue());
+    assertEquals(99, counters.findCounter(TaskCounter.OUTPUT_RECORDS).getValue());
+
+    TezSpillRecord spillRecord = new TezSpillRecord(kvWriter.finalIndexPath, conf);
+    DataInputBuffer keyBuffer = new DataInputBuffer();
+    DataInputBuffer valBuffer = new DataInputBuffer();
+    for (int i = 0; i < numPartitions; i++) {
+      TezIndexRecord indexRecord = spillRecord.getIndex(i);
+      FSDataInputStream inStream = FileSystem.getLocal(conf).open(kvWriter.finalOutPath);
+      inStream.seek(indexRecord.getStartOffset());
+      IFile.Reader reader = new IFile.Reader(inStream, indexRecord.getPartLength(), codec, null,
+          null, false, 0, -1);
+      while (reader.nextRawKey(keyBuffer)) {
+        reader.nextRawValue(valBuffer);
+        keyText.readFields(keyBuffer);
+        valText.readFields(valBuffer);
+        assertTrue(expectedValues.get(i).remove(keyText.toString(), valText.toString()));
+      }
+      inStream.close();
+      assertEquals(0, expectedValues.get(i).size());
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testSpillLatencyHistogram() throws IOException, InterruptedException {
+    ApplicationId appId = ApplicationId.newInstance(10000000, 1);
+    TezCounters counters = new TezCounters();
+    String uniqueId = UUID.randomUUID().toString();
+    String auxiliaryService = defaultConf.get(TezConfiguration.TEZ_AM_SHUFFLE_AUXILIARY_SERVICE_ID,
+        TezConfiguration.TEZ_AM_SHUFFLE_AUXILIARY_SERVICE_ID_DEFAULT);
+    OutputContext outputContext = createMockOutputContext(counters, appId, uniqueId, auxiliaryService);
+    Configuration conf = createConfiguration(outputContext, Text.class, Text.class, shouldCompress,
+        -1, HashPartitioner.class);
+    conf.setBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_LATENCY_HISTOGRAMS_ENABLED, true);
+
+    UnorderedPartitionedKVWriter kvWriter = new UnorderedPartitionedKVWriterForTest(outputContext,
+        conf, 10, 2048);
+    Text keyText = new Text();
+    Text valText = new Text();
+    for (int i = 0; i < 100; i++) {
+      keyText.set(createRandomString(10));
+      valText.set(createRandomString(20));
+      kvWriter.write(keyText, valText);
+    }
+    // a record which does not fit in a buffer is spilled on its own
+    keyText.set(createRandomString(kvWriter.sizePerBuffer + 10));
+    kvWriter.write(keyText, valText);
+    kvWriter.close();
+
+    // the histogram is reported with the framework counters of the task
+    CounterGroup group = counters.getGroup(LatencyHistogram.COUNTER_GROUP);
+    assertNull(group.findCounter("SPILL_COUNT", false));
+    LatencyHistogram.updateRegisteredCounters(counters);
+    assertTrue(kvWriter.numSpills.get() > 2);
+    // all the spills but the merged output
+    assertEquals(kvWriter.numSpills.get() - 1, group.findCounter("SPILL_COUNT").getValue());
+  }
+
   public void textTest(int numRegularRecords, int numPartitions, long availableMemory,
       int numLargeKeys, int numLargevalues, int numLargeKvPairs,
       boolean pipeliningEnabled, boolean isFinalMergeEnabled) throws IOException,
@@ -52,6 +52,7 @@ public abstract class TezAnalyzerBase extends Configured implements Tool, Analyz
   private static final String SAVE_RESULTS = "saveResults";
   private static final String DAG_ID = "dagId";
   private static final String FROM_SIMPLE_HISTORY = "fromSimpleHistory";
+  private static final String PARSER_THREADS = "parserThreads";
   private static final String HELP = "help";
 
   private static final int SEPARATOR_WIDTH = 80;
@@ -82,6 +83,11 @@ public abstract class TezAnalyzerBase extends Configured implements Tool, Analyz
         .withDescription("Event data from Simple History logging. Must also specify event file")
         .isRequired(false).create();
     
+    Option parserThreadsOption = OptionBuilder.withArgName(PARSER_THREADS).withLongOpt
+        (PARSER_THREADS)
+        .withDescription("Number of threads used to parse the event data (optional, default 1)")
+        .hasArg().isRequired(false).create();
+
     Option help = OptionBuilder.withArgName(HELP).withLongOpt
         (HELP)
         .withDescription("print help")
@@ -93,6 +99,7 @@ public abstract class TezAnalyzerBase extends Configured implements Tool, Analyz
     opts.addOption(saveResults);
     opts.addOption(eventFileNameOption);
     opts.addOption(fromSimpleHistoryOption);
+    opts.addOption(parserThreadsOption);
     opts.addOption(help);
     return opts;
   }
@@ -139,6 +146,20 @@ public abstract class TezAnalyzerBase extends Configured implements Tool, Analyz
     }
     
     String dagId = cmdLine.getOptionValue(DAG_ID);
+
+    int parserThreads = 1;
+    if (cmdLine.hasOption(PARSER_THREADS)) {
+      try {
+        parserThreads = Integer.parseInt(cmdLine.getOptionValue(PARSER_THREADS));
+      } catch (NumberFormatException e) {
+        parserThreads = 0;
+      }
+      if (parserThreads <= 0) {
+        System.err.println("Number of parser threads should be a positive integer");
+        printUsage();
+        return -4;
+      }
+    }
     
     DagInfo dagInfo = null;
     
@@ -165,10 +186,10 @@ public abstract class TezAnalyzerBase extends Configured implements Tool, Analyz
     
     Preconditions.checkState(file != null);
     if (!cmdLine.hasOption(FROM_SIMPLE_HISTORY)) {
-      ATSFileParser parser = new ATSFileParser(file);
+      ATSFileParser parser = new ATSFileParser(file, parserThreads);
       dagInfo = parser.getDAGData(dagId);
     } else {
-      SimpleHistoryParser parser = new SimpleHistoryParser(file);
+      SimpleHistoryParser parser = new SimpleHistoryParser(file, parserThreads);
       dagInfo = parser.getDAGData(dagId);
     }
     Preconditions.checkState(dagInfo.getDagId().equals(dagId));